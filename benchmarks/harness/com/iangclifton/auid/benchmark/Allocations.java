@@ -0,0 +1,51 @@
+package com.iangclifton.auid.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the bytes the current thread has allocated, using the HotSpot
+ * thread allocation counters.
+ *
+ * @author Ian G. Clifton
+ */
+public final class Allocations {
+	private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+
+	private Allocations() {
+	}
+
+	/**
+	 * Returns the number of bytes the current thread has allocated so far.
+	 * Only the difference between two calls means anything.
+	 *
+	 * @return long bytes allocated or -1 if the JVM doesn't count them
+	 */
+	public static long getAllocatedBytes() {
+		if (THREAD_BEAN == null) {
+			return -1;
+		}
+		return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Returns true if {@link #getAllocatedBytes()} works on this JVM
+	 *
+	 * @return true if allocations are counted
+	 */
+	public static boolean isSupported() {
+		return THREAD_BEAN != null;
+	}
+
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		final Object bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return null;
+		}
+		final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+		if (!threadBean.isThreadAllocatedMemorySupported()) {
+			return null;
+		}
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+		return threadBean;
+	}
+}
@@ -0,0 +1,73 @@
+package com.iangclifton.auid.benchmark;
+
+/**
+ * Checks for tests run by {@link TestRunner}. Each one throws an
+ * AssertionError with the message when the check fails.
+ *
+ * @author Ian G. Clifton
+ */
+public final class Assert {
+
+	private Assert() {
+	}
+
+	/**
+	 * Fails unless two values are equal
+	 *
+	 * @param message String describing the value
+	 * @param expected long value it should have
+	 * @param actual long value it has
+	 */
+	public static void assertEquals(String message, long expected, long actual) {
+		if (expected != actual) {
+			fail(message + ": expected " + expected + " but was " + actual);
+		}
+	}
+
+	/**
+	 * Fails unless two objects are equal
+	 *
+	 * @param message String describing the value
+	 * @param expected Object value it should have
+	 * @param actual Object value it has
+	 */
+	public static void assertEquals(String message, Object expected, Object actual) {
+		if (expected == null ? actual != null : !expected.equals(actual)) {
+			fail(message + ": expected " + expected + " but was " + actual);
+		}
+	}
+
+	/**
+	 * Fails unless a value is at most a limit
+	 *
+	 * @param message String describing the value
+	 * @param limit long largest allowed value
+	 * @param actual long value it has
+	 */
+	public static void assertAtMost(String message, long limit, long actual) {
+		if (actual > limit) {
+			fail(message + ": expected at most " + limit + " but was " + actual);
+		}
+	}
+
+	/**
+	 * Fails unless a condition holds
+	 *
+	 * @param message String describing the condition
+	 * @param condition boolean that should be true
+	 */
+	public static void assertTrue(String message, boolean condition) {
+		if (!condition) {
+			fail(message);
+		}
+	}
+
+	/**
+	 * Fails the test
+	 *
+	 * @param message String saying why
+	 */
+	public static void fail(String message) {
+		throw new AssertionError(message);
+	}
+}
@@ -0,0 +1,19 @@
+package com.iangclifton.auid.benchmark;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method that {@link BenchmarkRunner} measures. The method is one
+ * operation: it must be public, take no arguments or just a
+ * {@link Blackhole}, and return nothing or an Object, which is consumed so
+ * the work isn't optimized away.
+ *
+ * @author Ian G. Clifton
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Benchmark {
+}
@@ -0,0 +1,202 @@
+package com.iangclifton.auid.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Runs every {@link Benchmark} and {@link Metric} method in the classes whose
+ * names end with "Benchmark" and prints one JSON object per line for each:
+ *
+ * <pre>
+ * {"benchmark":"...PropertyBenchmark.parcelRoundTrip","mode":"thrpt","opsPerSec":1234.5,...}
+ * {"benchmark":"...PropertyTableBenchmark.retainedBytes","mode":"metric","value":1048576,"unit":"bytes"}
+ * </pre>
+ *
+ * Throughput lines give the mean ops/s over the measurement iterations and
+ * their standard deviation, the mean time per operation and the bytes
+ * allocated per operation, which is -1 if the JVM doesn't count allocations.
+ * Each method gets a new instance of its class, set up by its {@link Setup}
+ * methods, and is warmed up before it is measured, the way JMH runs a
+ * benchmark in one fork.
+ *
+ * Arguments are directories of compiled classes to search. These system
+ * properties change how it runs:
+ * <ul>
+ * <li>bench.filter: regular expression a benchmark's full name has to contain</li>
+ * <li>bench.warmupIterations: iterations run before measuring, 3 by default</li>
+ * <li>bench.iterations: iterations measured, 5 by default</li>
+ * <li>bench.iterationMillis: length of each iteration, 1000 by default</li>
+ * <li>bench.output: file to write the JSON lines to as well</li>
+ * </ul>
+ *
+ * @author Ian G. Clifton
+ */
+public final class BenchmarkRunner {
+	private static final String CLASS_SUFFIX = "Benchmark";
+
+	private final Pattern mFilter;
+	private final int mWarmupIterations;
+	private final int mIterations;
+	private final long mIterationNanos;
+	private final PrintWriter mOutput;
+	private final Blackhole mBlackhole = new Blackhole();
+
+	private BenchmarkRunner(Pattern filter, int warmupIterations, int iterations, long iterationMillis,
+			PrintWriter output) {
+		mFilter = filter;
+		mWarmupIterations = warmupIterations;
+		mIterations = iterations;
+		mIterationNanos = iterationMillis * 1000000L;
+		mOutput = output;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final String outputPath = System.getProperty("bench.output");
+		PrintWriter output = null;
+		if (outputPath != null && outputPath.length() > 0) {
+			output = new PrintWriter(new OutputStreamWriter(new FileOutputStream(outputPath), "UTF-8"));
+		}
+		final BenchmarkRunner runner = new BenchmarkRunner(
+				Pattern.compile(System.getProperty("bench.filter", "")),
+				Integer.getInteger("bench.warmupIterations", 3),
+				Integer.getInteger("bench.iterations", 5),
+				Long.getLong("bench.iterationMillis", 1000),
+				output);
+		try {
+			for (String dir : args) {
+				for (Class<?> c : Classes.find(new File(dir), CLASS_SUFFIX)) {
+					runner.run(c);
+				}
+			}
+		} finally {
+			if (output != null) {
+				output.close();
+			}
+		}
+		// Keeps everything consumed reachable until the very end
+		System.err.println(runner.mBlackhole);
+	}
+
+	private void run(Class<?> c) throws Exception {
+		for (Method method : Classes.getAnnotatedMethods(c, Metric.class)) {
+			if (mFilter.matcher(Classes.getName(method)).find()) {
+				runMetric(method);
+			}
+		}
+		for (Method method : Classes.getAnnotatedMethods(c, Benchmark.class)) {
+			if (mFilter.matcher(Classes.getName(method)).find()) {
+				runBenchmark(method);
+			}
+		}
+	}
+
+	private void runMetric(Method method) throws Exception {
+		final String name = Classes.getName(method);
+		System.err.println("# Metric " + name);
+		final Object value = Classes.invoke(method, Classes.newInstance(method.getDeclaringClass()));
+		if (!(value instanceof Number)) {
+			throw new IllegalArgumentException(name + " has to return a number");
+		}
+		report(String.format(Locale.ROOT, "{\"benchmark\":\"%s\",\"mode\":\"metric\",\"value\":%s,\"unit\":\"%s\"}",
+				name, value, method.getAnnotation(Metric.class).unit()));
+	}
+
+	private void runBenchmark(Method method) throws Exception {
+		final String name = Classes.getName(method);
+		final Class<?>[] parameterTypes = method.getParameterTypes();
+		final Object[] args;
+		if (parameterTypes.length == 0) {
+			args = new Object[0];
+		} else if (parameterTypes.length == 1 && parameterTypes[0] == Blackhole.class) {
+			args = new Object[] { mBlackhole };
+		} else {
+			throw new IllegalArgumentException(name + " can only take a Blackhole");
+		}
+		if (method.getReturnType().isPrimitive() && method.getReturnType() != void.class) {
+			// Boxing the result would count as an allocation of the benchmark
+			throw new IllegalArgumentException(name + " has to return an Object or consume its result");
+		}
+
+		System.err.println("# Benchmark " + name);
+		final Object instance = Classes.newInstance(method.getDeclaringClass());
+		for (int i = 0; i < mWarmupIterations; i++) {
+			final Iteration iteration = runIteration(method, instance, args);
+			System.err.println(String.format(Locale.ROOT, "  warmup %d: %.3f ops/s", i + 1,
+					iteration.getOpsPerSec()));
+		}
+		final double[] opsPerSec = new double[mIterations];
+		long totalOps = 0;
+		long totalBytes = 0;
+		for (int i = 0; i < mIterations; i++) {
+			final Iteration iteration = runIteration(method, instance, args);
+			opsPerSec[i] = iteration.getOpsPerSec();
+			totalOps += iteration.mOps;
+			totalBytes += iteration.mAllocatedBytes;
+			System.err.println(String.format(Locale.ROOT, "  iteration %d: %.3f ops/s", i + 1, opsPerSec[i]));
+		}
+
+		double mean = 0;
+		for (double value : opsPerSec) {
+			mean += value;
+		}
+		mean /= opsPerSec.length;
+		double variance = 0;
+		for (double value : opsPerSec) {
+			variance += (value - mean) * (value - mean);
+		}
+		final double stdDev = opsPerSec.length > 1 ? Math.sqrt(variance / (opsPerSec.length - 1)) : 0;
+		final double bytesPerOp = Allocations.isSupported() ? (double) totalBytes / totalOps : -1;
+		report(String.format(Locale.ROOT, "{\"benchmark\":\"%s\",\"mode\":\"thrpt\",\"iterations\":%d,"
+				+ "\"opsPerSec\":%.3f,\"opsPerSecStdDev\":%.3f,\"nsPerOp\":%.1f,\"bytesPerOp\":%.1f}",
+				name, mIterations, mean, stdDev, 1e9 / mean, bytesPerOp));
+	}
+
+	/**
+	 * Calls the method over and over for one iteration's time
+	 */
+	private Iteration runIteration(Method method, Object instance, Object[] args) throws Exception {
+		final Blackhole blackhole = mBlackhole;
+		final long deadline = mIterationNanos;
+		long ops = 0;
+		final long startBytes = Allocations.getAllocatedBytes();
+		final long start = System.nanoTime();
+		long elapsed;
+		do {
+			blackhole.consume(Classes.invoke(method, instance, args));
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < deadline);
+		final long allocatedBytes = Allocations.getAllocatedBytes() - startBytes;
+		return new Iteration(ops, elapsed, allocatedBytes);
+	}
+
+	private void report(String line) throws IOException {
+		System.out.println(line);
+		if (mOutput != null) {
+			mOutput.println(line);
+			mOutput.flush();
+		}
+	}
+
+	private static class Iteration {
+		private final long mOps;
+		private final long mNanos;
+		private final long mAllocatedBytes;
+
+		/*package*/ Iteration(long ops, long nanos, long allocatedBytes) {
+			mOps = ops;
+			mNanos = nanos;
+			mAllocatedBytes = allocatedBytes;
+		}
+
+		/*package*/ double getOpsPerSec() {
+			return mOps * 1e9 / mNanos;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.iangclifton.auid.benchmark;
+
+/**
+ * Takes the results of benchmarked code so the JIT can't drop the work that
+ * produced them as dead code.
+ *
+ * @author Ian G. Clifton
+ */
+public class Blackhole {
+
+	/**
+	 * Written on every object consumed; the volatile write can't be removed
+	 */
+	private volatile Object mObject;
+
+	private int mInt;
+	private long mLong;
+	private double mDouble;
+
+	/**
+	 * Consumes a value
+	 *
+	 * @param value boolean result
+	 */
+	public void consume(boolean value) {
+		mInt += value ? 1 : 0;
+	}
+
+	/**
+	 * Consumes a value
+	 *
+	 * @param value double result
+	 */
+	public void consume(double value) {
+		mDouble += value;
+	}
+
+	/**
+	 * Consumes a value
+	 *
+	 * @param value int result
+	 */
+	public void consume(int value) {
+		mInt += value;
+	}
+
+	/**
+	 * Consumes a value
+	 *
+	 * @param value long result
+	 */
+	public void consume(long value) {
+		mLong += value;
+	}
+
+	/**
+	 * Consumes a value
+	 *
+	 * @param value Object result, which may be null
+	 */
+	public void consume(Object value) {
+		mObject = value;
+	}
+
+	@Override
+	public String toString() {
+		// Reading everything back keeps the primitive sums alive too
+		return "Blackhole[" + mInt + ", " + mLong + ", " + mDouble + ", " + (mObject != null) + "]";
+	}
+}
@@ -0,0 +1,136 @@
+package com.iangclifton.auid.benchmark;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the classes to run and the annotated methods in them.
+ *
+ * @author Ian G. Clifton
+ */
+/*package*/ final class Classes {
+
+	private static final String CLASS_FILE_SUFFIX = ".class";
+
+	private Classes() {
+	}
+
+	/**
+	 * Returns the top level classes under a directory of compiled classes
+	 * whose names end with a suffix, sorted by name
+	 *
+	 * @param dir File root of the package directories
+	 * @param suffix String such as "Benchmark"
+	 * @return List of the classes
+	 * @throws ClassNotFoundException if a class file can't be loaded
+	 */
+	/*package*/ static List<Class<?>> find(File dir, String suffix) throws ClassNotFoundException {
+		final List<String> names = new ArrayList<String>();
+		collect(dir, "", suffix + CLASS_FILE_SUFFIX, names);
+		Collections.sort(names);
+		final List<Class<?>> classes = new ArrayList<Class<?>>(names.size());
+		for (String name : names) {
+			final Class<?> c = Class.forName(name);
+			if (!Modifier.isAbstract(c.getModifiers())) {
+				classes.add(c);
+			}
+		}
+		return classes;
+	}
+
+	/**
+	 * Returns the public methods of a class with an annotation, sorted by
+	 * name so runs always go in the same order
+	 *
+	 * @param c Class to look in
+	 * @param annotation Class of the annotation
+	 * @return List of the methods
+	 */
+	/*package*/ static List<Method> getAnnotatedMethods(Class<?> c,
+			Class<? extends java.lang.annotation.Annotation> annotation) {
+		final List<Method> methods = new ArrayList<Method>();
+		for (Method method : c.getMethods()) {
+			if (method.isAnnotationPresent(annotation)) {
+				methods.add(method);
+			}
+		}
+		Collections.sort(methods, new Comparator<Method>() {
+			@Override
+			public int compare(Method a, Method b) {
+				return a.getName().compareTo(b.getName());
+			}
+		});
+		return methods;
+	}
+
+	/**
+	 * Constructs an instance of a class and runs its {@link Setup} methods
+	 *
+	 * @param c Class with a public no-argument constructor
+	 * @return the new instance
+	 * @throws Exception if construction or setup fails
+	 */
+	/*package*/ static Object newInstance(Class<?> c) throws Exception {
+		final Object instance = c.getConstructor().newInstance();
+		for (Method method : getAnnotatedMethods(c, Setup.class)) {
+			invoke(method, instance);
+		}
+		return instance;
+	}
+
+	/**
+	 * Calls a method, rethrowing whatever it throws rather than an
+	 * InvocationTargetException
+	 *
+	 * @param method Method to call
+	 * @param instance Object to call it on
+	 * @param args Object... arguments
+	 * @return Object the method returned
+	 * @throws Exception if the method throws
+	 */
+	/*package*/ static Object invoke(Method method, Object instance, Object... args) throws Exception {
+		try {
+			return method.invoke(instance, args);
+		} catch (InvocationTargetException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the description of a method used in reports, like
+	 * "com.example.FooBenchmark.bar"
+	 */
+	/*package*/ static String getName(Method method) {
+		return method.getDeclaringClass().getName() + "." + method.getName();
+	}
+
+	private static void collect(File dir, String packagePrefix, String fileSuffix, List<String> names) {
+		final File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			final String fileName = file.getName();
+			if (file.isDirectory()) {
+				collect(file, packagePrefix + fileName + ".", fileSuffix, names);
+			} else if (fileName.endsWith(fileSuffix) && fileName.indexOf('$') < 0) {
+				names.add(packagePrefix + fileName.substring(0, fileName.length() - CLASS_FILE_SUFFIX.length()));
+			}
+		}
+	}
+}
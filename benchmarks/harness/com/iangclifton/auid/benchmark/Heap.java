@@ -0,0 +1,55 @@
+package com.iangclifton.auid.benchmark;
+
+/**
+ * Measures how much of the heap is in use, for reporting the bytes a
+ * structure retains.
+ *
+ * Take a reading, build the structure, take another reading while the
+ * structure is still reachable and subtract. Both readings collect garbage
+ * first, so run with a fixed heap size (-Xms equal to -Xmx) and nothing else
+ * going on for the numbers to be stable.
+ *
+ * @author Ian G. Clifton
+ */
+public final class Heap {
+
+	/**
+	 * Most collections to run before giving up on the heap settling
+	 */
+	private static final int MAX_GC_RUNS = 20;
+
+	/**
+	 * Fewest collections to run; a full collection may leave dead objects in
+	 * place instead of moving the live ones past them, and only compacts the
+	 * whole heap every few runs
+	 */
+	private static final int MIN_GC_RUNS = 5;
+
+	private Heap() {
+	}
+
+	/**
+	 * Collects garbage until the used heap stops shrinking and returns it
+	 *
+	 * @return long bytes in use
+	 */
+	public static long getUsedBytes() {
+		final Runtime runtime = Runtime.getRuntime();
+		long used = runtime.totalMemory() - runtime.freeMemory();
+		for (int i = 0; i < MAX_GC_RUNS; i++) {
+			System.gc();
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			final long after = runtime.totalMemory() - runtime.freeMemory();
+			if (after >= used && i >= MIN_GC_RUNS) {
+				return after;
+			}
+			used = after;
+		}
+		return used;
+	}
+}
@@ -0,0 +1,23 @@
+package com.iangclifton.auid.benchmark;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public no-argument method returning a number that
+ * {@link BenchmarkRunner} reports as it is, such as the bytes a structure
+ * retains or the size of a Parcel. It is called once, after the setup.
+ *
+ * @author Ian G. Clifton
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Metric {
+
+	/**
+	 * Unit the value is in, such as "bytes" or "ms"
+	 */
+	String unit();
+}
@@ -0,0 +1,17 @@
+package com.iangclifton.auid.benchmark;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public no-argument method that prepares the data a benchmark or
+ * test class uses. It runs once, before anything else in the instance.
+ *
+ * @author Ian G. Clifton
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Setup {
+}
@@ -0,0 +1,17 @@
+package com.iangclifton.auid.benchmark;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public no-argument method that {@link TestRunner} runs. The test
+ * fails if the method throws.
+ *
+ * @author Ian G. Clifton
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Test {
+}
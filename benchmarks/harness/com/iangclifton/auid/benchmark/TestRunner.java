@@ -0,0 +1,55 @@
+package com.iangclifton.auid.benchmark;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Runs every {@link Test} method in the classes whose names end with "Test",
+ * each on a new instance set up by its {@link Setup} methods, and exits with
+ * a non-zero status if any of them fail.
+ *
+ * Arguments are directories of compiled classes to search. The system
+ * property test.filter, a regular expression, limits the run to tests whose
+ * full names contain a match.
+ *
+ * @author Ian G. Clifton
+ */
+public final class TestRunner {
+	private static final String CLASS_SUFFIX = "Test";
+
+	private TestRunner() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		final Pattern filter = Pattern.compile(System.getProperty("test.filter", ""));
+		int run = 0;
+		int failed = 0;
+		for (String dir : args) {
+			for (Class<?> c : Classes.find(new File(dir), CLASS_SUFFIX)) {
+				final List<Method> methods = Classes.getAnnotatedMethods(c, Test.class);
+				for (Method method : methods) {
+					final String name = Classes.getName(method);
+					if (!filter.matcher(name).find()) {
+						continue;
+					}
+					run++;
+					final long start = System.nanoTime();
+					try {
+						Classes.invoke(method, Classes.newInstance(c));
+						System.out.println("PASS " + name + " (" + (System.nanoTime() - start) / 1000000 + " ms)");
+					} catch (Throwable t) {
+						failed++;
+						System.out.println("FAIL " + name);
+						t.printStackTrace(System.out);
+					}
+				}
+			}
+		}
+		System.out.println(run + " tests, " + failed + " failed");
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.iangclifton.auid.realestate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import com.iangclifton.auid.benchmark.Benchmark;
+import com.iangclifton.auid.benchmark.Blackhole;
+import com.iangclifton.auid.benchmark.Heap;
+import com.iangclifton.auid.benchmark.Metric;
+import com.iangclifton.auid.benchmark.Setup;
+
+/**
+ * Compares building the listings of a 50,000 listing feed as
+ * {@link LazyProperty} objects against decoding every {@link Property} up
+ * front with {@link PropertyFeedReader}, and reports the heap each list
+ * retains.
+ *
+ * The lazy list keeps the feed bytes, so they are counted against it.
+ * {@link #lazyDecodeAll(Blackhole)} is the worst case for the lazy list,
+ * where every field of every row is read.
+ *
+ * @author Ian G. Clifton
+ */
+public class LazyPropertyBenchmark {
+	private static final int LISTING_COUNT = 50000;
+
+	private byte[] mFeed;
+
+	@Setup
+	public void setUp() {
+		mFeed = new PropertyTestUtils(1).getNewFeed(LISTING_COUNT);
+	}
+
+	@Benchmark
+	public Object eager() throws IOException {
+		return readEager(mFeed);
+	}
+
+	@Metric(unit = "bytes")
+	public long eagerRetainedSize() throws IOException {
+		final long before = Heap.getUsedBytes();
+		final ArrayList<Property> properties = readEager(mFeed);
+		final long size = Heap.getUsedBytes() - before;
+		checkCount(properties);
+		return size;
+	}
+
+	@Benchmark
+	public Object lazy() throws IOException {
+		return LazyProperty.readFeed(mFeed);
+	}
+
+	/**
+	 * Reads the feed lazily and then every field of every row
+	 */
+	@Benchmark
+	public void lazyDecodeAll(Blackhole blackhole) throws IOException {
+		final ArrayList<LazyProperty> properties = LazyProperty.readFeed(mFeed);
+		for (int i = 0, size = properties.size(); i < size; i++) {
+			final LazyProperty property = properties.get(i);
+			blackhole.consume(property.getBathroomCount());
+			blackhole.consume(property.getBedroomCount());
+			blackhole.consume(property.getCity());
+			blackhole.consume(property.getFootage());
+			blackhole.consume(property.getId());
+			blackhole.consume(property.getPriceCents());
+			blackhole.consume(property.getState());
+			blackhole.consume(property.getStreetAddress());
+		}
+	}
+
+	@Metric(unit = "bytes")
+	public long lazyRetainedSize() throws IOException {
+		final long before = Heap.getUsedBytes();
+		final ArrayList<LazyProperty> properties = LazyProperty.readFeed(mFeed.clone());
+		final long size = Heap.getUsedBytes() - before;
+		checkCount(properties);
+		return size;
+	}
+
+	private static ArrayList<Property> readEager(byte[] feed) throws IOException {
+		final ArrayList<Property> properties = new ArrayList<Property>();
+		PropertyFeedReader.readAll(new ByteArrayInputStream(feed), new PropertyFeedReader.Callback() {
+			@Override
+			public void onProperty(Property property) {
+				properties.add(property);
+			}
+		});
+		return properties;
+	}
+
+	private static void checkCount(ArrayList<? extends AbstractProperty> properties) {
+		if (properties.size() != LISTING_COUNT) {
+			throw new IllegalStateException("Read " + properties.size() + " listings");
+		}
+	}
+}
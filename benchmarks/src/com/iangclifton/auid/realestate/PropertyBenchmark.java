@@ -0,0 +1,120 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.ArrayList;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.content.Context;
+import android.os.Parcel;
+
+import com.iangclifton.auid.benchmark.Benchmark;
+import com.iangclifton.auid.benchmark.Blackhole;
+import com.iangclifton.auid.benchmark.Setup;
+
+/**
+ * Measures the per-listing costs of the {@link Property} model: building one
+ * from JSON, a Parcel round trip through {@link Property#CREATOR}, generating
+ * the test listings the activities show and binding a row, both the way
+ * PropertyListAdapter originally did and with {@link PropertyRowBinder}.
+ *
+ * Each operation works on the next of a fixed set of listings, so the
+ * results don't depend on one listing's values.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyBenchmark {
+
+	/**
+	 * Listings to cycle through; a power of two so the next index is a mask
+	 */
+	private static final int LISTING_COUNT = 1024;
+
+	/**
+	 * The number of listings each section of the app shows
+	 */
+	private static final int SECTION_SIZE = 30;
+
+	private static final String BATH = " Bath";
+	private static final String BED = " Bed";
+	private static final String SQ_FT = " Sq. Ft.";
+
+	private final JSONObject[] mJson = new JSONObject[LISTING_COUNT];
+	private final Property[] mProperties = new Property[LISTING_COUNT];
+	private final Parcel mParcel = Parcel.obtain();
+	private PropertyTestUtils mPropertyTestUtils;
+	private PropertyTable mTable;
+	private PropertyRowBinder mBinder;
+	private PropertyRowView mRow;
+	private int mNext;
+
+	@Setup
+	public void setUp() throws JSONException {
+		final ArrayList<Property> properties = new PropertyTestUtils(1).getNewProperties(LISTING_COUNT);
+		for (int i = 0; i < LISTING_COUNT; i++) {
+			mProperties[i] = properties.get(i);
+			mJson[i] = new JSONObject(properties.get(i).toJson().toString());
+		}
+		mPropertyTestUtils = new PropertyTestUtils(2);
+		mTable = PropertyTable.fromList(properties);
+		mTable.freeze();
+		final Context context = new Context();
+		mBinder = new PropertyRowBinder(context.getResources());
+		mRow = new PropertyRowView(context);
+	}
+
+	/**
+	 * Binds one row the way PropertyListAdapter.getView did before it
+	 * stopped allocating: a new String for each of the concatenated labels
+	 */
+	@Benchmark
+	public void bindConcatenated(Blackhole blackhole) {
+		final Property property = next();
+		blackhole.consume(property.getCity() + ", " + property.getState());
+		blackhole.consume(property.getPrice());
+		blackhole.consume(property.getStreetAddress());
+		blackhole.consume(property.getBedroomCount() + BED);
+		blackhole.consume(property.getBathroomCount() + BATH);
+		blackhole.consume(property.getFootage() + SQ_FT);
+	}
+
+	/**
+	 * Binds one recycled row from a PropertyTable the way
+	 * PropertyListAdapter.getView does now
+	 */
+	@Benchmark
+	public Object bindRow() {
+		mBinder.bind(mRow, mTable, mNext++ & (LISTING_COUNT - 1));
+		return mRow;
+	}
+
+	/**
+	 * Generates the listings for one section of the app
+	 */
+	@Benchmark
+	public Object getNewProperties() {
+		return mPropertyTestUtils.getNewProperties(SECTION_SIZE);
+	}
+
+	/**
+	 * Writes a listing to a Parcel and reads it back through CREATOR, as
+	 * happens for each listing in saved state
+	 */
+	@Benchmark
+	public Object parcelRoundTrip() {
+		final Parcel parcel = mParcel;
+		parcel.recycle();
+		next().writeToParcel(parcel, 0);
+		parcel.setDataPosition(0);
+		return Property.CREATOR.createFromParcel(parcel);
+	}
+
+	@Benchmark
+	public Object propertyFromJson() throws JSONException {
+		return new Property(mJson[mNext++ & (LISTING_COUNT - 1)]);
+	}
+
+	private Property next() {
+		return mProperties[mNext++ & (LISTING_COUNT - 1)];
+	}
+}
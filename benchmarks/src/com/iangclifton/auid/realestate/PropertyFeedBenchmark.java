@@ -0,0 +1,68 @@
+package com.iangclifton.auid.realestate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import com.iangclifton.auid.benchmark.Benchmark;
+import com.iangclifton.auid.benchmark.Blackhole;
+import com.iangclifton.auid.benchmark.Heap;
+import com.iangclifton.auid.benchmark.Metric;
+import com.iangclifton.auid.benchmark.Setup;
+
+/**
+ * Compares reading a 50,000 listing feed with {@link PropertyFeedReader}
+ * against parsing it into an org.json DOM first and building each
+ * {@link Property} from its JSONObject, and reports how much heap the DOM
+ * holds at its peak, which the streaming reader never needs.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyFeedBenchmark {
+	private static final int LISTING_COUNT = 50000;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private byte[] mFeed;
+
+	@Setup
+	public void setUp() {
+		mFeed = new PropertyTestUtils(1).getNewFeed(LISTING_COUNT);
+	}
+
+	@Benchmark
+	public void dom(Blackhole blackhole) throws JSONException {
+		final JSONArray array = new JSONArray(new String(mFeed, UTF_8));
+		for (int i = 0, length = array.length(); i < length; i++) {
+			blackhole.consume(new Property(array.getJSONObject(i)));
+		}
+	}
+
+	/**
+	 * The feed text and its DOM, which are both reachable while the DOM path
+	 * builds its listings
+	 */
+	@Metric(unit = "bytes")
+	public long domRetainedSize() throws JSONException {
+		final long before = Heap.getUsedBytes();
+		final String json = new String(mFeed, UTF_8);
+		final JSONArray array = new JSONArray(json);
+		final long size = Heap.getUsedBytes() - before;
+		if (array.length() != LISTING_COUNT || json.isEmpty()) {
+			throw new IllegalStateException("Feed didn't parse");
+		}
+		return size;
+	}
+
+	@Benchmark
+	public void streaming(final Blackhole blackhole) throws IOException {
+		PropertyFeedReader.readAll(new ByteArrayInputStream(mFeed), new PropertyFeedReader.Callback() {
+			@Override
+			public void onProperty(Property property) {
+				blackhole.consume(property);
+			}
+		});
+	}
+}
@@ -0,0 +1,50 @@
+package com.iangclifton.auid.realestate;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.iangclifton.auid.benchmark.Benchmark;
+import com.iangclifton.auid.benchmark.Setup;
+
+/**
+ * Measures generating 100,000 test listings: through JSON one Property at a
+ * time with {@link PropertyTestUtils#getNewProperties(int)}, straight into a
+ * {@link PropertyTable} on one thread and on every processor, and written
+ * out as a {@link PropertySnapshot}.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyGeneratorBenchmark {
+	private static final int LISTING_COUNT = 100000;
+
+	private File mSnapshot;
+	private long mSeed;
+
+	@Setup
+	public void setUp() throws IOException {
+		mSnapshot = File.createTempFile("listings", ".snapshot");
+		mSnapshot.deleteOnExit();
+	}
+
+	@Benchmark
+	public Object getNewProperties() {
+		return new PropertyTestUtils(mSeed++).getNewProperties(LISTING_COUNT);
+	}
+
+	@Benchmark
+	public Object newPropertyTable() throws InterruptedException {
+		return PropertyTestUtils.newPropertyTable(mSeed++, LISTING_COUNT, 1);
+	}
+
+	@Benchmark
+	public Object newPropertyTableParallel() throws InterruptedException {
+		return PropertyTestUtils.newPropertyTable(mSeed++, LISTING_COUNT,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	@Benchmark
+	public Object writeSnapshot() throws IOException, InterruptedException {
+		PropertyTestUtils.writeSnapshot(mSnapshot, mSeed++, LISTING_COUNT, 1);
+		return mSnapshot;
+	}
+}
@@ -0,0 +1,92 @@
+package com.iangclifton.auid.realestate;
+
+import com.iangclifton.auid.benchmark.Benchmark;
+import com.iangclifton.auid.benchmark.Setup;
+
+/**
+ * Measures {@link PropertyIndex} queries over 200,000 generated listings,
+ * from a single bitmap to every predicate at once, against checking each row
+ * with {@link PropertyQuery#matches(PropertyDataSet, int)}, and the cost of
+ * building the index.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyIndexBenchmark {
+	private static final int LISTING_COUNT = 200000;
+
+	private final PropertyQuery mCityQuery = new PropertyQuery().setCity("Redmond");
+	private final PropertyQuery mFootageQuery = new PropertyQuery().setFootage(2000, 2200);
+
+	/**
+	 * A search someone might actually run; about 4% of the rows match
+	 */
+	private final PropertyQuery mCombinedQuery = new PropertyQuery()
+			.setCity("Seattle")
+			.setState("WA")
+			.setBedrooms(3, 4)
+			.setBathrooms(1.5f, 2.25f)
+			.setFootage(1500, 2500)
+			.setPriceCents(0, 50000000);
+
+	/**
+	 * A narrow search that only a few dozen rows match
+	 */
+	private final PropertyQuery mSelectiveQuery = new PropertyQuery()
+			.setCity("Kent")
+			.setBedrooms(4, 4)
+			.setFootage(3000, 3100)
+			.setPriceCents(60000000, Long.MAX_VALUE);
+
+	private PropertyTable mTable;
+	private PropertyIndex mIndex;
+
+	@Setup
+	public void setUp() throws InterruptedException {
+		mTable = PropertyTestUtils.newPropertyTable(1, LISTING_COUNT);
+		mTable.freeze();
+		mIndex = new PropertyIndex(mTable);
+	}
+
+	@Benchmark
+	public Object buildIndex() {
+		return new PropertyIndex(mTable);
+	}
+
+	@Benchmark
+	public Object queryCity() {
+		return mIndex.query(mCityQuery);
+	}
+
+	@Benchmark
+	public Object queryCombined() {
+		return mIndex.query(mCombinedQuery);
+	}
+
+	@Benchmark
+	public Object queryFootageRange() {
+		return mIndex.query(mFootageQuery);
+	}
+
+	@Benchmark
+	public Object querySelective() {
+		return mIndex.query(mSelectiveQuery);
+	}
+
+	/**
+	 * Runs the combined query by checking every row
+	 */
+	@Benchmark
+	public Object scanCombined() {
+		final PropertyTable table = mTable;
+		final PropertyQuery query = mCombinedQuery;
+		final int count = table.getCount();
+		final int[] matches = new int[count];
+		int matched = 0;
+		for (int row = 0; row < count; row++) {
+			if (query.matches(table, row)) {
+				matches[matched++] = row;
+			}
+		}
+		return matches;
+	}
+}
@@ -0,0 +1,122 @@
+package com.iangclifton.auid.realestate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import android.os.Bundle;
+import android.os.Parcel;
+
+import com.iangclifton.auid.benchmark.Benchmark;
+import com.iangclifton.auid.benchmark.Blackhole;
+import com.iangclifton.auid.benchmark.Metric;
+import com.iangclifton.auid.benchmark.Setup;
+
+/**
+ * Compares the saved state of a {@link PropertyListFragment} showing 10,000
+ * listings when its arguments hold every listing, the way newInstance used
+ * to put them in with putParcelableArrayList, with arguments that hold only a
+ * {@link PropertyRepository} data set id, a {@link PropertyQuery} and a
+ * {@link PropertyListState}, as newInstance(PropertyListState) does now.
+ *
+ * The argument Bundles are built with the same keys and values as the
+ * fragment, which can't run here. Restoring the listings Bundle gives back
+ * every Property; restoring the data set id includes opening the data set's
+ * {@link PropertySnapshot}, which is what the repository does when the
+ * process has died since the state was saved.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyListArgumentsBenchmark {
+	private static final int LISTING_COUNT = 10000;
+
+	private static final String DATA_SET_ID = "section_1";
+
+	private Bundle mListingsArguments;
+	private Bundle mDataSetArguments;
+	private byte[] mListingsState;
+	private byte[] mDataSetState;
+	private File mSnapshot;
+	private final Parcel mParcel = Parcel.obtain();
+
+	@Setup
+	public void setUp() throws IOException {
+		final ArrayList<Property> properties = new PropertyTestUtils(1).getNewProperties(LISTING_COUNT);
+		mListingsArguments = new Bundle();
+		mListingsArguments.putParcelableArrayList("properties", properties);
+
+		final PropertyQuery query = new PropertyQuery().setCity("Seattle").setBedrooms(2, 4);
+		final PropertyListState state = new PropertyListState(DATA_SET_ID, query);
+		state.setSortKey(PropertySortIndex.SORT_PRICE);
+		state.setSearchText("Main");
+		state.setFirstVisible(120, properties.get(120).getId(), -14);
+		mDataSetArguments = new Bundle();
+		mDataSetArguments.putString("dataSetId", state.getDataSetId());
+		mDataSetArguments.putParcelable("query", state.getQuery());
+		mDataSetArguments.putParcelable("listState", state);
+
+		mListingsState = marshall(mListingsArguments);
+		mDataSetState = marshall(mDataSetArguments);
+
+		mSnapshot = File.createTempFile("listings_" + DATA_SET_ID, ".snapshot");
+		mSnapshot.deleteOnExit();
+		PropertySnapshot.write(mSnapshot, PropertyTable.fromList(properties));
+	}
+
+	@Metric(unit = "bytes")
+	public long listingsSavedStateSize() {
+		return mListingsState.length;
+	}
+
+	@Metric(unit = "bytes")
+	public long dataSetIdSavedStateSize() {
+		return mDataSetState.length;
+	}
+
+	@Benchmark
+	public Object saveListings() {
+		final Parcel parcel = mParcel;
+		parcel.recycle();
+		parcel.writeBundle(mListingsArguments);
+		return parcel;
+	}
+
+	@Benchmark
+	public Object saveDataSetId() {
+		final Parcel parcel = mParcel;
+		parcel.recycle();
+		parcel.writeBundle(mDataSetArguments);
+		return parcel;
+	}
+
+	@Benchmark
+	public void restoreListings(Blackhole blackhole) {
+		final Bundle args = unmarshall(mListingsState);
+		final ArrayList<Property> properties = args.getParcelableArrayList("properties");
+		blackhole.consume(properties);
+	}
+
+	@Benchmark
+	public void restoreDataSetId(Blackhole blackhole) {
+		final Bundle args = unmarshall(mDataSetState);
+		final PropertyQuery query = args.getParcelable("query");
+		final PropertyListState state = args.getParcelable("listState");
+		final String dataSetId = args.getString("dataSetId");
+		blackhole.consume(query);
+		blackhole.consume(state);
+		blackhole.consume(dataSetId);
+		blackhole.consume(PropertySnapshot.open(mSnapshot));
+	}
+
+	private static byte[] marshall(Bundle args) {
+		final Parcel parcel = Parcel.obtain();
+		parcel.writeBundle(args);
+		return parcel.marshall();
+	}
+
+	private Bundle unmarshall(byte[] state) {
+		final Parcel parcel = mParcel;
+		parcel.unmarshall(state, 0, state.length);
+		return parcel.readBundle(PropertyListArgumentsBenchmark.class.getClassLoader());
+	}
+}
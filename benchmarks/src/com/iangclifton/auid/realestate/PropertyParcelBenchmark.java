@@ -0,0 +1,77 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.ArrayList;
+
+import android.os.Parcel;
+
+import com.iangclifton.auid.benchmark.Benchmark;
+import com.iangclifton.auid.benchmark.Blackhole;
+import com.iangclifton.auid.benchmark.Metric;
+import com.iangclifton.auid.benchmark.Setup;
+
+/**
+ * Compares the binary Parcel format {@link Property} writes with the JSON
+ * format it used to write, for 10,000 listings at a time: writing them and
+ * reading them back through {@link Property#CREATOR}, and the size of the
+ * Parcel each format makes.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyParcelBenchmark {
+	private static final int LISTING_COUNT = 10000;
+
+	private ArrayList<Property> mProperties;
+	private final Parcel mParcel = Parcel.obtain();
+
+	@Setup
+	public void setUp() {
+		mProperties = new PropertyTestUtils(1).getNewProperties(LISTING_COUNT);
+	}
+
+	@Benchmark
+	public void binaryRoundTrip(Blackhole blackhole) {
+		final Parcel parcel = mParcel;
+		parcel.recycle();
+		for (int i = 0; i < LISTING_COUNT; i++) {
+			mProperties.get(i).writeToParcel(parcel, 0);
+		}
+		readAll(parcel, blackhole);
+	}
+
+	@Metric(unit = "bytes")
+	public long binaryParcelSize() {
+		final Parcel parcel = mParcel;
+		parcel.recycle();
+		for (int i = 0; i < LISTING_COUNT; i++) {
+			mProperties.get(i).writeToParcel(parcel, 0);
+		}
+		return parcel.dataSize();
+	}
+
+	@Benchmark
+	public void jsonRoundTrip(Blackhole blackhole) {
+		final Parcel parcel = mParcel;
+		parcel.recycle();
+		for (int i = 0; i < LISTING_COUNT; i++) {
+			mProperties.get(i).writeJsonToParcel(parcel);
+		}
+		readAll(parcel, blackhole);
+	}
+
+	@Metric(unit = "bytes")
+	public long jsonParcelSize() {
+		final Parcel parcel = mParcel;
+		parcel.recycle();
+		for (int i = 0; i < LISTING_COUNT; i++) {
+			mProperties.get(i).writeJsonToParcel(parcel);
+		}
+		return parcel.dataSize();
+	}
+
+	private static void readAll(Parcel parcel, Blackhole blackhole) {
+		parcel.setDataPosition(0);
+		for (int i = 0; i < LISTING_COUNT; i++) {
+			blackhole.consume(Property.CREATOR.createFromParcel(parcel));
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+import com.iangclifton.auid.benchmark.Benchmark;
+import com.iangclifton.auid.benchmark.Blackhole;
+import com.iangclifton.auid.benchmark.Metric;
+import com.iangclifton.auid.benchmark.Setup;
+
+/**
+ * Measures searching 100,000 listings a keystroke at a time: through a
+ * {@link PropertySearchIndex.Searcher}, which narrows down the previous
+ * keystroke's results, through {@link PropertySearchIndex#search(String)},
+ * which starts over each time, and by checking whether every lowercased
+ * street address contains the text, plus the cost of building the index.
+ *
+ * Each operation is one keystroke of a search box where a few searches are
+ * typed and then cleared in turn. The test data only has a handful of
+ * streets, so each listing gets its own house number, the way real
+ * addresses differ.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertySearchIndexBenchmark {
+	private static final int LISTING_COUNT = 100000;
+
+	/**
+	 * Rounds of every keystroke run before {@link #slowestKeystrokeMicros()}
+	 * measures
+	 */
+	private static final int WARMUP_ROUNDS = 200;
+	private static final int MEASURED_ROUNDS = 50;
+
+	/**
+	 * What the search box holds after each keystroke
+	 */
+	private static final String[] KEYSTROKES = getKeystrokes("silly loop", "5959 agg", "bel", "old cedar dr");
+
+	private PropertyTable mTable;
+	private PropertySearchIndex mIndex;
+	private PropertySearchIndex.Searcher mSearcher;
+	private int mKeystroke;
+
+	@Setup
+	public void setUp() {
+		final ArrayList<Property> generated = new PropertyTestUtils(1).getNewProperties(LISTING_COUNT);
+		final ArrayList<Property> properties = new ArrayList<Property>(LISTING_COUNT);
+		for (int i = 0; i < LISTING_COUNT; i++) {
+			final Property p = generated.get(i);
+			final String street = p.getStreetAddress();
+			properties.add(new Property(p.getId(), p.getBathroomCount(), p.getBedroomCount(), p.getCity(),
+					p.getFootage(), p.getPriceCents(), p.getState(),
+					(i % 9999 + 1) + street.substring(street.indexOf(' '))));
+		}
+		mTable = PropertyTable.fromList(properties);
+		mTable.freeze();
+		mIndex = PropertySearchIndex.build(mTable);
+		mSearcher = new PropertySearchIndex.Searcher(mIndex);
+	}
+
+	@Benchmark
+	public Object buildIndex() {
+		return PropertySearchIndex.build(mTable);
+	}
+
+	@Benchmark
+	public Object searcherKeystroke() {
+		return mSearcher.search(nextKeystroke());
+	}
+
+	@Benchmark
+	public Object indexKeystroke() {
+		return mIndex.search(nextKeystroke());
+	}
+
+	/**
+	 * Checks every street address for the text, the way a search would work
+	 * without an index
+	 */
+	@Benchmark
+	public void containsScanKeystroke(Blackhole blackhole) {
+		final String text = nextKeystroke().toLowerCase(Locale.US);
+		if (text.length() == 0) {
+			return;
+		}
+		final PropertyTable table = mTable;
+		for (int row = 0, count = table.getCount(); row < count; row++) {
+			if (table.getStreetAddress(row).toLowerCase(Locale.US).contains(text)) {
+				blackhole.consume(row);
+			}
+		}
+	}
+
+	/**
+	 * Returns the mean time of the slowest keystroke through the Searcher,
+	 * which is the one the user is most likely to notice
+	 */
+	@Metric(unit = "us")
+	public double slowestKeystrokeMicros() {
+		final PropertySearchIndex.Searcher searcher = mSearcher;
+		final Blackhole blackhole = new Blackhole();
+		final long[] nanos = new long[KEYSTROKES.length];
+		for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+			for (int i = 0; i < KEYSTROKES.length; i++) {
+				final long start = System.nanoTime();
+				blackhole.consume(searcher.search(KEYSTROKES[i]));
+				if (round >= WARMUP_ROUNDS) {
+					nanos[i] += System.nanoTime() - start;
+				}
+			}
+		}
+		long slowest = 0;
+		for (long keystrokeNanos : nanos) {
+			slowest = Math.max(slowest, keystrokeNanos);
+		}
+		return slowest / (MEASURED_ROUNDS * 1000.0);
+	}
+
+	private String nextKeystroke() {
+		final String text = KEYSTROKES[mKeystroke];
+		mKeystroke = (mKeystroke + 1) % KEYSTROKES.length;
+		return text;
+	}
+
+	/**
+	 * Returns every prefix of each search followed by an empty search box
+	 */
+	private static String[] getKeystrokes(String... searches) {
+		final ArrayList<String> keystrokes = new ArrayList<String>();
+		for (String search : searches) {
+			for (int i = 1; i <= search.length(); i++) {
+				keystrokes.add(search.substring(0, i));
+			}
+			keystrokes.add("");
+		}
+		return keystrokes.toArray(new String[keystrokes.size()]);
+	}
+}
@@ -0,0 +1,92 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import com.iangclifton.auid.benchmark.Benchmark;
+import com.iangclifton.auid.benchmark.Setup;
+
+/**
+ * Measures sorting 100k listings by price: the display Strings parsed on
+ * every comparison, the way a sort had to work before prices were kept in
+ * cents, against a comparator on {@link Property#getPriceCents()} and the
+ * primitive {@link PropertyTable#sortRowsByPrice()}.
+ *
+ * The test data only has eight prices, so each listing gets a random price
+ * between $200,000 and $900,000 in $5 steps instead; sorting that many ties
+ * would flatter every approach.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertySortBenchmark {
+	private static final int LISTING_COUNT = 100000;
+
+	private static final Comparator<String> DISPLAY_PRICE_ORDER = new Comparator<String>() {
+		@Override
+		public int compare(String lhs, String rhs) {
+			final long lhsCents = PriceFormatter.parse(lhs);
+			final long rhsCents = PriceFormatter.parse(rhs);
+			return lhsCents < rhsCents ? -1 : (lhsCents == rhsCents ? 0 : 1);
+		}
+	};
+
+	private static final Comparator<Property> PRICE_CENTS_ORDER = new Comparator<Property>() {
+		@Override
+		public int compare(Property lhs, Property rhs) {
+			final long lhsCents = lhs.getPriceCents();
+			final long rhsCents = rhs.getPriceCents();
+			return lhsCents < rhsCents ? -1 : (lhsCents == rhsCents ? 0 : 1);
+		}
+	};
+
+	private final String[] mDisplayPrices = new String[LISTING_COUNT];
+	private final String[] mDisplayPricesSorted = new String[LISTING_COUNT];
+	private final Property[] mProperties = new Property[LISTING_COUNT];
+	private final Property[] mPropertiesSorted = new Property[LISTING_COUNT];
+	private PropertyTable mTable;
+
+	@Setup
+	public void setUp() {
+		final ArrayList<Property> generated = new PropertyTestUtils(1).getNewProperties(LISTING_COUNT);
+		final Random random = new Random(1);
+		for (int i = 0; i < LISTING_COUNT; i++) {
+			final Property p = generated.get(i);
+			final long priceCents = (200000 + random.nextInt(140001) * 5) * 100L;
+			mProperties[i] = new Property(p.getId(), p.getBathroomCount(), p.getBedroomCount(), p.getCity(),
+					p.getFootage(), priceCents, p.getState(), p.getStreetAddress());
+			mDisplayPrices[i] = PriceFormatter.format(priceCents);
+		}
+		mTable = PropertyTable.fromList(Arrays.asList(mProperties));
+		mTable.freeze();
+	}
+
+	/**
+	 * Sorts the display prices, parsing both sides of every comparison
+	 */
+	@Benchmark
+	public Object displayPriceComparator() {
+		System.arraycopy(mDisplayPrices, 0, mDisplayPricesSorted, 0, LISTING_COUNT);
+		Arrays.sort(mDisplayPricesSorted, DISPLAY_PRICE_ORDER);
+		return mDisplayPricesSorted;
+	}
+
+	/**
+	 * Sorts the Property objects by their price in cents
+	 */
+	@Benchmark
+	public Object priceCentsComparator() {
+		System.arraycopy(mProperties, 0, mPropertiesSorted, 0, LISTING_COUNT);
+		Arrays.sort(mPropertiesSorted, PRICE_CENTS_ORDER);
+		return mPropertiesSorted;
+	}
+
+	/**
+	 * Sorts the table's rows on its price column
+	 */
+	@Benchmark
+	public Object tableSortRowsByPrice() {
+		return mTable.sortRowsByPrice();
+	}
+}
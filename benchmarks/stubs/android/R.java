@@ -0,0 +1,19 @@
+package android;
+
+/**
+ * Stand-in for android.R with the attributes the sample views read.
+ */
+public final class R {
+	private R() {
+	}
+
+	public static final class attr {
+		public static final int textColor = 0x01010098;
+		public static final int textSize = 0x01010095;
+		public static final int textAppearanceMedium = 0x01010041;
+		public static final int textAppearanceSmall = 0x01010042;
+
+		private attr() {
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package android.content;
+
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+
+/**
+ * Stand-in for android.content.Context that can be constructed directly and
+ * only hands out its {@link Resources}.
+ */
+public class Context {
+	private final Resources mResources = new Resources();
+
+	public Resources getResources() {
+		return mResources;
+	}
+
+	public final Resources.Theme getTheme() {
+		return mResources.newTheme();
+	}
+
+	public final TypedArray obtainStyledAttributes(int resid, int[] attrs) {
+		return getTheme().obtainStyledAttributes(resid, attrs);
+	}
+}
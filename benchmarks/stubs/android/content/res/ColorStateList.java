@@ -0,0 +1,16 @@
+package android.content.res;
+
+/**
+ * Stand-in for android.content.res.ColorStateList with a single color.
+ */
+public class ColorStateList {
+	private final int mDefaultColor;
+
+	public ColorStateList(int[][] states, int[] colors) {
+		mDefaultColor = colors.length > 0 ? colors[colors.length - 1] : 0;
+	}
+
+	public int getDefaultColor() {
+		return mDefaultColor;
+	}
+}
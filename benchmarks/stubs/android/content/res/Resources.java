@@ -0,0 +1,97 @@
+package android.content.res;
+
+import java.util.HashMap;
+
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.util.TypedValue;
+
+import com.iangclifton.auid.realestate.R;
+
+/**
+ * Stand-in for android.content.res.Resources holding the real estate app's
+ * strings, dimensions (at mdpi) and drawables that the classes built here
+ * use. The theme has no text appearances, so views fall back to their
+ * defaults.
+ */
+public class Resources {
+	private static final HashMap<Integer, String> STRINGS = new HashMap<Integer, String>();
+	private static final HashMap<Integer, Integer> DIMENSIONS = new HashMap<Integer, Integer>();
+	static {
+		STRINGS.put(R.string.bath, "Bath");
+		STRINGS.put(R.string.bed, "Bed");
+		STRINGS.put(R.string.sq_ft, "Sq. Ft.");
+		DIMENSIONS.put(R.dimen.default_spacing, 8);
+		DIMENSIONS.put(R.dimen.property_row_baths_min_width, 64);
+		DIMENSIONS.put(R.dimen.property_row_footage_min_width, 96);
+	}
+
+	/**
+	 * Size of the placeholder thumbnail in pixels
+	 */
+	private static final int THUMBNAIL_SIZE = 64;
+
+	public int getDimensionPixelSize(int id) {
+		final Integer size = DIMENSIONS.get(id);
+		if (size == null) {
+			throw new NotFoundException("Dimension 0x" + Integer.toHexString(id));
+		}
+		return size;
+	}
+
+	public Drawable getDrawable(int id) {
+		if (id != R.drawable.ic_thumbnail_placeholder) {
+			throw new NotFoundException("Drawable 0x" + Integer.toHexString(id));
+		}
+		return new PlaceholderDrawable();
+	}
+
+	public String getString(int id) {
+		final String value = STRINGS.get(id);
+		if (value == null) {
+			throw new NotFoundException("String 0x" + Integer.toHexString(id));
+		}
+		return value;
+	}
+
+	public final Theme newTheme() {
+		return new Theme();
+	}
+
+	public static class NotFoundException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public NotFoundException(String name) {
+			super(name);
+		}
+	}
+
+	/**
+	 * Draws nothing but has the thumbnail's size
+	 */
+	private static class PlaceholderDrawable extends Drawable {
+		@Override
+		public void draw(Canvas canvas) {
+		}
+
+		@Override
+		public int getIntrinsicHeight() {
+			return THUMBNAIL_SIZE;
+		}
+
+		@Override
+		public int getIntrinsicWidth() {
+			return THUMBNAIL_SIZE;
+		}
+	}
+
+	public final class Theme {
+		public TypedArray obtainStyledAttributes(int resid, int[] attrs) {
+			return new TypedArray(attrs.length);
+		}
+
+		public boolean resolveAttribute(int resid, TypedValue outValue, boolean resolveRefs) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package android.content.res;
+
+/**
+ * Stand-in for android.content.res.TypedArray where every attribute is
+ * missing, so the defaults are returned.
+ */
+public class TypedArray {
+	private final int mLength;
+
+	/*package*/ TypedArray(int length) {
+		mLength = length;
+	}
+
+	public ColorStateList getColorStateList(int index) {
+		return null;
+	}
+
+	public int getDimensionPixelSize(int index, int defValue) {
+		return defValue;
+	}
+
+	public int length() {
+		return mLength;
+	}
+
+	public void recycle() {
+	}
+}
@@ -0,0 +1,17 @@
+package android.database;
+
+/**
+ * Stand-in for android.database.CharArrayBuffer.
+ */
+public final class CharArrayBuffer {
+	public char[] data;
+	public int sizeCopied;
+
+	public CharArrayBuffer(int size) {
+		data = new char[size];
+	}
+
+	public CharArrayBuffer(char[] buf) {
+		data = buf;
+	}
+}
@@ -0,0 +1,27 @@
+package android.graphics;
+
+/**
+ * Stand-in for android.graphics.Canvas that only keeps track of its save
+ * count; nothing is drawn.
+ */
+public class Canvas {
+	private int mSaveCount = 1;
+
+	public int getSaveCount() {
+		return mSaveCount;
+	}
+
+	public void restore() {
+		if (mSaveCount == 1) {
+			throw new IllegalStateException("Underflow in restore");
+		}
+		mSaveCount--;
+	}
+
+	public int save() {
+		return mSaveCount++;
+	}
+
+	public void translate(float dx, float dy) {
+	}
+}
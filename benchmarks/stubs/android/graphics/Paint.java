@@ -0,0 +1,69 @@
+package android.graphics;
+
+/**
+ * Stand-in for android.graphics.Paint. Text is measured as if every
+ * character were half the text size wide.
+ */
+public class Paint {
+	public static final int ANTI_ALIAS_FLAG = 0x01;
+
+	private int mFlags;
+	private int mColor = 0xff000000;
+	private float mTextSize = 12;
+	private Typeface mTypeface;
+
+	public Paint() {
+	}
+
+	public Paint(int flags) {
+		mFlags = flags;
+	}
+
+	public Paint(Paint paint) {
+		set(paint);
+	}
+
+	public int getColor() {
+		return mColor;
+	}
+
+	public int getFlags() {
+		return mFlags;
+	}
+
+	public float getFontSpacing() {
+		return mTextSize * 1.2f;
+	}
+
+	public float getTextSize() {
+		return mTextSize;
+	}
+
+	public Typeface getTypeface() {
+		return mTypeface;
+	}
+
+	public float measureText(CharSequence text, int start, int end) {
+		return (end - start) * mTextSize / 2;
+	}
+
+	public void set(Paint src) {
+		mFlags = src.mFlags;
+		mColor = src.mColor;
+		mTextSize = src.mTextSize;
+		mTypeface = src.mTypeface;
+	}
+
+	public void setColor(int color) {
+		mColor = color;
+	}
+
+	public void setTextSize(float textSize) {
+		mTextSize = textSize;
+	}
+
+	public Typeface setTypeface(Typeface typeface) {
+		mTypeface = typeface;
+		return typeface;
+	}
+}
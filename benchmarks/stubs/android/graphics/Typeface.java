@@ -0,0 +1,11 @@
+package android.graphics;
+
+/**
+ * Stand-in for android.graphics.Typeface.
+ */
+public class Typeface {
+	public static final Typeface DEFAULT = new Typeface();
+
+	private Typeface() {
+	}
+}
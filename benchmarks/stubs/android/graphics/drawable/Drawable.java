@@ -0,0 +1,30 @@
+package android.graphics.drawable;
+
+import android.graphics.Canvas;
+
+/**
+ * Stand-in for android.graphics.drawable.Drawable.
+ */
+public abstract class Drawable {
+	private int mLeft;
+	private int mTop;
+	private int mRight;
+	private int mBottom;
+
+	public abstract void draw(Canvas canvas);
+
+	public int getIntrinsicHeight() {
+		return -1;
+	}
+
+	public int getIntrinsicWidth() {
+		return -1;
+	}
+
+	public void setBounds(int left, int top, int right, int bottom) {
+		mLeft = left;
+		mTop = top;
+		mRight = right;
+		mBottom = bottom;
+	}
+}
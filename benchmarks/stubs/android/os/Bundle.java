@@ -0,0 +1,94 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for android.os.Bundle that is written to a Parcel the way the real
+ * one is: a length, a magic number and then each key followed by its value
+ * written through {@link Parcel#writeValue(Object)}. A Bundle read back with
+ * {@link Parcel#readBundle(ClassLoader)} is unparceled right away rather than
+ * on first access.
+ */
+public final class Bundle implements Parcelable {
+	private static final int BUNDLE_MAGIC = 0x4C444E42;
+
+	private final LinkedHashMap<String, Object> mMap = new LinkedHashMap<String, Object>();
+
+	public Bundle() {
+	}
+
+	public int size() {
+		return mMap.size();
+	}
+
+	public void putInt(String key, int value) {
+		mMap.put(key, value);
+	}
+
+	public int getInt(String key) {
+		final Object value = mMap.get(key);
+		return value instanceof Integer ? (Integer) value : 0;
+	}
+
+	public void putString(String key, String value) {
+		mMap.put(key, value);
+	}
+
+	public String getString(String key) {
+		final Object value = mMap.get(key);
+		return value instanceof String ? (String) value : null;
+	}
+
+	public void putParcelable(String key, Parcelable value) {
+		mMap.put(key, value);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Parcelable> T getParcelable(String key) {
+		return (T) mMap.get(key);
+	}
+
+	public void putParcelableArrayList(String key, ArrayList<? extends Parcelable> value) {
+		mMap.put(key, value);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Parcelable> ArrayList<T> getParcelableArrayList(String key) {
+		return (ArrayList<T>) mMap.get(key);
+	}
+
+	@Override
+	public int describeContents() {
+		return 0;
+	}
+
+	@Override
+	public void writeToParcel(Parcel dest, int flags) {
+		final int lengthPos = dest.dataPosition();
+		dest.writeInt(-1);
+		dest.writeInt(BUNDLE_MAGIC);
+		final int start = dest.dataPosition();
+		dest.writeInt(mMap.size());
+		for (Map.Entry<String, Object> entry : mMap.entrySet()) {
+			dest.writeString(entry.getKey());
+			dest.writeValue(entry.getValue());
+		}
+		final int end = dest.dataPosition();
+		dest.setDataPosition(lengthPos);
+		dest.writeInt(end - start);
+		dest.setDataPosition(end);
+	}
+
+	/*package*/ void readFromParcel(Parcel source, ClassLoader loader) {
+		if (source.readInt() != BUNDLE_MAGIC) {
+			throw new IllegalStateException("Bad magic number for Bundle");
+		}
+		final int n = source.readInt();
+		for (int i = 0; i < n; i++) {
+			final String key = source.readString();
+			mMap.put(key, source.readValue(loader));
+		}
+	}
+}
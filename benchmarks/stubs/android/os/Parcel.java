@@ -0,0 +1,330 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Stand-in for android.os.Parcel that lays data out the way the native
+ * Parcel does, so sizes and costs are comparable: little-endian values
+ * padded to four bytes, Strings as a length and UTF-16 chars with a
+ * terminator, and Parcelables written through writeParcelable prefixed with
+ * their class name.
+ */
+public final class Parcel {
+	private static final int VAL_NULL = -1;
+	private static final int VAL_STRING = 0;
+	private static final int VAL_INTEGER = 1;
+	private static final int VAL_PARCELABLE = 4;
+	private static final int VAL_LONG = 6;
+	private static final int VAL_LIST = 11;
+
+	private static final HashMap<String, Parcelable.Creator<?>> sCreators = new HashMap<String, Parcelable.Creator<?>>();
+
+	private byte[] mData = new byte[256];
+	private int mDataSize;
+	private int mDataPosition;
+
+	private Parcel() {
+	}
+
+	public static Parcel obtain() {
+		return new Parcel();
+	}
+
+	public void recycle() {
+		mDataSize = 0;
+		mDataPosition = 0;
+	}
+
+	public int dataAvail() {
+		return mDataSize - mDataPosition;
+	}
+
+	public int dataPosition() {
+		return mDataPosition;
+	}
+
+	public int dataSize() {
+		return mDataSize;
+	}
+
+	public void setDataPosition(int pos) {
+		mDataPosition = pos;
+	}
+
+	public byte[] marshall() {
+		return Arrays.copyOf(mData, mDataSize);
+	}
+
+	public void unmarshall(byte[] data, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(data, offset, mData, 0, length);
+		mDataSize = length;
+		mDataPosition = 0;
+	}
+
+	public void writeByteArray(byte[] b) {
+		if (b == null) {
+			writeInt(-1);
+			return;
+		}
+		writeInt(b.length);
+		final int padded = pad(b.length);
+		final int pos = grow(padded);
+		System.arraycopy(b, 0, mData, pos, b.length);
+	}
+
+	public byte[] createByteArray() {
+		final int length = readInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte[] b = Arrays.copyOfRange(mData, mDataPosition, mDataPosition + length);
+		mDataPosition += pad(length);
+		return b;
+	}
+
+	public void writeDouble(double val) {
+		writeLong(Double.doubleToRawLongBits(val));
+	}
+
+	public double readDouble() {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	public void writeFloat(float val) {
+		writeInt(Float.floatToRawIntBits(val));
+	}
+
+	public float readFloat() {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	public void writeInt(int val) {
+		final int pos = grow(4);
+		final byte[] data = mData;
+		data[pos] = (byte) val;
+		data[pos + 1] = (byte) (val >>> 8);
+		data[pos + 2] = (byte) (val >>> 16);
+		data[pos + 3] = (byte) (val >>> 24);
+	}
+
+	public int readInt() {
+		final int pos = mDataPosition;
+		if (pos + 4 > mDataSize) {
+			return 0;
+		}
+		final byte[] data = mData;
+		mDataPosition = pos + 4;
+		return (data[pos] & 0xff) | (data[pos + 1] & 0xff) << 8 | (data[pos + 2] & 0xff) << 16
+				| (data[pos + 3] & 0xff) << 24;
+	}
+
+	public void writeLong(long val) {
+		writeInt((int) val);
+		writeInt((int) (val >>> 32));
+	}
+
+	public long readLong() {
+		final long low = readInt() & 0xffffffffL;
+		return low | (long) readInt() << 32;
+	}
+
+	public void writeString(String val) {
+		if (val == null) {
+			writeInt(-1);
+			return;
+		}
+		final int length = val.length();
+		writeInt(length);
+		final int pos = grow(pad((length + 1) * 2));
+		final byte[] data = mData;
+		for (int i = 0; i < length; i++) {
+			final char c = val.charAt(i);
+			data[pos + i * 2] = (byte) c;
+			data[pos + i * 2 + 1] = (byte) (c >>> 8);
+		}
+		data[pos + length * 2] = 0;
+		data[pos + length * 2 + 1] = 0;
+	}
+
+	public String readString() {
+		final int length = readInt();
+		if (length < 0) {
+			return null;
+		}
+		final int pos = mDataPosition;
+		final byte[] data = mData;
+		final char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) ((data[pos + i * 2] & 0xff) | (data[pos + i * 2 + 1] & 0xff) << 8);
+		}
+		mDataPosition = pos + pad((length + 1) * 2);
+		return new String(chars);
+	}
+
+	public void writeParcelable(Parcelable p, int parcelableFlags) {
+		if (p == null) {
+			writeString(null);
+			return;
+		}
+		writeString(p.getClass().getName());
+		p.writeToParcel(this, parcelableFlags);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T extends Parcelable> T readParcelable(ClassLoader loader) {
+		final String name = readString();
+		if (name == null) {
+			return null;
+		}
+		return (T) getCreator(name, loader).createFromParcel(this);
+	}
+
+	public void writeBundle(Bundle val) {
+		if (val == null) {
+			writeInt(-1);
+			return;
+		}
+		val.writeToParcel(this, 0);
+	}
+
+	public Bundle readBundle(ClassLoader loader) {
+		final int length = readInt();
+		if (length < 0) {
+			return null;
+		}
+		final Bundle bundle = new Bundle();
+		bundle.readFromParcel(this, loader);
+		return bundle;
+	}
+
+	public <T extends Parcelable> void writeTypedList(List<T> val) {
+		if (val == null) {
+			writeInt(-1);
+			return;
+		}
+		final int n = val.size();
+		writeInt(n);
+		for (int i = 0; i < n; i++) {
+			final T item = val.get(i);
+			if (item == null) {
+				writeInt(0);
+			} else {
+				writeInt(1);
+				item.writeToParcel(this, 0);
+			}
+		}
+	}
+
+	public <T> ArrayList<T> createTypedArrayList(Parcelable.Creator<T> c) {
+		final int n = readInt();
+		if (n < 0) {
+			return null;
+		}
+		final ArrayList<T> list = new ArrayList<T>(n);
+		for (int i = 0; i < n; i++) {
+			list.add(readInt() != 0 ? c.createFromParcel(this) : null);
+		}
+		return list;
+	}
+
+	/**
+	 * Writes a value of one of the types Bundles hold, tagged with its type
+	 */
+	public void writeValue(Object v) {
+		if (v == null) {
+			writeInt(VAL_NULL);
+		} else if (v instanceof String) {
+			writeInt(VAL_STRING);
+			writeString((String) v);
+		} else if (v instanceof Integer) {
+			writeInt(VAL_INTEGER);
+			writeInt((Integer) v);
+		} else if (v instanceof Long) {
+			writeInt(VAL_LONG);
+			writeLong((Long) v);
+		} else if (v instanceof Parcelable) {
+			writeInt(VAL_PARCELABLE);
+			writeParcelable((Parcelable) v, 0);
+		} else if (v instanceof List) {
+			writeInt(VAL_LIST);
+			final List<?> list = (List<?>) v;
+			writeInt(list.size());
+			for (Object item : list) {
+				writeValue(item);
+			}
+		} else {
+			throw new RuntimeException("Parcel: unable to marshal value " + v);
+		}
+	}
+
+	public Object readValue(ClassLoader loader) {
+		final int type = readInt();
+		switch (type) {
+		case VAL_NULL:
+			return null;
+		case VAL_STRING:
+			return readString();
+		case VAL_INTEGER:
+			return readInt();
+		case VAL_LONG:
+			return readLong();
+		case VAL_PARCELABLE:
+			return readParcelable(loader);
+		case VAL_LIST:
+			final int n = readInt();
+			final ArrayList<Object> list = new ArrayList<Object>(n);
+			for (int i = 0; i < n; i++) {
+				list.add(readValue(loader));
+			}
+			return list;
+		default:
+			throw new RuntimeException("Parcel: unmarshalling unknown type code " + type + " at offset "
+					+ (mDataPosition - 4));
+		}
+	}
+
+	private static Parcelable.Creator<?> getCreator(String name, ClassLoader loader) {
+		synchronized (sCreators) {
+			Parcelable.Creator<?> creator = sCreators.get(name);
+			if (creator == null) {
+				try {
+					final Class<?> c = Class.forName(name, true,
+							loader == null ? Parcel.class.getClassLoader() : loader);
+					creator = (Parcelable.Creator<?>) c.getField("CREATOR").get(null);
+				} catch (Exception e) {
+					throw new RuntimeException("Parcelable protocol requires a CREATOR: " + name, e);
+				}
+				sCreators.put(name, creator);
+			}
+			return creator;
+		}
+	}
+
+	/**
+	 * Moves the position past count bytes, growing the data to fit, and
+	 * returns the position they start at
+	 */
+	private int grow(int count) {
+		final int pos = mDataPosition;
+		ensureCapacity(pos + count);
+		mDataPosition = pos + count;
+		if (mDataPosition > mDataSize) {
+			mDataSize = mDataPosition;
+		}
+		return pos;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > mData.length) {
+			mData = Arrays.copyOf(mData, Math.max(capacity, mData.length * 2));
+		}
+	}
+
+	private static int pad(int size) {
+		return (size + 3) & ~3;
+	}
+}
@@ -0,0 +1,52 @@
+package android.text;
+
+/**
+ * Stand-in for android.text.BoringLayout. Text is boring unless it has a
+ * line break or tab.
+ */
+public class BoringLayout extends Layout {
+
+	public static class Metrics {
+		public int width;
+	}
+
+	public BoringLayout(CharSequence source, TextPaint paint, int outerWidth, Alignment align,
+			float spacingMult, float spacingAdd, Metrics metrics, boolean includePad) {
+		super(source, paint, outerWidth, align, spacingMult, spacingAdd);
+	}
+
+	public static Metrics isBoring(CharSequence text, TextPaint paint) {
+		return isBoring(text, paint, null);
+	}
+
+	public static Metrics isBoring(CharSequence text, TextPaint paint, Metrics metrics) {
+		final int length = text.length();
+		for (int i = 0; i < length; i++) {
+			final char c = text.charAt(i);
+			if (c == '\n' || c == '\t') {
+				return null;
+			}
+		}
+		if (metrics == null) {
+			metrics = new Metrics();
+		}
+		metrics.width = (int) Math.ceil(paint.measureText(text, 0, length));
+		return metrics;
+	}
+
+	public static BoringLayout make(CharSequence source, TextPaint paint, int outerWidth, Alignment align,
+			float spacingMult, float spacingAdd, Metrics metrics, boolean includePad) {
+		return new BoringLayout(source, paint, outerWidth, align, spacingMult, spacingAdd, metrics, includePad);
+	}
+
+	@Override
+	public int getLineCount() {
+		return 1;
+	}
+
+	public BoringLayout replaceOrMake(CharSequence source, TextPaint paint, int outerWidth, Alignment align,
+			float spacingMult, float spacingAdd, Metrics metrics, boolean includePad) {
+		replaceWith(source, paint, outerWidth, align);
+		return this;
+	}
+}
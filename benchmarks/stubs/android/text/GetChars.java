@@ -0,0 +1,8 @@
+package android.text;
+
+/**
+ * Stand-in for android.text.GetChars.
+ */
+public interface GetChars extends CharSequence {
+	public void getChars(int start, int end, char[] dest, int destoff);
+}
@@ -0,0 +1,70 @@
+package android.text;
+
+import android.graphics.Canvas;
+
+/**
+ * Stand-in for android.text.Layout. Lines are the paint's font spacing tall
+ * and nothing is drawn.
+ */
+public abstract class Layout {
+	public enum Alignment {
+		ALIGN_NORMAL,
+		ALIGN_OPPOSITE,
+		ALIGN_CENTER,
+	}
+
+	private CharSequence mText;
+	private TextPaint mPaint;
+	private int mWidth;
+	private Alignment mAlignment;
+
+	protected Layout(CharSequence text, TextPaint paint, int width, Alignment align, float spacingMult,
+			float spacingAdd) {
+		replaceWith(text, paint, width, align);
+	}
+
+	public static float getDesiredWidth(CharSequence source, TextPaint paint) {
+		float widest = 0;
+		int lineStart = 0;
+		final int length = source.length();
+		for (int i = 0; i <= length; i++) {
+			if (i == length || source.charAt(i) == '\n') {
+				widest = Math.max(widest, paint.measureText(source, lineStart, i));
+				lineStart = i + 1;
+			}
+		}
+		return widest;
+	}
+
+	public void draw(Canvas canvas) {
+	}
+
+	public final Alignment getAlignment() {
+		return mAlignment;
+	}
+
+	public int getHeight() {
+		return getLineCount() * (int) Math.ceil(mPaint.getFontSpacing());
+	}
+
+	public abstract int getLineCount();
+
+	public final TextPaint getPaint() {
+		return mPaint;
+	}
+
+	public final CharSequence getText() {
+		return mText;
+	}
+
+	public final int getWidth() {
+		return mWidth;
+	}
+
+	/*package*/ void replaceWith(CharSequence text, TextPaint paint, int width, Alignment align) {
+		mText = text;
+		mPaint = paint;
+		mWidth = width;
+		mAlignment = align;
+	}
+}
@@ -0,0 +1,34 @@
+package android.text;
+
+/**
+ * Stand-in for android.text.StaticLayout that breaks lines wherever they
+ * run out of width rather than between words.
+ */
+public class StaticLayout extends Layout {
+	private final int mLineCount;
+
+	public StaticLayout(CharSequence source, TextPaint paint, int width, Alignment align, float spacingMult,
+			float spacingAdd, boolean includePad) {
+		super(source, paint, width, align, spacingMult, spacingAdd);
+		int lines = 1;
+		float lineWidth = 0;
+		final float charWidth = paint.measureText(source, 0, 1);
+		for (int i = 0, length = source.length(); i < length; i++) {
+			if (source.charAt(i) == '\n') {
+				lines++;
+				lineWidth = 0;
+			} else if (lineWidth + charWidth > width && lineWidth > 0) {
+				lines++;
+				lineWidth = charWidth;
+			} else {
+				lineWidth += charWidth;
+			}
+		}
+		mLineCount = lines;
+	}
+
+	@Override
+	public int getLineCount() {
+		return mLineCount;
+	}
+}
@@ -0,0 +1,19 @@
+package android.text;
+
+import android.graphics.Paint;
+
+/**
+ * Stand-in for android.text.TextPaint.
+ */
+public class TextPaint extends Paint {
+	public TextPaint() {
+	}
+
+	public TextPaint(int flags) {
+		super(flags);
+	}
+
+	public TextPaint(Paint paint) {
+		super(paint);
+	}
+}
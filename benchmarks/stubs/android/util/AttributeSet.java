@@ -0,0 +1,8 @@
+package android.util;
+
+/**
+ * Stand-in for android.util.AttributeSet.
+ */
+public interface AttributeSet {
+	public int getAttributeCount();
+}
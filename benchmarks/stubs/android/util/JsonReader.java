@@ -0,0 +1,569 @@
+package android.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Stand-in for android.util.JsonReader: a pull parser that reads strict JSON
+ * from a Reader through a fixed-size buffer, so memory use doesn't depend on
+ * the size of the document. Like Android's, it reuses the String for a name
+ * or value it has seen recently instead of making a new one. Lenient parsing
+ * isn't supported.
+ */
+public final class JsonReader implements Closeable {
+	private static final int EMPTY_ARRAY = 1;
+	private static final int NONEMPTY_ARRAY = 2;
+	private static final int EMPTY_OBJECT = 3;
+	private static final int DANGLING_NAME = 4;
+	private static final int NONEMPTY_OBJECT = 5;
+	private static final int EMPTY_DOCUMENT = 6;
+	private static final int NONEMPTY_DOCUMENT = 7;
+	private static final int CLOSED = 8;
+
+	private final Reader mIn;
+	private final char[] mBuffer = new char[1024];
+	private int mPos;
+	private int mLimit;
+
+	private int[] mStack = new int[32];
+	private int mStackSize;
+
+	/**
+	 * The token peeked but not yet consumed, along with its text for names,
+	 * strings, numbers and booleans
+	 */
+	private JsonToken mToken;
+	private String mValue;
+
+	private final StringBuilder mBuilder = new StringBuilder();
+	private final StringPool mStringPool = new StringPool();
+
+	public JsonReader(Reader in) {
+		if (in == null) {
+			throw new NullPointerException("in == null");
+		}
+		mIn = in;
+		push(EMPTY_DOCUMENT);
+	}
+
+	public void setLenient(boolean lenient) {
+		if (lenient) {
+			throw new UnsupportedOperationException("Lenient parsing isn't supported");
+		}
+	}
+
+	public boolean isLenient() {
+		return false;
+	}
+
+	public void beginArray() throws IOException {
+		expect(JsonToken.BEGIN_ARRAY);
+	}
+
+	public void endArray() throws IOException {
+		expect(JsonToken.END_ARRAY);
+	}
+
+	public void beginObject() throws IOException {
+		expect(JsonToken.BEGIN_OBJECT);
+	}
+
+	public void endObject() throws IOException {
+		expect(JsonToken.END_OBJECT);
+	}
+
+	public boolean hasNext() throws IOException {
+		final JsonToken token = peek();
+		return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY;
+	}
+
+	public JsonToken peek() throws IOException {
+		if (mToken != null) {
+			return mToken;
+		}
+		switch (mStack[mStackSize - 1]) {
+		case EMPTY_DOCUMENT:
+			mStack[mStackSize - 1] = NONEMPTY_DOCUMENT;
+			return nextValue();
+		case EMPTY_ARRAY:
+			return nextInArray(true);
+		case NONEMPTY_ARRAY:
+			return nextInArray(false);
+		case EMPTY_OBJECT:
+			return nextInObject(true);
+		case DANGLING_NAME:
+			return objectValue();
+		case NONEMPTY_OBJECT:
+			return nextInObject(false);
+		case NONEMPTY_DOCUMENT:
+			if (nextNonWhitespace(false) == -1) {
+				return mToken = JsonToken.END_DOCUMENT;
+			}
+			throw syntaxError("Expected EOF");
+		default:
+			throw new IllegalStateException("JsonReader is closed");
+		}
+	}
+
+	public String nextName() throws IOException {
+		if (peek() != JsonToken.NAME) {
+			throw new IllegalStateException("Expected a name but was " + peek());
+		}
+		return consumeValue();
+	}
+
+	public String nextString() throws IOException {
+		final JsonToken token = peek();
+		if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+			throw new IllegalStateException("Expected a string but was " + token);
+		}
+		return consumeValue();
+	}
+
+	public boolean nextBoolean() throws IOException {
+		if (peek() != JsonToken.BOOLEAN) {
+			throw new IllegalStateException("Expected a boolean but was " + mToken);
+		}
+		return "true".equals(consumeValue());
+	}
+
+	public void nextNull() throws IOException {
+		if (peek() != JsonToken.NULL) {
+			throw new IllegalStateException("Expected null but was " + mToken);
+		}
+		consumeValue();
+	}
+
+	public double nextDouble() throws IOException {
+		final JsonToken token = peek();
+		if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+			throw new IllegalStateException("Expected a double but was " + token);
+		}
+		final double result = Double.parseDouble(mValue);
+		consumeValue();
+		return result;
+	}
+
+	public long nextLong() throws IOException {
+		final JsonToken token = peek();
+		if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+			throw new IllegalStateException("Expected a long but was " + token);
+		}
+		long result;
+		try {
+			result = Long.parseLong(mValue);
+		} catch (NumberFormatException e) {
+			final double asDouble = Double.parseDouble(mValue);
+			result = (long) asDouble;
+			if (result != asDouble) {
+				throw new NumberFormatException(mValue);
+			}
+		}
+		consumeValue();
+		return result;
+	}
+
+	public int nextInt() throws IOException {
+		final JsonToken token = peek();
+		if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+			throw new IllegalStateException("Expected an int but was " + token);
+		}
+		int result;
+		try {
+			result = Integer.parseInt(mValue);
+		} catch (NumberFormatException e) {
+			final double asDouble = Double.parseDouble(mValue);
+			result = (int) asDouble;
+			if (result != asDouble) {
+				throw new NumberFormatException(mValue);
+			}
+		}
+		consumeValue();
+		return result;
+	}
+
+	public void skipValue() throws IOException {
+		int depth = 0;
+		do {
+			final JsonToken token = peek();
+			mToken = null;
+			mValue = null;
+			if (token == JsonToken.BEGIN_ARRAY || token == JsonToken.BEGIN_OBJECT) {
+				depth++;
+			} else if (token == JsonToken.END_ARRAY || token == JsonToken.END_OBJECT) {
+				depth--;
+			} else if (token == JsonToken.END_DOCUMENT) {
+				throw new IllegalStateException("Expected a value but was " + token);
+			}
+		} while (depth != 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		mToken = null;
+		mValue = null;
+		mStackSize = 1;
+		mStack[0] = CLOSED;
+		mIn.close();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " near " + new String(mBuffer, mPos, Math.min(mLimit - mPos, 20));
+	}
+
+	private void expect(JsonToken expected) throws IOException {
+		final JsonToken token = peek();
+		if (token != expected) {
+			throw new IllegalStateException("Expected " + expected + " but was " + token);
+		}
+		mToken = null;
+	}
+
+	private String consumeValue() {
+		final String value = mValue;
+		mToken = null;
+		mValue = null;
+		return value;
+	}
+
+	private void push(int scope) {
+		if (mStackSize == mStack.length) {
+			mStack = Arrays.copyOf(mStack, mStackSize * 2);
+		}
+		mStack[mStackSize++] = scope;
+	}
+
+	private JsonToken nextInArray(boolean first) throws IOException {
+		if (first) {
+			mStack[mStackSize - 1] = NONEMPTY_ARRAY;
+			if (nextNonWhitespace(true) == ']') {
+				mStackSize--;
+				return mToken = JsonToken.END_ARRAY;
+			}
+			mPos--;
+		} else {
+			final int c = nextNonWhitespace(true);
+			if (c == ']') {
+				mStackSize--;
+				return mToken = JsonToken.END_ARRAY;
+			}
+			if (c != ',') {
+				throw syntaxError("Unterminated array");
+			}
+		}
+		return nextValue();
+	}
+
+	private JsonToken nextInObject(boolean first) throws IOException {
+		int c = nextNonWhitespace(true);
+		if (c == '}') {
+			mStackSize--;
+			return mToken = JsonToken.END_OBJECT;
+		}
+		if (!first) {
+			if (c != ',') {
+				throw syntaxError("Unterminated object");
+			}
+			c = nextNonWhitespace(true);
+		}
+		if (c != '"') {
+			throw syntaxError("Expected name");
+		}
+		mValue = readString();
+		mStack[mStackSize - 1] = DANGLING_NAME;
+		return mToken = JsonToken.NAME;
+	}
+
+	private JsonToken objectValue() throws IOException {
+		if (nextNonWhitespace(true) != ':') {
+			throw syntaxError("Expected ':'");
+		}
+		mStack[mStackSize - 1] = NONEMPTY_OBJECT;
+		return nextValue();
+	}
+
+	private JsonToken nextValue() throws IOException {
+		final int c = nextNonWhitespace(true);
+		switch (c) {
+		case '{':
+			push(EMPTY_OBJECT);
+			return mToken = JsonToken.BEGIN_OBJECT;
+		case '[':
+			push(EMPTY_ARRAY);
+			return mToken = JsonToken.BEGIN_ARRAY;
+		case '"':
+			mValue = readString();
+			return mToken = JsonToken.STRING;
+		default:
+			mPos--;
+			return readLiteral();
+		}
+	}
+
+	/**
+	 * Reads a string whose opening quote has been consumed, through the
+	 * closing quote
+	 */
+	private String readString() throws IOException {
+		StringBuilder builder = null;
+		scan: while (true) {
+			int p = mPos;
+			final int start = p;
+			final char[] buffer = mBuffer;
+			while (p < mLimit) {
+				final char c = buffer[p++];
+				if (c == '"') {
+					mPos = p;
+					if (builder == null) {
+						return mStringPool.get(buffer, start, p - start - 1);
+					}
+					builder.append(buffer, start, p - start - 1);
+					return builder.toString();
+				}
+				if (c == '\\') {
+					mPos = p;
+					if (builder == null) {
+						builder = mBuilder;
+						builder.setLength(0);
+					}
+					builder.append(buffer, start, p - start - 1);
+					builder.append(readEscape());
+					continue scan;
+				}
+			}
+			// The string goes on past the buffer
+			if (builder == null) {
+				builder = mBuilder;
+				builder.setLength(0);
+			}
+			builder.append(buffer, start, p - start);
+			mPos = p;
+			if (!fillBuffer(1)) {
+				throw syntaxError("Unterminated string");
+			}
+		}
+	}
+
+	private char readEscape() throws IOException {
+		if (mPos == mLimit && !fillBuffer(1)) {
+			throw syntaxError("Unterminated escape sequence");
+		}
+		final char escaped = mBuffer[mPos++];
+		switch (escaped) {
+		case 'u':
+			if (mPos + 4 > mLimit && !fillBuffer(4)) {
+				throw syntaxError("Unterminated escape sequence");
+			}
+			final String hex = new String(mBuffer, mPos, 4);
+			mPos += 4;
+			try {
+				return (char) Integer.parseInt(hex, 16);
+			} catch (NumberFormatException e) {
+				throw syntaxError("Invalid escape sequence: \\u" + hex);
+			}
+		case 't':
+			return '\t';
+		case 'b':
+			return '\b';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 'f':
+			return '\f';
+		default:
+			return escaped;
+		}
+	}
+
+	private JsonToken readLiteral() throws IOException {
+		StringBuilder builder = null;
+		while (true) {
+			final int start = mPos;
+			while (mPos < mLimit) {
+				if (isLiteralEnd(mBuffer[mPos])) {
+					if (builder == null) {
+						return finishLiteral(mStringPool.get(mBuffer, start, mPos - start));
+					}
+					builder.append(mBuffer, start, mPos - start);
+					return finishLiteral(builder.toString());
+				}
+				mPos++;
+			}
+			// The literal goes on past the buffer
+			if (builder == null) {
+				builder = mBuilder;
+				builder.setLength(0);
+			}
+			builder.append(mBuffer, start, mPos - start);
+			if (!fillBuffer(1)) {
+				return finishLiteral(builder.toString());
+			}
+		}
+	}
+
+	private JsonToken finishLiteral(String literal) throws IOException {
+		if (literal.length() == 0) {
+			throw syntaxError("Expected literal value");
+		}
+		mValue = literal;
+		if ("true".equals(literal) || "false".equals(literal)) {
+			return mToken = JsonToken.BOOLEAN;
+		}
+		if ("null".equals(literal)) {
+			return mToken = JsonToken.NULL;
+		}
+		if (isNumber(literal)) {
+			return mToken = JsonToken.NUMBER;
+		}
+		throw syntaxError("Unexpected value " + literal);
+	}
+
+	/**
+	 * Returns true if the literal is a JSON number: an optional minus, digits,
+	 * an optional fraction and an optional exponent
+	 */
+	private static boolean isNumber(String literal) {
+		final int length = literal.length();
+		int i = 0;
+		if (literal.charAt(i) == '-') {
+			i++;
+		}
+		final int integerStart = i;
+		while (i < length && isDigit(literal.charAt(i))) {
+			i++;
+		}
+		if (i == integerStart) {
+			return false;
+		}
+		if (i < length && literal.charAt(i) == '.') {
+			final int fractionStart = ++i;
+			while (i < length && isDigit(literal.charAt(i))) {
+				i++;
+			}
+			if (i == fractionStart) {
+				return false;
+			}
+		}
+		if (i < length && (literal.charAt(i) == 'e' || literal.charAt(i) == 'E')) {
+			i++;
+			if (i < length && (literal.charAt(i) == '+' || literal.charAt(i) == '-')) {
+				i++;
+			}
+			final int exponentStart = i;
+			while (i < length && isDigit(literal.charAt(i))) {
+				i++;
+			}
+			if (i == exponentStart) {
+				return false;
+			}
+		}
+		return i == length;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isLiteralEnd(char c) {
+		switch (c) {
+		case '{':
+		case '}':
+		case '[':
+		case ']':
+		case ':':
+		case ',':
+		case '"':
+		case ' ':
+		case '\t':
+		case '\n':
+		case '\r':
+		case '\f':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private int nextNonWhitespace(boolean throwOnEof) throws IOException {
+		while (mPos < mLimit || fillBuffer(1)) {
+			final int c = mBuffer[mPos++];
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+				return c;
+			}
+		}
+		if (throwOnEof) {
+			throw new EOFException("End of input");
+		}
+		return -1;
+	}
+
+	/**
+	 * Moves what's left of the buffer to the front and reads until at least
+	 * minimum chars are available
+	 *
+	 * @return false if the input ended first
+	 */
+	private boolean fillBuffer(int minimum) throws IOException {
+		final char[] buffer = mBuffer;
+		final int remaining = mLimit - mPos;
+		if (remaining > 0) {
+			System.arraycopy(buffer, mPos, buffer, 0, remaining);
+		}
+		mLimit = remaining;
+		mPos = 0;
+		int read;
+		while ((read = mIn.read(buffer, mLimit, buffer.length - mLimit)) != -1) {
+			mLimit += read;
+			if (mLimit >= minimum) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private IOException syntaxError(String message) {
+		return new MalformedJsonException(message + " near " + this);
+	}
+
+	/**
+	 * Remembers the last String made for each of a fixed number of hash
+	 * buckets, like Android's libcore StringPool
+	 */
+	private static final class StringPool {
+		private final String[] mPool = new String[512];
+
+		/*package*/ String get(char[] chars, int start, int length) {
+			int hashCode = 0;
+			for (int i = start; i < start + length; i++) {
+				hashCode = (hashCode * 31) + chars[i];
+			}
+			hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
+			hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
+			final int index = hashCode & (mPool.length - 1);
+			final String pooled = mPool[index];
+			if (pooled != null && contentEquals(pooled, chars, start, length)) {
+				return pooled;
+			}
+			final String result = new String(chars, start, length);
+			mPool[index] = result;
+			return result;
+		}
+
+		private static boolean contentEquals(String s, char[] chars, int start, int length) {
+			if (s.length() != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (chars[start + i] != s.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
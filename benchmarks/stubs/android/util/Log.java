@@ -0,0 +1,59 @@
+package android.util;
+
+/**
+ * Stand-in for android.util.Log. Warnings and errors go to System.err;
+ * everything quieter is dropped so it doesn't disturb benchmark output.
+ */
+public final class Log {
+	public static final int VERBOSE = 2;
+	public static final int DEBUG = 3;
+	public static final int INFO = 4;
+	public static final int WARN = 5;
+	public static final int ERROR = 6;
+
+	private Log() {
+	}
+
+	public static int v(String tag, String msg) {
+		return println(VERBOSE, tag, msg, null);
+	}
+
+	public static int d(String tag, String msg) {
+		return println(DEBUG, tag, msg, null);
+	}
+
+	public static int i(String tag, String msg) {
+		return println(INFO, tag, msg, null);
+	}
+
+	public static int w(String tag, String msg) {
+		return println(WARN, tag, msg, null);
+	}
+
+	public static int w(String tag, String msg, Throwable tr) {
+		return println(WARN, tag, msg, tr);
+	}
+
+	public static int e(String tag, String msg) {
+		return println(ERROR, tag, msg, null);
+	}
+
+	public static int e(String tag, String msg, Throwable tr) {
+		return println(ERROR, tag, msg, tr);
+	}
+
+	public static boolean isLoggable(String tag, int level) {
+		return level >= WARN;
+	}
+
+	private static int println(int priority, String tag, String msg, Throwable tr) {
+		if (priority < WARN) {
+			return 0;
+		}
+		System.err.println((priority == WARN ? "W/" : "E/") + tag + ": " + msg);
+		if (tr != null) {
+			tr.printStackTrace();
+		}
+		return msg.length();
+	}
+}
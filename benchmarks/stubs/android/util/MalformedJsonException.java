@@ -0,0 +1,14 @@
+package android.util;
+
+import java.io.IOException;
+
+/**
+ * Stand-in for android.util.MalformedJsonException.
+ */
+public final class MalformedJsonException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	public MalformedJsonException(String message) {
+		super(message);
+	}
+}
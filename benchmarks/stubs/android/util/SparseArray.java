@@ -0,0 +1,86 @@
+package android.util;
+
+import java.util.Arrays;
+
+/**
+ * Stand-in for android.util.SparseArray: keys kept sorted in an int array
+ * next to their values, found by binary search.
+ */
+public class SparseArray<E> {
+	private int[] mKeys;
+	private Object[] mValues;
+	private int mSize;
+
+	public SparseArray() {
+		this(10);
+	}
+
+	public SparseArray(int initialCapacity) {
+		mKeys = new int[Math.max(initialCapacity, 1)];
+		mValues = new Object[mKeys.length];
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	@SuppressWarnings("unchecked")
+	public E get(int key) {
+		final int i = Arrays.binarySearch(mKeys, 0, mSize, key);
+		return i < 0 ? null : (E) mValues[i];
+	}
+
+	public void put(int key, E value) {
+		int i = Arrays.binarySearch(mKeys, 0, mSize, key);
+		if (i >= 0) {
+			mValues[i] = value;
+			return;
+		}
+		i = ~i;
+		if (mSize == mKeys.length) {
+			mKeys = Arrays.copyOf(mKeys, mSize * 2);
+			mValues = Arrays.copyOf(mValues, mSize * 2);
+		}
+		System.arraycopy(mKeys, i, mKeys, i + 1, mSize - i);
+		System.arraycopy(mValues, i, mValues, i + 1, mSize - i);
+		mKeys[i] = key;
+		mValues[i] = value;
+		mSize++;
+	}
+
+	public void delete(int key) {
+		final int i = Arrays.binarySearch(mKeys, 0, mSize, key);
+		if (i >= 0) {
+			removeAt(i);
+		}
+	}
+
+	public void remove(int key) {
+		delete(key);
+	}
+
+	public void removeAt(int index) {
+		System.arraycopy(mKeys, index + 1, mKeys, index, mSize - index - 1);
+		System.arraycopy(mValues, index + 1, mValues, index, mSize - index - 1);
+		mSize--;
+		mValues[mSize] = null;
+	}
+
+	public int keyAt(int index) {
+		return mKeys[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	public E valueAt(int index) {
+		return (E) mValues[index];
+	}
+
+	public int indexOfKey(int key) {
+		return Arrays.binarySearch(mKeys, 0, mSize, key);
+	}
+
+	public void clear() {
+		Arrays.fill(mValues, 0, mSize, null);
+		mSize = 0;
+	}
+}
@@ -0,0 +1,10 @@
+package android.util;
+
+/**
+ * Stand-in for android.util.TypedValue.
+ */
+public class TypedValue {
+	public int data;
+	public int resourceId;
+	public int type;
+}
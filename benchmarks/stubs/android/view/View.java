@@ -0,0 +1,143 @@
+package android.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * Stand-in for android.view.View with the measure, draw and invalidation
+ * calls a custom view makes. There is no window, so requestLayout and
+ * invalidate do nothing.
+ */
+public class View {
+	private final Context mContext;
+	private int mPaddingLeft;
+	private int mPaddingTop;
+	private int mPaddingRight;
+	private int mPaddingBottom;
+	private int mMeasuredWidth;
+	private int mMeasuredHeight;
+	private int mMinHeight;
+
+	public View(Context context) {
+		this(context, null);
+	}
+
+	public View(Context context, AttributeSet attrs) {
+		this(context, attrs, 0);
+	}
+
+	public View(Context context, AttributeSet attrs, int defStyle) {
+		mContext = context;
+	}
+
+	public static int resolveSize(int size, int measureSpec) {
+		final int specSize = MeasureSpec.getSize(measureSpec);
+		switch (MeasureSpec.getMode(measureSpec)) {
+		case MeasureSpec.AT_MOST:
+			return Math.min(size, specSize);
+		case MeasureSpec.EXACTLY:
+			return specSize;
+		default:
+			return size;
+		}
+	}
+
+	public void draw(Canvas canvas) {
+		onDraw(canvas);
+	}
+
+	public final Context getContext() {
+		return mContext;
+	}
+
+	public final int getMeasuredHeight() {
+		return mMeasuredHeight;
+	}
+
+	public final int getMeasuredWidth() {
+		return mMeasuredWidth;
+	}
+
+	public int getPaddingBottom() {
+		return mPaddingBottom;
+	}
+
+	public int getPaddingLeft() {
+		return mPaddingLeft;
+	}
+
+	public int getPaddingRight() {
+		return mPaddingRight;
+	}
+
+	public int getPaddingTop() {
+		return mPaddingTop;
+	}
+
+	protected int getSuggestedMinimumHeight() {
+		return mMinHeight;
+	}
+
+	public void invalidate() {
+	}
+
+	public final void measure(int widthMeasureSpec, int heightMeasureSpec) {
+		onMeasure(widthMeasureSpec, heightMeasureSpec);
+	}
+
+	public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+	}
+
+	public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+	}
+
+	public void requestLayout() {
+	}
+
+	public void setMinimumHeight(int minHeight) {
+		mMinHeight = minHeight;
+	}
+
+	public void setPadding(int left, int top, int right, int bottom) {
+		mPaddingLeft = left;
+		mPaddingTop = top;
+		mPaddingRight = right;
+		mPaddingBottom = bottom;
+	}
+
+	protected void onDraw(Canvas canvas) {
+	}
+
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+		setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), MeasureSpec.getSize(heightMeasureSpec));
+	}
+
+	protected final void setMeasuredDimension(int measuredWidth, int measuredHeight) {
+		mMeasuredWidth = measuredWidth;
+		mMeasuredHeight = measuredHeight;
+	}
+
+	public static class MeasureSpec {
+		private static final int MODE_SHIFT = 30;
+		private static final int MODE_MASK = 0x3 << MODE_SHIFT;
+
+		public static final int UNSPECIFIED = 0 << MODE_SHIFT;
+		public static final int EXACTLY = 1 << MODE_SHIFT;
+		public static final int AT_MOST = 2 << MODE_SHIFT;
+
+		public static int getMode(int measureSpec) {
+			return measureSpec & MODE_MASK;
+		}
+
+		public static int getSize(int measureSpec) {
+			return measureSpec & ~MODE_MASK;
+		}
+
+		public static int makeMeasureSpec(int size, int mode) {
+			return (size & ~MODE_MASK) | (mode & MODE_MASK);
+		}
+	}
+}
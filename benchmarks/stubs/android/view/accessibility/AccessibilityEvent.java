@@ -0,0 +1,19 @@
+package android.view.accessibility;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stand-in for android.view.accessibility.AccessibilityEvent.
+ */
+public final class AccessibilityEvent {
+	private final ArrayList<CharSequence> mText = new ArrayList<CharSequence>();
+
+	public static AccessibilityEvent obtain() {
+		return new AccessibilityEvent();
+	}
+
+	public List<CharSequence> getText() {
+		return mText;
+	}
+}
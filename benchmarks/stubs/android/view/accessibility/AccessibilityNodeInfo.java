@@ -0,0 +1,20 @@
+package android.view.accessibility;
+
+/**
+ * Stand-in for android.view.accessibility.AccessibilityNodeInfo.
+ */
+public class AccessibilityNodeInfo {
+	private CharSequence mText;
+
+	public static AccessibilityNodeInfo obtain() {
+		return new AccessibilityNodeInfo();
+	}
+
+	public CharSequence getText() {
+		return mText;
+	}
+
+	public void setText(CharSequence text) {
+		mText = text;
+	}
+}
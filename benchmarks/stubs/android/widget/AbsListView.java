@@ -0,0 +1,17 @@
+package android.widget;
+
+/**
+ * Stand-in for android.widget.AbsListView with only its scroll listener.
+ */
+public abstract class AbsListView {
+
+	public interface OnScrollListener {
+		public static final int SCROLL_STATE_IDLE = 0;
+		public static final int SCROLL_STATE_TOUCH_SCROLL = 1;
+		public static final int SCROLL_STATE_FLING = 2;
+
+		public void onScrollStateChanged(AbsListView view, int scrollState);
+
+		public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount);
+	}
+}
@@ -0,0 +1,36 @@
+package com.iangclifton.auid.realestate;
+
+/**
+ * Stand-in for the real estate app's generated R class, with only the
+ * resources the classes built here use. {@link android.content.res.Resources}
+ * knows their values.
+ */
+public final class R {
+	private R() {
+	}
+
+	public static final class dimen {
+		public static final int default_spacing = 0x7f050000;
+		public static final int property_row_baths_min_width = 0x7f050001;
+		public static final int property_row_footage_min_width = 0x7f050002;
+
+		private dimen() {
+		}
+	}
+
+	public static final class drawable {
+		public static final int ic_thumbnail_placeholder = 0x7f020000;
+
+		private drawable() {
+		}
+	}
+
+	public static final class string {
+		public static final int bath = 0x7f060000;
+		public static final int bed = 0x7f060001;
+		public static final int sq_ft = 0x7f060002;
+
+		private string() {
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package org.json;
+
+import java.util.ArrayList;
+
+/**
+ * Stand-in for Android's org.json.JSONArray; see {@link JSONObject} for how
+ * values are converted and printed.
+ */
+public class JSONArray {
+	private ArrayList<Object> mValues = new ArrayList<Object>();
+
+	public JSONArray() {
+	}
+
+	public JSONArray(String json) throws JSONException {
+		final Object value = new JSONTokener(json).nextValue();
+		if (!(value instanceof JSONArray)) {
+			throw new JSONException("Value " + json + " cannot be converted to JSONArray");
+		}
+		mValues = ((JSONArray) value).mValues;
+	}
+
+	public Object get(int index) throws JSONException {
+		if (index < 0 || index >= mValues.size()) {
+			throw new JSONException("Index " + index + " out of range [0.." + mValues.size() + ")");
+		}
+		final Object value = mValues.get(index);
+		if (value == null) {
+			throw new JSONException("Value at " + index + " is null.");
+		}
+		return value;
+	}
+
+	public JSONObject getJSONObject(int index) throws JSONException {
+		final Object value = get(index);
+		if (value instanceof JSONObject) {
+			return (JSONObject) value;
+		}
+		throw new JSONException("Value " + value + " at " + index + " cannot be converted to JSONObject");
+	}
+
+	public String getString(int index) throws JSONException {
+		return String.valueOf(get(index));
+	}
+
+	public int length() {
+		return mValues.size();
+	}
+
+	public Object opt(int index) {
+		return index < 0 || index >= mValues.size() ? null : mValues.get(index);
+	}
+
+	public JSONArray put(boolean value) {
+		mValues.add(value);
+		return this;
+	}
+
+	public JSONArray put(double value) throws JSONException {
+		mValues.add(JSONObject.checkDouble(value));
+		return this;
+	}
+
+	public JSONArray put(int value) {
+		mValues.add(value);
+		return this;
+	}
+
+	public JSONArray put(long value) {
+		mValues.add(value);
+		return this;
+	}
+
+	public JSONArray put(Object value) {
+		mValues.add(value);
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		write(sb);
+		return sb.toString();
+	}
+
+	/*package*/ void write(StringBuilder sb) {
+		sb.append('[');
+		for (int i = 0; i < mValues.size(); i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			final Object value = mValues.get(i);
+			JSONObject.writeValue(sb, value == null ? JSONObject.NULL : value);
+		}
+		sb.append(']');
+	}
+}
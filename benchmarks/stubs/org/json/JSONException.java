@@ -0,0 +1,12 @@
+package org.json;
+
+/**
+ * Stand-in for org.json.JSONException as Android ships it.
+ */
+public class JSONException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	public JSONException(String message) {
+		super(message);
+	}
+}
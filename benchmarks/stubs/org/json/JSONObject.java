@@ -0,0 +1,287 @@
+package org.json;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stand-in for Android's org.json.JSONObject with the same conversions and
+ * output: numbers that are whole print without a fraction, strings are
+ * escaped the way JSONStringer escapes them and keys keep insertion order.
+ */
+public class JSONObject {
+
+	/**
+	 * The value {@link #isNull(String)} reports as null
+	 */
+	public static final Object NULL = new Object() {
+		@Override
+		public boolean equals(Object o) {
+			return o == this || o == null;
+		}
+
+		@Override
+		public int hashCode() {
+			return 0;
+		}
+
+		@Override
+		public String toString() {
+			return "null";
+		}
+	};
+
+	private LinkedHashMap<String, Object> mValues = new LinkedHashMap<String, Object>();
+
+	public JSONObject() {
+	}
+
+	public JSONObject(String json) throws JSONException {
+		final Object value = new JSONTokener(json).nextValue();
+		if (!(value instanceof JSONObject)) {
+			throw new JSONException("Value " + json + " cannot be converted to JSONObject");
+		}
+		// Takes over the parsed map rather than copying it, as Android does
+		mValues = ((JSONObject) value).mValues;
+	}
+
+	public Object get(String name) throws JSONException {
+		final Object value = mValues.get(name);
+		if (value == null) {
+			throw new JSONException("No value for " + name);
+		}
+		return value;
+	}
+
+	public boolean getBoolean(String name) throws JSONException {
+		final Object value = get(name);
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		if ("true".equalsIgnoreCase(String.valueOf(value))) {
+			return true;
+		}
+		if ("false".equalsIgnoreCase(String.valueOf(value))) {
+			return false;
+		}
+		throw typeMismatch(name, value, "boolean");
+	}
+
+	public double getDouble(String name) throws JSONException {
+		final Object value = get(name);
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		if (value instanceof String) {
+			try {
+				return Double.parseDouble((String) value);
+			} catch (NumberFormatException e) {
+				// Falls through to the mismatch
+			}
+		}
+		throw typeMismatch(name, value, "double");
+	}
+
+	public int getInt(String name) throws JSONException {
+		final Object value = get(name);
+		if (value instanceof Number) {
+			return ((Number) value).intValue();
+		}
+		return (int) getDouble(name);
+	}
+
+	public JSONArray getJSONArray(String name) throws JSONException {
+		final Object value = get(name);
+		if (value instanceof JSONArray) {
+			return (JSONArray) value;
+		}
+		throw typeMismatch(name, value, "JSONArray");
+	}
+
+	public JSONObject getJSONObject(String name) throws JSONException {
+		final Object value = get(name);
+		if (value instanceof JSONObject) {
+			return (JSONObject) value;
+		}
+		throw typeMismatch(name, value, "JSONObject");
+	}
+
+	public long getLong(String name) throws JSONException {
+		final Object value = get(name);
+		if (value instanceof Number) {
+			return ((Number) value).longValue();
+		}
+		return (long) getDouble(name);
+	}
+
+	public String getString(String name) throws JSONException {
+		return String.valueOf(get(name));
+	}
+
+	public boolean has(String name) {
+		return mValues.containsKey(name);
+	}
+
+	public boolean isNull(String name) {
+		final Object value = mValues.get(name);
+		return value == null || value == NULL;
+	}
+
+	public Iterator<String> keys() {
+		return mValues.keySet().iterator();
+	}
+
+	public int length() {
+		return mValues.size();
+	}
+
+	public Object opt(String name) {
+		return mValues.get(name);
+	}
+
+	public String optString(String name) {
+		return optString(name, "");
+	}
+
+	public String optString(String name, String fallback) {
+		final Object value = mValues.get(name);
+		return value == null ? fallback : String.valueOf(value);
+	}
+
+	public JSONObject put(String name, boolean value) throws JSONException {
+		mValues.put(checkName(name), value);
+		return this;
+	}
+
+	public JSONObject put(String name, double value) throws JSONException {
+		mValues.put(checkName(name), checkDouble(value));
+		return this;
+	}
+
+	public JSONObject put(String name, int value) throws JSONException {
+		mValues.put(checkName(name), value);
+		return this;
+	}
+
+	public JSONObject put(String name, long value) throws JSONException {
+		mValues.put(checkName(name), value);
+		return this;
+	}
+
+	public JSONObject put(String name, Object value) throws JSONException {
+		if (value == null) {
+			mValues.remove(name);
+			return this;
+		}
+		if (value instanceof Number) {
+			checkDouble(((Number) value).doubleValue());
+		}
+		mValues.put(checkName(name), value);
+		return this;
+	}
+
+	public Object remove(String name) {
+		return mValues.remove(name);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		write(sb);
+		return sb.toString();
+	}
+
+	/*package*/ void write(StringBuilder sb) {
+		sb.append('{');
+		boolean first = true;
+		for (Map.Entry<String, Object> entry : mValues.entrySet()) {
+			if (!first) {
+				sb.append(',');
+			}
+			first = false;
+			writeString(sb, entry.getKey());
+			sb.append(':');
+			writeValue(sb, entry.getValue());
+		}
+		sb.append('}');
+	}
+
+	/*package*/ static double checkDouble(double value) throws JSONException {
+		if (Double.isInfinite(value) || Double.isNaN(value)) {
+			throw new JSONException("Forbidden numeric value: " + value);
+		}
+		return value;
+	}
+
+	/*package*/ static void writeValue(StringBuilder sb, Object value) {
+		if (value instanceof JSONObject) {
+			((JSONObject) value).write(sb);
+		} else if (value instanceof JSONArray) {
+			((JSONArray) value).write(sb);
+		} else if (value instanceof Number) {
+			sb.append(numberToString((Number) value));
+		} else if (value instanceof Boolean || value == NULL) {
+			sb.append(value);
+		} else {
+			writeString(sb, value.toString());
+		}
+	}
+
+	/*package*/ static String numberToString(Number number) {
+		final double doubleValue = number.doubleValue();
+		final long longValue = number.longValue();
+		if (doubleValue == (double) longValue && !number.equals(-0.0d)) {
+			return Long.toString(longValue);
+		}
+		return number.toString();
+	}
+
+	/*package*/ static void writeString(StringBuilder sb, String value) {
+		sb.append('"');
+		for (int i = 0, length = value.length(); i < length; i++) {
+			final char c = value.charAt(i);
+			switch (c) {
+			case '"':
+			case '\\':
+			case '/':
+				sb.append('\\').append(c);
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			case '\b':
+				sb.append("\\b");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\f':
+				sb.append("\\f");
+				break;
+			default:
+				if (c <= 0x1f) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+				break;
+			}
+		}
+		sb.append('"');
+	}
+
+	private static String checkName(String name) throws JSONException {
+		if (name == null) {
+			throw new JSONException("Names must be non-null");
+		}
+		return name;
+	}
+
+	private static JSONException typeMismatch(String name, Object value, String type) {
+		return new JSONException("Value " + value + " at " + name + " of type "
+				+ value.getClass().getName() + " cannot be converted to " + type);
+	}
+}
@@ -0,0 +1,184 @@
+package org.json;
+
+/**
+ * Stand-in for Android's org.json.JSONTokener. It parses strict JSON only;
+ * Android's lenient extras such as unquoted strings and comments aren't
+ * supported. Whole numbers become Integers or Longs, everything else Doubles.
+ */
+public class JSONTokener {
+	private final String mIn;
+	private int mPos;
+
+	public JSONTokener(String in) {
+		mIn = in;
+	}
+
+	public Object nextValue() throws JSONException {
+		final int c = nextClean();
+		switch (c) {
+		case -1:
+			throw syntaxError("End of input");
+		case '{':
+			return readObject();
+		case '[':
+			return readArray();
+		case '"':
+		case '\'':
+			return nextString((char) c);
+		default:
+			mPos--;
+			return readLiteral();
+		}
+	}
+
+	public String nextString(char quote) throws JSONException {
+		StringBuilder builder = null;
+		int start = mPos;
+		while (mPos < mIn.length()) {
+			final char c = mIn.charAt(mPos++);
+			if (c == quote) {
+				if (builder == null) {
+					return mIn.substring(start, mPos - 1);
+				}
+				builder.append(mIn, start, mPos - 1);
+				return builder.toString();
+			}
+			if (c == '\\') {
+				if (builder == null) {
+					builder = new StringBuilder();
+				}
+				builder.append(mIn, start, mPos - 1);
+				builder.append(readEscape());
+				start = mPos;
+			}
+		}
+		throw syntaxError("Unterminated string");
+	}
+
+	private char readEscape() throws JSONException {
+		if (mPos >= mIn.length()) {
+			throw syntaxError("Unterminated escape sequence");
+		}
+		final char escaped = mIn.charAt(mPos++);
+		switch (escaped) {
+		case 'u':
+			if (mPos + 4 > mIn.length()) {
+				throw syntaxError("Unterminated escape sequence");
+			}
+			final String hex = mIn.substring(mPos, mPos + 4);
+			mPos += 4;
+			try {
+				return (char) Integer.parseInt(hex, 16);
+			} catch (NumberFormatException e) {
+				throw syntaxError("Invalid escape sequence: " + hex);
+			}
+		case 't':
+			return '\t';
+		case 'b':
+			return '\b';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 'f':
+			return '\f';
+		default:
+			return escaped;
+		}
+	}
+
+	private int nextClean() {
+		while (mPos < mIn.length()) {
+			final char c = mIn.charAt(mPos++);
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	private JSONArray readArray() throws JSONException {
+		final JSONArray result = new JSONArray();
+		if (nextClean() == ']') {
+			return result;
+		}
+		mPos--;
+		while (true) {
+			result.put(nextValue());
+			final int c = nextClean();
+			if (c == ']') {
+				return result;
+			}
+			if (c != ',') {
+				throw syntaxError("Unterminated array");
+			}
+		}
+	}
+
+	private Object readLiteral() throws JSONException {
+		final int start = mPos;
+		while (mPos < mIn.length() && "{}[]/\\:,=;# \t\n\r\f".indexOf(mIn.charAt(mPos)) < 0) {
+			mPos++;
+		}
+		final String literal = mIn.substring(start, mPos);
+		if (literal.length() == 0) {
+			throw syntaxError("Expected literal value");
+		}
+		if ("null".equals(literal)) {
+			return JSONObject.NULL;
+		}
+		if ("true".equals(literal)) {
+			return Boolean.TRUE;
+		}
+		if ("false".equals(literal)) {
+			return Boolean.FALSE;
+		}
+		if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+			try {
+				final long longValue = Long.parseLong(literal);
+				if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+					return (int) longValue;
+				}
+				return longValue;
+			} catch (NumberFormatException e) {
+				// Too big for a long; parsed as a double below
+			}
+		}
+		try {
+			return Double.valueOf(literal);
+		} catch (NumberFormatException e) {
+			throw syntaxError("Unexpected literal: " + literal);
+		}
+	}
+
+	private JSONObject readObject() throws JSONException {
+		final JSONObject result = new JSONObject();
+		int c = nextClean();
+		if (c == '}') {
+			return result;
+		}
+		mPos--;
+		while (true) {
+			final Object name = nextValue();
+			if (!(name instanceof String)) {
+				throw syntaxError("Names must be strings, but " + name + " is of type "
+						+ name.getClass().getName());
+			}
+			if (nextClean() != ':') {
+				throw syntaxError("Expected ':' after " + name);
+			}
+			result.put((String) name, nextValue());
+			c = nextClean();
+			if (c == '}') {
+				return result;
+			}
+			if (c != ',') {
+				throw syntaxError("Unterminated object");
+			}
+		}
+	}
+
+	private JSONException syntaxError(String message) {
+		return new JSONException(message + " at character " + mPos);
+	}
+}
@@ -0,0 +1,136 @@
+package com.iangclifton.auid.ch10.autoloadinglistview;
+
+import java.util.ArrayList;
+
+import android.widget.AbsListView.OnScrollListener;
+
+import com.iangclifton.auid.benchmark.Assert;
+import com.iangclifton.auid.benchmark.Heap;
+import com.iangclifton.auid.benchmark.Test;
+
+/**
+ * Checks that a {@link PageCheckpoint} keeps a bounded window of pages while
+ * a list scrolls through a million rows, with pages requested by a
+ * {@link PageRequestPlanner} and the window sized by a
+ * {@link PrefetchPolicy} set up like {@link AutoloadingListFragment}'s.
+ *
+ * Each load finishes in the frame after it is requested, so the list keeps
+ * moving; the rows of each page are new Strings, as they are when read from
+ * a real source.
+ *
+ * @author Ian G. Clifton
+ */
+public class PageCheckpointTest {
+	private static final int SOURCE_ROW_COUNT = 1000000;
+	private static final int PAGE_SIZE = 10;
+	private static final int MIN_PREFETCH_DISTANCE = 4;
+	private static final int MAX_CONCURRENT_LOADS = 4;
+	private static final int MAX_RESIDENT_ROWS = 2000;
+	private static final long LOAD_LATENCY_MS = 1020;
+	private static final float INITIAL_GESTURE_SPEED = 400f;
+
+	private static final int FRAME_MS = 16;
+	private static final int VISIBLE_ROWS = 12;
+
+	/**
+	 * Rows moved each frame, a fling of 3,125 rows a second
+	 */
+	private static final int ROWS_PER_FRAME = 50;
+
+	/**
+	 * The heap may grow by this much between scrolling through the first
+	 * tenth of the rows and the end
+	 */
+	private static final long MAX_HEAP_GROWTH_BYTES = 256 * 1024;
+
+	@Test
+	public void scrollingAMillionRowsKeepsResidentPagesBounded() {
+		final PrefetchPolicy policy = new PrefetchPolicy(PAGE_SIZE, MIN_PREFETCH_DISTANCE, MAX_CONCURRENT_LOADS,
+				MAX_RESIDENT_ROWS, LOAD_LATENCY_MS, INITIAL_GESTURE_SPEED);
+		final PageCheckpoint checkpoint = new PageCheckpoint(PAGE_SIZE, policy.getMaxResidentPages(0));
+		final ImmediateLoader loader = new ImmediateLoader();
+		final PageRequestPlanner planner = new PageRequestPlanner(checkpoint, policy, loader);
+
+		policy.onScrollStateChanged(OnScrollListener.SCROLL_STATE_FLING);
+		final int lastFirstVisible = SOURCE_ROW_COUNT - VISIBLE_ROWS;
+		long uptimeMs = 0;
+		long heapBytes = -1;
+		int mostResidentPages = 0;
+		for (int firstVisible = 0; firstVisible <= lastFirstVisible; firstVisible += ROWS_PER_FRAME) {
+			uptimeMs += FRAME_MS;
+			policy.onScroll(firstVisible, uptimeMs);
+			planner.requestPages(firstVisible, firstVisible + VISIBLE_ROWS - 1, SOURCE_ROW_COUNT);
+			Assert.assertAtMost("resident pages at row " + firstVisible, checkpoint.getMaxResidentPages(),
+					checkpoint.getResidentPageCount());
+			loader.finishLoads(checkpoint, policy);
+			mostResidentPages = Math.max(mostResidentPages, checkpoint.getResidentPageCount());
+			if (heapBytes < 0 && firstVisible >= SOURCE_ROW_COUNT / 10) {
+				heapBytes = Heap.getUsedBytes();
+			}
+		}
+		final long heapGrowth = Heap.getUsedBytes() - heapBytes;
+		System.out.println(checkpoint + "; at most " + mostResidentPages + " pages resident; heap grew "
+				+ heapGrowth + " bytes");
+
+		Assert.assertEquals("rows in the extent", SOURCE_ROW_COUNT, checkpoint.getCount());
+		Assert.assertAtMost("resident pages", MAX_RESIDENT_ROWS / PAGE_SIZE
+				+ MAX_CONCURRENT_LOADS * policy.getPagesPerLoad(), mostResidentPages);
+		Assert.assertAtMost("heap growth", MAX_HEAP_GROWTH_BYTES, heapGrowth);
+	}
+
+	/**
+	 * Loads the pages it is asked for when told to, each with new rows
+	 */
+	private static class ImmediateLoader implements PageRequestPlanner.Loader {
+		private final ArrayList<int[]> mLoads = new ArrayList<int[]>();
+
+		@Override
+		public void cancelOutside(int firstPage, int lastPage) {
+			for (int i = mLoads.size() - 1; i >= 0; i--) {
+				final int[] load = mLoads.get(i);
+				if (load[0] + load[1] <= firstPage || load[0] > lastPage) {
+					mLoads.remove(i);
+				}
+			}
+		}
+
+		@Override
+		public int getInFlightCount() {
+			return mLoads.size();
+		}
+
+		@Override
+		public boolean isRequested(int page) {
+			for (int i = 0; i < mLoads.size(); i++) {
+				final int[] load = mLoads.get(i);
+				if (page >= load[0] && page < load[0] + load[1]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean request(int firstPage, int pageCount) {
+			mLoads.add(new int[] { firstPage, pageCount });
+			return true;
+		}
+
+		/*package*/ void finishLoads(PageCheckpoint checkpoint, PrefetchPolicy policy) {
+			for (int i = 0; i < mLoads.size(); i++) {
+				final int[] load = mLoads.get(i);
+				for (int page = load[0]; page < load[0] + load[1]; page++) {
+					final int firstRow = page * PAGE_SIZE;
+					final int rowCount = Math.min(PAGE_SIZE, SOURCE_ROW_COUNT - firstRow);
+					final String[] rows = new String[rowCount];
+					for (int row = 0; row < rowCount; row++) {
+						rows[row] = "Row " + (firstRow + row);
+					}
+					checkpoint.putPage(page, rows);
+				}
+				policy.onLoadFinished(load[1] * PAGE_SIZE, LOAD_LATENCY_MS);
+			}
+			mLoads.clear();
+		}
+	}
+}
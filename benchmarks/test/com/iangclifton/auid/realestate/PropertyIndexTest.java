@@ -0,0 +1,50 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.Arrays;
+
+import com.iangclifton.auid.benchmark.Assert;
+import com.iangclifton.auid.benchmark.Test;
+
+/**
+ * Checks {@link PropertyIndex} queries against checking every row with
+ * {@link PropertyQuery#matches(PropertyDataSet, int)}.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyIndexTest {
+	private static final int LISTING_COUNT = 20000;
+
+	@Test
+	public void queriesMatchScan() throws InterruptedException {
+		final PropertyTable table = PropertyTestUtils.newPropertyTable(1, LISTING_COUNT);
+		table.freeze();
+		final PropertyIndex index = new PropertyIndex(table);
+		final PropertyQuery[] queries = {
+			new PropertyQuery(),
+			new PropertyQuery().setCity("Redmond"),
+			new PropertyQuery().setCity("Nowhere"),
+			new PropertyQuery().setFootage(2000, 2200),
+			new PropertyQuery().setCity("Seattle").setState("WA").setBedrooms(3, 4)
+					.setBathrooms(1.5f, 2.25f).setFootage(1500, 2500).setPriceCents(0, 50000000),
+			new PropertyQuery().setCity("Kent").setBedrooms(4, 4).setFootage(3000, 3100)
+					.setPriceCents(60000000, Long.MAX_VALUE),
+			new PropertyQuery().setBedrooms(2, 3).setBathrooms(1.0f, 1.5f).setPriceCents(40000000, 60000000),
+			new PropertyQuery().setFootage(5000, 6000),
+		};
+		for (int i = 0; i < queries.length; i++) {
+			Assert.assertEquals("query " + i, Arrays.toString(scan(table, queries[i])),
+					Arrays.toString(index.query(queries[i])));
+		}
+	}
+
+	private static int[] scan(PropertyTable table, PropertyQuery query) {
+		final int[] rows = new int[table.getCount()];
+		int matched = 0;
+		for (int row = 0; row < table.getCount(); row++) {
+			if (query.matches(table, row)) {
+				rows[matched++] = row;
+			}
+		}
+		return Arrays.copyOf(rows, matched);
+	}
+}
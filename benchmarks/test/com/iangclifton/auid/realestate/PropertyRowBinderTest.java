@@ -0,0 +1,59 @@
+package com.iangclifton.auid.realestate;
+
+import android.content.Context;
+import android.view.View.MeasureSpec;
+
+import com.iangclifton.auid.benchmark.Allocations;
+import com.iangclifton.auid.benchmark.Assert;
+import com.iangclifton.auid.benchmark.Test;
+
+/**
+ * Checks that binding recycled {@link PropertyRowView}s with a
+ * {@link PropertyRowBinder} allocates nothing once warmed up, the way
+ * PropertyListAdapter.getView binds them during a fling.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyRowBinderTest {
+	private static final int LISTING_COUNT = 10000;
+
+	/**
+	 * About as many rows as a ListView keeps on a phone screen
+	 */
+	private static final int ROW_COUNT = 8;
+
+	private static final int WARMUP_BINDS = 100000;
+	private static final int MEASURED_BINDS = 10000;
+
+	@Test
+	public void rebindAllocatesNothing() throws InterruptedException {
+		final PropertyTable table = PropertyTestUtils.newPropertyTable(1, LISTING_COUNT);
+		table.freeze();
+		final Context context = new Context();
+		final PropertyRowBinder binder = new PropertyRowBinder(context.getResources());
+		final PropertyRowView[] rows = new PropertyRowView[ROW_COUNT];
+		for (int i = 0; i < ROW_COUNT; i++) {
+			rows[i] = new PropertyRowView(context);
+			binder.bind(rows[i], table, i);
+			rows[i].measure(MeasureSpec.makeMeasureSpec(480, MeasureSpec.EXACTLY),
+					MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+		}
+
+		int position = 0;
+		for (int i = 0; i < WARMUP_BINDS; i++) {
+			binder.bind(rows[i % ROW_COUNT], table, position);
+			position = (position + 1) % LISTING_COUNT;
+		}
+
+		Assert.assertTrue("Thread allocation counting isn't supported", Allocations.isSupported());
+		// Two readings in a row show what taking a reading costs, if anything
+		final long previous = Allocations.getAllocatedBytes();
+		final long start = Allocations.getAllocatedBytes();
+		for (int i = 0; i < MEASURED_BINDS; i++) {
+			binder.bind(rows[i % ROW_COUNT], table, position);
+			position = (position + 1) % LISTING_COUNT;
+		}
+		final long end = Allocations.getAllocatedBytes();
+		Assert.assertEquals("bytes allocated by " + MEASURED_BINDS + " binds", 0, end - start - (start - previous));
+	}
+}
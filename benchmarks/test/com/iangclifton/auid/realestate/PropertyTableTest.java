@@ -0,0 +1,76 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.ArrayList;
+
+import android.database.CharArrayBuffer;
+
+import com.iangclifton.auid.benchmark.Assert;
+import com.iangclifton.auid.benchmark.Heap;
+import com.iangclifton.auid.benchmark.Test;
+
+/**
+ * Checks that a {@link PropertyTable} holds a large listing set in much less
+ * heap than the List of {@link Property} objects it replaces.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyTableTest {
+	private static final int LISTING_COUNT = 500000;
+
+	/**
+	 * The table has to hold the listings in at most 60% of the heap the List
+	 * does; the JVM's compact Strings already store these addresses one byte
+	 * per character, so a runtime without them only widens the gap
+	 */
+	@Test
+	public void footprint() {
+		final long empty = Heap.getUsedBytes();
+		ArrayList<Property> properties = newProperties(LISTING_COUNT);
+		final long listBytes = Heap.getUsedBytes() - empty;
+		final PropertyTable table = PropertyTable.fromList(properties);
+		table.freeze();
+		properties = null;
+		final long tableBytes = Heap.getUsedBytes() - empty;
+		System.out.println("ArrayList<Property>: " + listBytes / LISTING_COUNT + " B/listing, PropertyTable: "
+				+ tableBytes / LISTING_COUNT + " B/listing");
+		Assert.assertEquals("rows", LISTING_COUNT, table.getCount());
+		Assert.assertAtMost("PropertyTable bytes", listBytes * 6 / 10, tableBytes);
+	}
+
+	@Test
+	public void streetAddressesOutsideLatin1() {
+		final PropertyTable table = new PropertyTable();
+		table.add(1, 1.0f, 2, "Seattle", 1200, 32599500, "WA", "20 First Court E.");
+		table.add(2, 1.5f, 3, "Seattle", 1800, 42500000, "WA", "1 Caf\u00e9 Row");
+		table.add(3, 2.0f, 4, "Redmond", 2400, 60000000, "WA", "7 \u6771\u4eac Street");
+		table.add(4, 2.0f, 4, "Redmond", 2400, 60000000, "WA", null);
+		table.freeze();
+
+		Assert.assertEquals("row 0", "20 First Court E.", table.getStreetAddress(0));
+		Assert.assertEquals("row 1", "1 Caf\u00e9 Row", table.getStreetAddress(1));
+		Assert.assertEquals("row 2", "7 \u6771\u4eac Street", table.getStreetAddress(2));
+		Assert.assertEquals("row 3", "", table.getStreetAddress(3));
+		final CharArrayBuffer buffer = new CharArrayBuffer(4);
+		table.copyStreetAddress(1, buffer);
+		Assert.assertEquals("copied row 1", "1 Caf\u00e9 Row", new String(buffer.data, 0, buffer.sizeCopied));
+	}
+
+	/**
+	 * Returns test listings that each have their own street address String,
+	 * as listings read from a real feed do; the test data otherwise shares a
+	 * handful of address instances between every listing
+	 */
+	private static ArrayList<Property> newProperties(int count) {
+		final ArrayList<Property> generated = new PropertyTestUtils(1).getNewProperties(count);
+		final ArrayList<Property> properties = new ArrayList<Property>(count);
+		for (int i = 0; i < count; i++) {
+			final Property p = generated.get(i);
+			final String street = p.getStreetAddress();
+			properties.add(new Property(p.getId(), p.getBathroomCount(), p.getBedroomCount(), p.getCity(),
+					p.getFootage(), p.getPriceCents(), p.getState(),
+					(i % 99999 + 1) + street.substring(street.indexOf(' '))));
+			generated.set(i, null);
+		}
+		return properties;
+	}
+}
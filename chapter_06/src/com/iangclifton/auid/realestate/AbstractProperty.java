@@ -0,0 +1,203 @@
+package com.iangclifton.auid.realestate;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * The values of a single listing, without saying where they are kept.
+ *
+ * This holds no fields. {@link Property} keeps every value decoded in a
+ * field, and {@link LazyProperty} decodes each from the feed when it is
+ * first asked for;
+ * equals, hashCode, the JSON form and the Parcel form are defined here in
+ * terms of the getters, so both kinds of listing compare equal and parcel
+ * the same way when their values match. Unparceling always produces a
+ * Property.
+ *
+ * @author Ian G. Clifton
+ */
+public abstract class AbstractProperty implements Parcelable {
+
+	public static final String JSON_KEY_BATHROOMS = "bathroomCount";
+	public static final String JSON_KEY_BEDROOMS = "bedroomCount";
+	public static final String JSON_KEY_CITY = "city";
+	public static final String JSON_KEY_FOOTAGE= "footage";
+	public static final String JSON_KEY_ID = "id";
+	public static final String JSON_KEY_PRICE = "displayPrice";
+	public static final String JSON_KEY_STATE = "state";
+	public static final String JSON_KEY_STREET_ADDRESS = "address";
+
+	/**
+	 * Parcel format that stores the JSON String representation after the
+	 * marker; not the same as the marker-less String Parcels used to hold
+	 */
+	/*package*/ static final int PARCEL_FORMAT_JSON = 1;
+
+	/**
+	 * Parcel format that stores each field in binary form; bump this when
+	 * the field layout in {@link #writeToParcel(Parcel, int)} changes. Parcels
+	 * never outlive the process that wrote them, so only the current layout
+	 * needs a reader; 2 and 3 were earlier layouts.
+	 */
+	/*package*/ static final int PARCEL_FORMAT_BINARY = 4;
+
+	/**
+	 * Returns the number of bathrooms like "1.5"
+	 *
+	 * @return the bathroomCount
+	 */
+	public abstract float getBathroomCount();
+
+	/**
+	 * Returns the number of bedrooms
+	 *
+	 * @return the bedroomCount
+	 */
+	public abstract int getBedroomCount();
+
+	/**
+	 * Returns the name of the city like "Seattle"
+	 *
+	 * @return the city
+	 */
+	public abstract String getCity();
+
+	/**
+	 * Returns the square footage of the property like "2200"
+	 *
+	 * @return the footage
+	 */
+	public abstract int getFootage();
+
+	/**
+	 * Returns the stable id of the listing
+	 *
+	 * @return the id
+	 */
+	public abstract long getId();
+
+	/**
+	 * Returns the price of the property in cents like 49000000
+	 *
+	 * @return the priceCents
+	 */
+	public abstract long getPriceCents();
+
+	/**
+	 * Returns the abbreviated name of the state like "WA"
+	 *
+	 * @return the state
+	 */
+	public abstract String getState();
+
+	/**
+	 * Returns the street address like "123 Main St."
+	 *
+	 * @return the streetAddress
+	 */
+	public abstract String getStreetAddress();
+
+	/**
+	 * Returns the displayable price of the property like "$490,000"
+	 *
+	 * @return the price
+	 */
+	public String getPrice() {
+		return PriceFormatter.format(getPriceCents());
+	}
+
+	@Override
+    public int describeContents() {
+	    return 0;
+    }
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof AbstractProperty)) {
+			return false;
+		}
+		final AbstractProperty other = (AbstractProperty) o;
+		// Pooled fields are equal only when they are the same instance, so
+		// String.equals returns on its identity check for the common case
+		return getId() == other.getId()
+				&& getBathroomCount() == other.getBathroomCount()
+				&& getBedroomCount() == other.getBedroomCount()
+				&& getFootage() == other.getFootage()
+				&& getPriceCents() == other.getPriceCents()
+				&& equal(getCity(), other.getCity())
+				&& equal(getState(), other.getState())
+				&& equal(getStreetAddress(), other.getStreetAddress());
+	}
+
+	@Override
+	public int hashCode() {
+		// Equal listings always have the same id, and different listings
+		// almost never do, so the id alone is enough; a LazyProperty then
+		// doesn't have to decode anything else to be hashed
+		final long id = getId();
+		return (int) (id ^ (id >>> 32));
+	}
+
+	/**
+	 * Compares two Strings that may be null; a feed or Parcel can leave the
+	 * text fields out
+	 */
+	private static boolean equal(String a, String b) {
+		return a == b || (a != null && a.equals(b));
+	}
+
+	/**
+	 * Returns a new JSONObject representation of this Property
+	 *
+	 * @return JSONObject using the JSON_KEY_* keys
+	 * @throws JSONException if a value cannot be represented in JSON
+	 */
+	public JSONObject toJson() throws JSONException {
+		final JSONObject json = new JSONObject();
+		json.put(JSON_KEY_BATHROOMS, getBathroomCount());
+		json.put(JSON_KEY_BEDROOMS, getBedroomCount());
+		json.put(JSON_KEY_CITY, getCity());
+		json.put(JSON_KEY_FOOTAGE, getFootage());
+		json.put(JSON_KEY_ID, getId());
+		json.put(JSON_KEY_PRICE, PriceFormatter.formatForFeed(getPriceCents()));
+		json.put(JSON_KEY_STATE, getState());
+		json.put(JSON_KEY_STREET_ADDRESS, getStreetAddress());
+		return json;
+	}
+
+	@Override
+    public void writeToParcel(Parcel dest, int flags) {
+		dest.writeInt(PARCEL_FORMAT_BINARY);
+		dest.writeLong(getId());
+		dest.writeFloat(getBathroomCount());
+		dest.writeInt(getBedroomCount());
+		dest.writeInt(getFootage());
+		dest.writeLong(getPriceCents());
+		dest.writeString(getCity());
+		dest.writeString(getState());
+		dest.writeString(getStreetAddress());
+    }
+
+	/**
+	 * Writes this Property to the Parcel as a format marker followed by a
+	 * JSON String instead of the binary format. {@link Property#CREATOR} can
+	 * read either format, but not a bare JSON String without the marker.
+	 *
+	 * @param dest Parcel to write to
+	 */
+	public void writeJsonToParcel(Parcel dest) {
+		dest.writeInt(PARCEL_FORMAT_JSON);
+		try {
+			dest.writeString(toJson().toString());
+		} catch (JSONException e) {
+			// Every field is a String or a finite number, so this can't happen
+			throw new RuntimeException(e);
+		}
+	}
+}
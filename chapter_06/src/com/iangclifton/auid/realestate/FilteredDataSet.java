@@ -0,0 +1,93 @@
+package com.iangclifton.auid.realestate;
+
+import android.database.CharArrayBuffer;
+
+/**
+ * A view of some of the rows of another {@link PropertyDataSet}, such as the
+ * rows that match a {@link PropertyQuery}. Nothing is copied; each row is
+ * read from the underlying data set through a table of row numbers.
+ *
+ * @author Ian G. Clifton
+ */
+/*package*/ class FilteredDataSet implements PropertyDataSet {
+	private final PropertyDataSet mDataSet;
+	private final int[] mRows;
+
+	/**
+	 * Constructs a FilteredDataSet
+	 *
+	 * @param dataSet PropertyDataSet to read rows from
+	 * @param rows int[] where element i is the underlying row shown as row i
+	 */
+	/*package*/ FilteredDataSet(PropertyDataSet dataSet, int[] rows) {
+		mDataSet = dataSet;
+		mRows = rows;
+	}
+
+	@Override
+	public void copyStreetAddress(int row, CharArrayBuffer buffer) {
+		mDataSet.copyStreetAddress(mRows[row], buffer);
+	}
+
+	@Override
+	public float getBathroomCount(int row) {
+		return mDataSet.getBathroomCount(mRows[row]);
+	}
+
+	@Override
+	public int getBedroomCount(int row) {
+		return mDataSet.getBedroomCount(mRows[row]);
+	}
+
+	@Override
+	public String getCity(int row) {
+		return mDataSet.getCity(mRows[row]);
+	}
+
+	@Override
+	public int getCount() {
+		return mRows.length;
+	}
+
+	@Override
+	public int getFootage(int row) {
+		return mDataSet.getFootage(mRows[row]);
+	}
+
+	@Override
+	public long getId(int row) {
+		return mDataSet.getId(mRows[row]);
+	}
+
+	@Override
+	public String getPrice(int row) {
+		return mDataSet.getPrice(mRows[row]);
+	}
+
+	@Override
+	public long getPriceCents(int row) {
+		return mDataSet.getPriceCents(mRows[row]);
+	}
+
+	@Override
+	public Property getProperty(int row) {
+		return mDataSet.getProperty(mRows[row]);
+	}
+
+	/**
+	 * Returns the data set the rows are read from
+	 */
+	/*package*/ PropertyDataSet getSource() {
+		return mDataSet;
+	}
+
+	@Override
+	public String getState(int row) {
+		return mDataSet.getState(mRows[row]);
+	}
+
+	@Override
+	public String getStreetAddress(int row) {
+		return mDataSet.getStreetAddress(mRows[row]);
+	}
+}
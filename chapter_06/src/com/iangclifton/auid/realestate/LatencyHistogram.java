@@ -0,0 +1,171 @@
+package com.iangclifton.auid.realestate;
+
+import java.io.PrintWriter;
+
+/**
+ * A histogram of latencies in microseconds, with buckets laid out like
+ * HdrHistogram's so every recorded value is kept to within about 3% no matter
+ * how big it is.
+ * 
+ * Values below 64 each get their own bucket. Above that, each power of two
+ * is split into 32 equal buckets, so a bucket is never wider than 1/32 of the
+ * values in it. Values up to a minute fit in about 700 int counters, and
+ * recording one is a few shifts and an increment, which makes it cheap
+ * enough to call for every frame and every bound row.
+ * 
+ * Percentiles are reported as the highest value that falls in the same
+ * bucket, so they never understate a latency. This class is not thread
+ * safe; use it from the UI thread.
+ * 
+ * @author Ian G. Clifton
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+	/**
+	 * Larger values are recorded as this, which is just over a minute
+	 */
+	private static final long MAX_VALUE_US = (1L << 26) - 1;
+
+	private static final double[] REPORTED_PERCENTILES = { 50, 75, 90, 95, 99, 99.9, 100 };
+
+	private final int[] mCounts = new int[getBucketIndex(MAX_VALUE_US) + 1];
+	private long mCount;
+	private long mMax;
+	private long mTotal;
+
+	/**
+	 * Returns the number of values recorded
+	 * 
+	 * @return long value count
+	 */
+	public long getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Returns the largest value recorded, exactly
+	 * 
+	 * @return long largest value in microseconds or 0 if there are none
+	 */
+	public long getMax() {
+		return mMax;
+	}
+
+	/**
+	 * Returns the mean of the values recorded, exactly
+	 * 
+	 * @return double mean in microseconds or 0 if there are none
+	 */
+	public double getMean() {
+		return mCount == 0 ? 0 : (double) mTotal / mCount;
+	}
+
+	/**
+	 * Returns the value that the given percentage of the recorded values are
+	 * at or below
+	 * 
+	 * @param percentile double from 0 to 100
+	 * @return long value in microseconds or 0 if there are none
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (mCount == 0) {
+			return 0;
+		}
+		final long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * mCount));
+		long seen = 0;
+		for (int i = 0; i < mCounts.length; i++) {
+			seen += mCounts[i];
+			if (seen >= target) {
+				return Math.min(getHighestValueInBucket(i), mMax);
+			}
+		}
+		return mMax;
+	}
+
+	/**
+	 * Records one value
+	 * 
+	 * @param valueUs long latency in microseconds; negative values count as 0
+	 */
+	public void record(long valueUs) {
+		final long value = Math.min(Math.max(valueUs, 0), MAX_VALUE_US);
+		mCounts[getBucketIndex(value)]++;
+		mCount++;
+		mTotal += value;
+		if (value > mMax) {
+			mMax = value;
+		}
+	}
+
+	/**
+	 * Forgets every recorded value
+	 */
+	public void reset() {
+		for (int i = 0; i < mCounts.length; i++) {
+			mCounts[i] = 0;
+		}
+		mCount = 0;
+		mMax = 0;
+		mTotal = 0;
+	}
+
+	/**
+	 * Writes the count, mean and standard percentiles on one line, in
+	 * milliseconds
+	 * 
+	 * @param writer PrintWriter to write to
+	 */
+	public void dump(PrintWriter writer) {
+		writer.print("count=");
+		writer.print(mCount);
+		writer.print(" mean=");
+		writer.print(formatMs(getMean()));
+		for (double percentile : REPORTED_PERCENTILES) {
+			writer.print(percentile == 100 ? " max=" : " p" + formatPercentile(percentile) + "=");
+			writer.print(formatMs(getValueAtPercentile(percentile)));
+		}
+		writer.println("ms");
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram[count=" + mCount + ", p50=" + formatMs(getValueAtPercentile(50))
+				+ "ms, p99=" + formatMs(getValueAtPercentile(99)) + "ms, max=" + formatMs(mMax) + "ms]";
+	}
+
+	/**
+	 * Returns a value in microseconds as milliseconds with up to two decimal
+	 * places
+	 */
+	/*package*/ static String formatMs(double valueUs) {
+		return String.valueOf(Math.round(valueUs / 10) / 100.0);
+	}
+
+	private static String formatPercentile(double percentile) {
+		return percentile == (long) percentile ? String.valueOf((long) percentile) : String.valueOf(percentile);
+	}
+
+	private static int getBucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		// The bucket's power of two decides the shift; the top bits that are
+		// left pick the sub-bucket within it
+		final int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		final int subBucket = (int) (value >> shift) - SUB_BUCKET_HALF_COUNT;
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + subBucket;
+	}
+
+	private static long getHighestValueInBucket(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+		final long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
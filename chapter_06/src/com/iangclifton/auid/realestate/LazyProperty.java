@@ -0,0 +1,579 @@
+package com.iangclifton.auid.realestate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import android.os.Parcelable;
+
+/**
+ * A listing that decodes each of its fields from the feed it came from the
+ * first time it is requested.
+ *
+ * Every listing in a feed shares one {@link Feed}: the UTF-8 encoded JSON
+ * bytes and a single int array with the start and end offset of each
+ * listing's values, indexed by row. A LazyProperty starts out as a reference
+ * to its Feed and its row plus empty slots for the decoded values, so a
+ * listing costs 64 bytes of offsets in the shared table plus one object,
+ * instead of the Strings a {@link Property} holds from the start. Nothing is
+ * decoded until a getter is called, so rows of a list that are never
+ * scrolled into view never pay for decoding. A decoded value is kept and a
+ * bit is set for its field, so each field is decoded, and the city and state
+ * interned, at most once. A derived id is kept the same way.
+ *
+ * All of the getters, equals, hashCode and the Parcelable implementation
+ * behave the same as Property's, since both come from
+ * {@link AbstractProperty}. equals and hashCode look at the id first, so
+ * listings with different ids are told apart without decoding anything
+ * else. Unparceling produces a regular, eagerly decoded Property.
+ *
+ * Use {@link #readFeed(byte[])} or {@link #readFeed(InputStream)} to split a
+ * feed into LazyProperty objects. Only the structure of the feed is checked
+ * up front; a value that isn't a valid number is reported with a
+ * NumberFormatException from its getter.
+ *
+ * This is thread safe.
+ *
+ * @author Ian G. Clifton
+ */
+public class LazyProperty extends AbstractProperty {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int FIELD_BATHROOMS = 0;
+	private static final int FIELD_BEDROOMS = 1;
+	private static final int FIELD_CITY = 2;
+	private static final int FIELD_FOOTAGE = 3;
+	private static final int FIELD_PRICE = 4;
+	private static final int FIELD_STATE = 5;
+	private static final int FIELD_STREET_ADDRESS = 6;
+	private static final int FIELD_ID = 7;
+	private static final int FIELD_COUNT = 8;
+
+	/**
+	 * The number of ints each row takes in the offset table: a start and an
+	 * end per field
+	 */
+	private static final int OFFSETS_PER_ROW = FIELD_COUNT * 2;
+
+	/**
+	 * Mask of the fields every listing must have; without an id, one is
+	 * derived from the address
+	 */
+	private static final int REQUIRED_FIELDS = (1 << FIELD_ID) - 1;
+
+	/**
+	 * JSON keys in FIELD_* order, encoded for comparing against the feed bytes
+	 */
+	private static final byte[][] KEYS = {
+		JSON_KEY_BATHROOMS.getBytes(UTF_8),
+		JSON_KEY_BEDROOMS.getBytes(UTF_8),
+		JSON_KEY_CITY.getBytes(UTF_8),
+		JSON_KEY_FOOTAGE.getBytes(UTF_8),
+		JSON_KEY_PRICE.getBytes(UTF_8),
+		JSON_KEY_STATE.getBytes(UTF_8),
+		JSON_KEY_STREET_ADDRESS.getBytes(UTF_8),
+		JSON_KEY_ID.getBytes(UTF_8),
+	};
+
+	/**
+	 * A LazyProperty is written the same way as a Property and read back as
+	 * one
+	 */
+	public static final Parcelable.Creator<Property> CREATOR = Property.CREATOR;
+
+	private final Feed mFeed;
+
+	/**
+	 * The first of this row's OFFSETS_PER_ROW ints in the Feed's offsets
+	 */
+	private final int mOffsetBase;
+
+	/**
+	 * Bit per FIELD_* that has been decoded; each value is written before
+	 * its bit is published, so a thread that sees the bit sees the value
+	 */
+	private volatile int mDecoded;
+
+	private float mBathroomCount;
+	private int mBedroomCount;
+	private String mCity;
+	private int mFootage;
+	private long mId;
+	private long mPriceCents;
+	private String mState;
+	private String mStreetAddress;
+
+	private LazyProperty(Feed feed, int row) {
+		mFeed = feed;
+		mOffsetBase = row * OFFSETS_PER_ROW;
+	}
+
+	/**
+	 * Splits a UTF-8 encoded JSON feed into LazyProperty objects without
+	 * decoding any of their values
+	 *
+	 * @param data byte[] containing a JSON array of Property objects; this is
+	 *            retained and must not be modified afterward
+	 * @return ArrayList of LazyProperty objects in feed order
+	 * @throws IOException if the feed is malformed or a listing is missing a
+	 *             field
+	 */
+	public static ArrayList<LazyProperty> readFeed(byte[] data) throws IOException {
+		return new Scanner(data).readFeed();
+	}
+
+	/**
+	 * Reads the whole stream and splits it into LazyProperty objects without
+	 * decoding any of their values. The stream is not closed.
+	 *
+	 * @param in InputStream containing a UTF-8 encoded JSON array of Property
+	 *            objects
+	 * @return ArrayList of LazyProperty objects in feed order
+	 * @throws IOException if the stream can't be read or the feed is malformed
+	 */
+	public static ArrayList<LazyProperty> readFeed(InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return readFeed(out.toByteArray());
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof LazyProperty) {
+			final LazyProperty other = (LazyProperty) o;
+			if (other.mFeed == mFeed && other.mOffsetBase == mOffsetBase) {
+				// The same listing read from the same feed twice
+				return true;
+			}
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public float getBathroomCount() {
+		if (!isDecoded(FIELD_BATHROOMS)) {
+			mBathroomCount = Float.parseFloat(decodeUtf8(FIELD_BATHROOMS));
+			markDecoded(FIELD_BATHROOMS);
+		}
+		return mBathroomCount;
+	}
+
+	@Override
+	public int getBedroomCount() {
+		if (!isDecoded(FIELD_BEDROOMS)) {
+			mBedroomCount = decodeInt(FIELD_BEDROOMS);
+			markDecoded(FIELD_BEDROOMS);
+		}
+		return mBedroomCount;
+	}
+
+	@Override
+	public String getCity() {
+		if (!isDecoded(FIELD_CITY)) {
+			mCity = PropertyStringPool.getInstance().intern(decodeString(FIELD_CITY));
+			markDecoded(FIELD_CITY);
+		}
+		return mCity;
+	}
+
+	@Override
+	public int getFootage() {
+		if (!isDecoded(FIELD_FOOTAGE)) {
+			mFootage = decodeInt(FIELD_FOOTAGE);
+			markDecoded(FIELD_FOOTAGE);
+		}
+		return mFootage;
+	}
+
+	@Override
+	public long getId() {
+		if (!isDecoded(FIELD_ID)) {
+			if (getEnd(FIELD_ID) == 0) {
+				// Not in the feed; no value can end at offset 0
+				mId = Property.deriveId(getCity(), getState(), getStreetAddress());
+			} else {
+				mId = Long.parseLong(decodeUtf8(FIELD_ID));
+			}
+			markDecoded(FIELD_ID);
+		}
+		return mId;
+	}
+
+	@Override
+	public long getPriceCents() {
+		if (!isDecoded(FIELD_PRICE)) {
+			mPriceCents = PriceFormatter.parse(decodeString(FIELD_PRICE));
+			markDecoded(FIELD_PRICE);
+		}
+		return mPriceCents;
+	}
+
+	@Override
+	public String getState() {
+		if (!isDecoded(FIELD_STATE)) {
+			mState = PropertyStringPool.getInstance().intern(decodeString(FIELD_STATE));
+			markDecoded(FIELD_STATE);
+		}
+		return mState;
+	}
+
+	@Override
+	public String getStreetAddress() {
+		if (!isDecoded(FIELD_STREET_ADDRESS)) {
+			mStreetAddress = decodeString(FIELD_STREET_ADDRESS);
+			markDecoded(FIELD_STREET_ADDRESS);
+		}
+		return mStreetAddress;
+	}
+
+	/**
+	 * Decodes every value into a regular Property
+	 *
+	 * @return new Property with the same values
+	 */
+	public Property toProperty() {
+		return new Property(getId(), getBathroomCount(), getBedroomCount(), getCity(), getFootage(),
+				getPriceCents(), getState(), getStreetAddress());
+	}
+
+	private int getEnd(int field) {
+		return mFeed.mOffsets[mOffsetBase + field * 2 + 1];
+	}
+
+	private int getStart(int field) {
+		return mFeed.mOffsets[mOffsetBase + field * 2];
+	}
+
+	private boolean isDecoded(int field) {
+		return (mDecoded & (1 << field)) != 0;
+	}
+
+	private void markDecoded(int field) {
+		// Not atomic, but a bit lost to a race only means decoding that
+		// field again; a bit is never set before its value is written
+		mDecoded |= 1 << field;
+	}
+
+	/**
+	 * Decodes a value's bytes as UTF-8 without unescaping anything, which is
+	 * all a number needs
+	 */
+	private String decodeUtf8(int field) {
+		final int start = getStart(field);
+		return new String(mFeed.mData, start, getEnd(field) - start, UTF_8);
+	}
+
+	private int decodeInt(int field) {
+		final int start = getStart(field);
+		final int end = getEnd(field);
+		final byte[] data = mFeed.mData;
+		int i = start;
+		final boolean negative = i < end && data[i] == '-';
+		if (negative) {
+			i++;
+		}
+		if (i == end) {
+			throw new NumberFormatException("Empty number at offset " + start);
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			final int digit = data[i] - '0';
+			if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) {
+				// Not a plain int such as "3.0" or "1e3"; fall back to the
+				// same conversion JSONObject.getInt uses
+				return (int) Double.parseDouble(decodeUtf8(field));
+			}
+			value = value * 10 + digit;
+		}
+		return (int) (negative ? -value : value);
+	}
+
+	/**
+	 * Decodes a JSON string value, handling escape sequences
+	 */
+	private String decodeString(int field) {
+		final byte[] data = mFeed.mData;
+		final int start = getStart(field);
+		final int end = getEnd(field);
+		int escape = -1;
+		for (int i = start; i < end; i++) {
+			if (data[i] == '\\') {
+				escape = i;
+				break;
+			}
+		}
+		if (escape == -1) {
+			return new String(data, start, end - start, UTF_8);
+		}
+
+		final StringBuilder sb = new StringBuilder(end - start);
+		int segmentStart = start;
+		int i = escape;
+		while (i < end) {
+			if (data[i] != '\\') {
+				i++;
+				continue;
+			}
+			sb.append(new String(data, segmentStart, i - segmentStart, UTF_8));
+			final byte c = data[i + 1];
+			switch (c) {
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'u':
+				sb.append((char) Integer.parseInt(new String(data, i + 2, 4, UTF_8), 16));
+				i += 4;
+				break;
+			default:
+				// \" \\ and \/ are the character itself
+				sb.append((char) c);
+				break;
+			}
+			i += 2;
+			segmentStart = i;
+		}
+		sb.append(new String(data, segmentStart, end - segmentStart, UTF_8));
+		return sb.toString();
+	}
+
+	/**
+	 * The bytes of a feed and where each row's values are in them; shared by
+	 * every LazyProperty read from the feed
+	 */
+	private static class Feed {
+		private final byte[] mData;
+
+		/**
+		 * OFFSETS_PER_ROW ints per row: the start (inclusive) and end
+		 * (exclusive) of each field's value in mData, indexed by FIELD_* * 2;
+		 * String values exclude their quotes
+		 */
+		private final int[] mOffsets;
+
+		/*package*/ Feed(byte[] data, int[] offsets) {
+			mData = data;
+			mOffsets = offsets;
+		}
+	}
+
+	/**
+	 * Finds the structure of a feed without decoding any values
+	 */
+	private static class Scanner {
+		private final byte[] mData;
+		private int mPosition;
+
+		/**
+		 * The offset table being filled in, OFFSETS_PER_ROW ints per row
+		 */
+		private int[] mOffsets = new int[OFFSETS_PER_ROW * 16];
+		private int mRowCount;
+
+		/*package*/ Scanner(byte[] data) {
+			mData = data;
+		}
+
+		/*package*/ ArrayList<LazyProperty> readFeed() throws IOException {
+			expect('[');
+			if (peek() == ']') {
+				mPosition++;
+			} else {
+				while (true) {
+					readProperty();
+					final byte c = next();
+					if (c == ']') {
+						break;
+					} else if (c != ',') {
+						throw error("Expected ',' or ']'");
+					}
+				}
+			}
+
+			final Feed feed = new Feed(mData, Arrays.copyOf(mOffsets, mRowCount * OFFSETS_PER_ROW));
+			final ArrayList<LazyProperty> properties = new ArrayList<LazyProperty>(mRowCount);
+			for (int row = 0; row < mRowCount; row++) {
+				properties.add(new LazyProperty(feed, row));
+			}
+			return properties;
+		}
+
+		/**
+		 * Adds the next listing's offsets to the table
+		 */
+		private void readProperty() throws IOException {
+			if ((mRowCount + 1) * OFFSETS_PER_ROW > mOffsets.length) {
+				mOffsets = Arrays.copyOf(mOffsets, mOffsets.length * 2);
+			}
+			final int base = mRowCount * OFFSETS_PER_ROW;
+			int found = 0;
+			expect('{');
+			if (peek() == '}') {
+				mPosition++;
+			} else {
+				while (true) {
+					expect('"');
+					final int keyStart = mPosition;
+					skipStringBody();
+					final int field = fieldFor(keyStart, mPosition - 1);
+					expect(':');
+					readValue(base, field);
+					if (field != -1) {
+						found |= 1 << field;
+					}
+					final byte c = next();
+					if (c == '}') {
+						break;
+					} else if (c != ',') {
+						throw error("Expected ',' or '}'");
+					}
+				}
+			}
+			if ((found & REQUIRED_FIELDS) != REQUIRED_FIELDS) {
+				throw error("Property is missing fields (found mask " + found + ")");
+			}
+			mRowCount++;
+		}
+
+		/**
+		 * Records the value's offsets in the row starting at base if field is
+		 * not -1, otherwise skips it
+		 */
+		private void readValue(int base, int field) throws IOException {
+			final byte c = peek();
+			final int start;
+			final int end;
+			if (c == '"') {
+				mPosition++;
+				start = mPosition;
+				skipStringBody();
+				end = mPosition - 1;
+			} else if (c == '{' || c == '[') {
+				start = mPosition;
+				skipContainer();
+				end = mPosition;
+			} else {
+				start = mPosition;
+				while (mPosition < mData.length && !isDelimiter(mData[mPosition])) {
+					mPosition++;
+				}
+				end = mPosition;
+				if (start == end) {
+					throw error("Expected a value");
+				}
+			}
+			if (field != -1) {
+				mOffsets[base + field * 2] = start;
+				mOffsets[base + field * 2 + 1] = end;
+			}
+		}
+
+		/**
+		 * Skips a nested object or array, which no Property field uses
+		 */
+		private void skipContainer() throws IOException {
+			int depth = 0;
+			do {
+				if (mPosition >= mData.length) {
+					throw error("Unterminated object or array");
+				}
+				final byte c = mData[mPosition++];
+				if (c == '"') {
+					skipStringBody();
+				} else if (c == '{' || c == '[') {
+					depth++;
+				} else if (c == '}' || c == ']') {
+					depth--;
+				}
+			} while (depth > 0);
+		}
+
+		/**
+		 * Advances past the closing quote of a string whose opening quote has
+		 * already been consumed
+		 */
+		private void skipStringBody() throws IOException {
+			final byte[] data = mData;
+			while (mPosition < data.length) {
+				final byte c = data[mPosition++];
+				if (c == '\\') {
+					mPosition++;
+				} else if (c == '"') {
+					return;
+				}
+			}
+			throw error("Unterminated string");
+		}
+
+		private int fieldFor(int start, int end) {
+			final int length = end - start;
+			for (int field = 0; field < FIELD_COUNT; field++) {
+				final byte[] key = KEYS[field];
+				if (key.length != length) {
+					continue;
+				}
+				int i = 0;
+				while (i < length && key[i] == mData[start + i]) {
+					i++;
+				}
+				if (i == length) {
+					return field;
+				}
+			}
+			return -1;
+		}
+
+		private void expect(char expected) throws IOException {
+			if (next() != expected) {
+				throw error("Expected '" + expected + "'");
+			}
+		}
+
+		private byte next() throws IOException {
+			final byte c = peek();
+			mPosition++;
+			return c;
+		}
+
+		/**
+		 * Returns the next non-whitespace byte without consuming it
+		 */
+		private byte peek() throws IOException {
+			final byte[] data = mData;
+			while (mPosition < data.length) {
+				final byte c = data[mPosition];
+				if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+					return c;
+				}
+				mPosition++;
+			}
+			throw error("Unexpected end of feed");
+		}
+
+		private IOException error(String message) {
+			return new IOException(message + " at offset " + mPosition);
+		}
+
+		private static boolean isDelimiter(byte c) {
+			return c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t';
+		}
+	}
+}
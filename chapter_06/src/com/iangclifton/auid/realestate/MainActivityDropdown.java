@@ -1,7 +1,5 @@
 package com.iangclifton.auid.realestate;
 
-import java.util.ArrayList;
-
 import android.app.ActionBar;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
@@ -66,11 +64,22 @@ public class MainActivityDropdown extends FragmentActivity implements
 	public boolean onNavigationItemSelected(int position, long id) {
 		// When the given dropdown item is selected, show its contents in the
 		// container view.
-		final PropertyTestUtils ptu = new PropertyTestUtils(position);
-		final ArrayList<Property> properties = ptu.getNewProperties(30);
-		final Fragment f = PropertyListFragment.newInstance(properties);
+		final Fragment f = PropertyListFragment.newInstance(position);
 		getSupportFragmentManager().beginTransaction()
 				.replace(R.id.container, f).commit();
+
+		// The neighboring items are the most likely to be picked next, so
+		// start loading them in the background
+		final PropertyRepository repository = PropertyRepository
+				.getInstance(this);
+		if (position > 0) {
+			repository.prefetch(PropertyRepository
+					.getSectionDataSetId(position - 1));
+		}
+		if (position < getActionBar().getNavigationItemCount() - 1) {
+			repository.prefetch(PropertyRepository
+					.getSectionDataSetId(position + 1));
+		}
 		return true;
 	}
 
@@ -1,28 +1,32 @@
 package com.iangclifton.auid.realestate;
 
-import java.util.ArrayList;
 import java.util.Locale;
 
 import android.app.ActionBar;
 import android.app.FragmentTransaction;
 import android.os.Bundle;
-import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentActivity;
 import android.support.v4.app.FragmentManager;
-import android.support.v4.app.FragmentPagerAdapter;
 import android.support.v4.view.ViewPager;
+import android.util.Log;
 import android.view.Menu;
 
 public class MainActivityTabs extends FragmentActivity implements
 		ActionBar.TabListener {
+	private static final String TAG = "MainActivityTabs";
+
+	/**
+	 * The number of pages on each side of the current one whose fragments are
+	 * kept alive; the rest are rebuilt from a small saved state
+	 */
+	private static final int OFFSCREEN_PAGE_LIMIT = 1;
 
 	/**
 	 * The {@link android.support.v4.view.PagerAdapter} that will provide
 	 * fragments for each of the sections. We use a
-	 * {@link android.support.v4.app.FragmentPagerAdapter} derivative, which
-	 * will keep every loaded fragment in memory. If this becomes too memory
-	 * intensive, it may be best to switch to a
-	 * {@link android.support.v4.app.FragmentStatePagerAdapter}.
+	 * {@link PropertyListPagerAdapter} derivative, which only keeps the
+	 * fragments within {@link #OFFSCREEN_PAGE_LIMIT} of the current page in
+	 * memory, so memory use doesn't grow with the number of sections.
 	 */
 	SectionsPagerAdapter mSectionsPagerAdapter;
 
@@ -31,6 +35,11 @@ public class MainActivityTabs extends FragmentActivity implements
 	 */
 	ViewPager mViewPager;
 
+	/**
+	 * The most heap used when a page was selected, in bytes
+	 */
+	private long mPeakHeapBytes;
+
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
@@ -47,6 +56,7 @@ public class MainActivityTabs extends FragmentActivity implements
 
 		// Set up the ViewPager with the sections adapter.
 		mViewPager = (ViewPager) findViewById(R.id.pager);
+		mViewPager.setOffscreenPageLimit(OFFSCREEN_PAGE_LIMIT);
 		mViewPager.setAdapter(mSectionsPagerAdapter);
 
 		// When swiping between different sections, select the corresponding
@@ -54,9 +64,22 @@ public class MainActivityTabs extends FragmentActivity implements
 		// a reference to the Tab.
 		mViewPager
 				.setOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener() {
+					@Override
+					public void onPageScrolled(int position,
+							float positionOffset, int positionOffsetPixels) {
+						// Start loading the section the user is swiping toward
+						// so it's ready by the time the page settles
+						if (positionOffset > 0f) {
+							final int target = position == mViewPager
+									.getCurrentItem() ? position + 1 : position;
+							mSectionsPagerAdapter.prefetch(target);
+						}
+					}
+
 					@Override
 					public void onPageSelected(int position) {
 						actionBar.setSelectedNavigationItem(position);
+						logHeapUsage(position);
 					}
 				});
 
@@ -98,21 +121,43 @@ public class MainActivityTabs extends FragmentActivity implements
 	}
 
 	/**
-	 * A {@link FragmentPagerAdapter} that returns a fragment corresponding to
-	 * one of the sections/tabs/pages.
+	 * Logs the heap in use and the peak so far, so paging through many
+	 * sections shows whether memory stays bounded
 	 */
-	public class SectionsPagerAdapter extends FragmentPagerAdapter {
+	private void logHeapUsage(int position) {
+		final Runtime runtime = Runtime.getRuntime();
+		final long used = runtime.totalMemory() - runtime.freeMemory();
+		mPeakHeapBytes = Math.max(mPeakHeapBytes, used);
+		Log.d(TAG, "Section " + position + ": " + (used / 1024) + "KB heap used, peak "
+				+ (mPeakHeapBytes / 1024) + "KB, "
+				+ mSectionsPagerAdapter.getLiveFragmentCount() + " live fragments");
+	}
+
+	/**
+	 * A {@link PropertyListPagerAdapter} that returns a fragment corresponding
+	 * to one of the sections/tabs/pages.
+	 * 
+	 * The listings for each section come from the {@link PropertyRepository},
+	 * which keeps recently used sections in memory and loads the rest on a
+	 * background thread, so creating or rebuilding a page never loads data on
+	 * the main thread.
+	 */
+	public class SectionsPagerAdapter extends PropertyListPagerAdapter {
+		private final PropertyRepository mRepository;
+		private final String[] mDataSetIds;
 
 		public SectionsPagerAdapter(FragmentManager fm) {
 			super(fm);
+			mRepository = PropertyRepository.getInstance(MainActivityTabs.this);
+			mDataSetIds = new String[getCount()];
+			for (int i = 0; i < mDataSetIds.length; i++) {
+				mDataSetIds[i] = PropertyRepository.getSectionDataSetId(i);
+			}
 		}
 
 		@Override
-		public Fragment getItem(int position) {
-			final PropertyTestUtils ptu = new PropertyTestUtils(position);
-			final ArrayList<Property> properties = ptu.getNewProperties(30);
-			final Fragment f = PropertyListFragment.newInstance(properties);
-			return f;
+		public PropertyListState getInitialState(int position) {
+			return new PropertyListState(mDataSetIds[position], null);
 		}
 
 		@Override
@@ -134,6 +179,20 @@ public class MainActivityTabs extends FragmentActivity implements
 			}
 			return null;
 		}
+
+		/**
+		 * Starts loading a section's listings in the background if they
+		 * aren't already in memory; this is cheap enough to call on every
+		 * scroll callback
+		 * 
+		 * @param position
+		 *            int section to load
+		 */
+		public void prefetch(int position) {
+			if (position >= 0 && position < mDataSetIds.length) {
+				mRepository.prefetch(mDataSetIds[position]);
+			}
+		}
 	}
 
 }
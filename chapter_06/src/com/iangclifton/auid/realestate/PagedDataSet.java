@@ -0,0 +1,419 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.database.CharArrayBuffer;
+import android.database.SQLException;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * A set of listings stored in a {@link PropertyStore} that is read from the
+ * database a page of consecutive rows at a time.
+ *
+ * Pages are kept in two separate sets so a background pass over the whole
+ * data set, such as building a {@link PropertySortIndex}, can't push out the
+ * rows on screen:
+ * <ul>
+ * <li>The window holds the pages the UI thread has read from most recently.
+ * Only the UI thread adds to it.</li>
+ * <li>The scan pages are the few most recently read by any other thread,
+ * along with the pages next to the window that were read ahead.</li>
+ * </ul>
+ *
+ * Other threads read a missing page right away, which runs one indexed range
+ * query, so reading rows in order is much cheaper than jumping around. The UI
+ * thread never touches the database: a row whose page isn't in memory reads
+ * as a placeholder with a negative id, empty Strings and zeros, and the page
+ * and its neighbours are read on a background thread. Once a page has been
+ * read, {@link OnPageLoadedListener}s are told on the UI thread so they can
+ * bind the placeholder rows again.
+ *
+ * A row whose page can no longer be read, such as one from a generation the
+ * store has since deleted, reads as a placeholder too, so reading a row never
+ * throws for anything but a row out of range.
+ *
+ * This class is thread safe. Reading a row off the UI thread can block on
+ * disk access.
+ *
+ * @author Ian G. Clifton
+ */
+public class PagedDataSet implements PropertyDataSet {
+	private static final String TAG = "PagedDataSet";
+
+	/**
+	 * The number of rows read at a time
+	 */
+	private static final int PAGE_SIZE = 64;
+
+	/**
+	 * The number of pages the UI thread keeps; enough for the visible rows
+	 * even when a sorted list draws them from different pages
+	 */
+	private static final int MAX_WINDOW_PAGES = 16;
+
+	/**
+	 * The number of pages kept for other threads and read-ahead
+	 */
+	private static final int MAX_SCAN_PAGES = 4;
+
+	/**
+	 * Reads pages for the UI thread
+	 */
+	private static final ExecutorService PAGE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+	private static final String PLACEHOLDER_TEXT = "";
+
+	/**
+	 * Told on the UI thread when a page the UI thread was missing has been
+	 * read
+	 */
+	public interface OnPageLoadedListener {
+
+		/**
+		 * Called on the UI thread once rows that read as placeholders can be
+		 * read for real
+		 *
+		 * @param dataSet PagedDataSet that read the page
+		 */
+		void onPageLoaded(PagedDataSet dataSet);
+	}
+
+	private final PropertyStore mStore;
+	private final long mGeneration;
+	private final int mCount;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Pages the UI thread has used, least recently used first; guarded by
+	 * itself along with mScanPages, mRequestedPages and mWaitingPages
+	 */
+	private final LinkedHashMap<Integer, Page> mWindowPages = new LinkedHashMap<Integer, Page>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+			return size() > MAX_WINDOW_PAGES;
+		}
+	};
+
+	/**
+	 * Pages read by other threads or ahead of the UI, least recently used
+	 * first
+	 */
+	private final LinkedHashMap<Integer, Page> mScanPages = new LinkedHashMap<Integer, Page>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+			return size() > MAX_SCAN_PAGES;
+		}
+	};
+
+	/**
+	 * Pages waiting to be read on the background thread
+	 */
+	private final HashSet<Integer> mRequestedPages = new HashSet<Integer>();
+
+	/**
+	 * Requested pages that the UI thread has shown placeholders for
+	 */
+	private final HashSet<Integer> mWaitingPages = new HashSet<Integer>();
+
+	/**
+	 * Only used on the UI thread
+	 */
+	private final ArrayList<OnPageLoadedListener> mListeners = new ArrayList<OnPageLoadedListener>();
+
+	/*package*/ PagedDataSet(PropertyStore store, long generation, int count) {
+		mStore = store;
+		mGeneration = generation;
+		mCount = count;
+	}
+
+	/**
+	 * Returns the PagedDataSet a data set reads its rows from, looking
+	 * through any {@link FilteredDataSet}s, or null if it isn't paged
+	 *
+	 * @param dataSet PropertyDataSet to look through
+	 * @return PagedDataSet or null
+	 */
+	public static PagedDataSet find(PropertyDataSet dataSet) {
+		while (dataSet instanceof FilteredDataSet) {
+			dataSet = ((FilteredDataSet) dataSet).getSource();
+		}
+		return dataSet instanceof PagedDataSet ? (PagedDataSet) dataSet : null;
+	}
+
+	/**
+	 * Starts telling a listener about pages read for the UI thread; call this
+	 * on the UI thread
+	 *
+	 * @param listener OnPageLoadedListener to add
+	 */
+	public void addOnPageLoadedListener(OnPageLoadedListener listener) {
+		if (!mListeners.contains(listener)) {
+			mListeners.add(listener);
+		}
+	}
+
+	/**
+	 * Stops telling a listener about pages; call this on the UI thread
+	 *
+	 * @param listener OnPageLoadedListener to remove
+	 */
+	public void removeOnPageLoadedListener(OnPageLoadedListener listener) {
+		mListeners.remove(listener);
+	}
+
+	@Override
+	public void copyStreetAddress(int row, CharArrayBuffer buffer) {
+		final String streetAddress = getStreetAddress(row);
+		final int length = streetAddress.length();
+		if (buffer.data == null || buffer.data.length < length) {
+			buffer.data = new char[length];
+		}
+		streetAddress.getChars(0, length, buffer.data, 0);
+		buffer.sizeCopied = length;
+	}
+
+	@Override
+	public float getBathroomCount(int row) {
+		final Page page = getPage(row);
+		return page == null ? 0 : page.mBathroomCounts[row - page.mStart];
+	}
+
+	@Override
+	public int getBedroomCount(int row) {
+		final Page page = getPage(row);
+		return page == null ? 0 : page.mBedroomCounts[row - page.mStart];
+	}
+
+	@Override
+	public String getCity(int row) {
+		final Page page = getPage(row);
+		return page == null ? PLACEHOLDER_TEXT : page.mCities[row - page.mStart];
+	}
+
+	@Override
+	public int getCount() {
+		return mCount;
+	}
+
+	@Override
+	public int getFootage(int row) {
+		final Page page = getPage(row);
+		return page == null ? 0 : page.mFootages[row - page.mStart];
+	}
+
+	/**
+	 * Returns the generation of the stored data set these rows are read from
+	 */
+	/*package*/ long getGeneration() {
+		return mGeneration;
+	}
+
+	/**
+	 * Returns the listing's id or, for a placeholder, -1 - row
+	 */
+	@Override
+	public long getId(int row) {
+		final Page page = getPage(row);
+		return page == null ? -1 - row : page.mIds[row - page.mStart];
+	}
+
+	@Override
+	public String getPrice(int row) {
+		final Page page = getPage(row);
+		return page == null ? PLACEHOLDER_TEXT : PriceFormatter.format(page.mPriceCents[row - page.mStart]);
+	}
+
+	@Override
+	public long getPriceCents(int row) {
+		final Page page = getPage(row);
+		return page == null ? 0 : page.mPriceCents[row - page.mStart];
+	}
+
+	@Override
+	public Property getProperty(int row) {
+		final Page page = getPage(row);
+		if (page == null) {
+			return new Property(-1 - row, 0, 0, PLACEHOLDER_TEXT, 0, 0, PLACEHOLDER_TEXT, PLACEHOLDER_TEXT);
+		}
+		final int i = row - page.mStart;
+		return new Property(page.mIds[i], page.mBathroomCounts[i], page.mBedroomCounts[i], page.mCities[i],
+				page.mFootages[i], page.mPriceCents[i], page.mStates[i], page.mStreetAddresses[i]);
+	}
+
+	@Override
+	public String getState(int row) {
+		final Page page = getPage(row);
+		return page == null ? PLACEHOLDER_TEXT : page.mStates[row - page.mStart];
+	}
+
+	@Override
+	public String getStreetAddress(int row) {
+		final Page page = getPage(row);
+		return page == null ? PLACEHOLDER_TEXT : page.mStreetAddresses[row - page.mStart];
+	}
+
+	@Override
+	public String toString() {
+		synchronized (mWindowPages) {
+			return "PagedDataSet[generation=" + mGeneration + ", count=" + mCount
+					+ ", windowPages=" + mWindowPages.size() + ", scanPages=" + mScanPages.size()
+					+ ", requestedPages=" + mRequestedPages.size() + "]";
+		}
+	}
+
+	/**
+	 * Returns the page containing a row or null if it can't be read right
+	 * now
+	 */
+	private Page getPage(int row) {
+		if (row < 0 || row >= mCount) {
+			throw new IndexOutOfBoundsException("Row " + row + " is not in [0, " + mCount + ")");
+		}
+		final Integer index = row / PAGE_SIZE;
+		final boolean uiThread = Looper.myLooper() == Looper.getMainLooper();
+		synchronized (mWindowPages) {
+			Page page = mWindowPages.get(index);
+			if (page == null) {
+				page = mScanPages.get(index);
+				if (page != null && uiThread) {
+					// Read ahead or by a background pass; the UI keeps it now
+					mScanPages.remove(index);
+					mWindowPages.put(index, page);
+				}
+			}
+			if (uiThread) {
+				requestPage(index, page == null);
+				requestPage(index - 1, false);
+				requestPage(index + 1, false);
+			}
+			if (page != null || uiThread) {
+				return page;
+			}
+		}
+
+		// Read outside the lock so other threads can keep using their pages;
+		// if two threads read the same page, they both get valid copies
+		final Page page = readPage(index);
+		if (page != null) {
+			synchronized (mWindowPages) {
+				mScanPages.put(index, page);
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Reads a page on the background thread if it isn't in memory or already
+	 * being read. It goes in the window if the UI thread has shown
+	 * placeholders for it by then, or with the scan pages if it was only read
+	 * ahead. Call this holding the lock.
+	 */
+	private void requestPage(final int index, boolean missed) {
+		if (index < 0 || index * PAGE_SIZE >= mCount || mWindowPages.containsKey(index)
+				|| (!missed && mScanPages.containsKey(index))) {
+			return;
+		}
+		if (missed) {
+			mWaitingPages.add(index);
+		}
+		if (!mRequestedPages.add(index)) {
+			return;
+		}
+		PAGE_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				final Page page = readPage(index);
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						final boolean waiting;
+						synchronized (mWindowPages) {
+							mRequestedPages.remove(index);
+							waiting = mWaitingPages.remove(index);
+							if (page == null) {
+								return;
+							}
+							if (waiting) {
+								mWindowPages.put(index, page);
+							} else {
+								mScanPages.put(index, page);
+							}
+						}
+						if (waiting) {
+							for (int i = mListeners.size() - 1; i >= 0; i--) {
+								mListeners.get(i).onPageLoaded(PagedDataSet.this);
+							}
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Reads a page from the store or returns null if it can't be read
+	 */
+	private Page readPage(int index) {
+		final int start = index * PAGE_SIZE;
+		try {
+			final Page page = mStore.readPage(mGeneration, start, Math.min(PAGE_SIZE, mCount - start));
+			if (page == null) {
+				Log.w(TAG, "Page " + index + " of generation " + mGeneration + " is no longer stored");
+			}
+			return page;
+		} catch (SQLException e) {
+			Log.w(TAG, "Failed to read page " + index + " of generation " + mGeneration, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Consecutive rows read from the store; never changed once filled in
+	 */
+	/*package*/ static class Page {
+		private final int mStart;
+		private final long[] mIds;
+		private final float[] mBathroomCounts;
+		private final int[] mBedroomCounts;
+		private final String[] mCities;
+		private final int[] mFootages;
+		private final long[] mPriceCents;
+		private final String[] mStates;
+		private final String[] mStreetAddresses;
+
+		/*package*/ Page(int start, int count) {
+			mStart = start;
+			mIds = new long[count];
+			mBathroomCounts = new float[count];
+			mBedroomCounts = new int[count];
+			mCities = new String[count];
+			mFootages = new int[count];
+			mPriceCents = new long[count];
+			mStates = new String[count];
+			mStreetAddresses = new String[count];
+		}
+
+		/*package*/ void setRow(int i, long id, float bathroomCount, int bedroomCount, String city,
+				int footage, long priceCents, String state, String streetAddress) {
+			mIds[i] = id;
+			mBathroomCounts[i] = bathroomCount;
+			mBedroomCounts[i] = bedroomCount;
+			mCities[i] = city;
+			mFootages[i] = footage;
+			mPriceCents[i] = priceCents;
+			mStates[i] = state;
+			mStreetAddresses[i] = streetAddress;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package com.iangclifton.auid.realestate;
+
+import java.text.NumberFormat;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Converts between listing prices in cents and their displayable Strings.
+ *
+ * Prices are stored as a long number of cents so they can be compared and
+ * sorted as primitives. Display Strings like "$490,000" are formatted lazily
+ * for the default Locale and kept in a direct-mapped cache: each price maps
+ * to one slot, and a price that isn't in its slot replaces whatever was
+ * there. Formatting the same price again returns the same String without
+ * allocating, and the primitive price is compared directly, so a lookup
+ * doesn't box it either.
+ *
+ * This class is thread safe without locking, so binding rows on the UI thread
+ * never waits on a sort or search formatting prices in the background. Each
+ * slot holds an immutable entry that is replaced whole, so a reader sees
+ * either the old entry or the new one. Entries remember their Locale, so
+ * those formatted before the default Locale changed are simply missed.
+ * NumberFormat isn't thread safe, so each thread formats with its own.
+ *
+ * @author Ian G. Clifton
+ */
+public final class PriceFormatter {
+
+	/**
+	 * Listing prices are always in US dollars
+	 */
+	private static final Currency CURRENCY = Currency.getInstance("USD");
+
+	/**
+	 * The cache holds 2^CACHE_BITS formatted prices; listing prices come
+	 * from a fairly small set of values, so this comfortably covers a feed
+	 */
+	private static final int CACHE_BITS = 10;
+	private static final int CACHE_SIZE = 1 << CACHE_BITS;
+
+	/**
+	 * Direct-mapped cache: a price can only live in the slot its hash picks,
+	 * and a new price replaces whatever was there
+	 */
+	private static final AtomicReferenceArray<Entry> sCache = new AtomicReferenceArray<Entry>(CACHE_SIZE);
+
+	/**
+	 * Each thread's NumberFormat for the Locale it last formatted for
+	 */
+	private static final ThreadLocal<LocaleFormat> sFormat = new ThreadLocal<LocaleFormat>();
+
+	private PriceFormatter() {
+		// Utility class
+	}
+
+	/**
+	 * Returns the displayable form of a price like "$490,000" for the default
+	 * Locale. Cents are only shown when the price is not a whole dollar amount.
+	 *
+	 * @param priceCents long price in cents
+	 * @return displayable price String
+	 */
+	public static String format(long priceCents) {
+		final Locale locale = Locale.getDefault();
+		final int slot = slotOf(priceCents);
+		final Entry entry = sCache.get(slot);
+		if (entry != null && entry.mPriceCents == priceCents
+				&& (entry.mLocale == locale || entry.mLocale.equals(locale))) {
+			return entry.mFormatted;
+		}
+
+		LocaleFormat localeFormat = sFormat.get();
+		if (localeFormat == null || !localeFormat.mLocale.equals(locale)) {
+			localeFormat = new LocaleFormat(locale);
+			sFormat.set(localeFormat);
+		}
+		final NumberFormat format = localeFormat.mFormat;
+		setFractionDigits(format, priceCents);
+		final String formatted = format.format(priceCents / 100d);
+		sCache.set(slot, new Entry(priceCents, locale, formatted));
+		return formatted;
+	}
+
+	/**
+	 * Returns the feed form of a price like "$490,000", which is always
+	 * formatted for {@link Locale#US} so that {@link #parse(String)} can read
+	 * it back. This is not cached.
+	 *
+	 * @param priceCents long price in cents
+	 * @return feed price String
+	 */
+	public static String formatForFeed(long priceCents) {
+		final NumberFormat format = NumberFormat.getCurrencyInstance(Locale.US);
+		setFractionDigits(format, priceCents);
+		return format.format(priceCents / 100d);
+	}
+
+	/**
+	 * Parses a feed price like "$490,000" or "$1,250.50" into cents. Currency
+	 * symbols, grouping separators and whitespace are ignored. Fractions of a
+	 * cent are rejected rather than rounded away.
+	 *
+	 * @param displayPrice price String from a feed
+	 * @return long price in cents
+	 * @throws NumberFormatException if the String does not contain a price
+	 *             or has more than two decimal places
+	 */
+	public static long parse(String displayPrice) {
+		long dollars = 0;
+		int cents = 0;
+		int fractionDigits = -1;
+		boolean sawDigit = false;
+		final int length = displayPrice.length();
+		for (int i = 0; i < length; i++) {
+			final char c = displayPrice.charAt(i);
+			if (c >= '0' && c <= '9') {
+				sawDigit = true;
+				if (fractionDigits < 0) {
+					dollars = dollars * 10 + (c - '0');
+					if (dollars > Long.MAX_VALUE / 100) {
+						throw new NumberFormatException("Price is too large: " + displayPrice);
+					}
+				} else if (fractionDigits < 2) {
+					cents = cents * 10 + (c - '0');
+					fractionDigits++;
+				} else {
+					throw new NumberFormatException("More than two decimal places in price: " + displayPrice);
+				}
+			} else if (c == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+			} else if (c != '$' && c != ',' && !Character.isWhitespace(c)) {
+				throw new NumberFormatException("Unexpected '" + c + "' in price: " + displayPrice);
+			}
+		}
+		if (!sawDigit) {
+			throw new NumberFormatException("No digits in price: " + displayPrice);
+		}
+		if (fractionDigits == 1) {
+			// "$1.5" means 50 cents
+			cents *= 10;
+		}
+		return dollars * 100 + cents;
+	}
+
+	private static int slotOf(long priceCents) {
+		// Prices tend to be round numbers, so mix the bits before masking
+		final long hash = priceCents * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> (64 - CACHE_BITS));
+	}
+
+	private static void setFractionDigits(NumberFormat format, long priceCents) {
+		final int fractionDigits = priceCents % 100 == 0 ? 0 : 2;
+		format.setMinimumFractionDigits(fractionDigits);
+		format.setMaximumFractionDigits(fractionDigits);
+	}
+
+	/**
+	 * A formatted price in one cache slot; never modified once it's there
+	 */
+	private static final class Entry {
+		private final long mPriceCents;
+		private final Locale mLocale;
+		private final String mFormatted;
+
+		/*package*/ Entry(long priceCents, Locale locale, String formatted) {
+			mPriceCents = priceCents;
+			mLocale = locale;
+			mFormatted = formatted;
+		}
+	}
+
+	/**
+	 * A currency NumberFormat and the Locale it formats for
+	 */
+	private static final class LocaleFormat {
+		private final Locale mLocale;
+		private final NumberFormat mFormat;
+
+		/*package*/ LocaleFormat(Locale locale) {
+			mLocale = locale;
+			mFormat = NumberFormat.getCurrencyInstance(locale);
+			mFormat.setCurrency(CURRENCY);
+		}
+	}
+}
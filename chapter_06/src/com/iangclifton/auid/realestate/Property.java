@@ -11,8 +11,27 @@ import android.util.Log;
  * Represents a single Property such as a house or a condo.
  * 
  * This is thread safe and implements Parcelable for passing between Activities.
- * In this case, the Property simply reuses the raw JSON String to pass around
- * so that JSONObject can do the heavy lifting.
+ * The Parcel representation is a small versioned binary format that writes
+ * each typed field directly, so unparceling never has to touch org.json. The
+ * JSON representation is still available via {@link #toJson()} and
+ * {@link #writeJsonToParcel(Parcel)} for callers that need it.
+ * 
+ * Every Parcel format starts with a format marker, including the JSON one.
+ * {@link #CREATOR} reads only the JSON format and the current binary layout,
+ * not the marker-less JSON Parcels or earlier binary layouts. Parcels only
+ * live as long as the process and its saved instance state, so nothing
+ * written by an older version is left to read once the app has been updated
+ * and restarted.
+ * 
+ * The city and state come from a small set of values, so they are passed
+ * through the shared {@link PropertyStringPool}; Properties with the same
+ * city hold the same String instance. The price is parsed once into cents so
+ * it can be compared as a number, and the display String is produced on
+ * demand by {@link PriceFormatter}.
+ * 
+ * Every Property has a stable id that stays the same when the feed is
+ * refreshed, so lists can tell an updated listing from a new one. Feeds that
+ * don't include an id get one derived from the address.
  * 
  * In the real world, the data for each of these objects would be coming from
  * a server somewhere, so this object is modeled after a possible JSON
@@ -20,16 +39,11 @@ import android.util.Log;
  * 
  * @author Ian G. Clifton
  */
-public class Property implements Parcelable {
+public class Property extends AbstractProperty {
 	private static final String TAG = "Property";
 	
-	public static final String JSON_KEY_BATHROOMS = "bathroomCount";
-	public static final String JSON_KEY_BEDROOMS = "bedroomCount";
-	public static final String JSON_KEY_CITY = "city";
-	public static final String JSON_KEY_FOOTAGE= "footage";
-	public static final String JSON_KEY_PRICE = "displayPrice";
-	public static final String JSON_KEY_STATE = "state";
-	public static final String JSON_KEY_STREET_ADDRESS = "address";
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
 		
 	/**
 	 * The number of bathrooms like "1.5"
@@ -52,14 +66,14 @@ public class Property implements Parcelable {
 	private final int mFootage;
 	
 	/**
-	 * The displayable price of the property like "$490,000"
+	 * The stable id of the listing
 	 */
-	private final String mPrice;
+	private final long mId;
 	
 	/**
-	 * The raw JSON representation of the object
+	 * The price of the property in cents like 49000000 for "$490,000"
 	 */
-	private final String mRawJson;
+	private final long mPriceCents;
 	
 	/**
 	 * The abbreviated name of the state like "WA"
@@ -74,87 +88,115 @@ public class Property implements Parcelable {
 	public Property(JSONObject json) throws JSONException {
 		mBathroomCount = (float) json.getDouble(JSON_KEY_BATHROOMS);
 		mBedroomCount = json.getInt(JSON_KEY_BEDROOMS);
-		mCity = json.getString(JSON_KEY_CITY);
+		final PropertyStringPool pool = PropertyStringPool.getInstance();
+		mCity = pool.intern(json.getString(JSON_KEY_CITY));
 		mFootage = json.getInt(JSON_KEY_FOOTAGE);
-		mPrice = json.getString(JSON_KEY_PRICE);
-		mState = json.getString(JSON_KEY_STATE);
+		final String price = json.getString(JSON_KEY_PRICE);
+		try {
+			mPriceCents = PriceFormatter.parse(price);
+		} catch (NumberFormatException e) {
+			throw new JSONException("Invalid " + JSON_KEY_PRICE + ": " + price);
+		}
+		mState = pool.intern(json.getString(JSON_KEY_STATE));
 		mStreetAddress = json.getString(JSON_KEY_STREET_ADDRESS);
-		mRawJson = json.toString();
+		mId = json.has(JSON_KEY_ID) ? json.getLong(JSON_KEY_ID) : deriveId(mCity, mState, mStreetAddress);
 	}
 
-	@Override
-    public int describeContents() {
-	    return 0;
-    }
+	/**
+	 * Constructs a Property from already decoded fields, deriving the id from
+	 * the address
+	 */
+	/*package*/ Property(float bathroomCount, int bedroomCount, String city,
+			int footage, long priceCents, String state, String streetAddress) {
+		this(deriveId(city, state, streetAddress), bathroomCount, bedroomCount, city,
+				footage, priceCents, state, streetAddress);
+	}
+
+	/**
+	 * Constructs a Property from already decoded fields
+	 */
+	/*package*/ Property(long id, float bathroomCount, int bedroomCount, String city,
+			int footage, long priceCents, String state, String streetAddress) {
+		mId = id;
+		mBathroomCount = bathroomCount;
+		mBedroomCount = bedroomCount;
+		final PropertyStringPool pool = PropertyStringPool.getInstance();
+		mCity = pool.intern(city);
+		mFootage = footage;
+		mPriceCents = priceCents;
+		mState = pool.intern(state);
+		mStreetAddress = streetAddress;
+	}
 
 	/**
-	 * Returns the number of bathrooms like "1.5"
+	 * Returns the id for a listing that doesn't come with one: a 64-bit FNV-1a
+	 * hash of the city, state and street address. A listing keeps its id as
+	 * long as its address doesn't change.
 	 * 
-	 * @return the bathroomCount
-	 */
+	 * @param city String city or null
+	 * @param state String state or null
+	 * @param streetAddress String street address or null
+	 * @return long id
+	 */
+	/*package*/ static long deriveId(String city, String state, String streetAddress) {
+		long hash = FNV_OFFSET_BASIS;
+		hash = hashChars(hash, city);
+		hash = hashChars(hash, state);
+		return hashChars(hash, streetAddress);
+	}
+
+	private static long hashChars(long hash, String value) {
+		if (value != null) {
+			for (int i = 0, length = value.length(); i < length; i++) {
+				final char c = value.charAt(i);
+				hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+				hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+			}
+		}
+		// Separate the values so "a" + "bc" differs from "ab" + "c"
+		return (hash ^ 0xff) * FNV_PRIME;
+	}
+
+	@Override
 	public float getBathroomCount() {
 		return mBathroomCount;
 	}
 
-	/**
-	 * Returns the number of bedrooms
-	 * 
-	 * @return the bedroomCount
-	 */
+	@Override
 	public int getBedroomCount() {
 		return mBedroomCount;
 	}
 
-	/**
-	 * Returns the name of the city like "Seattle"
-	 * 
-	 * @return the city
-	 */
+	@Override
 	public String getCity() {
 		return mCity;
 	}
 
-	/**
-	 * Returns the square footage of the property like "2200"
-	 * 
-	 * @return the footage
-	 */
+	@Override
 	public int getFootage() {
 		return mFootage;
 	}
 
-	/**
-	 * Returns the displayable price of the property like "$490,000"
-	 * 
-	 * @return the price
-	 */
-	public String getPrice() {
-		return mPrice;
+	@Override
+	public long getId() {
+		return mId;
 	}
 
-	/**
-	 * Returns the abbreviated name of the state like "WA"
-	 * 
-	 * @return the state
-	 */
+	@Override
+	public long getPriceCents() {
+		return mPriceCents;
+	}
+
+	@Override
 	public String getState() {
 		return mState;
 	}
 
-	/**
-	 * Returns the street address like "123 Main St."
-	 * 
-	 * @return the streetAddress
-	 */
+	@Override
 	public String getStreetAddress() {
 		return mStreetAddress;
 	}
 
-	@Override
-    public void writeToParcel(Parcel dest, int flags) {
-	    dest.writeString(mRawJson);
-    }
-	
 	/**
 	 * Parcelable.Creator required to construct a Property object from a Parcel.
 	 */
@@ -162,21 +204,45 @@ public class Property implements Parcelable {
 
 		@Override
         public Property createFromParcel(Parcel source) {
-			final String rawJson = source.readString();
-            try {
-	            final JSONObject jsonObject = new JSONObject(rawJson);
-		        return new Property(jsonObject);
-            } catch (JSONException e) {
-	            // In theory, it's impossible to get here
-            	Log.e(TAG, "Failed to create Property from JSON String: " + e.getMessage());
-            	return null;
-            }
+			final int format = source.readInt();
+			switch (format) {
+			case PARCEL_FORMAT_BINARY:
+				return readBinary(source);
+			case PARCEL_FORMAT_JSON:
+				final String rawJson = source.readString();
+				try {
+					final JSONObject jsonObject = new JSONObject(rawJson);
+					return new Property(jsonObject);
+				} catch (JSONException e) {
+					// In theory, it's impossible to get here
+					Log.e(TAG, "Failed to create Property from JSON String: " + e.getMessage());
+					return null;
+				}
+			default:
+				Log.e(TAG, "Unknown Property Parcel format: " + format);
+				return null;
+			}
         }
 
 		@Override
         public Property[] newArray(int size) {
 	        return new Property[size];
         }
+
+		/**
+		 * Reads the fields written by {@link AbstractProperty#writeToParcel(Parcel, int)}
+		 */
+		private Property readBinary(Parcel source) {
+			final long id = source.readLong();
+			final float bathroomCount = source.readFloat();
+			final int bedroomCount = source.readInt();
+			final int footage = source.readInt();
+			final long priceCents = source.readLong();
+			final String city = source.readString();
+			final String state = source.readString();
+			final String streetAddress = source.readString();
+			return new Property(id, bathroomCount, bedroomCount, city, footage, priceCents, state, streetAddress);
+		}
 		
 	};
 }
@@ -0,0 +1,111 @@
+package com.iangclifton.auid.realestate;
+
+import android.database.CharArrayBuffer;
+
+/**
+ * A read-only set of listings that can be read row by row without creating a
+ * Property object for each row.
+ *
+ * Rows are numbered from 0 to {@link #getCount()} - 1.
+ *
+ * @author Ian G. Clifton
+ */
+public interface PropertyDataSet {
+
+	/**
+	 * Copies the street address of a row into the buffer, reallocating the
+	 * buffer's data if it is too small
+	 *
+	 * @param row int row to read
+	 * @param buffer CharArrayBuffer to copy into
+	 */
+	void copyStreetAddress(int row, CharArrayBuffer buffer);
+
+	/**
+	 * Returns the number of bathrooms for a row
+	 *
+	 * @param row int row to read
+	 * @return the bathroomCount
+	 */
+	float getBathroomCount(int row);
+
+	/**
+	 * Returns the number of bedrooms for a row
+	 *
+	 * @param row int row to read
+	 * @return the bedroomCount
+	 */
+	int getBedroomCount(int row);
+
+	/**
+	 * Returns the city for a row like "Seattle"
+	 *
+	 * @param row int row to read
+	 * @return the city
+	 */
+	String getCity(int row);
+
+	/**
+	 * Returns the number of rows
+	 *
+	 * @return int number of rows
+	 */
+	int getCount();
+
+	/**
+	 * Returns the square footage for a row
+	 *
+	 * @param row int row to read
+	 * @return the footage
+	 */
+	int getFootage(int row);
+
+	/**
+	 * Returns the stable id for a row; a listing keeps its id when the data
+	 * set is refreshed, even if it moves to a different row
+	 *
+	 * @param row int row to read
+	 * @return the id
+	 */
+	long getId(int row);
+
+	/**
+	 * Returns the displayable price for a row like "$490,000"
+	 *
+	 * @param row int row to read
+	 * @return the price
+	 */
+	String getPrice(int row);
+
+	/**
+	 * Returns the price in cents for a row
+	 *
+	 * @param row int row to read
+	 * @return the priceCents
+	 */
+	long getPriceCents(int row);
+
+	/**
+	 * Returns a new Property with the values of a row
+	 *
+	 * @param row int row to read
+	 * @return new Property
+	 */
+	Property getProperty(int row);
+
+	/**
+	 * Returns the abbreviated state for a row like "WA"
+	 *
+	 * @param row int row to read
+	 * @return the state
+	 */
+	String getState(int row);
+
+	/**
+	 * Returns the street address for a row
+	 *
+	 * @param row int row to read
+	 * @return the streetAddress
+	 */
+	String getStreetAddress(int row);
+}
@@ -0,0 +1,236 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import android.database.CharArrayBuffer;
+
+/**
+ * The differences between two versions of a {@link PropertyDataSet}, such as
+ * before and after a feed refresh, matched up by the listings' stable ids.
+ *
+ * Every listing in the new data set is matched with the row that held the
+ * same id in the old one, so listings that were moved are told apart from
+ * ones that were added or removed. A row is changed if its listing was in
+ * the old data set with different values. If every row still holds the
+ * listing with the same id, only the changed rows need to be bound again;
+ * otherwise the structure has changed, but the listings that survived can
+ * still keep their rows if their values didn't change.
+ *
+ * Computing a diff reads every row of both data sets, so do it off the UI
+ * thread. It doesn't allocate per row.
+ *
+ * @author Ian G. Clifton
+ */
+/*package*/ final class PropertyDiff {
+	private final PropertyDataSet mOldDataSet;
+	private final PropertyDataSet mNewDataSet;
+	private final BitSet mChangedRows;
+
+	/**
+	 * The new row of each old row or -1 if it was removed; null if every row
+	 * holds the same listing as before
+	 */
+	private final int[] mNewRows;
+
+	private final int mAddedCount;
+	private final int mRemovedCount;
+
+	private PropertyDiff(PropertyDataSet oldDataSet, PropertyDataSet newDataSet,
+			BitSet changedRows, int[] newRows, int addedCount, int removedCount) {
+		mOldDataSet = oldDataSet;
+		mNewDataSet = newDataSet;
+		mChangedRows = changedRows;
+		mNewRows = newRows;
+		mAddedCount = addedCount;
+		mRemovedCount = removedCount;
+	}
+
+	/**
+	 * Compares two versions of a data set
+	 *
+	 * @param oldDataSet PropertyDataSet currently shown
+	 * @param newDataSet PropertyDataSet to show instead
+	 * @return PropertyDiff of the two
+	 */
+	/*package*/ static PropertyDiff compute(PropertyDataSet oldDataSet, PropertyDataSet newDataSet) {
+		final int oldCount = oldDataSet.getCount();
+		final int newCount = newDataSet.getCount();
+		final BitSet changedRows = new BitSet(newCount);
+		final CharArrayBuffer oldStreet = new CharArrayBuffer(64);
+		final CharArrayBuffer newStreet = new CharArrayBuffer(64);
+
+		// The common case of a refresh that didn't add, remove or move anything
+		if (oldCount == newCount && idsMatch(oldDataSet, newDataSet, newCount)) {
+			for (int row = 0; row < newCount; row++) {
+				if (!rowEquals(oldDataSet, row, newDataSet, row, oldStreet, newStreet)) {
+					changedRows.set(row);
+				}
+			}
+			return new PropertyDiff(oldDataSet, newDataSet, changedRows, null, 0, 0);
+		}
+
+		// Open addressing table from id to old row
+		final int mask = Integer.highestOneBit(Math.max(oldCount, 1) * 2) * 2 - 1;
+		final long[] ids = new long[mask + 1];
+		final int[] rows = new int[mask + 1];
+		Arrays.fill(rows, -1);
+		for (int row = 0; row < oldCount; row++) {
+			final long id = oldDataSet.getId(row);
+			int slot = slotOf(id, mask);
+			while (rows[slot] != -1 && ids[slot] != id) {
+				slot = (slot + 1) & mask;
+			}
+			if (rows[slot] == -1) {
+				ids[slot] = id;
+				rows[slot] = row;
+			}
+		}
+
+		final int[] newRows = new int[oldCount];
+		Arrays.fill(newRows, -1);
+		int addedCount = 0;
+		for (int row = 0; row < newCount; row++) {
+			final long id = newDataSet.getId(row);
+			int slot = slotOf(id, mask);
+			while (rows[slot] != -1 && ids[slot] != id) {
+				slot = (slot + 1) & mask;
+			}
+			final int oldRow = rows[slot];
+			if (oldRow == -1 || newRows[oldRow] != -1) {
+				// Added, or a second listing with an id that was already matched
+				addedCount++;
+				continue;
+			}
+			newRows[oldRow] = row;
+			if (!rowEquals(oldDataSet, oldRow, newDataSet, row, oldStreet, newStreet)) {
+				changedRows.set(row);
+			}
+		}
+		final int removedCount = oldCount - (newCount - addedCount);
+		return new PropertyDiff(oldDataSet, newDataSet, changedRows, newRows,
+				addedCount, removedCount);
+	}
+
+	/**
+	 * Returns the new row of the listing at an old row or, if it was removed,
+	 * of the closest listing after it that wasn't, or else before it
+	 *
+	 * @param oldRow int row in the old data set
+	 * @return int row in the new data set or -1 if no listing survived
+	 */
+	/*package*/ int findNewRow(int oldRow) {
+		if (mNewRows == null) {
+			return oldRow < mNewDataSet.getCount() ? oldRow : -1;
+		}
+		for (int row = oldRow; row < mNewRows.length; row++) {
+			if (mNewRows[row] != -1) {
+				return mNewRows[row];
+			}
+		}
+		for (int row = Math.min(oldRow, mNewRows.length) - 1; row >= 0; row--) {
+			if (mNewRows[row] != -1) {
+				return mNewRows[row];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the number of rows that hold a listing from the old data set
+	 * with new values
+	 *
+	 * @return int number of changed rows
+	 */
+	/*package*/ int getChangedRowCount() {
+		return mChangedRows.cardinality();
+	}
+
+	/**
+	 * Returns the rows of the new data set whose listing was in the old one
+	 * with different values; don't modify it
+	 */
+	/*package*/ BitSet getChangedRows() {
+		return mChangedRows;
+	}
+
+	/*package*/ PropertyDataSet getNewDataSet() {
+		return mNewDataSet;
+	}
+
+	/*package*/ PropertyDataSet getOldDataSet() {
+		return mOldDataSet;
+	}
+
+	/**
+	 * Returns true if nothing the list shows has changed
+	 */
+	/*package*/ boolean isEmpty() {
+		return mNewRows == null && mChangedRows.isEmpty();
+	}
+
+	/**
+	 * Returns true if a row holds a listing from the old data set but with
+	 * new values
+	 */
+	/*package*/ boolean isRowChanged(int row) {
+		return mChangedRows.get(row);
+	}
+
+	/**
+	 * Returns true if listings were added, removed or moved, so rows no
+	 * longer line up with the old data set
+	 */
+	/*package*/ boolean isStructureChanged() {
+		return mNewRows != null;
+	}
+
+	@Override
+	public String toString() {
+		return "PropertyDiff[structureChanged=" + isStructureChanged()
+				+ ", changedRows=" + getChangedRowCount()
+				+ ", added=" + mAddedCount + ", removed=" + mRemovedCount + "]";
+	}
+
+	private static boolean idsMatch(PropertyDataSet a, PropertyDataSet b, int count) {
+		for (int row = 0; row < count; row++) {
+			if (a.getId(row) != b.getId(row)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int slotOf(long id, int mask) {
+		// Ids derived from addresses are hashes already, but feed ids may be
+		// sequential; mix the bits so neither clusters
+		long hash = id * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private static boolean rowEquals(PropertyDataSet a, int aRow, PropertyDataSet b, int bRow,
+			CharArrayBuffer aStreet, CharArrayBuffer bStreet) {
+		if (a.getBathroomCount(aRow) != b.getBathroomCount(bRow)
+				|| a.getBedroomCount(aRow) != b.getBedroomCount(bRow)
+				|| a.getFootage(aRow) != b.getFootage(bRow)
+				|| a.getPriceCents(aRow) != b.getPriceCents(bRow)
+				|| !a.getCity(aRow).equals(b.getCity(bRow))
+				|| !a.getState(aRow).equals(b.getState(bRow))) {
+			return false;
+		}
+		a.copyStreetAddress(aRow, aStreet);
+		b.copyStreetAddress(bRow, bStreet);
+		final int length = aStreet.sizeCopied;
+		if (length != bStreet.sizeCopied) {
+			return false;
+		}
+		final char[] aChars = aStreet.data;
+		final char[] bChars = bStreet.data;
+		for (int i = 0; i < length; i++) {
+			if (aChars[i] != bChars[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,201 @@
+package com.iangclifton.auid.realestate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.util.NoSuchElementException;
+
+import android.util.JsonReader;
+
+/**
+ * Streams Property objects out of a JSON feed one at a time.
+ *
+ * The feed is expected to be a JSON array of objects that use the
+ * Property.JSON_KEY_* keys. Unlike building a JSONObject for the whole feed,
+ * only the current object is ever decoded, so memory use stays bounded no
+ * matter how many listings the feed contains. Unknown keys are skipped.
+ *
+ * Use it either as a pull parser with {@link #hasNext()} and {@link #next()}
+ * or push every Property to a {@link Callback} with
+ * {@link #readAll(InputStream, Callback)}.
+ *
+ * This class is not thread safe.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyFeedReader implements Closeable {
+
+	/**
+	 * Receives each Property as it is read from a feed
+	 */
+	public interface Callback {
+		/**
+		 * Called once for every Property in the feed, in feed order
+		 *
+		 * @param property Property that was just read
+		 */
+		void onProperty(Property property);
+	}
+
+	private static final int FIELD_BATHROOMS = 1;
+	private static final int FIELD_BEDROOMS = 1 << 1;
+	private static final int FIELD_CITY = 1 << 2;
+	private static final int FIELD_FOOTAGE = 1 << 3;
+	private static final int FIELD_PRICE = 1 << 4;
+	private static final int FIELD_STATE = 1 << 5;
+	private static final int FIELD_STREET_ADDRESS = 1 << 6;
+	private static final int FIELD_ALL = (1 << 7) - 1;
+
+	/**
+	 * Optional; without it the id is derived from the address
+	 */
+	private static final int FIELD_ID = 1 << 7;
+
+	private final JsonReader mJsonReader;
+
+	/**
+	 * Whether the opening bracket of the feed's array has been consumed
+	 */
+	private boolean mStarted;
+
+	/**
+	 * Constructs a new PropertyFeedReader for a UTF-8 encoded stream
+	 *
+	 * @param in InputStream containing the JSON feed
+	 */
+	public PropertyFeedReader(InputStream in) {
+		this(createUtf8Reader(in));
+	}
+
+	/**
+	 * Constructs a new PropertyFeedReader
+	 *
+	 * @param reader Reader containing the JSON feed
+	 */
+	public PropertyFeedReader(Reader reader) {
+		mJsonReader = new JsonReader(reader);
+	}
+
+	/**
+	 * Reads every Property from the stream and passes each one to the
+	 * callback, then closes the stream
+	 *
+	 * @param in InputStream containing the UTF-8 encoded JSON feed
+	 * @param callback Callback to receive each Property
+	 * @return int number of Property objects read
+	 * @throws IOException if the stream can't be read or isn't a valid feed
+	 */
+	public static int readAll(InputStream in, Callback callback) throws IOException {
+		final PropertyFeedReader reader = new PropertyFeedReader(in);
+		try {
+			int count = 0;
+			while (reader.hasNext()) {
+				callback.onProperty(reader.next());
+				count++;
+			}
+			return count;
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		mJsonReader.close();
+	}
+
+	/**
+	 * Returns true if there is another Property in the feed
+	 *
+	 * @return true if {@link #next()} will return a Property
+	 * @throws IOException if the stream can't be read or isn't a valid feed
+	 */
+	public boolean hasNext() throws IOException {
+		if (!mStarted) {
+			mJsonReader.beginArray();
+			mStarted = true;
+		}
+		return mJsonReader.hasNext();
+	}
+
+	/**
+	 * Reads the next Property from the feed
+	 *
+	 * @return the next Property
+	 * @throws IOException if the stream can't be read or isn't a valid feed
+	 * @throws NoSuchElementException if the end of the feed has been reached
+	 */
+	public Property next() throws IOException {
+		if (!hasNext()) {
+			throw new NoSuchElementException("No more Property objects in the feed");
+		}
+		final JsonReader reader = mJsonReader;
+		float bathroomCount = 0f;
+		int bedroomCount = 0;
+		String city = null;
+		int footage = 0;
+		long id = 0;
+		long priceCents = 0;
+		String state = null;
+		String streetAddress = null;
+		int fields = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+			if (Property.JSON_KEY_BATHROOMS.equals(name)) {
+				bathroomCount = (float) reader.nextDouble();
+				fields |= FIELD_BATHROOMS;
+			} else if (Property.JSON_KEY_BEDROOMS.equals(name)) {
+				bedroomCount = reader.nextInt();
+				fields |= FIELD_BEDROOMS;
+			} else if (Property.JSON_KEY_CITY.equals(name)) {
+				city = reader.nextString();
+				fields |= FIELD_CITY;
+			} else if (Property.JSON_KEY_FOOTAGE.equals(name)) {
+				footage = reader.nextInt();
+				fields |= FIELD_FOOTAGE;
+			} else if (Property.JSON_KEY_ID.equals(name)) {
+				id = reader.nextLong();
+				fields |= FIELD_ID;
+			} else if (Property.JSON_KEY_PRICE.equals(name)) {
+				final String price = reader.nextString();
+				try {
+					priceCents = PriceFormatter.parse(price);
+				} catch (NumberFormatException e) {
+					throw new IOException("Invalid " + Property.JSON_KEY_PRICE + ": " + price);
+				}
+				fields |= FIELD_PRICE;
+			} else if (Property.JSON_KEY_STATE.equals(name)) {
+				state = reader.nextString();
+				fields |= FIELD_STATE;
+			} else if (Property.JSON_KEY_STREET_ADDRESS.equals(name)) {
+				streetAddress = reader.nextString();
+				fields |= FIELD_STREET_ADDRESS;
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if ((fields & FIELD_ALL) != FIELD_ALL) {
+			throw new IOException("Property in feed is missing fields (found mask " + fields + ")");
+		}
+		if ((fields & FIELD_ID) != 0) {
+			return new Property(id, bathroomCount, bedroomCount, city, footage, priceCents, state, streetAddress);
+		}
+		return new Property(bathroomCount, bedroomCount, city, footage, priceCents, state, streetAddress);
+	}
+
+	private static Reader createUtf8Reader(InputStream in) {
+		try {
+			return new InputStreamReader(in, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// Every Java platform is required to support UTF-8
+			throw new RuntimeException(e);
+		}
+	}
+}
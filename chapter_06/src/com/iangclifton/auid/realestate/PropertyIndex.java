@@ -0,0 +1,300 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.BitSet;
+
+/**
+ * Secondary indexes over a {@link PropertyTable} for answering
+ * {@link PropertyQuery} filters without scanning every row.
+ *
+ * Each numeric column (bathrooms, bedrooms, footage and price) gets a sorted
+ * permutation of the rows, so a range predicate is two binary searches. City
+ * and state have few distinct values, so each value gets a bitmap of the rows
+ * that have it. A query intersects the bitmaps for its predicates and returns
+ * the matching row numbers rather than copies of the listings.
+ *
+ * The index covers the rows in the table when it was built; build a new one
+ * after adding rows. Building sorts four columns, so do it off the UI
+ * thread. Once built, an index is immutable and safe to query from any
+ * thread as long as the table isn't modified.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyIndex {
+	private static final int[] EMPTY = new int[0];
+
+	private final int mCount;
+	private final Column mBathrooms;
+	private final Column mBedrooms;
+	private final Column mFootage;
+	private final Column mPrice;
+	private final BitSet[] mCityRows;
+	private final BitSet[] mStateRows;
+	private final PropertyTable mTable;
+
+	/**
+	 * Builds an index over every row currently in the table
+	 *
+	 * @param table PropertyTable to index
+	 */
+	public PropertyIndex(PropertyTable table) {
+		final int count = table.getCount();
+		mTable = table;
+		mCount = count;
+
+		final long[] bathrooms = new long[count];
+		final long[] bedrooms = new long[count];
+		final long[] footage = new long[count];
+		final long[] price = new long[count];
+		final BitSet[] cityRows = new BitSet[table.getCityCount()];
+		final BitSet[] stateRows = new BitSet[table.getStateCount()];
+		for (int i = 0; i < cityRows.length; i++) {
+			cityRows[i] = new BitSet(count);
+		}
+		for (int i = 0; i < stateRows.length; i++) {
+			stateRows[i] = new BitSet(count);
+		}
+		for (int row = 0; row < count; row++) {
+			bathrooms[row] = RowSorter.floatKey(table.getBathroomCount(row));
+			bedrooms[row] = table.getBedroomCount(row);
+			footage[row] = table.getFootage(row);
+			price[row] = table.getPriceCents(row);
+			cityRows[table.getCityId(row)].set(row);
+			stateRows[table.getStateId(row)].set(row);
+		}
+
+		mBathrooms = new Column(bathrooms, count);
+		mBedrooms = new Column(bedrooms, count);
+		mFootage = new Column(footage, count);
+		mPrice = new Column(price, count);
+		mCityRows = cityRows;
+		mStateRows = stateRows;
+	}
+
+	/**
+	 * Returns the number of rows this index covers
+	 *
+	 * @return int number of indexed rows
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Returns the table this index was built from
+	 *
+	 * @return the PropertyTable
+	 */
+	public PropertyTable getTable() {
+		return mTable;
+	}
+
+	/**
+	 * Returns the rows that match every part of the query
+	 *
+	 * @param query PropertyQuery to run
+	 * @return new int[] of matching rows in ascending order
+	 */
+	public int[] query(PropertyQuery query) {
+		BitSet matches = null;
+
+		// Equality predicates are precomputed bitmaps, so apply them first
+		if (query.getCity() != null) {
+			final int cityId = mTable.findCityId(query.getCity());
+			if (cityId == -1 || cityId >= mCityRows.length) {
+				return EMPTY;
+			}
+			matches = (BitSet) mCityRows[cityId].clone();
+		}
+		if (query.getState() != null) {
+			final int stateId = mTable.findStateId(query.getState());
+			if (stateId == -1 || stateId >= mStateRows.length) {
+				return EMPTY;
+			}
+			matches = intersect(matches, mStateRows[stateId]);
+		}
+
+		// Then the ranges, most selective first, so each one has fewer
+		// candidates left to check. Once few enough candidates are left,
+		// the rest of the ranges are checked against each of them in one
+		// pass rather than building a bitmap per range.
+		final Range[] ranges = {
+			mBathrooms.range(RowSorter.floatKey(query.getMinBathrooms()),
+					RowSorter.floatKey(query.getMaxBathrooms())),
+			mBedrooms.range(query.getMinBedrooms(), query.getMaxBedrooms()),
+			mFootage.range(query.getMinFootage(), query.getMaxFootage()),
+			mPrice.range(query.getMinPriceCents(), query.getMaxPriceCents()),
+		};
+		sortBySize(ranges);
+		final Range[] checks = new Range[ranges.length];
+		int checkCount = 0;
+		for (Range range : ranges) {
+			if (range.size() == mCount) {
+				// Unbounded or matches everything
+				continue;
+			}
+			if (range.size() == 0) {
+				return EMPTY;
+			}
+			if (matches == null) {
+				matches = range.toBitSet(mCount);
+			} else if (checkCount > 0 || matches.cardinality() < range.size()) {
+				// Cheaper to check the few remaining candidates directly;
+				// the ranges only get bigger from here
+				checks[checkCount++] = range;
+				continue;
+			} else {
+				matches.and(range.toBitSet(mCount));
+			}
+			if (matches.isEmpty()) {
+				return EMPTY;
+			}
+		}
+		if (checkCount > 0) {
+			retainMatching(matches, checks, checkCount);
+		}
+
+		if (matches == null) {
+			final int[] rows = new int[mCount];
+			for (int i = 0; i < mCount; i++) {
+				rows[i] = i;
+			}
+			return rows;
+		}
+		final int[] rows = new int[matches.cardinality()];
+		int i = 0;
+		for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+			rows[i++] = row;
+		}
+		return rows;
+	}
+
+	private static BitSet intersect(BitSet matches, BitSet rows) {
+		if (matches == null) {
+			return (BitSet) rows.clone();
+		}
+		matches.and(rows);
+		return matches;
+	}
+
+	/**
+	 * Clears every row that falls outside any of the ranges
+	 */
+	private static void retainMatching(BitSet rows, Range[] ranges, int rangeCount) {
+		// Every candidate is checked against every range without stopping
+		// early; reading the few key columns is cheaper than a branch per
+		// range that can't be predicted
+		final long[][] keys = new long[rangeCount][];
+		final long[] mins = new long[rangeCount];
+		final long[] maxes = new long[rangeCount];
+		for (int i = 0; i < rangeCount; i++) {
+			keys[i] = ranges[i].mColumn.mKeys;
+			mins[i] = ranges[i].mMin;
+			maxes[i] = ranges[i].mMax;
+		}
+		for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+			boolean contained = true;
+			for (int i = 0; i < rangeCount; i++) {
+				final long key = keys[i][row];
+				contained &= key >= mins[i] & key <= maxes[i];
+			}
+			if (!contained) {
+				rows.clear(row);
+			}
+		}
+	}
+
+	private static void sortBySize(Range[] ranges) {
+		for (int i = 1; i < ranges.length; i++) {
+			final Range range = ranges[i];
+			int j = i - 1;
+			while (j >= 0 && ranges[j].size() > range.size()) {
+				ranges[j + 1] = ranges[j];
+				j--;
+			}
+			ranges[j + 1] = range;
+		}
+	}
+
+	/**
+	 * A numeric column's key for every row plus the rows in key order
+	 */
+	private static class Column {
+		private final long[] mKeys;
+		private final int[] mSortedRows;
+
+		/*package*/ Column(long[] keys, int count) {
+			mKeys = keys;
+			mSortedRows = RowSorter.sort(keys, count);
+		}
+
+		/**
+		 * Returns the rows with min <= key <= max
+		 */
+		/*package*/ Range range(long min, long max) {
+			if (min > max) {
+				return new Range(this, 0, 0, min, max);
+			}
+			return new Range(this, firstAtLeast(min), firstGreaterThan(max), min, max);
+		}
+
+		private int firstAtLeast(long key) {
+			int low = 0;
+			int high = mSortedRows.length;
+			while (low < high) {
+				final int mid = (low + high) >>> 1;
+				if (mKeys[mSortedRows[mid]] < key) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		private int firstGreaterThan(long key) {
+			int low = 0;
+			int high = mSortedRows.length;
+			while (low < high) {
+				final int mid = (low + high) >>> 1;
+				if (mKeys[mSortedRows[mid]] <= key) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * The slice of a Column's sorted rows that satisfies a range predicate
+	 */
+	private static class Range {
+		private final Column mColumn;
+		private final int mFrom;
+		private final int mTo;
+		private final long mMin;
+		private final long mMax;
+
+		/*package*/ Range(Column column, int from, int to, long min, long max) {
+			mColumn = column;
+			mFrom = from;
+			mTo = to;
+			mMin = min;
+			mMax = max;
+		}
+
+		/*package*/ int size() {
+			return mTo - mFrom;
+		}
+
+		/*package*/ BitSet toBitSet(int count) {
+			final BitSet rows = new BitSet(count);
+			final int[] sortedRows = mColumn.mSortedRows;
+			for (int i = mFrom; i < mTo; i++) {
+				rows.set(sortedRows[i]);
+			}
+			return rows;
+		}
+	}
+}
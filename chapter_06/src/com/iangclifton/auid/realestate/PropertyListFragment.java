@@ -1,95 +1,1024 @@
 package com.iangclifton.auid.realestate;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import android.content.Context;
-import android.content.res.Resources;
+import android.content.pm.ApplicationInfo;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.support.v4.app.ListFragment;
+import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
-import android.widget.TextView;
+import android.widget.BaseAdapter;
+import android.widget.FrameLayout;
+import android.widget.ListView;
+import android.widget.SearchView;
 
 /**
- * ListFragment that displays a List of Property objects.
+ * ListFragment that displays the listings of a data set that match a query.
+ * 
+ * Only the data set id and the {@link PropertyQuery} are stored in the
+ * arguments; the rows come from the {@link PropertyRepository}. Listings that
+ * aren't in memory yet, such as after the process was killed, are loaded on a
+ * background thread, usually straight from a memory-mapped
+ * {@link PropertySnapshot}.
+ * 
+ * While the list scrolls, a {@link RowLayoutPrefetcher} lays out the street
+ * addresses of the rows about to come on screen in the background, and a
+ * {@link ScrollPerformanceMonitor} records frame times, dropped frames and
+ * row bind times, which are shown over the list in debuggable builds and
+ * included in the fragment's dump.
+ * 
+ * The listings can be sorted by price, footage, bedrooms or bathrooms. Each
+ * order is a {@link PropertySortIndex} permutation built in the background
+ * when the listings are loaded, so changing the order from the options menu
+ * doesn't sort anything on the UI thread.
+ * 
+ * The search box in the action bar filters the listings by street address
+ * or city as the user types, using a {@link PropertySearchIndex} that is
+ * also built when the listings are loaded. Each keystroke is searched on a
+ * background thread, narrowing down the previous keystroke's results where
+ * it can, and the time from keystroke to shown results is logged.
+ * 
+ * While the fragment is resumed, the listings are refreshed every few
+ * minutes. The new listings are compared with the shown ones on a background
+ * thread by their stable ids, and only the visible rows whose values changed
+ * are bound again. If listings were added, removed or moved, the list is
+ * reloaded and scrolled so the first visible listing, or the closest one
+ * that is left, stays where it was; rows that the ListView hands back for a
+ * listing they already show with the same values aren't bound again.
+ * 
+ * Everything else the fragment needs to pick up where the user left it fits
+ * in a small {@link PropertyListState}, which {@link #getListState()} returns
+ * and {@link #newInstance(PropertyListState)} starts from, so a pager can
+ * destroy offscreen fragments and rebuild them from the repository later.
  * 
  * @author Ian G. Clifton
  */
 public class PropertyListFragment extends ListFragment {
+	private static final String TAG = "PropertyListFragment";
 	
-	private static final String ARGUMENT_KEY_PROPERTIES = "properties";
+	private static final String ARGUMENT_KEY_DATA_SET_ID = "dataSetId";
+	private static final String ARGUMENT_KEY_LIST_STATE = "listState";
+	private static final String ARGUMENT_KEY_QUERY = "query";
+
+	private static final String STATE_KEY_LIST_STATE = "listState";
+
+	/**
+	 * The number of prefetched street address Layouts to keep
+	 */
+	private static final int ROW_LAYOUT_CACHE_SIZE = 32;
+
+	/**
+	 * How often the listings are refreshed while the fragment is resumed
+	 */
+	private static final long REFRESH_INTERVAL_MS = 5 * 60 * 1000;
+
+	/**
+	 * Searches that take longer than this from keystroke to shown results
+	 * are logged as warnings; it's one frame
+	 */
+	private static final long SEARCH_LATENCY_TARGET_MS = 16;
+
+	/**
+	 * Searches run one at a time and in order, so a Searcher is never used
+	 * by two threads, and never wait behind loading or refreshing listings
+	 */
+	private static final ExecutorService SEARCH_EXECUTOR = Executors.newSingleThreadExecutor();
+
+	/**
+	 * Loads and refreshes run here rather than on AsyncTask's serial
+	 * executor, so one section fetching and indexing its listings doesn't
+	 * hold up the next section's load or another task in the app; two at
+	 * once covers the shown section and a neighbor the pager is creating
+	 */
+	private static final ExecutorService LOAD_EXECUTOR = Executors.newFixedThreadPool(2);
+
+	private final Handler mHandler = new Handler();
+	private final Runnable mRefreshRunnable = new Runnable() {
+		@Override
+		public void run() {
+			refresh();
+		}
+	};
+
+	private RowLayoutPrefetcher mPrefetcher;
+	private ScrollPerformanceMonitor mScrollMonitor;
+	private LoadListingsTask mTask;
+	private RefreshTask mRefreshTask;
+	private SearchTask mSearchTask;
+
+	/**
+	 * The shown listings in every order; null until it has been built
+	 */
+	private PropertySortIndex mSortIndex;
+	private int mSortKey = PropertySortIndex.SORT_ARRIVAL;
+
+	/**
+	 * Searches the shown listings; null until the index has been built
+	 */
+	private PropertySearchIndex.Searcher mSearcher;
+
+	/**
+	 * What the user has typed into the search box or null
+	 */
+	private String mSearchText;
+
+	/**
+	 * Rows that match mSearchText or null if every row is shown
+	 */
+	private int[] mSearchRows;
+
+	/**
+	 * Where to scroll to once the listings are shown or null
+	 */
+	private PropertyListState mPendingListState;
+
+	/**
+	 * When this fragment started waiting for its listings, for measuring how
+	 * long switching to it takes
+	 */
+	private long mLoadStartTime;
+
+	/**
+	 * Static constructor to create a new Instance of a PropertyListFragment
+	 * that shows every listing in a section
+	 * 
+	 * @param section int section whose listings should be displayed
+	 * @return PropertyListFragment with the section's data set id stored as args
+	 */
+	public static PropertyListFragment newInstance(int section) {
+		return newInstance(PropertyRepository.getSectionDataSetId(section), null);
+	}
+
+	/**
+	 * Static constructor to create a new Instance of a PropertyListFragment
+	 * 
+	 * @param dataSetId String {@link PropertyRepository} data set id
+	 * @param query PropertyQuery to filter the listings by or null for all
+	 * @return PropertyListFragment with the id and query stored as args
+	 */
+	public static PropertyListFragment newInstance(String dataSetId, PropertyQuery query) {
+		return newInstance(new PropertyListState(dataSetId, query));
+	}
 
 	/**
 	 * Static constructor to create a new Instance of a PropertyListFragment
+	 * that starts out in a saved state, such as one returned by
+	 * {@link #getListState()} before an earlier instance was destroyed
 	 * 
-	 * @param properties ArrayList of Property objects to store in the Fragment
-	 * @return PropertyListFragment with the passed Property objects stored as args
+	 * @param state PropertyListState to start in
+	 * @return PropertyListFragment with the state stored as args
 	 */
-	public static PropertyListFragment newInstance(ArrayList<Property> properties) {
+	public static PropertyListFragment newInstance(PropertyListState state) {
 		final Bundle args = new Bundle();
-		args.putParcelableArrayList(ARGUMENT_KEY_PROPERTIES, properties);
+		args.putString(ARGUMENT_KEY_DATA_SET_ID, state.getDataSetId());
+		args.putParcelable(ARGUMENT_KEY_QUERY, state.getQuery());
+		args.putParcelable(ARGUMENT_KEY_LIST_STATE, state);
 		
 		final PropertyListFragment f = new PropertyListFragment();
 		f.setArguments(args);
 		return f;
 	}
 
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+    	super.onCreate(savedInstanceState);
+    	setHasOptionsMenu(true);
+    	mScrollMonitor = new ScrollPerformanceMonitor(getActivity(),
+    			TAG + "[" + getArguments().getString(ARGUMENT_KEY_DATA_SET_ID) + "]",
+    			PropertyListAdapter.class.getSimpleName());
+    	final PropertyListState state;
+    	if (savedInstanceState != null) {
+    		state = savedInstanceState.getParcelable(STATE_KEY_LIST_STATE);
+    	} else {
+    		state = getArguments().getParcelable(ARGUMENT_KEY_LIST_STATE);
+    	}
+    	if (state != null) {
+    		if (PropertySortIndex.isValidSortKey(state.getSortKey())) {
+    			mSortKey = state.getSortKey();
+    		}
+    		mSearchText = state.getSearchText();
+    		if (state.getFirstVisiblePosition() > 0 || state.getFirstVisibleTop() != 0) {
+    			mPendingListState = state;
+    		}
+    	}
+    }
+
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
 	    super.onActivityCreated(savedInstanceState);
 	    
-	    final List<Property> properties = getArguments().getParcelableArrayList(ARGUMENT_KEY_PROPERTIES);
-	    setListAdapter(new PropertyListAdapter(getActivity(), properties));
+	    if (getListAdapter() == null && mTask == null) {
+	    	mLoadStartTime = SystemClock.elapsedRealtime();
+	    	final Bundle args = getArguments();
+	    	final String dataSetId = args.getString(ARGUMENT_KEY_DATA_SET_ID);
+	    	final PropertyQuery query = args.getParcelable(ARGUMENT_KEY_QUERY);
+	    	final PropertyRepository repository = PropertyRepository.getInstance(getActivity());
+	    	final PropertyDataSet dataSet = repository.peek(dataSetId);
+	    	if (dataSet != null && query == null && mSortKey == PropertySortIndex.SORT_ARRIVAL
+	    			&& mSearchText == null) {
+	    		// Already in memory and in the right order, so there's nothing
+	    		// to wait for; the other orders and the search index are still
+	    		// built in the background
+	    		setDataSet(dataSet);
+	    	}
+	    	mTask = new LoadListingsTask(repository, dataSetId, query, mSearchText);
+	    	mTask.executeOnExecutor(LOAD_EXECUTOR);
+	    } else if (getListAdapter() != null) {
+	    	// The view was recreated, but the adapter was kept
+	    	startPrefetching((PropertyListAdapter) getListAdapter());
+	    }
+	    if (ScrollPerformanceMonitor.isOverlayEnabled(getActivity()) && getView() instanceof FrameLayout) {
+	    	mScrollMonitor.attachOverlay((FrameLayout) getView());
+	    }
+    }
+
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+    	inflater.inflate(R.menu.property_list, menu);
+
+    	final MenuItem searchItem = menu.findItem(R.id.action_search);
+    	final SearchView searchView = (SearchView) searchItem.getActionView();
+    	searchView.setQueryHint(getString(R.string.search_hint));
+    	if (mSearchText != null && mSearchText.length() > 0) {
+    		searchItem.expandActionView();
+    		searchView.setQuery(mSearchText, false);
+    	}
+    	searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+    		@Override
+    		public boolean onQueryTextChange(String newText) {
+    			search(newText);
+    			return true;
+    		}
+
+    		@Override
+    		public boolean onQueryTextSubmit(String query) {
+    			// Results are already shown; just get the keyboard out of the way
+    			search(query);
+    			searchView.clearFocus();
+    			return true;
+    		}
+    	});
     }
 
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+    	if (item.getItemId() == R.id.action_use_store) {
+    		// Every section reloads from the other place, so start over
+    		PropertyRepository.setStoreEnabled(getActivity(), !item.isChecked());
+    		getActivity().recreate();
+    		return true;
+    	}
+    	final int sortKey = getSortKeyForMenuItem(item.getItemId());
+    	if (sortKey == -1) {
+    		return super.onOptionsItemSelected(item);
+    	}
+    	item.setChecked(true);
+    	setSortKey(sortKey);
+    	return true;
+    }
+
+    @Override
+    public void onPrepareOptionsMenu(Menu menu) {
+    	final MenuItem item = menu.findItem(getMenuItemForSortKey(mSortKey));
+    	if (item != null) {
+    		item.setChecked(true);
+    	}
+
+    	// Switching storage is for trying the SQLite store out, so only debug
+    	// builds offer it
+    	final MenuItem storeItem = menu.findItem(R.id.action_use_store);
+    	if (storeItem != null
+    			&& (getActivity().getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+    		storeItem.setVisible(true);
+    		storeItem.setChecked(PropertyRepository.isStoreEnabled(getActivity()));
+    	}
+    }
+
+    @Override
+    public void onResume() {
+    	super.onResume();
+    	scheduleRefresh();
+    }
+
+    @Override
+    public void onPause() {
+    	super.onPause();
+    	mHandler.removeCallbacks(mRefreshRunnable);
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+    	super.onSaveInstanceState(outState);
+    	outState.putParcelable(STATE_KEY_LIST_STATE, getListState());
+    }
+
+    @Override
+    public void onDestroyView() {
+    	super.onDestroyView();
+    	mScrollMonitor.detachOverlay();
+    	if (mPrefetcher != null) {
+    		mPrefetcher.shutdown();
+    		mPrefetcher = null;
+    		final PropertyListAdapter adapter = (PropertyListAdapter) getListAdapter();
+    		adapter.detachPages();
+    		Log.d(TAG, adapter.getLayoutCache().toString());
+    	}
+    }
+
+    @Override
+    public void onDestroy() {
+    	super.onDestroy();
+    	if (mTask != null) {
+    		mTask.cancel(false);
+    		mTask = null;
+    	}
+    	if (mRefreshTask != null) {
+    		mRefreshTask.cancel(false);
+    		mRefreshTask = null;
+    	}
+    	if (mSearchTask != null) {
+    		mSearchTask.cancel(false);
+    		mSearchTask = null;
+    	}
+    }
+
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+    	super.dump(prefix, fd, writer, args);
+    	mScrollMonitor.dump(prefix, writer, args);
+    }
+
+	/**
+	 * Returns what this fragment needs to be rebuilt as it is now, without
+	 * any listings. Call it before the fragment's view is destroyed to keep
+	 * the scroll position.
+	 * 
+	 * @return new PropertyListState
+	 */
+	public PropertyListState getListState() {
+		final Bundle args = getArguments();
+		final PropertyQuery query = args.getParcelable(ARGUMENT_KEY_QUERY);
+		final PropertyListState state = new PropertyListState(args.getString(ARGUMENT_KEY_DATA_SET_ID), query);
+		state.setSortKey(mSortKey);
+		state.setSearchText(mSearchText);
+
+		final PropertyListAdapter adapter = (PropertyListAdapter) getListAdapter();
+		if (mPendingListState != null) {
+			// Never got as far as scrolling there
+			state.setFirstVisible(mPendingListState.getFirstVisiblePosition(),
+					mPendingListState.getFirstVisibleId(), mPendingListState.getFirstVisibleTop());
+		} else if (adapter != null && getView() != null) {
+			final ListView listView = getListView();
+			final int position = listView.getFirstVisiblePosition();
+			final View child = listView.getChildAt(0);
+			if (child != null && position < adapter.getCount()) {
+				state.setFirstVisible(position, adapter.getItemId(position), child.getTop());
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * Shows an updated version of the listings, binding only what changed
+	 * 
+	 * @return true if the update was applied
+	 */
+	private boolean applyUpdate(PropertyDiff diff) {
+		final PropertyListAdapter adapter = (PropertyListAdapter) getListAdapter();
+		if (adapter == null || adapter.getDataSet() != diff.getOldDataSet()) {
+			// The list has changed since the diff started; the next refresh
+			// will pick up the difference
+			return false;
+		}
+		Log.d(TAG, "Updating " + getArguments().getString(ARGUMENT_KEY_DATA_SET_ID) + ": " + diff);
+		// Switch even when nothing changed so the old data set can be freed
+		adapter.update(diff, getListView());
+		if (mPrefetcher != null) {
+			mPrefetcher.setDataSet(diff.getNewDataSet());
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the listings to show for an order and the rows that match the
+	 * search, or every row if searchRows is null
+	 */
+	private static PropertyDataSet arrange(PropertySortIndex sortIndex, int sortKey, int[] searchRows) {
+		if (searchRows == null) {
+			return sortIndex.getSortedDataSet(sortKey);
+		}
+		return sortIndex.getSortedDataSet(sortKey, searchRows);
+	}
+
+	/**
+	 * Returns the position of the listing with an id, checking the expected
+	 * position first; if the listing is gone, returns the closest position
+	 */
+	private static int findPosition(PropertyDataSet dataSet, long id, int expectedPosition) {
+		final int count = dataSet.getCount();
+		if (expectedPosition < count && dataSet.getId(expectedPosition) == id) {
+			return expectedPosition;
+		}
+		for (int row = 0; row < count; row++) {
+			if (dataSet.getId(row) == id) {
+				return row;
+			}
+		}
+		return Math.max(Math.min(expectedPosition, count - 1), 0);
+	}
+
+	private static int getMenuItemForSortKey(int sortKey) {
+		switch (sortKey) {
+		case PropertySortIndex.SORT_PRICE:
+			return R.id.sort_price;
+		case PropertySortIndex.SORT_FOOTAGE:
+			return R.id.sort_footage;
+		case PropertySortIndex.SORT_BEDROOMS:
+			return R.id.sort_bedrooms;
+		case PropertySortIndex.SORT_BATHROOMS:
+			return R.id.sort_bathrooms;
+		default:
+			return R.id.sort_arrival;
+		}
+	}
+
+	/**
+	 * Returns the SORT_* constant for a menu item or -1 if it isn't a sort
+	 * item
+	 */
+	private static int getSortKeyForMenuItem(int itemId) {
+		if (itemId == R.id.sort_arrival) {
+			return PropertySortIndex.SORT_ARRIVAL;
+		} else if (itemId == R.id.sort_price) {
+			return PropertySortIndex.SORT_PRICE;
+		} else if (itemId == R.id.sort_footage) {
+			return PropertySortIndex.SORT_FOOTAGE;
+		} else if (itemId == R.id.sort_bedrooms) {
+			return PropertySortIndex.SORT_BEDROOMS;
+		} else if (itemId == R.id.sort_bathrooms) {
+			return PropertySortIndex.SORT_BATHROOMS;
+		}
+		return -1;
+	}
+
+	private void refresh() {
+		final PropertyListAdapter adapter = (PropertyListAdapter) getListAdapter();
+		if (mRefreshTask != null) {
+			// It schedules the next refresh when it's done
+			return;
+		}
+		if (adapter == null) {
+			// Still loading; check again later
+			scheduleRefresh();
+			return;
+		}
+		final Bundle args = getArguments();
+		final PropertyQuery query = args.getParcelable(ARGUMENT_KEY_QUERY);
+		mRefreshTask = new RefreshTask(PropertyRepository.getInstance(getActivity()),
+				args.getString(ARGUMENT_KEY_DATA_SET_ID), query, adapter.getDataSet(), mSortKey,
+				mSearchText);
+		mRefreshTask.executeOnExecutor(LOAD_EXECUTOR);
+	}
+
+	/**
+	 * Filters the listings by the text in the background; if the search
+	 * index hasn't been built yet, the text is searched once it has
+	 */
+	private void search(String text) {
+		mSearchText = text;
+		if (mSearcher == null) {
+			return;
+		}
+		if (mSearchTask != null) {
+			// It's no use if it hasn't started, and ignored if it has
+			mSearchTask.cancel(false);
+		}
+		mSearchTask = new SearchTask(mSearcher, mSortIndex, mSortKey, text);
+		mSearchTask.executeOnExecutor(SEARCH_EXECUTOR);
+	}
+
+	/**
+	 * Scrolls to where the list was when its state was saved, once
+	 */
+	private void restoreFirstVisible() {
+		final PropertyListState state = mPendingListState;
+		if (state == null) {
+			return;
+		}
+		mPendingListState = null;
+		final PropertyListAdapter adapter = (PropertyListAdapter) getListAdapter();
+		final int position = findPosition(adapter.getDataSet(), state.getFirstVisibleId(),
+				state.getFirstVisiblePosition());
+		getListView().setSelectionFromTop(position, state.getFirstVisibleTop());
+	}
+
+	private void scheduleRefresh() {
+		mHandler.removeCallbacks(mRefreshRunnable);
+		mHandler.postDelayed(mRefreshRunnable, REFRESH_INTERVAL_MS);
+	}
+
+	private void setDataSet(PropertyDataSet dataSet) {
+		final PropertyListAdapter adapter = new PropertyListAdapter(getActivity(), dataSet, mScrollMonitor);
+		setListAdapter(adapter);
+		startPrefetching(adapter);
+		restoreFirstVisible();
+		Log.d(TAG, "Showed " + getArguments().getString(ARGUMENT_KEY_DATA_SET_ID) + " "
+				+ (SystemClock.elapsedRealtime() - mLoadStartTime) + "ms after it was requested");
+	}
+
+	/**
+	 * Shows the listings in a different order. If the permutations haven't
+	 * been built yet, the order is applied once they have.
+	 */
+	private void setSortKey(int sortKey) {
+		if (sortKey == mSortKey) {
+			return;
+		}
+		mSortKey = sortKey;
+		final PropertyListAdapter adapter = (PropertyListAdapter) getListAdapter();
+		if (mSortIndex == null || adapter == null) {
+			return;
+		}
+		showDataSet(arrange(mSortIndex, sortKey, mSearchRows));
+		getListView().setSelection(0);
+	}
+
+	/**
+	 * Shows the listings once their sort permutations and search index are
+	 * ready
+	 * 
+	 * @param searchedText String the search rows were found with
+	 */
+	private void setIndexes(PropertySortIndex sortIndex, PropertySearchIndex.Searcher searcher,
+			String searchedText, int[] searchRows) {
+		mSortIndex = sortIndex;
+		mSearcher = searcher;
+		final boolean searchCurrent = searchedText == null ? mSearchText == null : searchedText.equals(mSearchText);
+		mSearchRows = searchCurrent ? searchRows : null;
+		final PropertyDataSet dataSet = arrange(sortIndex, mSortKey, mSearchRows);
+		final PropertyListAdapter adapter = (PropertyListAdapter) getListAdapter();
+		if (adapter == null) {
+			setDataSet(dataSet);
+		} else if (adapter.getDataSet() == sortIndex.getDataSet() && mSortKey == PropertySortIndex.SORT_ARRIVAL
+				&& mSearchRows == null && adapter.getCount() == dataSet.getCount()) {
+			// Shown early in arrival order; these are the same rows, but only
+			// as many as the index covers
+			adapter.setEquivalentDataSet(dataSet);
+			if (mPrefetcher != null) {
+				mPrefetcher.setDataSet(dataSet);
+			}
+		} else if (adapter.getDataSet() != dataSet) {
+			// Shown early in arrival order, but the user has picked another
+			// order or started searching since
+			showDataSet(dataSet);
+		}
+		restoreFirstVisible();
+		if (!searchCurrent) {
+			search(mSearchText);
+		}
+	}
+
+	/**
+	 * Switches the existing adapter to different listings
+	 */
+	private void showDataSet(PropertyDataSet dataSet) {
+		final PropertyListAdapter adapter = (PropertyListAdapter) getListAdapter();
+		adapter.setDataSet(dataSet);
+		if (mPrefetcher != null) {
+			mPrefetcher.setDataSet(dataSet);
+		}
+	}
+
+	private void startPrefetching(PropertyListAdapter adapter) {
+		adapter.attachPages();
+		mPrefetcher = new RowLayoutPrefetcher(adapter.getDataSet(), adapter.getLayoutCache());
+		mScrollMonitor.setOnScrollListener(mPrefetcher);
+		getListView().setOnScrollListener(mScrollMonitor);
+	}
+
+	/**
+	 * Gets the listings that match the query from the repository, which may
+	 * have to load them, builds their sort permutations and search index and
+	 * runs the restored search, if there is one
+	 */
+	private class LoadListingsTask extends AsyncTask<Void, Void, PropertySortIndex> {
+		private final PropertyRepository mRepository;
+		private final String mDataSetId;
+		private final PropertyQuery mQuery;
+		private final String mSearchText;
+
+		/**
+		 * Written in the background and read in onPostExecute
+		 */
+		private PropertySearchIndex.Searcher mSearcher;
+		private int[] mSearchRows;
+
+		/*package*/ LoadListingsTask(PropertyRepository repository, String dataSetId, PropertyQuery query,
+				String searchText) {
+			mRepository = repository;
+			mDataSetId = dataSetId;
+			mQuery = query;
+			mSearchText = searchText;
+		}
+
+		@Override
+		protected PropertySortIndex doInBackground(Void... params) {
+			try {
+				final PropertyDataSet dataSet = mRepository.query(mDataSetId, mQuery);
+				final PropertySortIndex sortIndex = PropertySortIndex.build(dataSet);
+				mSearcher = new PropertySearchIndex.Searcher(PropertySearchIndex.build(dataSet));
+				mSearchRows = mSearcher.search(mSearchText);
+				return sortIndex;
+			} catch (IOException e) {
+				Log.e(TAG, "Failed to load " + mDataSetId, e);
+				return null;
+			} catch (InterruptedException e) {
+				return null;
+			}
+		}
+
+		@Override
+		protected void onPostExecute(PropertySortIndex result) {
+			mTask = null;
+			if (result != null && isAdded()) {
+				setIndexes(result, mSearcher, mSearchText, mSearchRows);
+			}
+		}
+	}
+
+	/**
+	 * Fetches the listings again and compares the rows that match the query
+	 * with the ones being shown
+	 */
+	private class RefreshTask extends AsyncTask<Void, Void, PropertyDiff> {
+		private final PropertyRepository mRepository;
+		private final String mDataSetId;
+		private final PropertyQuery mQuery;
+		private final PropertyDataSet mShownDataSet;
+		private final int mSortKey;
+		private final String mSearchText;
+
+		/**
+		 * Indexes for the refreshed listings; written in the background and
+		 * read in onPostExecute
+		 */
+		private PropertySortIndex mNewSortIndex;
+		private PropertySearchIndex.Searcher mNewSearcher;
+		private int[] mNewSearchRows;
+
+		/*package*/ RefreshTask(PropertyRepository repository, String dataSetId, PropertyQuery query,
+				PropertyDataSet shownDataSet, int sortKey, String searchText) {
+			mRepository = repository;
+			mDataSetId = dataSetId;
+			mQuery = query;
+			mShownDataSet = shownDataSet;
+			mSortKey = sortKey;
+			mSearchText = searchText;
+		}
+
+		@Override
+		protected PropertyDiff doInBackground(Void... params) {
+			try {
+				mRepository.refresh(mDataSetId);
+				final PropertyDataSet dataSet = mRepository.query(mDataSetId, mQuery);
+				mNewSortIndex = PropertySortIndex.build(dataSet);
+				mNewSearcher = new PropertySearchIndex.Searcher(PropertySearchIndex.build(dataSet));
+				mNewSearchRows = mNewSearcher.search(mSearchText);
+				return PropertyDiff.compute(mShownDataSet, arrange(mNewSortIndex, mSortKey, mNewSearchRows));
+			} catch (IOException e) {
+				// Keep showing what we have; the next refresh tries again
+				Log.w(TAG, "Failed to refresh " + mDataSetId, e);
+				return null;
+			} catch (InterruptedException e) {
+				return null;
+			}
+		}
+
+		@Override
+		protected void onPostExecute(PropertyDiff result) {
+			mRefreshTask = null;
+			if (!isAdded()) {
+				return;
+			}
+			if (result != null && applyUpdate(result)) {
+				mSortIndex = mNewSortIndex;
+				mSearcher = mNewSearcher;
+				mSearchRows = mNewSearchRows;
+			}
+			if (isResumed()) {
+				scheduleRefresh();
+			}
+		}
+	}
+
+	/**
+	 * Finds the listings that match what the user typed and puts them in the
+	 * current order
+	 */
+	private class SearchTask extends AsyncTask<Void, Void, PropertyDataSet> {
+		private final PropertySearchIndex.Searcher mSearcher;
+		private final PropertySortIndex mSortIndex;
+		private final int mSortKey;
+		private final String mText;
+		private final long mStartTime = SystemClock.uptimeMillis();
+
+		/**
+		 * Written in the background and read in onPostExecute
+		 */
+		private int[] mRows;
+
+		/*package*/ SearchTask(PropertySearchIndex.Searcher searcher, PropertySortIndex sortIndex,
+				int sortKey, String text) {
+			mSearcher = searcher;
+			mSortIndex = sortIndex;
+			mSortKey = sortKey;
+			mText = text;
+		}
+
+		@Override
+		protected PropertyDataSet doInBackground(Void... params) {
+			mRows = mSearcher.search(mText);
+			return arrange(mSortIndex, mSortKey, mRows);
+		}
+
+		@Override
+		protected void onPostExecute(PropertyDataSet result) {
+			if (mSearchTask != this) {
+				return;
+			}
+			mSearchTask = null;
+			if (!isAdded()) {
+				return;
+			}
+			if (PropertyListFragment.this.mSearcher != mSearcher
+					|| PropertyListFragment.this.mSortIndex != mSortIndex
+					|| PropertyListFragment.this.mSortKey != mSortKey) {
+				// The listings were refreshed or reordered in the meantime
+				search(mSearchText);
+				return;
+			}
+			mSearchRows = mRows;
+			showDataSet(result);
+			getListView().setSelection(0);
+
+			final long latency = SystemClock.uptimeMillis() - mStartTime;
+			final String message = "Search \"" + mText + "\" showed " + result.getCount() + " listings in "
+					+ latency + "ms" + (mSearcher.isLastSearchIncremental() ? " (incremental)" : "");
+			if (latency > SEARCH_LATENCY_TARGET_MS) {
+				Log.w(TAG, message);
+			} else {
+				Log.d(TAG, message);
+			}
+		}
+	}
+
 	/**
-	 * ArrayAdapter that displays Property objects.
+	 * Adapter that displays the rows of a {@link PropertyDataSet} without
+	 * creating a Property object for each row.
+	 * 
+	 * Each row is a single {@link PropertyRowView}. Once every recycled row
+	 * has been bound, binding allocates nothing: bed and bath labels come from
+	 * tables built up front, prices come from {@link PriceFormatter}'s cache,
+	 * and the other text is copied into buffers owned by the row.
+	 * 
+	 * Item ids are the listings' stable ids. {@link #update(PropertyDiff, ListView)}
+	 * switches to a refreshed data set without binding unchanged rows again.
+	 * Each update counts as a new generation; a row that was bound in the
+	 * previous generation and is asked to show the same unchanged listing
+	 * keeps its values instead of being bound again.
+	 * 
+	 * Rows of a {@link PagedDataSet} that aren't in memory yet are bound as
+	 * placeholders; while attached with {@link #attachPages()}, the adapter
+	 * is told when their page has been read and binds them again.
 	 * 
 	 * @author Ian G. Clifton
 	 */
-    private static class PropertyListAdapter extends ArrayAdapter<Property> {
+    private static class PropertyListAdapter extends BaseAdapter implements PagedDataSet.OnPageLoadedListener {
     	
     	private final LayoutInflater mInflater;
+    	private PropertyDataSet mDataSet;
+    	private final RowLayoutCache mLayoutCache = new RowLayoutCache(ROW_LAYOUT_CACHE_SIZE);
     	
-    	private final String mBath;
-    	private final String mBed;
-    	private final String mSqFt;
+    	private final PropertyRowBinder mBinder;
+
+    	private final ScrollPerformanceMonitor mScrollMonitor;
+
+    	/**
+    	 * Counts the data sets shown, so a row can tell if it was bound from
+    	 * the previous one
+    	 */
+    	private int mGeneration;
+
+    	/**
+    	 * Rows of the current data set whose values differ from the previous
+    	 * one or null if every row has to be bound again
+    	 */
+    	private BitSet mChangedRows;
+
+    	/**
+    	 * The paged data set being listened to, if the rows come from one
+    	 */
+    	private PagedDataSet mPagedDataSet;
+    	private boolean mPagesAttached;
 
-		public PropertyListAdapter(Context context, List<Property> objects) {
-	        super(context, -1, objects);
+		public PropertyListAdapter(Context context, PropertyDataSet dataSet, ScrollPerformanceMonitor scrollMonitor) {
+	        mDataSet = dataSet;
+	        mScrollMonitor = scrollMonitor;
 	        mInflater = LayoutInflater.from(context);
-	        final Resources res = context.getResources();
-	        mBath = " " + res.getString(R.string.bath);
-	        mBed = " " + res.getString(R.string.bed);
-	        mSqFt = " " + res.getString(R.string.sq_ft);
+	        mBinder = new PropertyRowBinder(context.getResources());
+        }
+
+        @Override
+        public int getCount() {
+        	return mDataSet.getCount();
+        }
+
+        public PropertyDataSet getDataSet() {
+        	return mDataSet;
+        }
+
+        /**
+         * Shows a different data set, such as the same listings in another
+         * order, and binds every row again
+         * 
+         * @param dataSet PropertyDataSet to show
+         */
+        public void setDataSet(PropertyDataSet dataSet) {
+        	mDataSet = dataSet;
+        	mGeneration++;
+        	mChangedRows = null;
+        	listenForPages();
+        	notifyDataSetChanged();
+        }
+
+        /**
+         * Shows a data set with the same listings in the same positions, such
+         * as a view of the current one, without binding any row again
+         * 
+         * @param dataSet PropertyDataSet to show
+         */
+        public void setEquivalentDataSet(PropertyDataSet dataSet) {
+        	mDataSet = dataSet;
+        	mGeneration++;
+        	mChangedRows = new BitSet();
+        	listenForPages();
+        	notifyDataSetChanged();
+        }
+
+        /**
+         * Starts binding placeholder rows again once their page has been
+         * read; call this when the adapter is shown
+         */
+        public void attachPages() {
+        	mPagesAttached = true;
+        	listenForPages();
+        }
+
+        /**
+         * Stops listening for pages, so the data set doesn't keep the adapter
+         * alive; call this when the list goes away
+         */
+        public void detachPages() {
+        	mPagesAttached = false;
+        	listenForPages();
+        }
+
+        @Override
+        public void onPageLoaded(PagedDataSet dataSet) {
+        	// Rows that already show their listing aren't bound again
+        	notifyDataSetChanged();
+        }
+
+        @Override
+        public Property getItem(int position) {
+        	return mDataSet.getProperty(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+        	return mDataSet.getId(position);
+        }
+
+        public RowLayoutCache getLayoutCache() {
+        	return mLayoutCache;
         }
 
         @Override
         public View getView(int position, View convertView, ViewGroup parent) {
-        	final Property property = getItem(position);
+        	final long bindStart = System.nanoTime();
+        	final PropertyDataSet dataSet = mDataSet;
         	
+        	final PropertyRowView row;
+        	final long id = dataSet.getId(position);
         	if (convertView == null) {
-        		convertView = mInflater.inflate(R.layout.property_listitem, parent, false);
+        		row = (PropertyRowView) mInflater.inflate(R.layout.property_listitem, parent, false);
+        	} else {
+        		row = (PropertyRowView) convertView;
+        		if (isRowCurrent(row, id, position)) {
+        			row.setBindGeneration(mGeneration);
+        			mScrollMonitor.recordBind(bindStart);
+        			return row;
+        		}
         	}
         	
-        	// This will be made more efficient in a future chapter
-        	TextView tv = (TextView) convertView.findViewById(R.id.city);
-        	tv.setText(property.getCity() + ", " + property.getState());
-        	tv = (TextView) convertView.findViewById(R.id.price);
-        	tv.setText(property.getPrice());
-        	tv = (TextView) convertView.findViewById(R.id.street);
-        	tv.setText(property.getStreetAddress());
-        	tv = (TextView) convertView.findViewById(R.id.beds);
-        	tv.setText(property.getBedroomCount() + mBed);
-        	tv = (TextView) convertView.findViewById(R.id.baths);
-        	tv.setText(property.getBathroomCount() + mBath);
-        	tv = (TextView) convertView.findViewById(R.id.footage);
-        	tv.setText(property.getFootage() + mSqFt);
+        	row.setBindGeneration(mGeneration);
+        	row.setLayoutCache(mLayoutCache, id);
+        	mBinder.bind(row, dataSet, position);
         	
-        	return convertView;
+        	mScrollMonitor.recordBind(bindStart);
+        	return row;
+        }
+
+        @Override
+        public boolean hasStableIds() {
+        	return true;
+        }
+
+        /**
+         * Switches to an updated version of the data set. If every row still
+         * holds the same listing, only the visible rows whose values changed
+         * are bound again, in place, and the list is not laid out from
+         * scratch. Otherwise the list is reloaded and scrolled so the first
+         * visible listing, or the closest one that is left, keeps its offset
+         * from the top; rows the ListView passes back to getView for a
+         * listing they already show unchanged are not bound again.
+         * 
+         * @param diff PropertyDiff from the current data set to the new one
+         * @param listView ListView showing this adapter
+         */
+        public void update(PropertyDiff diff, ListView listView) {
+        	final int first = listView.getFirstVisiblePosition();
+        	final int childCount = listView.getChildCount();
+        	mDataSet = diff.getNewDataSet();
+        	mGeneration++;
+        	mChangedRows = diff.getChangedRows();
+        	listenForPages();
+        	if (diff.isStructureChanged()) {
+        		final View firstChild = listView.getChildAt(0);
+        		notifyDataSetChanged();
+        		if (firstChild != null) {
+        			final int position = diff.findNewRow(first);
+        			if (position != -1) {
+        				listView.setSelectionFromTop(position, firstChild.getTop());
+        			}
+        		}
+        		return;
+        	}
+        	for (int i = 0; i < childCount; i++) {
+        		final int position = first + i;
+        		final PropertyRowView row = (PropertyRowView) listView.getChildAt(i);
+        		if (diff.isRowChanged(position)) {
+        			getView(position, row, listView);
+        		} else {
+        			row.setBindGeneration(mGeneration);
+        		}
+        	}
+        }
+
+        /**
+         * Returns true if a row already shows the listing at a position, either
+         * bound from the current data set or bound from the previous one with
+         * the same values
+         */
+        private boolean isRowCurrent(PropertyRowView row, long id, int position) {
+        	if (row.getRowId() != id) {
+        		return false;
+        	}
+        	final int generation = row.getBindGeneration();
+        	return generation == mGeneration || (generation == mGeneration - 1
+        			&& mChangedRows != null && !mChangedRows.get(position));
+        }
+
+        /**
+         * Listens to the paged data set the rows come from, if any, while
+         * attached
+         */
+        private void listenForPages() {
+        	final PagedDataSet pagedDataSet = mPagesAttached ? PagedDataSet.find(mDataSet) : null;
+        	if (pagedDataSet == mPagedDataSet) {
+        		return;
+        	}
+        	if (mPagedDataSet != null) {
+        		mPagedDataSet.removeOnPageLoadedListener(this);
+        	}
+        	if (pagedDataSet != null) {
+        		pagedDataSet.addOnPageLoadedListener(this);
+        	}
+        	mPagedDataSet = pagedDataSet;
         }
     }
 }
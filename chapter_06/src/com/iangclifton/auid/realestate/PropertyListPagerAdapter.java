@@ -0,0 +1,206 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.ArrayList;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentManager;
+import android.support.v4.app.FragmentTransaction;
+import android.support.v4.view.PagerAdapter;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * PagerAdapter that shows a {@link PropertyListFragment} on each page and
+ * keeps only the pages near the current one alive.
+ *
+ * Like FragmentStatePagerAdapter, it removes a page's fragment when the
+ * ViewPager destroys the page, which happens once the page is more than the
+ * ViewPager's offscreen page limit away from the current one. Instead of the
+ * fragment's whole saved state, it keeps just a {@link PropertyListState}:
+ * the data set id, sort order, search text and scroll position. When the
+ * user comes back, a new fragment is created from that state and gets its
+ * listings from the {@link PropertyRepository}, so memory use depends on the
+ * offscreen page limit rather than the number of pages.
+ *
+ * @author Ian G. Clifton
+ */
+public abstract class PropertyListPagerAdapter extends PagerAdapter {
+	private static final String TAG = "PropertyListPagerAdapter";
+
+	private static final String STATE_KEY_LIST_STATES = "listStates";
+	private static final String STATE_KEY_FRAGMENT_PREFIX = "f";
+
+	private final FragmentManager mFragmentManager;
+	private FragmentTransaction mCurTransaction;
+
+	/**
+	 * Live fragments by position; null for destroyed pages
+	 */
+	private final ArrayList<PropertyListFragment> mFragments = new ArrayList<PropertyListFragment>();
+
+	/**
+	 * Saved states by position; null for pages that are live or were never
+	 * shown
+	 */
+	private final ArrayList<PropertyListState> mListStates = new ArrayList<PropertyListState>();
+	private Fragment mCurrentPrimaryItem;
+
+	public PropertyListPagerAdapter(FragmentManager fm) {
+		mFragmentManager = fm;
+	}
+
+	/**
+	 * Returns the state a page starts in the first time it is shown
+	 *
+	 * @param position int page position
+	 * @return new PropertyListState
+	 */
+	public abstract PropertyListState getInitialState(int position);
+
+	@Override
+	public void startUpdate(ViewGroup container) {
+	}
+
+	@Override
+	public Object instantiateItem(ViewGroup container, int position) {
+		if (mFragments.size() > position) {
+			final PropertyListFragment f = mFragments.get(position);
+			if (f != null) {
+				return f;
+			}
+		}
+
+		if (mCurTransaction == null) {
+			mCurTransaction = mFragmentManager.beginTransaction();
+		}
+		PropertyListState state = mListStates.size() > position ? mListStates.get(position) : null;
+		if (state == null) {
+			state = getInitialState(position);
+		} else {
+			mListStates.set(position, null);
+		}
+		final PropertyListFragment fragment = PropertyListFragment.newInstance(state);
+		fragment.setMenuVisibility(false);
+		fragment.setUserVisibleHint(false);
+		while (mFragments.size() <= position) {
+			mFragments.add(null);
+		}
+		mFragments.set(position, fragment);
+		mCurTransaction.add(container.getId(), fragment);
+		return fragment;
+	}
+
+	@Override
+	public void destroyItem(ViewGroup container, int position, Object object) {
+		final PropertyListFragment fragment = (PropertyListFragment) object;
+		if (mCurTransaction == null) {
+			mCurTransaction = mFragmentManager.beginTransaction();
+		}
+		while (mListStates.size() <= position) {
+			mListStates.add(null);
+		}
+		// The view still exists, so this includes the scroll position
+		mListStates.set(position, fragment.getListState());
+		mFragments.set(position, null);
+		mCurTransaction.remove(fragment);
+	}
+
+	@Override
+	public void setPrimaryItem(ViewGroup container, int position, Object object) {
+		final Fragment fragment = (Fragment) object;
+		if (fragment != mCurrentPrimaryItem) {
+			if (mCurrentPrimaryItem != null) {
+				mCurrentPrimaryItem.setMenuVisibility(false);
+				mCurrentPrimaryItem.setUserVisibleHint(false);
+			}
+			if (fragment != null) {
+				fragment.setMenuVisibility(true);
+				fragment.setUserVisibleHint(true);
+			}
+			mCurrentPrimaryItem = fragment;
+		}
+	}
+
+	@Override
+	public void finishUpdate(ViewGroup container) {
+		if (mCurTransaction != null) {
+			mCurTransaction.commitAllowingStateLoss();
+			mCurTransaction = null;
+			mFragmentManager.executePendingTransactions();
+		}
+	}
+
+	@Override
+	public boolean isViewFromObject(View view, Object object) {
+		return ((Fragment) object).getView() == view;
+	}
+
+	@Override
+	public Parcelable saveState() {
+		final Bundle state = new Bundle();
+		if (!mListStates.isEmpty()) {
+			final PropertyListState[] listStates = new PropertyListState[mListStates.size()];
+			mListStates.toArray(listStates);
+			state.putParcelableArray(STATE_KEY_LIST_STATES, listStates);
+		}
+		// Live fragments save their own state with the FragmentManager
+		for (int i = 0; i < mFragments.size(); i++) {
+			final Fragment f = mFragments.get(i);
+			if (f != null && f.isAdded()) {
+				mFragmentManager.putFragment(state, STATE_KEY_FRAGMENT_PREFIX + i, f);
+			}
+		}
+		return state;
+	}
+
+	@Override
+	public void restoreState(Parcelable state, ClassLoader loader) {
+		if (state == null) {
+			return;
+		}
+		final Bundle bundle = (Bundle) state;
+		bundle.setClassLoader(loader);
+		mListStates.clear();
+		mFragments.clear();
+		final Parcelable[] listStates = bundle.getParcelableArray(STATE_KEY_LIST_STATES);
+		if (listStates != null) {
+			for (Parcelable listState : listStates) {
+				mListStates.add((PropertyListState) listState);
+			}
+		}
+		for (String key : bundle.keySet()) {
+			if (!key.startsWith(STATE_KEY_FRAGMENT_PREFIX)) {
+				continue;
+			}
+			final int position = Integer.parseInt(key.substring(STATE_KEY_FRAGMENT_PREFIX.length()));
+			final Fragment f = mFragmentManager.getFragment(bundle, key);
+			if (f instanceof PropertyListFragment) {
+				while (mFragments.size() <= position) {
+					mFragments.add(null);
+				}
+				f.setMenuVisibility(false);
+				mFragments.set(position, (PropertyListFragment) f);
+			} else {
+				Log.w(TAG, "Bad fragment at key " + key);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of pages whose fragments are alive
+	 *
+	 * @return int live page count
+	 */
+	public int getLiveFragmentCount() {
+		int count = 0;
+		for (int i = 0; i < mFragments.size(); i++) {
+			if (mFragments.get(i) != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,144 @@
+package com.iangclifton.auid.realestate;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Everything needed to rebuild a {@link PropertyListFragment} where the user
+ * left it: which listings, in which order, filtered by what search and
+ * scrolled how far.
+ *
+ * It holds no listings and no views, so a pager can keep one for every page
+ * it has destroyed for a few dozen bytes each. The scroll position is kept by
+ * the id of the first visible listing as well as its position, so it lands on
+ * the same listing even if the listings were refreshed in the meantime.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyListState implements Parcelable {
+	private final String mDataSetId;
+	private final PropertyQuery mQuery;
+	private int mSortKey = PropertySortIndex.SORT_ARRIVAL;
+	private String mSearchText;
+	private long mFirstVisibleId;
+	private int mFirstVisiblePosition;
+	private int mFirstVisibleTop;
+
+	/**
+	 * Creates the state of a list that hasn't been shown yet
+	 *
+	 * @param dataSetId String {@link PropertyRepository} data set id
+	 * @param query PropertyQuery to filter the listings by or null for all
+	 */
+	public PropertyListState(String dataSetId, PropertyQuery query) {
+		if (dataSetId == null) {
+			throw new IllegalArgumentException("The data set id cannot be null");
+		}
+		mDataSetId = dataSetId;
+		mQuery = query;
+	}
+
+	@Override
+	public int describeContents() {
+		return 0;
+	}
+
+	public String getDataSetId() {
+		return mDataSetId;
+	}
+
+	/**
+	 * Returns the stable id of the first visible listing or 0 if the list
+	 * hasn't been shown
+	 */
+	public long getFirstVisibleId() {
+		return mFirstVisibleId;
+	}
+
+	public int getFirstVisiblePosition() {
+		return mFirstVisiblePosition;
+	}
+
+	/**
+	 * Returns the offset of the first visible row's top edge from the top of
+	 * the list in pixels
+	 */
+	public int getFirstVisibleTop() {
+		return mFirstVisibleTop;
+	}
+
+	public PropertyQuery getQuery() {
+		return mQuery;
+	}
+
+	public String getSearchText() {
+		return mSearchText;
+	}
+
+	public int getSortKey() {
+		return mSortKey;
+	}
+
+	/**
+	 * Sets how far the list was scrolled
+	 *
+	 * @param position int position of the first visible row
+	 * @param id long stable id of the listing in that row
+	 * @param top int offset of the row's top edge in pixels
+	 */
+	public void setFirstVisible(int position, long id, int top) {
+		mFirstVisiblePosition = position;
+		mFirstVisibleId = id;
+		mFirstVisibleTop = top;
+	}
+
+	public void setSearchText(String searchText) {
+		mSearchText = searchText;
+	}
+
+	public void setSortKey(int sortKey) {
+		if (!PropertySortIndex.isValidSortKey(sortKey)) {
+			throw new IllegalArgumentException("Unknown sort key: " + sortKey);
+		}
+		mSortKey = sortKey;
+	}
+
+	@Override
+	public String toString() {
+		return "PropertyListState[dataSetId=" + mDataSetId + ", sortKey=" + mSortKey
+				+ ", searchText=" + mSearchText + ", firstVisiblePosition=" + mFirstVisiblePosition
+				+ ", firstVisibleId=" + mFirstVisibleId + ", firstVisibleTop=" + mFirstVisibleTop + "]";
+	}
+
+	@Override
+	public void writeToParcel(Parcel dest, int flags) {
+		dest.writeString(mDataSetId);
+		dest.writeParcelable(mQuery, flags);
+		dest.writeInt(mSortKey);
+		dest.writeString(mSearchText);
+		dest.writeLong(mFirstVisibleId);
+		dest.writeInt(mFirstVisiblePosition);
+		dest.writeInt(mFirstVisibleTop);
+	}
+
+	public static final Parcelable.Creator<PropertyListState> CREATOR = new Parcelable.Creator<PropertyListState>() {
+
+		@Override
+		public PropertyListState createFromParcel(Parcel source) {
+			final String dataSetId = source.readString();
+			final PropertyQuery query = source.readParcelable(PropertyQuery.class.getClassLoader());
+			final PropertyListState state = new PropertyListState(dataSetId, query);
+			state.mSortKey = source.readInt();
+			state.mSearchText = source.readString();
+			state.mFirstVisibleId = source.readLong();
+			state.mFirstVisiblePosition = source.readInt();
+			state.mFirstVisibleTop = source.readInt();
+			return state;
+		}
+
+		@Override
+		public PropertyListState[] newArray(int size) {
+			return new PropertyListState[size];
+		}
+	};
+}
@@ -0,0 +1,236 @@
+package com.iangclifton.auid.realestate;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Describes which listings to show, such as "3+ bedrooms in Seattle under
+ * $500,000".
+ *
+ * Every range is inclusive and starts out unbounded; city and state start out
+ * as null, which matches any value. A new PropertyQuery matches everything.
+ * The setters return the PropertyQuery so calls can be chained.
+ *
+ * Use a {@link PropertyIndex} to run a query against a {@link PropertyTable}
+ * or {@link #matches(Property)} to test a single Property. A query is small
+ * and Parcelable, so it can be passed in fragment arguments in place of the
+ * listings it selects.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyQuery implements Parcelable {
+	private float mMinBathrooms = Float.NEGATIVE_INFINITY;
+	private float mMaxBathrooms = Float.POSITIVE_INFINITY;
+	private int mMinBedrooms = Integer.MIN_VALUE;
+	private int mMaxBedrooms = Integer.MAX_VALUE;
+	private int mMinFootage = Integer.MIN_VALUE;
+	private int mMaxFootage = Integer.MAX_VALUE;
+	private long mMinPriceCents = Long.MIN_VALUE;
+	private long mMaxPriceCents = Long.MAX_VALUE;
+	private String mCity;
+	private String mState;
+
+	@Override
+	public int describeContents() {
+		return 0;
+	}
+
+	/**
+	 * Returns true if a row satisfies every part of this query
+	 *
+	 * @param dataSet PropertyDataSet containing the row
+	 * @param row int row to test
+	 * @return true if the row matches
+	 */
+	public boolean matches(PropertyDataSet dataSet, int row) {
+		final float bathrooms = dataSet.getBathroomCount(row);
+		final int bedrooms = dataSet.getBedroomCount(row);
+		final int footage = dataSet.getFootage(row);
+		final long priceCents = dataSet.getPriceCents(row);
+		return bathrooms >= mMinBathrooms && bathrooms <= mMaxBathrooms
+				&& bedrooms >= mMinBedrooms && bedrooms <= mMaxBedrooms
+				&& footage >= mMinFootage && footage <= mMaxFootage
+				&& priceCents >= mMinPriceCents && priceCents <= mMaxPriceCents
+				&& (mCity == null || mCity.equals(dataSet.getCity(row)))
+				&& (mState == null || mState.equals(dataSet.getState(row)));
+	}
+
+	/**
+	 * Returns true if the Property satisfies every part of this query
+	 *
+	 * @param property Property to test
+	 * @return true if the Property matches
+	 */
+	public boolean matches(Property property) {
+		final float bathrooms = property.getBathroomCount();
+		final int bedrooms = property.getBedroomCount();
+		final int footage = property.getFootage();
+		final long priceCents = property.getPriceCents();
+		return bathrooms >= mMinBathrooms && bathrooms <= mMaxBathrooms
+				&& bedrooms >= mMinBedrooms && bedrooms <= mMaxBedrooms
+				&& footage >= mMinFootage && footage <= mMaxFootage
+				&& priceCents >= mMinPriceCents && priceCents <= mMaxPriceCents
+				&& (mCity == null || mCity.equals(property.getCity()))
+				&& (mState == null || mState.equals(property.getState()));
+	}
+
+	/**
+	 * Limits the number of bathrooms
+	 *
+	 * @param min float minimum, inclusive
+	 * @param max float maximum, inclusive
+	 * @return this PropertyQuery
+	 */
+	public PropertyQuery setBathrooms(float min, float max) {
+		mMinBathrooms = min;
+		mMaxBathrooms = max;
+		return this;
+	}
+
+	/**
+	 * Limits the number of bedrooms
+	 *
+	 * @param min int minimum, inclusive
+	 * @param max int maximum, inclusive
+	 * @return this PropertyQuery
+	 */
+	public PropertyQuery setBedrooms(int min, int max) {
+		mMinBedrooms = min;
+		mMaxBedrooms = max;
+		return this;
+	}
+
+	/**
+	 * Limits the city
+	 *
+	 * @param city String city like "Seattle" or null for any city
+	 * @return this PropertyQuery
+	 */
+	public PropertyQuery setCity(String city) {
+		mCity = city;
+		return this;
+	}
+
+	/**
+	 * Limits the square footage
+	 *
+	 * @param min int minimum, inclusive
+	 * @param max int maximum, inclusive
+	 * @return this PropertyQuery
+	 */
+	public PropertyQuery setFootage(int min, int max) {
+		mMinFootage = min;
+		mMaxFootage = max;
+		return this;
+	}
+
+	/**
+	 * Limits the price
+	 *
+	 * @param minCents long minimum in cents, inclusive
+	 * @param maxCents long maximum in cents, inclusive
+	 * @return this PropertyQuery
+	 */
+	public PropertyQuery setPriceCents(long minCents, long maxCents) {
+		mMinPriceCents = minCents;
+		mMaxPriceCents = maxCents;
+		return this;
+	}
+
+	/**
+	 * Limits the state
+	 *
+	 * @param state String abbreviated state like "WA" or null for any state
+	 * @return this PropertyQuery
+	 */
+	public PropertyQuery setState(String state) {
+		mState = state;
+		return this;
+	}
+
+	@Override
+	public void writeToParcel(Parcel dest, int flags) {
+		dest.writeFloat(mMinBathrooms);
+		dest.writeFloat(mMaxBathrooms);
+		dest.writeInt(mMinBedrooms);
+		dest.writeInt(mMaxBedrooms);
+		dest.writeInt(mMinFootage);
+		dest.writeInt(mMaxFootage);
+		dest.writeLong(mMinPriceCents);
+		dest.writeLong(mMaxPriceCents);
+		dest.writeString(mCity);
+		dest.writeString(mState);
+	}
+
+	/**
+	 * Returns true if this query matches every row, so filtering can be
+	 * skipped
+	 */
+	/*package*/ boolean isUnbounded() {
+		return mMinBathrooms == Float.NEGATIVE_INFINITY && mMaxBathrooms == Float.POSITIVE_INFINITY
+				&& mMinBedrooms == Integer.MIN_VALUE && mMaxBedrooms == Integer.MAX_VALUE
+				&& mMinFootage == Integer.MIN_VALUE && mMaxFootage == Integer.MAX_VALUE
+				&& mMinPriceCents == Long.MIN_VALUE && mMaxPriceCents == Long.MAX_VALUE
+				&& mCity == null && mState == null;
+	}
+
+	/*package*/ String getCity() {
+		return mCity;
+	}
+
+	/*package*/ float getMaxBathrooms() {
+		return mMaxBathrooms;
+	}
+
+	/*package*/ int getMaxBedrooms() {
+		return mMaxBedrooms;
+	}
+
+	/*package*/ int getMaxFootage() {
+		return mMaxFootage;
+	}
+
+	/*package*/ long getMaxPriceCents() {
+		return mMaxPriceCents;
+	}
+
+	/*package*/ float getMinBathrooms() {
+		return mMinBathrooms;
+	}
+
+	/*package*/ int getMinBedrooms() {
+		return mMinBedrooms;
+	}
+
+	/*package*/ int getMinFootage() {
+		return mMinFootage;
+	}
+
+	/*package*/ long getMinPriceCents() {
+		return mMinPriceCents;
+	}
+
+	/*package*/ String getState() {
+		return mState;
+	}
+
+	public static final Parcelable.Creator<PropertyQuery> CREATOR = new Parcelable.Creator<PropertyQuery>() {
+
+		@Override
+		public PropertyQuery createFromParcel(Parcel source) {
+			final PropertyQuery query = new PropertyQuery();
+			query.setBathrooms(source.readFloat(), source.readFloat());
+			query.setBedrooms(source.readInt(), source.readInt());
+			query.setFootage(source.readInt(), source.readInt());
+			query.setPriceCents(source.readLong(), source.readLong());
+			query.setCity(source.readString());
+			query.setState(source.readString());
+			return query;
+		}
+
+		@Override
+		public PropertyQuery[] newArray(int size) {
+			return new PropertyQuery[size];
+		}
+	};
+}
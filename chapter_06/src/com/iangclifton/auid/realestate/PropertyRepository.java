@@ -0,0 +1,556 @@
+package com.iangclifton.auid.realestate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Process-wide home for loaded listings.
+ *
+ * Every set of listings has a stable data set id, such as the one returned by
+ * {@link #getSectionDataSetId(int)}. Fragments keep just the id and a
+ * {@link PropertyQuery} in their arguments and get the rows from here, so
+ * listings never end up in a Bundle or in the FragmentManager's saved state.
+ *
+ * Loaded data sets are written to a {@link PropertySnapshot} in the cache
+ * directory and the most recently used ones are kept in memory. When a data
+ * set has been evicted or the process has been killed, the next request for
+ * its id maps the snapshot again, or fetches the listings if there is no valid
+ * snapshot, so callers never need to know whether the data set survived.
+ * A mapped snapshot is handed out as soon as its header checks out and its
+ * rows are verified on a background thread afterward; if they turn out to be
+ * corrupt, the snapshot is deleted and dropped from memory so the next
+ * request fetches the listings again.
+ * {@link #prefetch(String)} loads a data set on a background thread ahead of
+ * time, such as when the user starts to swipe toward another section. Only
+ * one load per id runs at a time; a {@link #load(String)} for an id that is
+ * already being loaded or prefetched waits for that load instead of starting
+ * another.
+ * {@link #refresh(String)} fetches a data set again to pick up changes to the
+ * listings; the listings keep their ids, so lists can update just the rows
+ * that changed.
+ *
+ * Instead of snapshot files, the listings can be kept in a SQLite
+ * {@link PropertyStore} by calling {@link #setStore(PropertyStore)}, or for
+ * the shared instance, {@link #setStoreEnabled(Context, boolean)}, which
+ * remembers the choice. Stored data sets are read a page at a time, so only
+ * the rows in use stay in memory, and queries run against the database's
+ * column indexes. Sections are much larger when they are stored, so that
+ * paging actually happens.
+ *
+ * This class is thread safe. {@link #load(String)}, {@link #refresh(String)}
+ * and {@link #query(String, PropertyQuery)} can block on disk or network access,
+ * so call them off the UI thread.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyRepository {
+	private static final String TAG = "PropertyRepository";
+
+	private static final String SECTION_DATA_SET_PREFIX = "section_";
+
+	/**
+	 * The number of listings in each section
+	 */
+	private static final int LISTINGS_PER_SECTION = 30;
+
+	/**
+	 * The number of listings in each section when they are kept in a
+	 * {@link PropertyStore}; enough that a section spans several pages of a
+	 * {@link PagedDataSet}
+	 */
+	private static final int STORED_LISTINGS_PER_SECTION = 500;
+
+	/**
+	 * The default number of data sets kept in memory
+	 */
+	private static final int DEFAULT_MAX_RESIDENT_DATA_SETS = 8;
+
+	private static final String PREFS_NAME = "property_repository";
+
+	/**
+	 * Whether the shared instance keeps listings in a {@link PropertyStore}
+	 * instead of snapshot files
+	 */
+	private static final String PREF_USE_STORE = "use_store";
+
+	private static PropertyRepository sInstance;
+
+	private final File mCacheDir;
+	private final ConcurrentHashMap<String, PropertyIndex> mIndexes = new ConcurrentHashMap<String, PropertyIndex>();
+	private final ExecutorService mPrefetchExecutor = Executors.newSingleThreadExecutor();
+	private final ExecutorService mVerifyExecutor = Executors.newSingleThreadExecutor();
+
+	/**
+	 * Data sets in memory, least recently used first; guarded by itself along
+	 * with mLoads
+	 */
+	private final LinkedHashMap<String, PropertyDataSet> mDataSets = new LinkedHashMap<String, PropertyDataSet>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, PropertyDataSet> eldest) {
+			if (size() > mMaxResidentDataSets) {
+				// It can be mapped or fetched again if it's needed
+				mIndexes.remove(eldest.getKey());
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Loads waiting to run or running, by data set id
+	 */
+	private final HashMap<String, LoadTask> mLoads = new HashMap<String, LoadTask>();
+
+	private int mMaxResidentDataSets = DEFAULT_MAX_RESIDENT_DATA_SETS;
+
+	/**
+	 * Where listings are kept instead of snapshots or null for snapshots
+	 */
+	private volatile PropertyStore mStore;
+
+	private PropertyRepository(File cacheDir) {
+		mCacheDir = cacheDir;
+	}
+
+	/**
+	 * Returns the process-wide PropertyRepository
+	 *
+	 * @param context Context used to find the cache directory
+	 * @return the shared PropertyRepository
+	 */
+	public static synchronized PropertyRepository getInstance(Context context) {
+		if (sInstance == null) {
+			sInstance = new PropertyRepository(context.getApplicationContext().getCacheDir());
+			if (isStoreEnabled(context)) {
+				sInstance.setStore(PropertyStore.getInstance(context));
+			}
+		}
+		return sInstance;
+	}
+
+	/**
+	 * Returns true if the shared instance keeps listings in a
+	 * {@link PropertyStore} instead of snapshot files
+	 *
+	 * @param context Context used to read the setting
+	 * @return true if the store is used
+	 */
+	public static boolean isStoreEnabled(Context context) {
+		return getPreferences(context).getBoolean(PREF_USE_STORE, false);
+	}
+
+	/**
+	 * Switches the shared instance between a {@link PropertyStore} and
+	 * snapshot files and remembers the choice for the next time the process
+	 * starts. See {@link #setStore(PropertyStore)} for what happens to the
+	 * data sets already in memory.
+	 *
+	 * @param context Context used to save the setting and open the store
+	 * @param enabled boolean true to use the store
+	 */
+	public static void setStoreEnabled(Context context, boolean enabled) {
+		getPreferences(context).edit().putBoolean(PREF_USE_STORE, enabled).apply();
+		getInstance(context).setStore(enabled ? PropertyStore.getInstance(context) : null);
+	}
+
+	/**
+	 * Returns the data set id for the listings of one section
+	 *
+	 * @param section int section number
+	 * @return String data set id
+	 */
+	public static String getSectionDataSetId(int section) {
+		return SECTION_DATA_SET_PREFIX + section;
+	}
+
+	/**
+	 * Returns the data set, loading it if it isn't in memory. If it is
+	 * already being loaded, this waits for that load.
+	 *
+	 * @param dataSetId String data set id
+	 * @return PropertyDataSet for the id
+	 * @throws IOException if the data set has to be fetched and that fails
+	 */
+	public PropertyDataSet load(String dataSetId) throws IOException {
+		final LoadTask task;
+		final boolean started;
+		synchronized (mDataSets) {
+			final PropertyDataSet dataSet = mDataSets.get(dataSetId);
+			if (dataSet != null) {
+				return dataSet;
+			}
+			LoadTask existing = mLoads.get(dataSetId);
+			started = existing == null;
+			if (started) {
+				existing = new LoadTask(dataSetId);
+				mLoads.put(dataSetId, existing);
+			}
+			task = existing;
+		}
+		if (started) {
+			// Nobody else has it, so load it on this thread
+			task.run();
+		}
+		return task.await();
+	}
+
+	/**
+	 * Loads a data set that isn't in memory from its snapshot, the store or
+	 * its source
+	 */
+	private PropertyDataSet loadNow(String dataSetId) throws IOException {
+		PropertyDataSet dataSet;
+		final long start = SystemClock.elapsedRealtime();
+		final PropertyStore store = mStore;
+		if (store != null) {
+			dataSet = store.load(dataSetId);
+		} else {
+			dataSet = PropertySnapshot.open(getSnapshotFile(dataSetId));
+		}
+		if (dataSet != null) {
+			Log.d(TAG, "Restored " + dataSetId + " from " + (store != null ? "store" : "snapshot") + " in "
+					+ (SystemClock.elapsedRealtime() - start) + "ms");
+		} else {
+			final PropertyTable table = fetch(dataSetId, store);
+			try {
+				save(dataSetId, table, store);
+			} catch (IOException e) {
+				// The listings are still usable; they'll be fetched again next time
+				Log.w(TAG, "Failed to save " + dataSetId, e);
+			}
+			dataSet = table;
+			Log.d(TAG, "Fetched " + dataSetId + " in " + (SystemClock.elapsedRealtime() - start) + "ms");
+		}
+
+		synchronized (mDataSets) {
+			// If another thread loaded it at the same time, everyone uses theirs
+			final PropertyDataSet raced = mDataSets.get(dataSetId);
+			if (raced != null) {
+				return raced;
+			}
+			if (store == mStore) {
+				// Otherwise it came from where listings used to be kept
+				mDataSets.put(dataSetId, dataSet);
+			}
+		}
+		if (dataSet instanceof PropertySnapshot) {
+			verify(dataSetId, (PropertySnapshot) dataSet);
+		}
+		return dataSet;
+	}
+
+	/**
+	 * Returns the data set if it is already in memory; this never blocks
+	 *
+	 * @param dataSetId String data set id
+	 * @return PropertyDataSet or null if it hasn't been loaded
+	 */
+	public PropertyDataSet peek(String dataSetId) {
+		synchronized (mDataSets) {
+			return mDataSets.get(dataSetId);
+		}
+	}
+
+	/**
+	 * Loads a data set on a background thread if it isn't already in memory
+	 * or being loaded; this never blocks
+	 *
+	 * @param dataSetId String data set id
+	 */
+	public void prefetch(final String dataSetId) {
+		final LoadTask task;
+		synchronized (mDataSets) {
+			if (mDataSets.containsKey(dataSetId) || mLoads.containsKey(dataSetId)) {
+				return;
+			}
+			task = new LoadTask(dataSetId);
+			mLoads.put(dataSetId, task);
+		}
+		mPrefetchExecutor.execute(task);
+	}
+
+	/**
+	 * Stores a data set under an id, replacing any existing one, and writes
+	 * its snapshot or stores it in the {@link PropertyStore} so it can be
+	 * restored after the process is killed
+	 *
+	 * @param dataSetId String data set id
+	 * @param dataSet PropertyDataSet to store
+	 * @throws IOException if the snapshot or store could not be written; the
+	 *             data set is still stored in memory
+	 */
+	public void put(String dataSetId, PropertyDataSet dataSet) throws IOException {
+		if (dataSet instanceof PropertyTable) {
+			((PropertyTable) dataSet).freeze();
+		}
+		synchronized (mDataSets) {
+			mDataSets.put(dataSetId, dataSet);
+		}
+		mIndexes.remove(dataSetId);
+		save(dataSetId, dataSet, mStore);
+	}
+
+	/**
+	 * Fetches a data set from its source again, replacing the copy in memory
+	 * and its snapshot. Data sets already handed out are not changed.
+	 *
+	 * @param dataSetId String data set id
+	 * @return PropertyDataSet with the current listings
+	 * @throws IOException if the data set could not be fetched
+	 */
+	public PropertyDataSet refresh(String dataSetId) throws IOException {
+		final long start = SystemClock.elapsedRealtime();
+		final PropertyTable table = fetch(dataSetId, mStore);
+		try {
+			put(dataSetId, table);
+		} catch (IOException e) {
+			// The listings are still usable; the old copy was kept
+			Log.w(TAG, "Failed to save " + dataSetId, e);
+		}
+		Log.d(TAG, "Refreshed " + dataSetId + " in " + (SystemClock.elapsedRealtime() - start) + "ms");
+		return table;
+	}
+
+	/**
+	 * Returns the rows of a data set that match a query, loading the data set
+	 * if it isn't in memory
+	 *
+	 * @param dataSetId String data set id
+	 * @param query PropertyQuery to filter by or null for every row
+	 * @return PropertyDataSet of the matching rows in their original order
+	 * @throws IOException if the data set has to be fetched and that fails
+	 */
+	public PropertyDataSet query(String dataSetId, PropertyQuery query) throws IOException {
+		final PropertyDataSet dataSet = load(dataSetId);
+		if (query == null || query.isUnbounded()) {
+			return dataSet;
+		}
+
+		final long start = SystemClock.elapsedRealtime();
+		final PropertyStore store = mStore;
+		final int[] rows;
+		final String method;
+		if (dataSet instanceof PropertyTable) {
+			PropertyIndex index = mIndexes.get(dataSetId);
+			if (index == null || index.getTable() != dataSet) {
+				index = new PropertyIndex((PropertyTable) dataSet);
+				mIndexes.put(dataSetId, index);
+			}
+			rows = index.query(query);
+			method = "index";
+		} else if (dataSet instanceof PagedDataSet && store != null) {
+			rows = store.query((PagedDataSet) dataSet, query);
+			method = "store";
+		} else {
+			rows = scan(dataSet, query);
+			method = "scan";
+		}
+		Log.d(TAG, "Queried " + dataSetId + " by " + method + ": " + rows.length + " of "
+				+ dataSet.getCount() + " rows in " + (SystemClock.elapsedRealtime() - start) + "ms");
+		return new FilteredDataSet(dataSet, rows);
+	}
+
+	/**
+	 * Sets how many data sets are kept in memory, evicting the least recently
+	 * used ones if there are more
+	 *
+	 * @param maxDataSets int maximum number of data sets; at least 1
+	 */
+	public void setMaxResidentDataSets(int maxDataSets) {
+		synchronized (mDataSets) {
+			mMaxResidentDataSets = Math.max(maxDataSets, 1);
+			final Iterator<String> ids = mDataSets.keySet().iterator();
+			while (mDataSets.size() > mMaxResidentDataSets && ids.hasNext()) {
+				mIndexes.remove(ids.next());
+				ids.remove();
+			}
+		}
+	}
+
+	/**
+	 * Keeps data sets in a SQLite store instead of snapshot files from now
+	 * on. Sections are a different size in the store, so the data sets in
+	 * memory are dropped and the next request for each loads it from the new
+	 * place. Data sets already handed out and loads already running are not
+	 * affected.
+	 *
+	 * @param store PropertyStore to use or null to go back to snapshots
+	 */
+	public void setStore(PropertyStore store) {
+		synchronized (mDataSets) {
+			if (store == mStore) {
+				return;
+			}
+			mStore = store;
+			mDataSets.clear();
+			mIndexes.clear();
+		}
+	}
+
+	private static SharedPreferences getPreferences(Context context) {
+		return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+	}
+
+	/**
+	 * Fetches a data set from its source, sized for where it will be kept
+	 */
+	private PropertyTable fetch(String dataSetId, PropertyStore store) throws IOException {
+		if (dataSetId.startsWith(SECTION_DATA_SET_PREFIX)) {
+			final int section;
+			try {
+				section = Integer.parseInt(dataSetId.substring(SECTION_DATA_SET_PREFIX.length()));
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid section data set id: " + dataSetId);
+			}
+
+			// In the real world, this is where the feed would be downloaded
+			final PropertyTestUtils ptu = new PropertyTestUtils(section);
+			final int count = store != null ? STORED_LISTINGS_PER_SECTION : LISTINGS_PER_SECTION;
+			final byte[] feed = ptu.getNewFeed(count);
+
+			// Only the feed's structure is parsed up front; the table then
+			// decodes each value once, straight from the feed's bytes
+			final PropertyTable table = PropertyTable.fromList(LazyProperty.readFeed(feed));
+			table.freeze();
+			return table;
+		}
+		throw new IOException("Unknown data set id: " + dataSetId);
+	}
+
+	/**
+	 * Writes a data set where it can be restored from after the process is
+	 * killed
+	 */
+	private void save(String dataSetId, PropertyDataSet dataSet, PropertyStore store) throws IOException {
+		if (store != null) {
+			store.ingest(dataSetId, dataSet);
+		} else {
+			PropertySnapshot.write(getSnapshotFile(dataSetId), dataSet);
+		}
+	}
+
+	/**
+	 * Checks a mapped snapshot's rows on a background thread, dropping it and
+	 * deleting its file if they are corrupt
+	 */
+	private void verify(final String dataSetId, final PropertySnapshot snapshot) {
+		mVerifyExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				final long start = SystemClock.elapsedRealtime();
+				if (snapshot.verify()) {
+					Log.d(TAG, "Verified " + dataSetId + " snapshot in "
+							+ (SystemClock.elapsedRealtime() - start) + "ms");
+					return;
+				}
+				synchronized (mDataSets) {
+					// If it has been replaced, so has the file; leave both alone
+					if (mDataSets.get(dataSetId) != snapshot) {
+						return;
+					}
+					mDataSets.remove(dataSetId);
+					mIndexes.remove(dataSetId);
+					getSnapshotFile(dataSetId).delete();
+				}
+				Log.w(TAG, "Snapshot checksum mismatch; dropped " + dataSetId);
+			}
+		});
+	}
+
+	private File getSnapshotFile(String dataSetId) {
+		return new File(mCacheDir, "listings_" + dataSetId + ".snapshot");
+	}
+
+	/**
+	 * One load of a data set that callers asking for the same id can wait for
+	 */
+	private class LoadTask extends FutureTask<PropertyDataSet> {
+		private final String mDataSetId;
+
+		public LoadTask(final String dataSetId) {
+			super(new Callable<PropertyDataSet>() {
+				@Override
+				public PropertyDataSet call() throws IOException {
+					return loadNow(dataSetId);
+				}
+			});
+			mDataSetId = dataSetId;
+		}
+
+		/**
+		 * Waits for the load and returns its data set
+		 */
+		public PropertyDataSet await() throws IOException {
+			try {
+				return get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for " + mDataSetId);
+			} catch (ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IOException("Failed to load " + mDataSetId, cause);
+			}
+		}
+
+		@Override
+		protected void done() {
+			// A successful load is already in mDataSets, so nobody starts
+			// another one between the two
+			synchronized (mDataSets) {
+				if (mLoads.get(mDataSetId) == this) {
+					mLoads.remove(mDataSetId);
+				}
+			}
+			if (!isCancelled()) {
+				try {
+					get();
+				} catch (InterruptedException e) {
+					// Can't happen once the task is done
+				} catch (ExecutionException e) {
+					// Anyone waiting gets the failure; this just notes it
+					Log.w(TAG, "Failed to load " + mDataSetId, e.getCause());
+				}
+			}
+		}
+	}
+
+	private static int[] scan(PropertyDataSet dataSet, PropertyQuery query) {
+		final int count = dataSet.getCount();
+		final int[] rows = new int[count];
+		int matches = 0;
+		for (int row = 0; row < count; row++) {
+			if (query.matches(dataSet, row)) {
+				rows[matches++] = row;
+			}
+		}
+		return matches == count ? rows : Arrays.copyOf(rows, matches);
+	}
+}
@@ -0,0 +1,95 @@
+package com.iangclifton.auid.realestate;
+
+import android.content.res.Resources;
+import android.database.CharArrayBuffer;
+
+/**
+ * Copies the values of one listing into a {@link PropertyRowView}.
+ *
+ * Bed and bath labels are built once for the counts listings usually have,
+ * and street addresses are copied through a buffer that is reused, so
+ * binding a row allocates nothing unless a listing has an unusual number of
+ * bedrooms or bathrooms.
+ *
+ * Use it from the UI thread.
+ *
+ * @author Ian G. Clifton
+ */
+/*package*/ class PropertyRowBinder {
+
+	/**
+	 * Bed labels are precomputed for counts 0 to this value
+	 */
+	private static final int MAX_LABELED_BEDROOMS = 16;
+
+	/**
+	 * Bath labels are precomputed in quarter steps from 0 to this value
+	 */
+	private static final int MAX_LABELED_BATHROOMS = 16;
+
+	private final String mBath;
+	private final String mBed;
+	private final String mSqFt;
+
+	private final String[] mBedLabels;
+	private final String[] mBathLabels;
+
+	/**
+	 * Street addresses are copied through this on their way into a row
+	 */
+	private final CharArrayBuffer mStreetBuffer = new CharArrayBuffer(64);
+
+	/**
+	 * Constructs a PropertyRowBinder with the labels from the resources
+	 *
+	 * @param res Resources to read the bed, bath and square footage labels
+	 *            from
+	 */
+	/*package*/ PropertyRowBinder(Resources res) {
+		mBath = " " + res.getString(R.string.bath);
+		mBed = " " + res.getString(R.string.bed);
+		mSqFt = " " + res.getString(R.string.sq_ft);
+
+		mBedLabels = new String[MAX_LABELED_BEDROOMS + 1];
+		for (int i = 0; i < mBedLabels.length; i++) {
+			mBedLabels[i] = i + mBed;
+		}
+		mBathLabels = new String[MAX_LABELED_BATHROOMS * 4 + 1];
+		for (int i = 0; i < mBathLabels.length; i++) {
+			mBathLabels[i] = (i / 4f) + mBath;
+		}
+	}
+
+	/**
+	 * Shows the values of a listing in a row
+	 *
+	 * @param row PropertyRowView to fill
+	 * @param dataSet PropertyDataSet to read the listing from
+	 * @param position int position of the listing in the data set
+	 */
+	/*package*/ void bind(PropertyRowView row, PropertyDataSet dataSet, int position) {
+		row.setCityAndState(dataSet.getCity(position), dataSet.getState(position));
+		row.setPrice(dataSet.getPrice(position));
+		dataSet.copyStreetAddress(position, mStreetBuffer);
+		row.setStreetAddress(mStreetBuffer.data, 0, mStreetBuffer.sizeCopied);
+		row.setBeds(getBedLabel(dataSet.getBedroomCount(position)));
+		row.setBaths(getBathLabel(dataSet.getBathroomCount(position)));
+		row.setFootage(dataSet.getFootage(position), mSqFt);
+	}
+
+	private String getBathLabel(float bathroomCount) {
+		final float quarters = bathroomCount * 4;
+		final int index = (int) quarters;
+		if (index == quarters && index >= 0 && index < mBathLabels.length) {
+			return mBathLabels[index];
+		}
+		return bathroomCount + mBath;
+	}
+
+	private String getBedLabel(int bedroomCount) {
+		if (bedroomCount >= 0 && bedroomCount < mBedLabels.length) {
+			return mBedLabels[bedroomCount];
+		}
+		return bedroomCount + mBed;
+	}
+}
@@ -0,0 +1,699 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.Arrays;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.text.BoringLayout;
+import android.text.GetChars;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * A list row for a single listing that measures, lays out and draws its
+ * thumbnail and all six pieces of text itself.
+ *
+ * This replaces a RelativeLayout holding an ImageView and six TextViews.
+ * RelativeLayout measures each child twice and every TextView does its own
+ * measure and layout, but this view is measured in a single pass. Each piece
+ * of text is kept as a {@link BoringLayout} (or a {@link StaticLayout} when the
+ * street address has to wrap) that is only rebuilt when its text or the
+ * available width changes.
+ *
+ * The setters copy text into buffers owned by the view, so binding a recycled
+ * row doesn't allocate. The street address is the only text that may need
+ * line breaking, so if a {@link RowLayoutCache} is set, its Layout is taken
+ * from the cache when a {@link RowLayoutPrefetcher} has already made it.
+ *
+ * There are no TextViews for accessibility services to read, so the row
+ * reports its text itself in the order it is laid out. That text is only put
+ * together when a service asks for it, so binding still doesn't allocate.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyRowView extends View {
+
+	/**
+	 * The attributes read from a text appearance style, in ascending order as
+	 * obtainStyledAttributes requires
+	 */
+	private static final int[] TEXT_APPEARANCE_ATTRS = {
+		android.R.attr.textSize,
+		android.R.attr.textColor,
+	};
+
+	private static final char[] CITY_STATE_SEPARATOR = { ',', ' ' };
+
+	/**
+	 * Goes between the pieces of text read to accessibility services, so
+	 * they are spoken with a pause rather than run together
+	 */
+	private static final String ACCESSIBILITY_SEPARATOR = ", ";
+
+	private TextRun mCity;
+	private TextRun mPrice;
+	private TextRun mStreet;
+	private TextRun mBeds;
+	private TextRun mBaths;
+	private TextRun mFootage;
+
+	private Drawable mThumbnail;
+
+	/**
+	 * Space between the thumbnail and text and between neighbouring text
+	 */
+	private int mSpacing;
+
+	private int mBathsMinWidth;
+	private int mFootageMinWidth;
+
+	private RowLayoutCache mLayoutCache;
+	private long mRowId;
+
+	/**
+	 * Which version of the listings the adapter last bound this row from
+	 */
+	private int mBindGeneration;
+
+	public PropertyRowView(Context context) {
+		super(context);
+		init(context);
+	}
+
+	public PropertyRowView(Context context, AttributeSet attrs) {
+		super(context, attrs);
+		init(context);
+	}
+
+	public PropertyRowView(Context context, AttributeSet attrs, int defStyle) {
+		super(context, attrs, defStyle);
+		init(context);
+	}
+
+	/**
+	 * Returns the version of the listings set by
+	 * {@link #setBindGeneration(int)}
+	 *
+	 * @return int generation
+	 */
+	public int getBindGeneration() {
+		return mBindGeneration;
+	}
+
+	/**
+	 * Returns the id set by {@link #setLayoutCache(RowLayoutCache, long)}
+	 *
+	 * @return long id of the row this view is showing
+	 */
+	public long getRowId() {
+		return mRowId;
+	}
+
+	/**
+	 * Sets the number of bathrooms label like "1.75 Bath"
+	 *
+	 * @param label String to display
+	 */
+	public void setBaths(String label) {
+		mBaths.begin();
+		mBaths.append(label);
+		commit(mBaths);
+	}
+
+	/**
+	 * Records which version of the listings the row's values came from, so
+	 * the adapter can tell whether they are still current
+	 *
+	 * @param generation int version counted by the adapter
+	 */
+	public void setBindGeneration(int generation) {
+		mBindGeneration = generation;
+	}
+
+	/**
+	 * Sets the number of bedrooms label like "3 Bed"
+	 *
+	 * @param label String to display
+	 */
+	public void setBeds(String label) {
+		mBeds.begin();
+		mBeds.append(label);
+		commit(mBeds);
+	}
+
+	/**
+	 * Sets the location, which is displayed like "Seattle, WA"
+	 *
+	 * @param city String city
+	 * @param state String abbreviated state
+	 */
+	public void setCityAndState(String city, String state) {
+		mCity.begin();
+		mCity.append(city);
+		mCity.append(CITY_STATE_SEPARATOR, 0, CITY_STATE_SEPARATOR.length);
+		mCity.append(state);
+		commit(mCity);
+	}
+
+	/**
+	 * Sets the square footage, which is displayed like "2300 Sq. Ft."
+	 *
+	 * @param footage int square footage
+	 * @param suffix String to display after the number, including any space
+	 */
+	public void setFootage(int footage, String suffix) {
+		mFootage.begin();
+		mFootage.append(footage);
+		mFootage.append(suffix);
+		commit(mFootage);
+	}
+
+	/**
+	 * Sets the cache to take the street address Layout from and the id of
+	 * the row this view is showing
+	 *
+	 * @param cache RowLayoutCache or null to always lay out in the view
+	 * @param rowId long id the cache knows the row by
+	 */
+	public void setLayoutCache(RowLayoutCache cache, long rowId) {
+		mLayoutCache = cache;
+		mRowId = rowId;
+	}
+
+	/**
+	 * Sets the displayable price like "$490,000"
+	 *
+	 * @param price String to display
+	 */
+	public void setPrice(String price) {
+		mPrice.begin();
+		mPrice.append(price);
+		commit(mPrice);
+	}
+
+	/**
+	 * Sets the street address from a range of chars, which are copied
+	 *
+	 * @param chars char[] containing the address
+	 * @param start int index of the first char
+	 * @param length int number of chars
+	 */
+	public void setStreetAddress(char[] chars, int start, int length) {
+		mStreet.begin();
+		mStreet.append(chars, start, length);
+		commit(mStreet);
+	}
+
+	@Override
+	public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+		super.onInitializeAccessibilityNodeInfo(info);
+		info.setText(getAccessibilityText());
+	}
+
+	@Override
+	public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+		super.onPopulateAccessibilityEvent(event);
+		event.getText().add(getAccessibilityText());
+	}
+
+	@Override
+	protected void onDraw(Canvas canvas) {
+		mThumbnail.draw(canvas);
+		mCity.draw(canvas);
+		mPrice.draw(canvas);
+		mStreet.draw(canvas);
+		mBeds.draw(canvas);
+		mBaths.draw(canvas);
+		mFootage.draw(canvas);
+	}
+
+	@Override
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+		final int paddingLeft = getPaddingLeft();
+		final int paddingTop = getPaddingTop();
+		final int paddingRight = getPaddingRight();
+		final int paddingBottom = getPaddingBottom();
+		final int spacing = mSpacing;
+
+		final int thumbnailWidth = mThumbnail.getIntrinsicWidth();
+		final int thumbnailHeight = mThumbnail.getIntrinsicHeight();
+		mThumbnail.setBounds(paddingLeft, paddingTop, paddingLeft + thumbnailWidth, paddingTop + thumbnailHeight);
+		final int textLeft = paddingLeft + thumbnailWidth + spacing;
+
+		final int cityWidth = mCity.getDesiredWidth();
+		final int priceWidth = mPrice.getDesiredWidth();
+		final int bedsWidth = mBeds.getDesiredWidth();
+		final int bathsWidth = Math.max(mBaths.getDesiredWidth(), mBathsMinWidth);
+		final int footageWidth = Math.max(mFootage.getDesiredWidth(), mFootageMinWidth);
+
+		final int width;
+		if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+			final int topWidth = mStreet.getDesiredWidth() + spacing + Math.max(cityWidth, priceWidth);
+			final int bottomWidth = bedsWidth + spacing + bathsWidth + spacing + footageWidth;
+			width = textLeft + Math.max(topWidth, bottomWidth) + paddingRight;
+		} else {
+			width = MeasureSpec.getSize(widthMeasureSpec);
+		}
+		final int right = width - paddingRight;
+		final int textWidth = Math.max(right - textLeft, 0);
+
+		// City and price are right aligned, one above the other
+		mCity.makeLayout(Math.min(cityWidth, textWidth));
+		mCity.setPosition(right - mCity.getWidth(), paddingTop);
+		mPrice.makeLayout(Math.min(priceWidth, textWidth));
+		mPrice.setPosition(right - mPrice.getWidth(), paddingTop + mCity.getHeight());
+
+		// The street address gets whatever is left of the city and wraps
+		// if it has to
+		final int streetWidth = Math.max(mCity.getLeft() - spacing - textLeft, 0);
+		if (mLayoutCache == null) {
+			mStreet.makeLayout(streetWidth);
+		} else {
+			makeStreetLayout(streetWidth, right, textLeft);
+		}
+		mStreet.setPosition(textLeft, paddingTop);
+
+		// Beds, baths and footage make up the bottom row
+		mBeds.makeLayout(bedsWidth);
+		mBaths.makeLayout(bathsWidth);
+		mFootage.makeLayout(footageWidth);
+		final int bottomRowHeight = Math.max(mBeds.getHeight(), Math.max(mBaths.getHeight(), mFootage.getHeight()));
+
+		final int topHeight = Math.max(mCity.getHeight() + mPrice.getHeight(), mStreet.getHeight());
+		final int contentHeight = Math.max(thumbnailHeight, topHeight + bottomRowHeight);
+		final int height = resolveSize(Math.max(paddingTop + contentHeight + paddingBottom,
+				getSuggestedMinimumHeight()), heightMeasureSpec);
+
+		final int bottom = height - paddingBottom;
+		mBeds.setPosition(textLeft, bottom - mBeds.getHeight());
+		final int bathsLeft = textLeft + bedsWidth + spacing;
+		mBaths.setPosition(bathsLeft, bottom - mBaths.getHeight());
+		mFootage.setPosition(bathsLeft + bathsWidth + spacing, bottom - mFootage.getHeight());
+
+		setMeasuredDimension(width, height);
+	}
+
+	/**
+	 * Returns every piece of text in the row as one new String, such as
+	 * "123 Main St, Seattle, WA, $490,000, 3 Bed, 1.75 Bath, 2300 Sq. Ft."
+	 */
+	private String getAccessibilityText() {
+		final StringBuilder sb = new StringBuilder(mStreet.length() + mCity.length() + mPrice.length()
+				+ mBeds.length() + mBaths.length() + mFootage.length() + 5 * ACCESSIBILITY_SEPARATOR.length());
+		appendAccessibilityText(sb, mStreet);
+		appendAccessibilityText(sb, mCity);
+		appendAccessibilityText(sb, mPrice);
+		appendAccessibilityText(sb, mBeds);
+		appendAccessibilityText(sb, mBaths);
+		appendAccessibilityText(sb, mFootage);
+		return sb.toString();
+	}
+
+	private static void appendAccessibilityText(StringBuilder sb, TextRun run) {
+		if (run.length() == 0) {
+			return;
+		}
+		if (sb.length() > 0) {
+			sb.append(ACCESSIBILITY_SEPARATOR);
+		}
+		sb.append(run.mChars, 0, run.length());
+	}
+
+	/**
+	 * Redraws if a run's text changed; it has to be measured again because
+	 * its width or the number of lines might have changed too
+	 */
+	private void commit(TextRun run) {
+		if (run.end()) {
+			requestLayout();
+			invalidate();
+		}
+	}
+
+	private void makeStreetLayout(int width, int right, int textLeft) {
+		final RowLayoutCache cache = mLayoutCache;
+		final LayoutSpec spec = cache.getSpec();
+		if (spec == null || !spec.matches(mCity.mPaint, mStreet.mPaint, right, textLeft, mSpacing)) {
+			// Let the prefetcher know how rows are laid out now
+			cache.setSpec(new LayoutSpec(mCity.mPaint, mStreet.mPaint, right, textLeft, mSpacing));
+		}
+		if (mStreet.hasLayout(width)) {
+			return;
+		}
+		final Layout cached = cache.get(mRowId, width);
+		if (cached != null && mStreet.contentEquals(cached.getText())) {
+			mStreet.setLayout(cached, width);
+		} else {
+			mStreet.makeLayout(width);
+		}
+	}
+
+	private void init(Context context) {
+		final Resources res = context.getResources();
+		final TextPaint smallPaint = createTextPaint(context, android.R.attr.textAppearanceSmall);
+		final TextPaint mediumPaint = createTextPaint(context, android.R.attr.textAppearanceMedium);
+
+		mCity = new TextRun(smallPaint, Layout.Alignment.ALIGN_NORMAL);
+		mPrice = new TextRun(mediumPaint, Layout.Alignment.ALIGN_NORMAL);
+		mStreet = new TextRun(smallPaint, Layout.Alignment.ALIGN_NORMAL);
+		mBeds = new TextRun(smallPaint, Layout.Alignment.ALIGN_NORMAL);
+		mBaths = new TextRun(smallPaint, Layout.Alignment.ALIGN_OPPOSITE);
+		mFootage = new TextRun(smallPaint, Layout.Alignment.ALIGN_OPPOSITE);
+
+		mThumbnail = res.getDrawable(R.drawable.ic_thumbnail_placeholder);
+		mSpacing = res.getDimensionPixelSize(R.dimen.default_spacing);
+		mBathsMinWidth = res.getDimensionPixelSize(R.dimen.property_row_baths_min_width);
+		mFootageMinWidth = res.getDimensionPixelSize(R.dimen.property_row_footage_min_width);
+	}
+
+	/**
+	 * Returns a new TextPaint with the size and color of a text appearance
+	 * from the theme, such as textAppearanceSmall
+	 */
+	private static TextPaint createTextPaint(Context context, int appearanceAttr) {
+		final TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+		final TypedValue value = new TypedValue();
+		if (context.getTheme().resolveAttribute(appearanceAttr, value, true)) {
+			final TypedArray a = context.obtainStyledAttributes(value.resourceId, TEXT_APPEARANCE_ATTRS);
+			paint.setTextSize(a.getDimensionPixelSize(0, 0));
+			final ColorStateList colors = a.getColorStateList(1);
+			if (colors != null) {
+				paint.setColor(colors.getDefaultColor());
+			}
+			a.recycle();
+		}
+		return paint;
+	}
+
+	/**
+	 * Returns the width of text on a single line
+	 */
+	private static int getDesiredWidth(CharSequence text, TextPaint paint) {
+		final BoringLayout.Metrics metrics = BoringLayout.isBoring(text, paint);
+		if (metrics != null) {
+			return metrics.width;
+		}
+		return (int) Math.ceil(Layout.getDesiredWidth(text, paint));
+	}
+
+	/**
+	 * The paints and row geometry that decide how the street address is laid
+	 * out. The paints are copied so that a background thread can lay out
+	 * addresses exactly the way a row would without sharing the row's paints.
+	 */
+	/*package*/ static class LayoutSpec {
+		private final TextPaint mCityPaint;
+		private final TextPaint mStreetPaint;
+		private final int mRight;
+		private final int mTextLeft;
+		private final int mSpacing;
+
+		/*package*/ LayoutSpec(TextPaint cityPaint, TextPaint streetPaint, int right, int textLeft, int spacing) {
+			mCityPaint = new TextPaint(cityPaint);
+			mStreetPaint = new TextPaint(streetPaint);
+			mRight = right;
+			mTextLeft = textLeft;
+			mSpacing = spacing;
+		}
+
+		/**
+		 * Returns the width a row gives its street address when it shows the
+		 * city and state text
+		 */
+		/*package*/ int getStreetWidth(CharSequence cityAndState) {
+			final int textWidth = Math.max(mRight - mTextLeft, 0);
+			final int cityWidth = Math.min(getDesiredWidth(cityAndState, mCityPaint), textWidth);
+			return Math.max(mRight - cityWidth - mSpacing - mTextLeft, 0);
+		}
+
+		/**
+		 * Lays out a street address the same way a row would
+		 */
+		/*package*/ Layout makeStreetLayout(CharSequence streetAddress, int width) {
+			final BoringLayout.Metrics metrics = BoringLayout.isBoring(streetAddress, mStreetPaint);
+			if (metrics != null && metrics.width <= width) {
+				return BoringLayout.make(streetAddress, mStreetPaint, width, Layout.Alignment.ALIGN_NORMAL,
+						1f, 0f, metrics, false);
+			}
+			return new StaticLayout(streetAddress, mStreetPaint, width, Layout.Alignment.ALIGN_NORMAL,
+					1f, 0f, false);
+		}
+
+		/*package*/ boolean matches(TextPaint cityPaint, TextPaint streetPaint, int right, int textLeft, int spacing) {
+			return mRight == right && mTextLeft == textLeft && mSpacing == spacing
+					&& samePaint(mCityPaint, cityPaint) && samePaint(mStreetPaint, streetPaint);
+		}
+
+		private static boolean samePaint(TextPaint a, TextPaint b) {
+			return a.getTextSize() == b.getTextSize() && a.getColor() == b.getColor()
+					&& a.getTypeface() == b.getTypeface();
+		}
+	}
+
+	/**
+	 * One piece of text in the row along with its cached Layout.
+	 *
+	 * New text is built up in a second buffer between {@link #begin()} and
+	 * {@link #end()}, so the Layout is only thrown away when the text actually
+	 * changes. The run is its own CharSequence, so the Layout reads the
+	 * current buffer rather than a copy.
+	 */
+	private static class TextRun implements GetChars {
+		private final TextPaint mPaint;
+		private final Layout.Alignment mAlignment;
+
+		private char[] mChars = new char[32];
+		private int mLength;
+		private char[] mPending = new char[32];
+		private int mPendingLength;
+
+		private BoringLayout.Metrics mMetrics;
+		private boolean mBoring;
+		private int mDesiredWidth = -1;
+
+		private Layout mLayout;
+		private int mLayoutWidth = -1;
+
+		private int mLeft;
+		private int mTop;
+
+		/*package*/ TextRun(TextPaint paint, Layout.Alignment alignment) {
+			mPaint = paint;
+			mAlignment = alignment;
+		}
+
+		/*package*/ void append(char[] chars, int start, int length) {
+			ensurePendingCapacity(length);
+			System.arraycopy(chars, start, mPending, mPendingLength, length);
+			mPendingLength += length;
+		}
+
+		/**
+		 * Appends the decimal digits of value
+		 */
+		/*package*/ void append(int value) {
+			if (value == Integer.MIN_VALUE) {
+				append(String.valueOf(value));
+				return;
+			}
+			// 11 chars covers any int including the sign
+			ensurePendingCapacity(11);
+			final char[] buffer = mPending;
+			if (value < 0) {
+				buffer[mPendingLength++] = '-';
+				value = -value;
+			}
+			int digitCount = 1;
+			for (int remaining = value / 10; remaining != 0; remaining /= 10) {
+				digitCount++;
+			}
+			mPendingLength += digitCount;
+			int index = mPendingLength;
+			do {
+				buffer[--index] = (char) ('0' + value % 10);
+				value /= 10;
+			} while (value != 0);
+		}
+
+		/*package*/ void append(String value) {
+			final int length = value.length();
+			ensurePendingCapacity(length);
+			value.getChars(0, length, mPending, mPendingLength);
+			mPendingLength += length;
+		}
+
+		/*package*/ void begin() {
+			mPendingLength = 0;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= mLength) {
+				throw new IndexOutOfBoundsException("Index " + index + " is not in [0, " + mLength + ")");
+			}
+			return mChars[index];
+		}
+
+		/**
+		 * Returns true if the current text matches the CharSequence
+		 */
+		/*package*/ boolean contentEquals(CharSequence text) {
+			if (text.length() != mLength) {
+				return false;
+			}
+			for (int i = 0; i < mLength; i++) {
+				if (mChars[i] != text.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/*package*/ void draw(Canvas canvas) {
+			if (mLayout == null) {
+				return;
+			}
+			canvas.save();
+			canvas.translate(mLeft, mTop);
+			mLayout.draw(canvas);
+			canvas.restore();
+		}
+
+		/**
+		 * Makes the text built since {@link #begin()} current
+		 *
+		 * @return true if the text changed
+		 */
+		/*package*/ boolean end() {
+			if (mPendingLength == mLength && regionEquals(mChars, mPending, mLength)) {
+				return false;
+			}
+			final char[] chars = mChars;
+			mChars = mPending;
+			mLength = mPendingLength;
+			mPending = chars;
+			mDesiredWidth = -1;
+			mLayoutWidth = -1;
+			return true;
+		}
+
+		@Override
+		public void getChars(int start, int end, char[] dest, int destoff) {
+			System.arraycopy(mChars, start, dest, destoff, end - start);
+		}
+
+		/**
+		 * Returns the width of the text on a single line
+		 */
+		/*package*/ int getDesiredWidth() {
+			if (mDesiredWidth < 0) {
+				final BoringLayout.Metrics metrics = BoringLayout.isBoring(this, mPaint, mMetrics);
+				mBoring = metrics != null;
+				if (mBoring) {
+					mMetrics = metrics;
+					mDesiredWidth = metrics.width;
+				} else {
+					mDesiredWidth = (int) Math.ceil(Layout.getDesiredWidth(this, mPaint));
+				}
+			}
+			return mDesiredWidth;
+		}
+
+		/*package*/ int getHeight() {
+			return mLayout == null ? 0 : mLayout.getHeight();
+		}
+
+		/**
+		 * Returns true if there is a Layout for the current text at the width
+		 */
+		/*package*/ boolean hasLayout(int width) {
+			return mLayout != null && mLayoutWidth == width;
+		}
+
+		/*package*/ int getLeft() {
+			return mLeft;
+		}
+
+		/*package*/ int getWidth() {
+			return mLayoutWidth;
+		}
+
+		@Override
+		public int length() {
+			return mLength;
+		}
+
+		/**
+		 * Makes sure there is a Layout for the current text at the given
+		 * width, reusing the existing one if nothing changed
+		 */
+		/*package*/ void makeLayout(int width) {
+			width = Math.max(width, 0);
+			if (hasLayout(width)) {
+				return;
+			}
+			final int desiredWidth = getDesiredWidth();
+			if (mBoring && desiredWidth <= width) {
+				if (mLayout instanceof BoringLayout) {
+					mLayout = ((BoringLayout) mLayout).replaceOrMake(this, mPaint, width, mAlignment,
+							1f, 0f, mMetrics, false);
+				} else {
+					mLayout = BoringLayout.make(this, mPaint, width, mAlignment, 1f, 0f, mMetrics, false);
+				}
+			} else {
+				mLayout = new StaticLayout(this, mPaint, width, mAlignment, 1f, 0f, false);
+			}
+			mLayoutWidth = width;
+		}
+
+		/**
+		 * Uses a Layout that was made elsewhere for the current text
+		 */
+		/*package*/ void setLayout(Layout layout, int width) {
+			mLayout = layout;
+			mLayoutWidth = width;
+		}
+
+		/*package*/ void setPosition(int left, int top) {
+			mLeft = left;
+			mTop = top;
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new String(mChars, start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return new String(mChars, 0, mLength);
+		}
+
+		private void ensurePendingCapacity(int extra) {
+			final int needed = mPendingLength + extra;
+			if (needed > mPending.length) {
+				mPending = Arrays.copyOf(mPending, Math.max(mPending.length * 2, needed));
+			}
+		}
+
+		private static boolean regionEquals(char[] a, char[] b, int length) {
+			for (int i = 0; i < length; i++) {
+				if (a[i] != b[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
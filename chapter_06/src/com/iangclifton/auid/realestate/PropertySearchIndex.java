@@ -0,0 +1,784 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import android.database.CharArrayBuffer;
+
+/**
+ * A text search index over the street addresses and cities of a
+ * {@link PropertyDataSet}, for filtering a list as the user types.
+ *
+ * A row matches a search if its street address contains the search text or
+ * its city starts with it. Both sides are normalized first: case is ignored
+ * and any run of punctuation or spaces counts as a single space, so "main st"
+ * matches "123 Main St.".
+ *
+ * Street addresses are indexed by trigram, every run of three normalized
+ * characters. Each trigram has a posting list of the rows that contain it,
+ * stored as variable-length deltas in one shared byte array, so the common
+ * trigrams of a large data set take a byte or two per row. A search
+ * intersects the posting lists of its trigrams, starting with the shortest,
+ * and then checks the few remaining candidates against the text. Cities come
+ * from a small set of values and are kept in a prefix trie.
+ *
+ * Building the index reads every street address, so do it off the UI thread.
+ * Use a {@link Searcher} for the searches of one search box; it narrows down
+ * the previous results when the user adds to the text instead of starting
+ * over. The index covers the rows in the data set when it was built and is
+ * immutable and thread safe afterward.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertySearchIndex {
+	private static final int[] EMPTY = new int[0];
+
+	/**
+	 * Searches shorter than a trigram scan the normalized addresses instead
+	 */
+	private static final int GRAM_LENGTH = 3;
+
+	private final PropertyDataSet mDataSet;
+	private final int mCount;
+
+	/**
+	 * Every normalized street address, each padded with a space on both ends
+	 * so words at the start and end have trigrams too; row i is
+	 * mStreetChars[mStreetOffsets[i]] to mStreetChars[mStreetOffsets[i + 1] - 1]
+	 */
+	private final char[] mStreetChars;
+	private final int[] mStreetOffsets;
+
+	/**
+	 * Trigram to posting list id
+	 */
+	private final GramTable mGrams;
+
+	/**
+	 * Posting list i is mPostingCounts[i] varint deltas starting at
+	 * mPostings[mPostingStarts[i]]
+	 */
+	private final byte[] mPostings;
+	private final int[] mPostingStarts;
+	private final int[] mPostingCounts;
+
+	/**
+	 * Normalized city names in sorted order; a trie node covers a range of
+	 * these
+	 */
+	private final String[] mCityNames;
+
+	/**
+	 * Rows for each entry of mCityNames, in ascending order
+	 */
+	private final int[][] mCityRows;
+
+	/**
+	 * Index into mCityNames for each row
+	 */
+	private final int[] mRowCities;
+
+	private final CityTrie mCityTrie;
+
+	private PropertySearchIndex(PropertyDataSet dataSet, int count, char[] streetChars,
+			int[] streetOffsets, GramTable grams, byte[] postings, int[] postingStarts,
+			int[] postingCounts, String[] cityNames, int[][] cityRows, int[] rowCities) {
+		mDataSet = dataSet;
+		mCount = count;
+		mStreetChars = streetChars;
+		mStreetOffsets = streetOffsets;
+		mGrams = grams;
+		mPostings = postings;
+		mPostingStarts = postingStarts;
+		mPostingCounts = postingCounts;
+		mCityNames = cityNames;
+		mCityRows = cityRows;
+		mRowCities = rowCities;
+		mCityTrie = new CityTrie(cityNames);
+	}
+
+	/**
+	 * Builds an index over every row currently in the data set
+	 *
+	 * @param dataSet PropertyDataSet to index
+	 * @return new PropertySearchIndex
+	 */
+	public static PropertySearchIndex build(PropertyDataSet dataSet) {
+		final int count = dataSet.getCount();
+
+		// Normalize every street address into one array
+		final int[] streetOffsets = new int[count + 1];
+		char[] streetChars = new char[Math.max(count * 24, 16)];
+		int length = 0;
+		final CharArrayBuffer buffer = new CharArrayBuffer(64);
+		for (int row = 0; row < count; row++) {
+			dataSet.copyStreetAddress(row, buffer);
+			if (streetChars.length - length < buffer.sizeCopied + 2) {
+				streetChars = Arrays.copyOf(streetChars,
+						Math.max(streetChars.length * 2, length + buffer.sizeCopied + 2));
+			}
+			streetChars[length++] = ' ';
+			length = normalize(buffer.data, buffer.sizeCopied, streetChars, length);
+			streetOffsets[row + 1] = length;
+		}
+		streetChars = Arrays.copyOf(streetChars, length);
+
+		// First pass: give every trigram an id and size its posting list
+		final GramTable grams = new GramTable();
+		int[] lastRows = new int[64];
+		int[] postingCounts = new int[64];
+		int[] postingSizes = new int[64];
+		for (int row = 0; row < count; row++) {
+			final int end = streetOffsets[row + 1];
+			for (int i = streetOffsets[row]; i + GRAM_LENGTH <= end; i++) {
+				final int id = grams.add(gramKey(streetChars, i));
+				if (id == postingCounts.length) {
+					lastRows = Arrays.copyOf(lastRows, id * 2);
+					postingCounts = Arrays.copyOf(postingCounts, id * 2);
+					postingSizes = Arrays.copyOf(postingSizes, id * 2);
+				}
+				if (postingCounts[id] == 0) {
+					postingSizes[id] = varintSize(row + 1);
+				} else if (lastRows[id] != row) {
+					postingSizes[id] += varintSize(row - lastRows[id]);
+				} else {
+					// The row already contains this trigram
+					continue;
+				}
+				postingCounts[id]++;
+				lastRows[id] = row;
+			}
+		}
+
+		// Second pass: write each posting list into its slice of one array
+		final int gramCount = grams.size();
+		final int[] postingStarts = new int[gramCount];
+		final int[] cursors = new int[gramCount];
+		int postingBytes = 0;
+		for (int id = 0; id < gramCount; id++) {
+			postingStarts[id] = postingBytes;
+			cursors[id] = postingBytes;
+			postingBytes += postingSizes[id];
+			lastRows[id] = -1;
+		}
+		final byte[] postings = new byte[postingBytes];
+		for (int row = 0; row < count; row++) {
+			final int end = streetOffsets[row + 1];
+			for (int i = streetOffsets[row]; i + GRAM_LENGTH <= end; i++) {
+				final int id = grams.get(gramKey(streetChars, i));
+				if (lastRows[id] != row) {
+					cursors[id] = writeVarint(postings, cursors[id], row - lastRows[id]);
+					lastRows[id] = row;
+				}
+			}
+		}
+
+		// Cities have few distinct values, so each one keeps a plain row list
+		final HashMap<String, String> normalizedCities = new HashMap<String, String>();
+		final String[] rowCityNames = new String[count];
+		char[] cityChars = new char[32];
+		for (int row = 0; row < count; row++) {
+			final String city = dataSet.getCity(row);
+			String normalized = normalizedCities.get(city);
+			if (normalized == null) {
+				if (cityChars.length < city.length() + 1) {
+					cityChars = new char[city.length() + 1];
+				}
+				city.getChars(0, city.length(), cityChars, 0);
+				final int cityLength = normalize(cityChars, city.length(), cityChars, 0);
+				normalized = new String(cityChars, 0, cityLength).trim();
+				normalizedCities.put(city, normalized);
+			}
+			rowCityNames[row] = normalized;
+		}
+		final HashSet<String> distinctCities = new HashSet<String>(normalizedCities.values());
+		final String[] cityNames = distinctCities.toArray(new String[distinctCities.size()]);
+		Arrays.sort(cityNames);
+		final int[] rowCities = new int[count];
+		final int[] cityRowCounts = new int[cityNames.length];
+		for (int row = 0; row < count; row++) {
+			rowCities[row] = Arrays.binarySearch(cityNames, rowCityNames[row]);
+			cityRowCounts[rowCities[row]]++;
+		}
+		final int[][] cityRows = new int[cityNames.length][];
+		for (int i = 0; i < cityNames.length; i++) {
+			cityRows[i] = new int[cityRowCounts[i]];
+			cityRowCounts[i] = 0;
+		}
+		for (int row = 0; row < count; row++) {
+			final int city = rowCities[row];
+			cityRows[city][cityRowCounts[city]++] = row;
+		}
+
+		return new PropertySearchIndex(dataSet, count, streetChars, streetOffsets, grams,
+				postings, postingStarts, Arrays.copyOf(postingCounts, gramCount), cityNames,
+				cityRows, rowCities);
+	}
+
+	/**
+	 * Returns the number of rows this index covers
+	 *
+	 * @return int number of indexed rows
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Returns the data set this index was built from
+	 *
+	 * @return the PropertyDataSet
+	 */
+	public PropertyDataSet getDataSet() {
+		return mDataSet;
+	}
+
+	/**
+	 * Returns the number of bytes used by the compressed posting lists
+	 *
+	 * @return int size of the posting lists
+	 */
+	public int getPostingBytes() {
+		return mPostings.length;
+	}
+
+	/**
+	 * Returns the rows that match the text without reusing any earlier
+	 * results
+	 *
+	 * @param text String the user typed
+	 * @return new int[] of matching rows in ascending order, or null if the
+	 *         text has nothing to search for, meaning every row matches
+	 */
+	public int[] search(String text) {
+		final String query = normalizeQuery(text);
+		return query == null ? null : searchAll(query);
+	}
+
+	@Override
+	public String toString() {
+		return "PropertySearchIndex[rows=" + mCount + ", trigrams=" + mGrams.size()
+				+ ", postingBytes=" + mPostings.length + ", cities=" + mCityNames.length + "]";
+	}
+
+	/**
+	 * Returns how many street candidates a search from scratch would have to
+	 * check: the length of the query's shortest posting list
+	 */
+	private int estimateCandidates(String query) {
+		if (query.length() < GRAM_LENGTH) {
+			return mCount;
+		}
+		int fewest = mCount;
+		for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+			final int id = mGrams.get(gramKey(query, i));
+			if (id == -1) {
+				return 0;
+			}
+			fewest = Math.min(fewest, mPostingCounts[id]);
+		}
+		return fewest;
+	}
+
+	/**
+	 * Returns true if a row matches an already normalized query
+	 */
+	private boolean matches(int row, String query, String cityQuery) {
+		return streetContains(row, query)
+				|| (cityQuery.length() > 0 && mCityNames[mRowCities[row]].startsWith(cityQuery));
+	}
+
+	private int[] searchAll(String query) {
+		final String cityQuery = query.trim();
+		int[] streetRows;
+		if (query.length() < GRAM_LENGTH) {
+			streetRows = scanStreets(query);
+		} else {
+			streetRows = intersectGrams(query);
+			// Having every trigram doesn't guarantee they're in order
+			int matches = 0;
+			for (int i = 0; i < streetRows.length; i++) {
+				if (streetContains(streetRows[i], query)) {
+					streetRows[matches++] = streetRows[i];
+				}
+			}
+			streetRows = Arrays.copyOf(streetRows, matches);
+		}
+
+		final int cityFrom = cityQuery.length() == 0 ? 0 : mCityTrie.findFirst(cityQuery);
+		final int cityTo = cityQuery.length() == 0 ? 0 : mCityTrie.findEnd(cityQuery);
+		if (cityFrom >= cityTo) {
+			return streetRows;
+		}
+		final BitSet rows = new BitSet(mCount);
+		for (int row : streetRows) {
+			rows.set(row);
+		}
+		for (int city = cityFrom; city < cityTo; city++) {
+			for (int row : mCityRows[city]) {
+				rows.set(row);
+			}
+		}
+		return toArray(rows);
+	}
+
+	/**
+	 * Returns the rows that contain every trigram of the query, which is a
+	 * superset of the rows that contain the query
+	 */
+	private int[] intersectGrams(String query) {
+		final int gramCount = query.length() - GRAM_LENGTH + 1;
+		final int[] ids = new int[gramCount];
+		for (int i = 0; i < gramCount; i++) {
+			final int id = mGrams.get(gramKey(query, i));
+			if (id == -1) {
+				return EMPTY;
+			}
+			ids[i] = id;
+		}
+
+		// Start with the shortest list so every step has the fewest candidates
+		int shortest = 0;
+		for (int i = 1; i < gramCount; i++) {
+			if (mPostingCounts[ids[i]] < mPostingCounts[ids[shortest]]) {
+				shortest = i;
+			}
+		}
+		int[] candidates = decode(ids[shortest]);
+		int candidateCount = candidates.length;
+		for (int i = 0; i < gramCount && candidateCount > 0; i++) {
+			if (i != shortest) {
+				candidateCount = retain(ids[i], candidates, candidateCount);
+			}
+		}
+		return candidateCount == candidates.length ? candidates : Arrays.copyOf(candidates, candidateCount);
+	}
+
+	private int[] decode(int id) {
+		final byte[] postings = mPostings;
+		final int[] rows = new int[mPostingCounts[id]];
+		int position = mPostingStarts[id];
+		int row = -1;
+		for (int i = 0; i < rows.length; i++) {
+			int delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = postings[position++];
+				delta |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			row += delta;
+			rows[i] = row;
+		}
+		return rows;
+	}
+
+	/**
+	 * Removes the candidates that aren't in a posting list, streaming through
+	 * the list once
+	 *
+	 * @return the number of candidates left at the start of the array
+	 */
+	private int retain(int id, int[] candidates, int candidateCount) {
+		final byte[] postings = mPostings;
+		final int postingCount = mPostingCounts[id];
+		int position = mPostingStarts[id];
+		int row = -1;
+		int decoded = 0;
+		int kept = 0;
+		for (int i = 0; i < candidateCount; i++) {
+			final int candidate = candidates[i];
+			while (row < candidate && decoded < postingCount) {
+				int delta = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = postings[position++];
+					delta |= (b & 0x7f) << shift;
+					shift += 7;
+				} while (b < 0);
+				row += delta;
+				decoded++;
+			}
+			if (row == candidate) {
+				candidates[kept++] = candidate;
+			} else if (row < candidate) {
+				// The list has run out
+				break;
+			}
+		}
+		return kept;
+	}
+
+	private int[] scanStreets(String query) {
+		final BitSet rows = new BitSet(mCount);
+		for (int row = 0; row < mCount; row++) {
+			if (streetContains(row, query)) {
+				rows.set(row);
+			}
+		}
+		return toArray(rows);
+	}
+
+	private boolean streetContains(int row, String query) {
+		final char[] chars = mStreetChars;
+		final int queryLength = query.length();
+		final char first = query.charAt(0);
+		final int last = mStreetOffsets[row + 1] - queryLength;
+		outer:
+		for (int i = mStreetOffsets[row]; i <= last; i++) {
+			if (chars[i] != first) {
+				continue;
+			}
+			for (int j = 1; j < queryLength; j++) {
+				if (chars[i + j] != query.charAt(j)) {
+					continue outer;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private static long gramKey(char[] chars, int offset) {
+		return ((long) chars[offset] << 32) | ((long) chars[offset + 1] << 16) | chars[offset + 2];
+	}
+
+	private static long gramKey(String text, int offset) {
+		return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16)
+				| text.charAt(offset + 2);
+	}
+
+	/**
+	 * Lowercases src into dest at offset, replacing every run of other
+	 * characters with one space and ending with a space. dest needs room for
+	 * length + 1 chars.
+	 *
+	 * @return the offset after the last char written
+	 */
+	private static int normalize(char[] src, int length, char[] dest, int offset) {
+		// dest may be src with an offset of 0; writing never overtakes reading
+		boolean space = offset > 0 && dest[offset - 1] == ' ';
+		for (int i = 0; i < length; i++) {
+			final char c = src[i];
+			if (Character.isLetterOrDigit(c)) {
+				dest[offset++] = Character.toLowerCase(c);
+				space = false;
+			} else if (!space) {
+				dest[offset++] = ' ';
+				space = true;
+			}
+		}
+		if (!space) {
+			dest[offset++] = ' ';
+		}
+		return offset;
+	}
+
+	/**
+	 * Normalizes search text the same way as the street addresses, but
+	 * without the trailing space unless the user typed one
+	 *
+	 * @return the query or null if it has nothing to search for
+	 */
+	/*package*/ static String normalizeQuery(String text) {
+		if (text == null || text.length() == 0) {
+			return null;
+		}
+		final int textLength = text.length();
+		final char[] chars = new char[textLength + 1];
+		text.getChars(0, textLength, chars, 0);
+		int length = normalize(chars, textLength, chars, 0);
+		if (Character.isLetterOrDigit(text.charAt(textLength - 1))) {
+			// Drop the padding; the user may still be typing this word
+			length--;
+		}
+		if (length == 0 || (length == 1 && chars[0] == ' ')) {
+			return null;
+		}
+		return new String(chars, 0, length);
+	}
+
+	private static int[] toArray(BitSet bits) {
+		final int[] rows = new int[bits.cardinality()];
+		int i = 0;
+		for (int row = bits.nextSetBit(0); row >= 0; row = bits.nextSetBit(row + 1)) {
+			rows[i++] = row;
+		}
+		return rows;
+	}
+
+	private static int varintSize(int value) {
+		int size = 1;
+		while ((value >>>= 7) != 0) {
+			size++;
+		}
+		return size;
+	}
+
+	private static int writeVarint(byte[] dest, int offset, int value) {
+		while ((value & ~0x7f) != 0) {
+			dest[offset++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		dest[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * The searches of one search box. A search that only adds to the end of
+	 * the previous text, which is what happens as the user types, narrows down
+	 * the previous results rather than searching the whole index again, unless
+	 * the index has fewer candidates to offer.
+	 *
+	 * A Searcher is not thread safe; use it from one thread at a time.
+	 */
+	public static class Searcher {
+		private final PropertySearchIndex mIndex;
+		private String mLastQuery;
+		private int[] mLastRows;
+		private boolean mLastNarrowed;
+
+		/**
+		 * Constructs a Searcher
+		 *
+		 * @param index PropertySearchIndex to search
+		 */
+		public Searcher(PropertySearchIndex index) {
+			mIndex = index;
+		}
+
+		/**
+		 * Returns the index this searches
+		 *
+		 * @return the PropertySearchIndex
+		 */
+		public PropertySearchIndex getIndex() {
+			return mIndex;
+		}
+
+		/**
+		 * Returns true if the last search narrowed the results of the one
+		 * before it instead of searching the whole index
+		 *
+		 * @return true if the last search was incremental
+		 */
+		public boolean isLastSearchIncremental() {
+			return mLastNarrowed;
+		}
+
+		/**
+		 * Returns the rows that match the text
+		 *
+		 * @param text String the user typed
+		 * @return int[] of matching rows in ascending order, or null if the
+		 *         text has nothing to search for, meaning every row matches;
+		 *         don't modify the array
+		 */
+		public int[] search(String text) {
+			final String query = normalizeQuery(text);
+			if (query == null) {
+				mLastQuery = null;
+				mLastRows = null;
+				mLastNarrowed = false;
+				return null;
+			}
+			if (query.equals(mLastQuery)) {
+				return mLastRows;
+			}
+
+			final int[] rows;
+			final String lastQuery = mLastQuery;
+			if (lastQuery != null && query.startsWith(lastQuery)
+					&& mLastRows.length <= mIndex.estimateCandidates(query)) {
+				// Anything that matches the longer text matched the shorter
+				// text too, so only the previous results need to be checked
+				final int[] lastRows = mLastRows;
+				final String cityQuery = query.trim();
+				final int[] matches = new int[lastRows.length];
+				int count = 0;
+				for (int row : lastRows) {
+					if (mIndex.matches(row, query, cityQuery)) {
+						matches[count++] = row;
+					}
+				}
+				rows = count == matches.length ? matches : Arrays.copyOf(matches, count);
+				mLastNarrowed = true;
+			} else {
+				rows = mIndex.searchAll(query);
+				mLastNarrowed = false;
+			}
+			mLastQuery = query;
+			mLastRows = rows;
+			return rows;
+		}
+	}
+
+	/**
+	 * A prefix trie over the sorted city names. Names are added in sorted
+	 * order, so the names under any node are a contiguous range of the sorted
+	 * array, and a prefix lookup is one walk down the trie.
+	 */
+	private static class CityTrie {
+		private char[] mChars = new char[16];
+		private int[] mFirstChild = new int[16];
+		private int[] mNextSibling = new int[16];
+		private int[] mFrom = new int[16];
+		private int[] mTo = new int[16];
+		private int mNodeCount = 1;
+
+		/*package*/ CityTrie(String[] sortedNames) {
+			mFirstChild[0] = -1;
+			mNextSibling[0] = -1;
+			mTo[0] = sortedNames.length;
+			for (int i = 0; i < sortedNames.length; i++) {
+				final String name = sortedNames[i];
+				int node = 0;
+				for (int j = 0; j < name.length(); j++) {
+					node = childFor(node, name.charAt(j), i);
+					mTo[node] = i + 1;
+				}
+			}
+		}
+
+		/**
+		 * Returns the index of the first sorted name that starts with the
+		 * prefix
+		 */
+		/*package*/ int findFirst(String prefix) {
+			final int node = find(prefix);
+			return node == -1 ? 0 : mFrom[node];
+		}
+
+		/**
+		 * Returns the index after the last sorted name that starts with the
+		 * prefix; equal to {@link #findFirst(String)} if there are none
+		 */
+		/*package*/ int findEnd(String prefix) {
+			final int node = find(prefix);
+			return node == -1 ? 0 : mTo[node];
+		}
+
+		private int childFor(int node, char c, int nameIndex) {
+			int child = mFirstChild[node];
+			int previous = -1;
+			while (child != -1) {
+				if (mChars[child] == c) {
+					return child;
+				}
+				previous = child;
+				child = mNextSibling[child];
+			}
+			if (mNodeCount == mChars.length) {
+				final int capacity = mNodeCount * 2;
+				mChars = Arrays.copyOf(mChars, capacity);
+				mFirstChild = Arrays.copyOf(mFirstChild, capacity);
+				mNextSibling = Arrays.copyOf(mNextSibling, capacity);
+				mFrom = Arrays.copyOf(mFrom, capacity);
+				mTo = Arrays.copyOf(mTo, capacity);
+			}
+			child = mNodeCount++;
+			mChars[child] = c;
+			mFirstChild[child] = -1;
+			mNextSibling[child] = -1;
+			mFrom[child] = nameIndex;
+			if (previous == -1) {
+				mFirstChild[node] = child;
+			} else {
+				mNextSibling[previous] = child;
+			}
+			return child;
+		}
+
+		private int find(String prefix) {
+			int node = 0;
+			for (int i = 0; i < prefix.length() && node != -1; i++) {
+				final char c = prefix.charAt(i);
+				int child = mFirstChild[node];
+				while (child != -1 && mChars[child] != c) {
+					child = mNextSibling[child];
+				}
+				node = child;
+			}
+			return node;
+		}
+	}
+
+	/**
+	 * An open addressing hash table from trigram to id that doesn't box
+	 */
+	private static class GramTable {
+		private static final long EMPTY_KEY = -1L;
+
+		private long[] mKeys = new long[256];
+		private int[] mIds = new int[256];
+		private int mSize;
+
+		/*package*/ GramTable() {
+			Arrays.fill(mKeys, EMPTY_KEY);
+		}
+
+		/**
+		 * Returns the trigram's id, giving it the next id if it is new
+		 */
+		/*package*/ int add(long key) {
+			int slot = slotOf(key, mKeys.length);
+			while (mKeys[slot] != EMPTY_KEY) {
+				if (mKeys[slot] == key) {
+					return mIds[slot];
+				}
+				slot = (slot + 1) & (mKeys.length - 1);
+			}
+			if ((mSize + 1) * 2 > mKeys.length) {
+				grow();
+				return add(key);
+			}
+			mKeys[slot] = key;
+			mIds[slot] = mSize;
+			return mSize++;
+		}
+
+		/**
+		 * Returns the trigram's id or -1 if no row has it
+		 */
+		/*package*/ int get(long key) {
+			int slot = slotOf(key, mKeys.length);
+			while (mKeys[slot] != EMPTY_KEY) {
+				if (mKeys[slot] == key) {
+					return mIds[slot];
+				}
+				slot = (slot + 1) & (mKeys.length - 1);
+			}
+			return -1;
+		}
+
+		/*package*/ int size() {
+			return mSize;
+		}
+
+		private void grow() {
+			final long[] oldKeys = mKeys;
+			final int[] oldIds = mIds;
+			mKeys = new long[oldKeys.length * 2];
+			mIds = new int[oldIds.length * 2];
+			Arrays.fill(mKeys, EMPTY_KEY);
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != EMPTY_KEY) {
+					int slot = slotOf(oldKeys[i], mKeys.length);
+					while (mKeys[slot] != EMPTY_KEY) {
+						slot = (slot + 1) & (mKeys.length - 1);
+					}
+					mKeys[slot] = oldKeys[i];
+					mIds[slot] = oldIds[i];
+				}
+			}
+		}
+
+		private static int slotOf(long key, int capacity) {
+			return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (capacity - 1);
+		}
+	}
+}
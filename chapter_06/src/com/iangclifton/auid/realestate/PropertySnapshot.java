@@ -0,0 +1,436 @@
+package com.iangclifton.auid.realestate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import android.database.CharArrayBuffer;
+import android.util.Log;
+
+/**
+ * A compact on-disk copy of a set of listings that is read through a
+ * memory-mapped file.
+ *
+ * Opening a snapshot doesn't parse or copy the listings; rows are read
+ * directly out of the mapped file, so a list can be shown immediately on a
+ * cold start. The file layout is:
+ * <ul>
+ * <li>A header with a magic number, format version, row count, dictionary
+ * size, string heap size, a CRC32 of everything after the header and a CRC32
+ * of the header and the dictionary</li>
+ * <li>A dictionary of the distinct city and state Strings, as offset and
+ * length pairs into the string heap</li>
+ * <li>One fixed-width record per row: bathrooms, bedrooms, footage, price in
+ * cents, city and state dictionary indexes, the street address's offset
+ * and length in the string heap and the listing's id</li>
+ * <li>The string heap, as UTF-16 chars so they can be copied out without
+ * decoding</li>
+ * </ul>
+ *
+ * {@link #write(File, PropertyDataSet)} writes to a temporary file and renames
+ * it into place, so a crash never leaves a partial snapshot behind.
+ * {@link #open(File)} returns null for a missing or outdated file or one with
+ * a corrupt header or dictionary so the caller can fall back to ingesting the
+ * listings again. It only checks the few pages holding the header and the
+ * dictionary, so the first rows can be shown without reading the rest of the
+ * file; call {@link #verify()} on a background thread afterward to check the
+ * records and street addresses. Until then, a corrupt record reads as
+ * nonsense values rather than throwing.
+ *
+ * A PropertySnapshot is read-only and thread safe.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertySnapshot implements PropertyDataSet {
+	private static final String TAG = "PropertySnapshot";
+
+	/**
+	 * "PSNP" in ASCII
+	 */
+	private static final int MAGIC = 0x50534E50;
+	private static final int VERSION = 3;
+
+	private static final int HEADER_SIZE = 32;
+	private static final int HEADER_MAGIC = 0;
+	private static final int HEADER_VERSION = 4;
+	private static final int HEADER_ROW_COUNT = 8;
+	private static final int HEADER_DICTIONARY_COUNT = 12;
+	private static final int HEADER_HEAP_CHARS = 16;
+	private static final int HEADER_BODY_CRC = 20;
+	private static final int HEADER_INDEX_CRC = 24;
+
+	private static final int DICTIONARY_ENTRY_SIZE = 8;
+
+	private static final int RECORD_SIZE = 44;
+	private static final int RECORD_BATHROOMS = 0;
+	private static final int RECORD_BEDROOMS = 4;
+	private static final int RECORD_FOOTAGE = 8;
+	private static final int RECORD_PRICE_CENTS = 12;
+	private static final int RECORD_CITY = 20;
+	private static final int RECORD_STATE = 24;
+	private static final int RECORD_STREET_OFFSET = 28;
+	private static final int RECORD_STREET_LENGTH = 32;
+	private static final int RECORD_ID = 36;
+
+	private final MappedByteBuffer mBuffer;
+	private final int mCount;
+	private final String[] mDictionary;
+	private final int mHeapChars;
+	private final int mHeapStart;
+	private final int mRecordsStart;
+
+	private PropertySnapshot(MappedByteBuffer buffer, int count, String[] dictionary,
+			int recordsStart, int heapStart, int heapChars) {
+		mBuffer = buffer;
+		mCount = count;
+		mDictionary = dictionary;
+		mRecordsStart = recordsStart;
+		mHeapStart = heapStart;
+		mHeapChars = heapChars;
+	}
+
+	/**
+	 * Maps a snapshot file and validates its header and dictionary. This only
+	 * reads the start of the file and the dictionary Strings; the rows are
+	 * checked by {@link #verify()}. Call it off the UI thread.
+	 *
+	 * @param file File written by {@link #write(File, PropertyDataSet)}
+	 * @return PropertySnapshot or null if the file is missing or invalid
+	 */
+	public static PropertySnapshot open(File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			final RandomAccessFile raf = new RandomAccessFile(file, "r");
+			final MappedByteBuffer buffer;
+			try {
+				buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			} finally {
+				// The mapping stays valid after the channel is closed
+				raf.close();
+			}
+			return validate(file, buffer);
+		} catch (IOException e) {
+			Log.w(TAG, "Failed to open snapshot " + file, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Atomically writes the listings to a snapshot file, replacing any
+	 * existing one. Call this off the UI thread.
+	 *
+	 * @param file File to write
+	 * @param dataSet PropertyDataSet to copy
+	 * @throws IOException if the snapshot could not be written
+	 */
+	public static void write(File file, PropertyDataSet dataSet) throws IOException {
+		final int count = dataSet.getCount();
+
+		// Build the dictionary and lay out the string heap
+		final HashMap<String, Integer> dictionaryIds = new HashMap<String, Integer>();
+		final ArrayList<String> dictionary = new ArrayList<String>();
+		final int[] cityIds = new int[count];
+		final int[] stateIds = new int[count];
+		final String[] streets = new String[count];
+		for (int row = 0; row < count; row++) {
+			cityIds[row] = dictionaryId(dataSet.getCity(row), dictionaryIds, dictionary);
+			stateIds[row] = dictionaryId(dataSet.getState(row), dictionaryIds, dictionary);
+			streets[row] = dataSet.getStreetAddress(row);
+		}
+
+		// A unique name in the same directory, so concurrent writers never
+		// share a temporary file and the rename never crosses file systems
+		final File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+		final FileOutputStream fileOut = new FileOutputStream(temp);
+		boolean success = false;
+		try {
+			// Reserve the header; it is filled in once the checksum is known
+			fileOut.write(new byte[HEADER_SIZE]);
+			final CRC32 crc = new CRC32();
+			final DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+					new BufferedOutputStream(fileOut), crc));
+
+			int heapChars = 0;
+			for (String value : dictionary) {
+				out.writeInt(heapChars);
+				out.writeInt(value.length());
+				heapChars += value.length();
+			}
+			for (int row = 0; row < count; row++) {
+				final int streetLength = streets[row].length();
+				out.writeFloat(dataSet.getBathroomCount(row));
+				out.writeInt(dataSet.getBedroomCount(row));
+				out.writeInt(dataSet.getFootage(row));
+				out.writeLong(dataSet.getPriceCents(row));
+				out.writeInt(cityIds[row]);
+				out.writeInt(stateIds[row]);
+				out.writeInt(heapChars);
+				out.writeInt(streetLength);
+				out.writeLong(dataSet.getId(row));
+				heapChars += streetLength;
+			}
+			for (String value : dictionary) {
+				out.writeChars(value);
+			}
+			for (int row = 0; row < count; row++) {
+				out.writeChars(streets[row]);
+			}
+			out.flush();
+			fileOut.getFD().sync();
+			out.close();
+
+			final RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+			try {
+				raf.writeInt(MAGIC);
+				raf.writeInt(VERSION);
+				raf.writeInt(count);
+				raf.writeInt(dictionary.size());
+				raf.writeInt(heapChars);
+				raf.writeInt((int) crc.getValue());
+				final MappedByteBuffer written = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+				final long heapStart = HEADER_SIZE + (long) dictionary.size() * DICTIONARY_ENTRY_SIZE
+						+ (long) count * RECORD_SIZE;
+				raf.writeInt(indexChecksum(written, dictionary.size(), (int) heapStart));
+				raf.getFD().sync();
+			} finally {
+				raf.close();
+			}
+
+			if (!temp.renameTo(file)) {
+				throw new IOException("Failed to rename " + temp + " to " + file);
+			}
+			success = true;
+		} finally {
+			fileOut.close();
+			if (!success) {
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Checks the records and string heap against the checksum in the header.
+	 * This reads the whole file, so call it on a background thread once the
+	 * rows are showing.
+	 *
+	 * @return true if the snapshot is intact
+	 */
+	public boolean verify() {
+		final CRC32 crc = new CRC32();
+		final byte[] chunk = new byte[64 * 1024];
+		final ByteBuffer body = mBuffer.duplicate();
+		body.position(HEADER_SIZE);
+		while (body.hasRemaining()) {
+			final int read = Math.min(chunk.length, body.remaining());
+			body.get(chunk, 0, read);
+			crc.update(chunk, 0, read);
+		}
+		return (int) crc.getValue() == mBuffer.getInt(HEADER_BODY_CRC);
+	}
+
+	@Override
+	public void copyStreetAddress(int row, CharArrayBuffer buffer) {
+		final int record = recordOffset(row);
+		final int offset = mBuffer.getInt(record + RECORD_STREET_OFFSET);
+		final int length = streetLength(offset, mBuffer.getInt(record + RECORD_STREET_LENGTH));
+		if (buffer.data == null || buffer.data.length < length) {
+			buffer.data = new char[length];
+		}
+		readChars(offset, length, buffer.data);
+		buffer.sizeCopied = length;
+	}
+
+	@Override
+	public float getBathroomCount(int row) {
+		return mBuffer.getFloat(recordOffset(row) + RECORD_BATHROOMS);
+	}
+
+	@Override
+	public int getBedroomCount(int row) {
+		return mBuffer.getInt(recordOffset(row) + RECORD_BEDROOMS);
+	}
+
+	/**
+	 * Returns the city for a row; this is a shared String, not a copy
+	 */
+	@Override
+	public String getCity(int row) {
+		return lookup(mBuffer.getInt(recordOffset(row) + RECORD_CITY));
+	}
+
+	@Override
+	public int getCount() {
+		return mCount;
+	}
+
+	@Override
+	public int getFootage(int row) {
+		return mBuffer.getInt(recordOffset(row) + RECORD_FOOTAGE);
+	}
+
+	@Override
+	public long getId(int row) {
+		return mBuffer.getLong(recordOffset(row) + RECORD_ID);
+	}
+
+	@Override
+	public String getPrice(int row) {
+		return PriceFormatter.format(getPriceCents(row));
+	}
+
+	@Override
+	public long getPriceCents(int row) {
+		return mBuffer.getLong(recordOffset(row) + RECORD_PRICE_CENTS);
+	}
+
+	@Override
+	public Property getProperty(int row) {
+		return new Property(getId(row), getBathroomCount(row), getBedroomCount(row), getCity(row),
+				getFootage(row), getPriceCents(row), getState(row), getStreetAddress(row));
+	}
+
+	/**
+	 * Returns the state for a row; this is a shared String, not a copy
+	 */
+	@Override
+	public String getState(int row) {
+		return lookup(mBuffer.getInt(recordOffset(row) + RECORD_STATE));
+	}
+
+	@Override
+	public String getStreetAddress(int row) {
+		final int record = recordOffset(row);
+		final int offset = mBuffer.getInt(record + RECORD_STREET_OFFSET);
+		final char[] chars = new char[streetLength(offset, mBuffer.getInt(record + RECORD_STREET_LENGTH))];
+		readChars(offset, chars.length, chars);
+		return new String(chars);
+	}
+
+	/**
+	 * Returns a dictionary String or an empty String for an id that is out of
+	 * range, which only a corrupt record that hasn't been verified can have
+	 */
+	private String lookup(int id) {
+		return id >= 0 && id < mDictionary.length ? mDictionary[id] : "";
+	}
+
+	/**
+	 * Returns the length of a street address or 0 if it doesn't fit in the
+	 * string heap, which only a corrupt record that hasn't been verified can do
+	 */
+	private int streetLength(int offset, int length) {
+		return offset >= 0 && length >= 0 && (long) offset + length <= mHeapChars ? length : 0;
+	}
+
+	private void readChars(int heapOffset, int length, char[] dest) {
+		// Absolute gets don't touch the buffer's position, so this is safe to
+		// call from several threads at once
+		final MappedByteBuffer buffer = mBuffer;
+		int index = mHeapStart + heapOffset * 2;
+		for (int i = 0; i < length; i++) {
+			dest[i] = buffer.getChar(index);
+			index += 2;
+		}
+	}
+
+	private int recordOffset(int row) {
+		if (row < 0 || row >= mCount) {
+			throw new IndexOutOfBoundsException("Row " + row + " is not in [0, " + mCount + ")");
+		}
+		return mRecordsStart + row * RECORD_SIZE;
+	}
+
+	private static int dictionaryId(String value, HashMap<String, Integer> ids, ArrayList<String> values) {
+		final Integer id = ids.get(value);
+		if (id != null) {
+			return id;
+		}
+		final int newId = values.size();
+		values.add(value);
+		ids.put(value, newId);
+		return newId;
+	}
+
+	/**
+	 * Returns a CRC32 of the header up to this checksum, the dictionary
+	 * entries and the dictionary Strings; the entries must already be known
+	 * to point inside the file
+	 */
+	private static int indexChecksum(ByteBuffer buffer, int dictionaryCount, int heapStart) {
+		final CRC32 crc = new CRC32();
+		final ByteBuffer bytes = buffer.duplicate();
+		final byte[] index = new byte[HEADER_SIZE + dictionaryCount * DICTIONARY_ENTRY_SIZE];
+		bytes.get(index);
+		crc.update(index, 0, HEADER_INDEX_CRC);
+		crc.update(index, HEADER_SIZE, index.length - HEADER_SIZE);
+		for (int i = 0; i < dictionaryCount; i++) {
+			final int entry = HEADER_SIZE + i * DICTIONARY_ENTRY_SIZE;
+			final byte[] chars = new byte[buffer.getInt(entry + 4) * 2];
+			bytes.position(heapStart + buffer.getInt(entry) * 2);
+			bytes.get(chars);
+			crc.update(chars, 0, chars.length);
+		}
+		return (int) crc.getValue();
+	}
+
+	private static PropertySnapshot validate(File file, MappedByteBuffer buffer) {
+		final long length = buffer.capacity();
+		if (length < HEADER_SIZE || buffer.getInt(HEADER_MAGIC) != MAGIC) {
+			Log.w(TAG, "Not a snapshot: " + file);
+			return null;
+		}
+		final int version = buffer.getInt(HEADER_VERSION);
+		if (version != VERSION) {
+			Log.w(TAG, "Unsupported snapshot version " + version + ": " + file);
+			return null;
+		}
+
+		final int count = buffer.getInt(HEADER_ROW_COUNT);
+		final int dictionaryCount = buffer.getInt(HEADER_DICTIONARY_COUNT);
+		final int heapChars = buffer.getInt(HEADER_HEAP_CHARS);
+		final long recordsStart = HEADER_SIZE + (long) dictionaryCount * DICTIONARY_ENTRY_SIZE;
+		final long heapStart = recordsStart + (long) count * RECORD_SIZE;
+		if (count < 0 || dictionaryCount < 0 || heapChars < 0
+				|| heapStart + heapChars * 2L != length) {
+			Log.w(TAG, "Snapshot size doesn't match its header: " + file);
+			return null;
+		}
+
+		for (int i = 0; i < dictionaryCount; i++) {
+			final int entry = HEADER_SIZE + i * DICTIONARY_ENTRY_SIZE;
+			final int offset = buffer.getInt(entry);
+			final int entryLength = buffer.getInt(entry + 4);
+			if (offset < 0 || entryLength < 0 || (long) offset + entryLength > heapChars) {
+				Log.w(TAG, "Snapshot dictionary entry " + i + " is out of range: " + file);
+				return null;
+			}
+		}
+		if (indexChecksum(buffer, dictionaryCount, (int) heapStart) != buffer.getInt(HEADER_INDEX_CRC)) {
+			Log.w(TAG, "Snapshot header checksum mismatch: " + file);
+			return null;
+		}
+
+		final PropertySnapshot snapshot = new PropertySnapshot(buffer, count,
+				new String[dictionaryCount], (int) recordsStart, (int) heapStart, heapChars);
+		final PropertyStringPool pool = PropertyStringPool.getInstance();
+		for (int i = 0; i < dictionaryCount; i++) {
+			final int entry = HEADER_SIZE + i * DICTIONARY_ENTRY_SIZE;
+			final char[] chars = new char[buffer.getInt(entry + 4)];
+			snapshot.readChars(buffer.getInt(entry), chars.length, chars);
+			snapshot.mDictionary[i] = pool.intern(new String(chars));
+		}
+		return snapshot;
+	}
+}
@@ -0,0 +1,230 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The rows of a {@link PropertyDataSet} in every order a list can be sorted
+ * by, computed ahead of time.
+ *
+ * Each sort key gets a permutation of the rows, so switching a list to a
+ * different order is just showing the data set through another permutation;
+ * nothing is sorted on the UI thread. Rows with equal keys stay in arrival
+ * order.
+ *
+ * Building the index sorts four columns, so do it off the UI thread, such as
+ * right after the data set is loaded. Large data sets are sorted on a pool
+ * with one thread per processor that every build shares. The index covers
+ * the rows the data set had when it was built or last synced. Rows appended
+ * to a {@link PropertyTable} while it is still being filled are added with
+ * {@link #sync()}, which sorts just the new rows and merges them into each
+ * permutation instead of sorting everything again. Like the appends, that
+ * has to happen on the thread filling the table, before it is frozen.
+ *
+ * This class is thread safe.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertySortIndex {
+	public static final int SORT_ARRIVAL = 0;
+	public static final int SORT_PRICE = 1;
+	public static final int SORT_FOOTAGE = 2;
+	public static final int SORT_BEDROOMS = 3;
+	public static final int SORT_BATHROOMS = 4;
+	private static final int SORT_KEY_COUNT = 5;
+
+	/**
+	 * Data sets with at least this many rows are sorted on several threads
+	 */
+	private static final int PARALLEL_SORT_THRESHOLD = 64 * 1024;
+
+	/**
+	 * Sorts large data sets; created the first time one is built
+	 */
+	private static ExecutorService sSortExecutor;
+
+	private final PropertyDataSet mDataSet;
+
+	/**
+	 * Rows in order for each SORT_* key; guarded by this along with mCount
+	 */
+	private final int[][] mPermutations = new int[SORT_KEY_COUNT][];
+	private int mCount;
+
+	private PropertySortIndex(PropertyDataSet dataSet, int count) {
+		mDataSet = dataSet;
+		mCount = count;
+	}
+
+	/**
+	 * Builds the permutations for every row currently in the data set
+	 *
+	 * @param dataSet PropertyDataSet to sort
+	 * @return new PropertySortIndex
+	 * @throws InterruptedException if interrupted while waiting for the
+	 *             sorting threads
+	 */
+	public static PropertySortIndex build(PropertyDataSet dataSet) throws InterruptedException {
+		final int count = dataSet.getCount();
+		final PropertySortIndex index = new PropertySortIndex(dataSet, count);
+		final int threadCount = Runtime.getRuntime().availableProcessors();
+		final int[] arrival = new int[count];
+		for (int row = 0; row < count; row++) {
+			arrival[row] = row;
+		}
+		index.mPermutations[SORT_ARRIVAL] = arrival;
+		if (count < PARALLEL_SORT_THRESHOLD || threadCount == 1) {
+			for (int sortKey = SORT_PRICE; sortKey < SORT_KEY_COUNT; sortKey++) {
+				index.mPermutations[sortKey] = RowSorter.sort(getKeys(dataSet, sortKey, count), count);
+			}
+		} else {
+			final ExecutorService executor = getSortExecutor(threadCount);
+			for (int sortKey = SORT_PRICE; sortKey < SORT_KEY_COUNT; sortKey++) {
+				index.mPermutations[sortKey] = RowSorter.parallelSort(
+						getKeys(dataSet, sortKey, count), count, executor, threadCount);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the data set this index sorts
+	 *
+	 * @return the PropertyDataSet
+	 */
+	public PropertyDataSet getDataSet() {
+		return mDataSet;
+	}
+
+	/**
+	 * Returns the data set's rows in the order of a sort key. This doesn't
+	 * copy or sort anything, so it is safe to call on the UI thread.
+	 *
+	 * @param sortKey int SORT_* constant
+	 * @return PropertyDataSet with the rows this index covers in order
+	 */
+	public synchronized PropertyDataSet getSortedDataSet(int sortKey) {
+		checkSortKey(sortKey);
+		return new FilteredDataSet(mDataSet, mPermutations[sortKey]);
+	}
+
+	/**
+	 * Returns some of the data set's rows, such as search results, in the
+	 * order of a sort key. This walks the permutation once without sorting,
+	 * so it is cheap enough to do for every keystroke.
+	 *
+	 * @param sortKey int SORT_* constant
+	 * @param rows int[] rows to include in ascending order
+	 * @return PropertyDataSet with those rows in order
+	 */
+	public PropertyDataSet getSortedDataSet(int sortKey, int[] rows) {
+		if (sortKey == SORT_ARRIVAL) {
+			return new FilteredDataSet(mDataSet, rows);
+		}
+		checkSortKey(sortKey);
+		final int[] permutation;
+		synchronized (this) {
+			// A sync replaces the array rather than changing it
+			permutation = mPermutations[sortKey];
+		}
+		final BitSet included = new BitSet(permutation.length);
+		for (int row : rows) {
+			included.set(row);
+		}
+		final int[] sortedRows = new int[rows.length];
+		int count = 0;
+		for (int i = 0; i < permutation.length && count < sortedRows.length; i++) {
+			if (included.get(permutation[i])) {
+				sortedRows[count++] = permutation[i];
+			}
+		}
+		return new FilteredDataSet(mDataSet,
+				count == sortedRows.length ? sortedRows : Arrays.copyOf(sortedRows, count));
+	}
+
+	/**
+	 * Returns true if the value is one of the SORT_* constants
+	 *
+	 * @param sortKey int to check
+	 * @return true if it can be passed to {@link #getSortedDataSet(int)}
+	 */
+	public static boolean isValidSortKey(int sortKey) {
+		return sortKey >= SORT_ARRIVAL && sortKey < SORT_KEY_COUNT;
+	}
+
+	/**
+	 * Adds any rows appended to the data set since the index was built or
+	 * last synced. The new rows are sorted on their own and merged into each
+	 * permutation, which is much cheaper than sorting everything again. Data
+	 * sets already returned by {@link #getSortedDataSet(int)} don't change.
+	 */
+	public synchronized void sync() {
+		final int oldCount = mCount;
+		final int count = mDataSet.getCount();
+		if (count <= oldCount) {
+			return;
+		}
+		final int[] arrival = Arrays.copyOf(mPermutations[SORT_ARRIVAL], count);
+		for (int row = oldCount; row < count; row++) {
+			arrival[row] = row;
+		}
+		mPermutations[SORT_ARRIVAL] = arrival;
+		final int[] newRows = new int[count - oldCount];
+		for (int sortKey = SORT_PRICE; sortKey < SORT_KEY_COUNT; sortKey++) {
+			final long[] keys = getKeys(mDataSet, sortKey, count);
+			for (int i = 0; i < newRows.length; i++) {
+				newRows[i] = oldCount + i;
+			}
+			RowSorter.sort(keys, newRows, 0, newRows.length - 1);
+			mPermutations[sortKey] = RowSorter.merge(keys, mPermutations[sortKey], newRows);
+		}
+		mCount = count;
+	}
+
+	private static void checkSortKey(int sortKey) {
+		if (!isValidSortKey(sortKey)) {
+			throw new IllegalArgumentException("Unknown sort key: " + sortKey);
+		}
+	}
+
+	private static synchronized ExecutorService getSortExecutor(int threadCount) {
+		if (sSortExecutor == null) {
+			sSortExecutor = Executors.newFixedThreadPool(threadCount);
+		}
+		return sSortExecutor;
+	}
+
+	/**
+	 * Reads one column of the data set as sortable long keys
+	 */
+	private static long[] getKeys(PropertyDataSet dataSet, int sortKey, int count) {
+		final long[] keys = new long[count];
+		switch (sortKey) {
+		case SORT_PRICE:
+			for (int row = 0; row < count; row++) {
+				keys[row] = dataSet.getPriceCents(row);
+			}
+			break;
+		case SORT_FOOTAGE:
+			for (int row = 0; row < count; row++) {
+				keys[row] = dataSet.getFootage(row);
+			}
+			break;
+		case SORT_BEDROOMS:
+			for (int row = 0; row < count; row++) {
+				keys[row] = dataSet.getBedroomCount(row);
+			}
+			break;
+		case SORT_BATHROOMS:
+			for (int row = 0; row < count; row++) {
+				keys[row] = RowSorter.floatKey(dataSet.getBathroomCount(row));
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("No key column for sort key: " + sortKey);
+		}
+		return keys;
+	}
+}
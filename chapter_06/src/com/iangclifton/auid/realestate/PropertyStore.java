@@ -0,0 +1,380 @@
+package com.iangclifton.auid.realestate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Keeps sets of listings in a SQLite database, as an alternative to
+ * {@link PropertySnapshot} files.
+ *
+ * Every listing is a row with typed columns in the listings table, and the
+ * columns queries filter on (price, bedrooms, footage and city) are indexed,
+ * so {@link #query(PagedDataSet, PropertyQuery)} only visits the matching
+ * rows. Storing a data set inserts every row in a single transaction through
+ * one compiled statement.
+ *
+ * {@link #load(String)} returns a {@link PagedDataSet}, which reads the rows
+ * a page at a time as they are needed and keeps only a few pages in memory,
+ * so a list backed by the store holds roughly the rows around the visible
+ * ones no matter how many listings there are.
+ *
+ * Each time a data set is stored it gets a new generation. The previous
+ * generation is kept, so data sets loaded before a refresh can still be read
+ * while they are compared with the new listings; older ones are deleted.
+ *
+ * This class is thread safe. Every method can block on disk access, so call
+ * them off the UI thread.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyStore {
+	private static final String TAG = "PropertyStore";
+
+	private static final String DATABASE_NAME = "listings.db";
+	private static final int DATABASE_VERSION = 1;
+
+	private static final String TABLE_DATA_SETS = "data_sets";
+	private static final String TABLE_LISTINGS = "listings";
+
+	private static final String COLUMN_GENERATION = "_id";
+	private static final String COLUMN_NAME = "name";
+	private static final String COLUMN_ROW_COUNT = "row_count";
+
+	private static final String COLUMN_DATA_SET = "data_set";
+	private static final String COLUMN_POSITION = "position";
+	private static final String COLUMN_LISTING_ID = "listing_id";
+	private static final String COLUMN_BATHROOMS = "bathrooms";
+	private static final String COLUMN_BEDROOMS = "bedrooms";
+	private static final String COLUMN_CITY = "city";
+	private static final String COLUMN_FOOTAGE = "footage";
+	private static final String COLUMN_PRICE_CENTS = "price_cents";
+	private static final String COLUMN_STATE = "state";
+	private static final String COLUMN_STREET_ADDRESS = "street_address";
+
+	private static final String INSERT_LISTING = "INSERT INTO " + TABLE_LISTINGS + " ("
+			+ COLUMN_DATA_SET + ", " + COLUMN_POSITION + ", " + COLUMN_LISTING_ID + ", "
+			+ COLUMN_BATHROOMS + ", " + COLUMN_BEDROOMS + ", " + COLUMN_CITY + ", "
+			+ COLUMN_FOOTAGE + ", " + COLUMN_PRICE_CENTS + ", " + COLUMN_STATE + ", "
+			+ COLUMN_STREET_ADDRESS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	/**
+	 * Reads a range of positions; the column order matches the PAGE_* indexes
+	 */
+	private static final String SELECT_PAGE = "SELECT " + COLUMN_LISTING_ID + ", "
+			+ COLUMN_BATHROOMS + ", " + COLUMN_BEDROOMS + ", " + COLUMN_CITY + ", "
+			+ COLUMN_FOOTAGE + ", " + COLUMN_PRICE_CENTS + ", " + COLUMN_STATE + ", "
+			+ COLUMN_STREET_ADDRESS + " FROM " + TABLE_LISTINGS + " WHERE " + COLUMN_DATA_SET
+			+ " = ? AND " + COLUMN_POSITION + " >= ? AND " + COLUMN_POSITION + " < ? ORDER BY "
+			+ COLUMN_POSITION;
+	private static final int PAGE_LISTING_ID = 0;
+	private static final int PAGE_BATHROOMS = 1;
+	private static final int PAGE_BEDROOMS = 2;
+	private static final int PAGE_CITY = 3;
+	private static final int PAGE_FOOTAGE = 4;
+	private static final int PAGE_PRICE_CENTS = 5;
+	private static final int PAGE_STATE = 6;
+	private static final int PAGE_STREET_ADDRESS = 7;
+
+	private static PropertyStore sInstance;
+
+	private final DatabaseHelper mHelper;
+
+	private PropertyStore(Context context) {
+		this(context, DATABASE_NAME);
+	}
+
+	/**
+	 * Constructs a PropertyStore in its own database file, so that it
+	 * doesn't share listings with the app
+	 *
+	 * @param context Context used to find the database
+	 * @param databaseName String name of the database file
+	 */
+	/*package*/ PropertyStore(Context context, String databaseName) {
+		mHelper = new DatabaseHelper(context, databaseName);
+	}
+
+	/**
+	 * Returns the process-wide PropertyStore
+	 *
+	 * @param context Context used to find the database
+	 * @return the shared PropertyStore
+	 */
+	public static synchronized PropertyStore getInstance(Context context) {
+		if (sInstance == null) {
+			sInstance = new PropertyStore(context.getApplicationContext());
+		}
+		return sInstance;
+	}
+
+	/**
+	 * Stores a data set under a name as a new generation, replacing what was
+	 * stored under that name for future loads
+	 *
+	 * @param name String data set id
+	 * @param dataSet PropertyDataSet to store
+	 * @throws IOException if the database could not be written
+	 */
+	public void ingest(String name, PropertyDataSet dataSet) throws IOException {
+		final long start = SystemClock.elapsedRealtime();
+		final int count = dataSet.getCount();
+		try {
+			final SQLiteDatabase db = mHelper.getWritableDatabase();
+			final SQLiteStatement insert = db.compileStatement(INSERT_LISTING);
+			db.beginTransaction();
+			try {
+				final long previousGeneration = getLatestGeneration(db, name);
+				final long generation = insertDataSet(db, name, count);
+
+				// Every parameter is bound for every row, so there's nothing
+				// to clear between rows
+				for (int row = 0; row < count; row++) {
+					insert.bindLong(1, generation);
+					insert.bindLong(2, row);
+					insert.bindLong(3, dataSet.getId(row));
+					insert.bindDouble(4, dataSet.getBathroomCount(row));
+					insert.bindLong(5, dataSet.getBedroomCount(row));
+					insert.bindString(6, dataSet.getCity(row));
+					insert.bindLong(7, dataSet.getFootage(row));
+					insert.bindLong(8, dataSet.getPriceCents(row));
+					insert.bindString(9, dataSet.getState(row));
+					insert.bindString(10, dataSet.getStreetAddress(row));
+					insert.executeInsert();
+				}
+				deleteGenerationsBefore(db, name, previousGeneration);
+				db.setTransactionSuccessful();
+			} finally {
+				db.endTransaction();
+				insert.close();
+			}
+		} catch (SQLException e) {
+			throw new IOException("Failed to store " + name, e);
+		}
+
+		final long elapsed = Math.max(SystemClock.elapsedRealtime() - start, 1);
+		Log.d(TAG, "Stored " + count + " listings of " + name + " in " + elapsed + "ms ("
+				+ (count * 1000L / elapsed) + " rows/s)");
+	}
+
+	/**
+	 * Returns the most recently stored generation of a data set
+	 *
+	 * @param name String data set id
+	 * @return PagedDataSet or null if nothing is stored under the name
+	 * @throws IOException if the database could not be read
+	 */
+	public PagedDataSet load(String name) throws IOException {
+		try {
+			final Cursor cursor = mHelper.getReadableDatabase().rawQuery("SELECT " + COLUMN_GENERATION
+					+ ", " + COLUMN_ROW_COUNT + " FROM " + TABLE_DATA_SETS + " WHERE " + COLUMN_NAME
+					+ " = ? ORDER BY " + COLUMN_GENERATION + " DESC LIMIT 1", new String[] { name });
+			try {
+				if (!cursor.moveToNext()) {
+					return null;
+				}
+				return new PagedDataSet(this, cursor.getLong(0), cursor.getInt(1));
+			} finally {
+				cursor.close();
+			}
+		} catch (SQLException e) {
+			throw new IOException("Failed to load " + name, e);
+		}
+	}
+
+	/**
+	 * Returns the rows of a stored data set that match a query, using the
+	 * column indexes
+	 *
+	 * @param dataSet PagedDataSet returned by {@link #load(String)}
+	 * @param query PropertyQuery to filter by
+	 * @return int[] matching rows in ascending order
+	 * @throws IOException if the database could not be read
+	 */
+	public int[] query(PagedDataSet dataSet, PropertyQuery query) throws IOException {
+		final StringBuilder sql = new StringBuilder("SELECT ").append(COLUMN_POSITION)
+				.append(" FROM ").append(TABLE_LISTINGS)
+				.append(" WHERE ").append(COLUMN_DATA_SET).append(" = ?");
+		// Bathrooms were stored as the float widened to a double, so the
+		// bounds are widened the same way to compare equal
+		final ArrayList<String> args = new ArrayList<String>();
+		args.add(Long.toString(dataSet.getGeneration()));
+		if (query.getMinBathrooms() != Float.NEGATIVE_INFINITY) {
+			appendClause(sql, args, COLUMN_BATHROOMS, " >= ?", Double.toString(query.getMinBathrooms()));
+		}
+		if (query.getMaxBathrooms() != Float.POSITIVE_INFINITY) {
+			appendClause(sql, args, COLUMN_BATHROOMS, " <= ?", Double.toString(query.getMaxBathrooms()));
+		}
+		if (query.getMinBedrooms() != Integer.MIN_VALUE) {
+			appendClause(sql, args, COLUMN_BEDROOMS, " >= ?", Integer.toString(query.getMinBedrooms()));
+		}
+		if (query.getMaxBedrooms() != Integer.MAX_VALUE) {
+			appendClause(sql, args, COLUMN_BEDROOMS, " <= ?", Integer.toString(query.getMaxBedrooms()));
+		}
+		if (query.getMinFootage() != Integer.MIN_VALUE) {
+			appendClause(sql, args, COLUMN_FOOTAGE, " >= ?", Integer.toString(query.getMinFootage()));
+		}
+		if (query.getMaxFootage() != Integer.MAX_VALUE) {
+			appendClause(sql, args, COLUMN_FOOTAGE, " <= ?", Integer.toString(query.getMaxFootage()));
+		}
+		if (query.getMinPriceCents() != Long.MIN_VALUE) {
+			appendClause(sql, args, COLUMN_PRICE_CENTS, " >= ?", Long.toString(query.getMinPriceCents()));
+		}
+		if (query.getMaxPriceCents() != Long.MAX_VALUE) {
+			appendClause(sql, args, COLUMN_PRICE_CENTS, " <= ?", Long.toString(query.getMaxPriceCents()));
+		}
+		if (query.getCity() != null) {
+			appendClause(sql, args, COLUMN_CITY, " = ?", query.getCity());
+		}
+		if (query.getState() != null) {
+			appendClause(sql, args, COLUMN_STATE, " = ?", query.getState());
+		}
+		sql.append(" ORDER BY ").append(COLUMN_POSITION);
+
+		try {
+			final Cursor cursor = mHelper.getReadableDatabase().rawQuery(sql.toString(),
+					args.toArray(new String[args.size()]));
+			try {
+				final int[] rows = new int[cursor.getCount()];
+				int count = 0;
+				while (cursor.moveToNext() && count < rows.length) {
+					rows[count++] = cursor.getInt(0);
+				}
+				return rows;
+			} finally {
+				cursor.close();
+			}
+		} catch (SQLException e) {
+			throw new IOException("Failed to query generation " + dataSet.getGeneration(), e);
+		}
+	}
+
+	/**
+	 * Reads consecutive rows of a stored generation into a page or returns
+	 * null if the generation has been deleted
+	 */
+	/*package*/ PagedDataSet.Page readPage(long generation, int start, int count) {
+		final Cursor cursor = mHelper.getReadableDatabase().rawQuery(SELECT_PAGE, new String[] {
+				Long.toString(generation), Integer.toString(start), Integer.toString(start + count) });
+		try {
+			final PagedDataSet.Page page = new PagedDataSet.Page(start, count);
+			final PropertyStringPool pool = PropertyStringPool.getInstance();
+			int i = 0;
+			while (i < count && cursor.moveToNext()) {
+				page.setRow(i, cursor.getLong(PAGE_LISTING_ID), cursor.getFloat(PAGE_BATHROOMS),
+						cursor.getInt(PAGE_BEDROOMS), pool.intern(cursor.getString(PAGE_CITY)),
+						cursor.getInt(PAGE_FOOTAGE), cursor.getLong(PAGE_PRICE_CENTS),
+						pool.intern(cursor.getString(PAGE_STATE)), cursor.getString(PAGE_STREET_ADDRESS));
+				i++;
+			}
+			return i == count ? page : null;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Returns the newest generation of a data set or 0 if there is none
+	 */
+	private static long getLatestGeneration(SQLiteDatabase db, String name) {
+		final SQLiteStatement select = db.compileStatement("SELECT IFNULL(MAX(" + COLUMN_GENERATION
+				+ "), 0) FROM " + TABLE_DATA_SETS + " WHERE " + COLUMN_NAME + " = ?");
+		try {
+			select.bindString(1, name);
+			return select.simpleQueryForLong();
+		} finally {
+			select.close();
+		}
+	}
+
+	/**
+	 * Adds a generation of a data set and returns it
+	 */
+	private static long insertDataSet(SQLiteDatabase db, String name, int count) {
+		final SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_DATA_SETS
+				+ " (" + COLUMN_NAME + ", " + COLUMN_ROW_COUNT + ") VALUES (?, ?)");
+		try {
+			insert.bindString(1, name);
+			insert.bindLong(2, count);
+			return insert.executeInsert();
+		} finally {
+			insert.close();
+		}
+	}
+
+	private static void appendClause(StringBuilder sql, ArrayList<String> args, String column,
+			String comparison, String value) {
+		sql.append(" AND ").append(column).append(comparison);
+		args.add(value);
+	}
+
+	/**
+	 * Deletes every generation of a data set older than the given one
+	 */
+	private static void deleteGenerationsBefore(SQLiteDatabase db, String name, long generation) {
+		final String[] args = new String[] { name, Long.toString(generation) };
+		db.execSQL("DELETE FROM " + TABLE_LISTINGS + " WHERE " + COLUMN_DATA_SET + " IN (SELECT "
+				+ COLUMN_GENERATION + " FROM " + TABLE_DATA_SETS + " WHERE " + COLUMN_NAME
+				+ " = ? AND " + COLUMN_GENERATION + " < ?)", args);
+		db.delete(TABLE_DATA_SETS, COLUMN_NAME + " = ? AND " + COLUMN_GENERATION + " < ?", args);
+	}
+
+	/**
+	 * Creates the schema. Every index leads with the data set, since every
+	 * query is limited to one.
+	 */
+	private static class DatabaseHelper extends SQLiteOpenHelper {
+
+		/*package*/ DatabaseHelper(Context context, String databaseName) {
+			super(context, databaseName, null, DATABASE_VERSION);
+		}
+
+		@Override
+		public void onCreate(SQLiteDatabase db) {
+			db.execSQL("CREATE TABLE " + TABLE_DATA_SETS + " ("
+					+ COLUMN_GENERATION + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+					+ COLUMN_NAME + " TEXT NOT NULL, "
+					+ COLUMN_ROW_COUNT + " INTEGER NOT NULL)");
+			db.execSQL("CREATE INDEX " + TABLE_DATA_SETS + "_" + COLUMN_NAME + " ON "
+					+ TABLE_DATA_SETS + " (" + COLUMN_NAME + ", " + COLUMN_GENERATION + ")");
+
+			db.execSQL("CREATE TABLE " + TABLE_LISTINGS + " ("
+					+ COLUMN_DATA_SET + " INTEGER NOT NULL, "
+					+ COLUMN_POSITION + " INTEGER NOT NULL, "
+					+ COLUMN_LISTING_ID + " INTEGER NOT NULL, "
+					+ COLUMN_BATHROOMS + " REAL NOT NULL, "
+					+ COLUMN_BEDROOMS + " INTEGER NOT NULL, "
+					+ COLUMN_CITY + " TEXT NOT NULL, "
+					+ COLUMN_FOOTAGE + " INTEGER NOT NULL, "
+					+ COLUMN_PRICE_CENTS + " INTEGER NOT NULL, "
+					+ COLUMN_STATE + " TEXT NOT NULL, "
+					+ COLUMN_STREET_ADDRESS + " TEXT NOT NULL, "
+					+ "PRIMARY KEY (" + COLUMN_DATA_SET + ", " + COLUMN_POSITION + "))");
+			createListingIndex(db, COLUMN_PRICE_CENTS);
+			createListingIndex(db, COLUMN_BEDROOMS);
+			createListingIndex(db, COLUMN_FOOTAGE);
+			createListingIndex(db, COLUMN_CITY);
+		}
+
+		@Override
+		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+			// Everything in here can be fetched again
+			db.execSQL("DROP TABLE IF EXISTS " + TABLE_LISTINGS);
+			db.execSQL("DROP TABLE IF EXISTS " + TABLE_DATA_SETS);
+			onCreate(db);
+		}
+
+		private static void createListingIndex(SQLiteDatabase db, String column) {
+			db.execSQL("CREATE INDEX " + TABLE_LISTINGS + "_" + column + " ON " + TABLE_LISTINGS
+					+ " (" + COLUMN_DATA_SET + ", " + column + ")");
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe pool of canonical Strings for Property fields that only have a
+ * handful of distinct values, such as city and state.
+ *
+ * Passing a value through {@link #intern(String)} returns the one shared
+ * instance that is equal to it, so thousands of listings in the same city
+ * hold a single String instead of one copy each. It also means two pooled
+ * values are equal exactly when they are the same instance, so
+ * {@link String#equals(Object)} returns on its first identity check.
+ *
+ * The pool stops accepting new values once it holds {@link #MAX_ENTRIES}
+ * Strings so that a feed with unexpectedly unique values can't grow it
+ * without bound; such values are returned as-is.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyStringPool {
+
+	/**
+	 * The maximum number of distinct Strings the pool will hold
+	 */
+	public static final int MAX_ENTRIES = 4096;
+
+	/**
+	 * Approximate heap cost of a String object and its char array header, not
+	 * counting the chars themselves
+	 */
+	private static final int STRING_OVERHEAD_BYTES = 40;
+
+	private static final PropertyStringPool sInstance = new PropertyStringPool();
+
+	private final AtomicLong mBytesSaved = new AtomicLong();
+	private final AtomicLong mHits = new AtomicLong();
+	private final AtomicLong mMisses = new AtomicLong();
+	private final ConcurrentHashMap<String, String> mPool = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * Returns the process-wide PropertyStringPool
+	 *
+	 * @return the shared PropertyStringPool
+	 */
+	public static PropertyStringPool getInstance() {
+		return sInstance;
+	}
+
+	/**
+	 * Returns an estimate of the heap saved by returning pooled instances
+	 * instead of keeping the duplicates; passing in a String that is already
+	 * the pooled instance counts as a hit but saves nothing
+	 *
+	 * @return long number of bytes saved
+	 */
+	public long getBytesSaved() {
+		return mBytesSaved.get();
+	}
+
+	/**
+	 * Returns the number of {@link #intern(String)} calls that found an
+	 * existing instance
+	 *
+	 * @return long hit count
+	 */
+	public long getHitCount() {
+		return mHits.get();
+	}
+
+	/**
+	 * Returns the fraction of {@link #intern(String)} calls that found an
+	 * existing instance
+	 *
+	 * @return float from 0 to 1, or 0 if nothing has been interned
+	 */
+	public float getHitRate() {
+		final long hits = mHits.get();
+		final long total = hits + mMisses.get();
+		return total == 0 ? 0f : (float) hits / total;
+	}
+
+	/**
+	 * Returns the number of {@link #intern(String)} calls that did not find an
+	 * existing instance
+	 *
+	 * @return long miss count
+	 */
+	public long getMissCount() {
+		return mMisses.get();
+	}
+
+	/**
+	 * Returns the number of distinct Strings in the pool
+	 *
+	 * @return int pool size
+	 */
+	public int size() {
+		return mPool.size();
+	}
+
+	/**
+	 * Returns the canonical instance equal to the passed String
+	 *
+	 * @param value String to look up; may be null
+	 * @return the pooled String, or value itself if it is new or null
+	 */
+	public String intern(String value) {
+		if (value == null) {
+			return null;
+		}
+		final String pooled = mPool.get(value);
+		if (pooled != null) {
+			recordHit(pooled, value);
+			return pooled;
+		}
+		mMisses.incrementAndGet();
+		if (mPool.size() >= MAX_ENTRIES) {
+			return value;
+		}
+		final String raced = mPool.putIfAbsent(value, value);
+		return raced == null ? value : raced;
+	}
+
+	@Override
+	public String toString() {
+		return "PropertyStringPool[size=" + size() + ", hits=" + getHitCount()
+				+ ", misses=" + getMissCount() + ", hitRate=" + getHitRate()
+				+ ", bytesSaved=" + getBytesSaved() + "]";
+	}
+
+	private void recordHit(String pooled, String value) {
+		mHits.incrementAndGet();
+		if (pooled != value) {
+			// Interning the pooled instance again saves nothing
+			mBytesSaved.addAndGet(STRING_OVERHEAD_BYTES + pooled.length() * 2);
+		}
+	}
+}
@@ -0,0 +1,599 @@
+package com.iangclifton.auid.realestate;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import android.database.CharArrayBuffer;
+
+/**
+ * Columnar (struct-of-arrays) storage for a large set of listings.
+ *
+ * Instead of one Property object per listing, each field is stored in its own
+ * primitive array that is indexed by row. City and state come from a small
+ * set of values, so they are stored as int ids into a dictionary of unique
+ * Strings. Prices are stored in cents so they can be sorted as primitives.
+ * Street addresses are packed end to end into a single array with an offset
+ * per row, one byte per character as long as every address is ISO-8859-1.
+ * Freezing the table trims every column to the number of rows.
+ *
+ * Rows can be read without allocating a Property, which makes this suitable
+ * for binding list items directly. Use {@link #getProperty(int)} when a full
+ * Property is needed.
+ *
+ * A table is filled by one thread and then frozen with {@link #freeze()},
+ * after which {@link #add(AbstractProperty)} throws. Once frozen, it never changes,
+ * so it can be read from any thread as long as it was handed over safely,
+ * such as through {@link PropertyRepository}, which freezes the tables it
+ * fetches before publishing them under its lock or through the load's
+ * FutureTask. Nothing here is synchronized: reading a table while it is
+ * still being filled, or filling it from two threads, is not safe.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyTable implements PropertyDataSet {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private float[] mBathroomCounts;
+	private int[] mBedroomCounts;
+	private int[] mCityIds;
+	private int[] mFootages;
+	private long[] mIds;
+	private long[] mPriceCents;
+	private int[] mStateIds;
+
+	/**
+	 * Packed street address characters for every row
+	 */
+	private final PackedText mStreetAddresses = new PackedText();
+
+	private final StringDictionary mCities = new StringDictionary();
+	private final StringDictionary mStates = new StringDictionary();
+
+	private int mCount;
+
+	/**
+	 * Set once the table is published; volatile so an add from another
+	 * thread after that fails rather than going unnoticed
+	 */
+	private volatile boolean mFrozen;
+
+	/**
+	 * Constructs an empty PropertyTable
+	 */
+	public PropertyTable() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs an empty PropertyTable with room for the specified number of
+	 * rows before any column has to grow
+	 *
+	 * @param capacity int initial number of rows
+	 */
+	public PropertyTable(int capacity) {
+		capacity = Math.max(capacity, 1);
+		mBathroomCounts = new float[capacity];
+		mBedroomCounts = new int[capacity];
+		mCityIds = new int[capacity];
+		mFootages = new int[capacity];
+		mIds = new long[capacity];
+		mPriceCents = new long[capacity];
+		mStateIds = new int[capacity];
+	}
+
+	/**
+	 * Returns a new PropertyTable containing every listing in the List
+	 *
+	 * @param properties List of Property or LazyProperty objects to copy in,
+	 *            in order
+	 * @return new PropertyTable
+	 */
+	public static PropertyTable fromList(List<? extends AbstractProperty> properties) {
+		final int size = properties.size();
+		final PropertyTable table = new PropertyTable(size);
+		for (int i = 0; i < size; i++) {
+			table.add(properties.get(i));
+		}
+		return table;
+	}
+
+	/**
+	 * Appends a listing as a new row
+	 *
+	 * @param property Property or LazyProperty to append
+	 * @return int row the listing was stored at
+	 * @throws IllegalStateException if the table has been frozen
+	 */
+	public int add(AbstractProperty property) {
+		return add(property.getId(), property.getBathroomCount(), property.getBedroomCount(), property.getCity(),
+				property.getFootage(), property.getPriceCents(), property.getState(),
+				property.getStreetAddress());
+	}
+
+	/**
+	 * Appends a new row from individual values without needing a Property,
+	 * deriving its id from the address like a Property does
+	 *
+	 * @param bathroomCount float number of bathrooms
+	 * @param bedroomCount int number of bedrooms
+	 * @param city String city like "Seattle"
+	 * @param footage int square footage
+	 * @param priceCents long price in cents
+	 * @param state String abbreviated state like "WA"
+	 * @param streetAddress String street address; null is stored as an empty
+	 *            address
+	 * @return int row the values were stored at
+	 * @throws IllegalStateException if the table has been frozen
+	 */
+	public int add(float bathroomCount, int bedroomCount, String city, int footage,
+			long priceCents, String state, String streetAddress) {
+		return add(Property.deriveId(city, state, streetAddress), bathroomCount, bedroomCount,
+				city, footage, priceCents, state, streetAddress);
+	}
+
+	/**
+	 * Appends a new row from individual values without needing a Property
+	 *
+	 * @param id long stable id of the listing
+	 * @param bathroomCount float number of bathrooms
+	 * @param bedroomCount int number of bedrooms
+	 * @param city String city like "Seattle"
+	 * @param footage int square footage
+	 * @param priceCents long price in cents
+	 * @param state String abbreviated state like "WA"
+	 * @param streetAddress String street address; null is stored as an empty
+	 *            address
+	 * @return int row the values were stored at
+	 * @throws IllegalStateException if the table has been frozen
+	 */
+	public int add(long id, float bathroomCount, int bedroomCount, String city, int footage,
+			long priceCents, String state, String streetAddress) {
+		if (mFrozen) {
+			throw new IllegalStateException("Cannot add rows to a frozen PropertyTable");
+		}
+		if (mCount == mBathroomCounts.length) {
+			grow();
+		}
+		final int row = mCount;
+		mBathroomCounts[row] = bathroomCount;
+		mBedroomCounts[row] = bedroomCount;
+		mCityIds[row] = mCities.idOf(city);
+		mFootages[row] = footage;
+		mIds[row] = id;
+		mStateIds[row] = mStates.idOf(state);
+		mPriceCents[row] = priceCents;
+		mStreetAddresses.append(streetAddress == null ? "" : streetAddress);
+		mCount++;
+		return row;
+	}
+
+	/**
+	 * Copies the price of a row into the buffer, reallocating the buffer's
+	 * data if it is too small
+	 *
+	 * @param row int row to read
+	 * @param buffer CharArrayBuffer to copy into
+	 */
+	public void copyPrice(int row, CharArrayBuffer buffer) {
+		checkRow(row);
+		final String price = PriceFormatter.format(mPriceCents[row]);
+		final int length = price.length();
+		if (buffer.data == null || buffer.data.length < length) {
+			buffer.data = new char[length];
+		}
+		price.getChars(0, length, buffer.data, 0);
+		buffer.sizeCopied = length;
+	}
+
+	/**
+	 * Copies the street address of a row into the buffer, reallocating the
+	 * buffer's data if it is too small
+	 *
+	 * @param row int row to read
+	 * @param buffer CharArrayBuffer to copy into
+	 */
+	@Override
+	public void copyStreetAddress(int row, CharArrayBuffer buffer) {
+		checkRow(row);
+		mStreetAddresses.copy(row, buffer);
+	}
+
+	/**
+	 * Returns the dictionary id used for a city
+	 *
+	 * @param city String city like "Seattle"
+	 * @return int city id, or -1 if no row has that city
+	 */
+	public int findCityId(String city) {
+		return mCities.find(city);
+	}
+
+	/**
+	 * Returns the dictionary id used for a state
+	 *
+	 * @param state String abbreviated state like "WA"
+	 * @return int state id, or -1 if no row has that state
+	 */
+	public int findStateId(String state) {
+		return mStates.find(state);
+	}
+
+	/**
+	 * Stops any more rows from being added and trims the spare capacity from
+	 * every column. Call this on the thread that filled the table before
+	 * handing it to other threads.
+	 */
+	public void freeze() {
+		if (mFrozen) {
+			return;
+		}
+		if (mBathroomCounts.length > mCount) {
+			resize(Math.max(mCount, 1));
+		}
+		mStreetAddresses.trim();
+		mFrozen = true;
+	}
+
+	/**
+	 * Returns the number of bathrooms for a row
+	 *
+	 * @param row int row to read
+	 * @return the bathroomCount
+	 */
+	@Override
+	public float getBathroomCount(int row) {
+		checkRow(row);
+		return mBathroomCounts[row];
+	}
+
+	/**
+	 * Returns the number of bedrooms for a row
+	 *
+	 * @param row int row to read
+	 * @return the bedroomCount
+	 */
+	@Override
+	public int getBedroomCount(int row) {
+		checkRow(row);
+		return mBedroomCounts[row];
+	}
+
+	/**
+	 * Returns the city for a row; this is a shared String, not a copy
+	 *
+	 * @param row int row to read
+	 * @return the city
+	 */
+	@Override
+	public String getCity(int row) {
+		checkRow(row);
+		return mCities.get(mCityIds[row]);
+	}
+
+	/**
+	 * Returns the dictionary id of the city for a row; rows with equal
+	 * cities have equal ids
+	 *
+	 * @param row int row to read
+	 * @return int city id
+	 */
+	public int getCityId(int row) {
+		checkRow(row);
+		return mCityIds[row];
+	}
+
+	/**
+	 * Returns the number of distinct cities; city ids are 0 to this - 1
+	 *
+	 * @return int number of cities
+	 */
+	public int getCityCount() {
+		return mCities.size();
+	}
+
+	/**
+	 * Returns the number of rows
+	 *
+	 * @return int number of rows
+	 */
+	@Override
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Returns the square footage for a row
+	 *
+	 * @param row int row to read
+	 * @return the footage
+	 */
+	@Override
+	public int getFootage(int row) {
+		checkRow(row);
+		return mFootages[row];
+	}
+
+	/**
+	 * Returns the stable id for a row
+	 *
+	 * @param row int row to read
+	 * @return the id
+	 */
+	@Override
+	public long getId(int row) {
+		checkRow(row);
+		return mIds[row];
+	}
+
+	/**
+	 * Returns the displayable price for a row; repeated prices return the
+	 * same cached String from {@link PriceFormatter}
+	 *
+	 * @param row int row to read
+	 * @return the price
+	 */
+	@Override
+	public String getPrice(int row) {
+		checkRow(row);
+		return PriceFormatter.format(mPriceCents[row]);
+	}
+
+	/**
+	 * Returns the price in cents for a row
+	 *
+	 * @param row int row to read
+	 * @return the priceCents
+	 */
+	@Override
+	public long getPriceCents(int row) {
+		checkRow(row);
+		return mPriceCents[row];
+	}
+
+	/**
+	 * Returns a new Property with the values of a row
+	 *
+	 * @param row int row to read
+	 * @return new Property
+	 */
+	@Override
+	public Property getProperty(int row) {
+		checkRow(row);
+		return new Property(mIds[row], mBathroomCounts[row], mBedroomCounts[row], getCity(row),
+				mFootages[row], mPriceCents[row], getState(row), getStreetAddress(row));
+	}
+
+	/**
+	 * Returns the abbreviated state for a row; this is a shared String, not a
+	 * copy
+	 *
+	 * @param row int row to read
+	 * @return the state
+	 */
+	@Override
+	public String getState(int row) {
+		checkRow(row);
+		return mStates.get(mStateIds[row]);
+	}
+
+	/**
+	 * Returns the number of distinct states; state ids are 0 to this - 1
+	 *
+	 * @return int number of states
+	 */
+	public int getStateCount() {
+		return mStates.size();
+	}
+
+	/**
+	 * Returns the dictionary id of the state for a row; rows with equal states
+	 * have equal ids
+	 *
+	 * @param row int row to read
+	 * @return int state id
+	 */
+	public int getStateId(int row) {
+		checkRow(row);
+		return mStateIds[row];
+	}
+
+	/**
+	 * Returns the street address for a row as a new String
+	 *
+	 * @param row int row to read
+	 * @return the streetAddress
+	 */
+	@Override
+	public String getStreetAddress(int row) {
+		checkRow(row);
+		return mStreetAddresses.get(row);
+	}
+
+	/**
+	 * Returns true if rows can no longer be added
+	 *
+	 * @return true once {@link #freeze()} has been called
+	 */
+	public boolean isFrozen() {
+		return mFrozen;
+	}
+
+	/**
+	 * Returns every row ordered by ascending price; rows with the same price
+	 * keep their relative order
+	 *
+	 * @return new int[] where element i is the row at sorted position i
+	 */
+	public int[] sortRowsByPrice() {
+		return RowSorter.sort(mPriceCents, mCount);
+	}
+
+	private void checkRow(int row) {
+		if (row < 0 || row >= mCount) {
+			throw new IndexOutOfBoundsException("Row " + row + " is not in [0, " + mCount + ")");
+		}
+	}
+
+	private void grow() {
+		resize(mBathroomCounts.length * 2);
+	}
+
+	private void resize(int capacity) {
+		mBathroomCounts = Arrays.copyOf(mBathroomCounts, capacity);
+		mBedroomCounts = Arrays.copyOf(mBedroomCounts, capacity);
+		mCityIds = Arrays.copyOf(mCityIds, capacity);
+		mFootages = Arrays.copyOf(mFootages, capacity);
+		mIds = Arrays.copyOf(mIds, capacity);
+		mPriceCents = Arrays.copyOf(mPriceCents, capacity);
+		mStateIds = Arrays.copyOf(mStateIds, capacity);
+	}
+
+	/**
+	 * Strings for every row packed into one array
+	 */
+	private static class PackedText {
+		private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+		/**
+		 * Characters of every row, one byte each, while every character
+		 * appended has been ISO-8859-1; null once one hasn't
+		 */
+		private byte[] mBytes = new byte[256];
+
+		/**
+		 * Characters of every row once mBytes has been widened
+		 */
+		private char[] mChars;
+		private int mLength;
+
+		/**
+		 * Start offset of every row plus the end of the last row
+		 */
+		private int[] mOffsets = new int[DEFAULT_CAPACITY + 1];
+		private int mRows;
+
+		/*package*/ void append(String value) {
+			final int length = value.length();
+			if (mBytes != null && !isLatin1(value)) {
+				widen();
+			}
+			if (mBytes != null) {
+				if (mLength + length > mBytes.length) {
+					mBytes = Arrays.copyOf(mBytes, Math.max(mBytes.length * 2, mLength + length));
+				}
+				final byte[] bytes = mBytes;
+				final int start = mLength;
+				for (int i = 0; i < length; i++) {
+					bytes[start + i] = (byte) value.charAt(i);
+				}
+			} else {
+				if (mLength + length > mChars.length) {
+					mChars = Arrays.copyOf(mChars, Math.max(mChars.length * 2, mLength + length));
+				}
+				value.getChars(0, length, mChars, mLength);
+			}
+			mLength += length;
+
+			if (mRows + 2 > mOffsets.length) {
+				mOffsets = Arrays.copyOf(mOffsets, mOffsets.length * 2);
+			}
+			mRows++;
+			mOffsets[mRows] = mLength;
+		}
+
+		/*package*/ void copy(int row, CharArrayBuffer buffer) {
+			final int start = mOffsets[row];
+			final int length = mOffsets[row + 1] - start;
+			if (buffer.data == null || buffer.data.length < length) {
+				buffer.data = new char[length];
+			}
+			if (mBytes != null) {
+				final byte[] bytes = mBytes;
+				final char[] data = buffer.data;
+				for (int i = 0; i < length; i++) {
+					data[i] = (char) (bytes[start + i] & 0xff);
+				}
+			} else {
+				System.arraycopy(mChars, start, buffer.data, 0, length);
+			}
+			buffer.sizeCopied = length;
+		}
+
+		/*package*/ String get(int row) {
+			final int start = mOffsets[row];
+			final int length = mOffsets[row + 1] - start;
+			if (mBytes != null) {
+				return new String(mBytes, start, length, LATIN_1);
+			}
+			return new String(mChars, start, length);
+		}
+
+		/*package*/ void trim() {
+			if (mBytes != null) {
+				mBytes = Arrays.copyOf(mBytes, mLength);
+			} else {
+				mChars = Arrays.copyOf(mChars, mLength);
+			}
+			mOffsets = Arrays.copyOf(mOffsets, mRows + 1);
+		}
+
+		private static boolean isLatin1(String value) {
+			for (int i = value.length() - 1; i >= 0; i--) {
+				if (value.charAt(i) > 0xff) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Switches to two bytes per character, for a value that doesn't fit
+		 * in one
+		 */
+		private void widen() {
+			final byte[] bytes = mBytes;
+			mChars = new char[bytes.length];
+			for (int i = 0; i < mLength; i++) {
+				mChars[i] = (char) (bytes[i] & 0xff);
+			}
+			mBytes = null;
+		}
+	}
+
+	/**
+	 * Maps each unique String to a small int id; the stored Strings are the
+	 * {@link PropertyStringPool} instances
+	 */
+	private static class StringDictionary {
+		private final HashMap<String, Integer> mIds = new HashMap<String, Integer>();
+		private final ArrayList<String> mValues = new ArrayList<String>();
+
+		/*package*/ int find(String value) {
+			final Integer id = mIds.get(value);
+			return id == null ? -1 : id;
+		}
+
+		/*package*/ String get(int id) {
+			return mValues.get(id);
+		}
+
+		/*package*/ int idOf(String value) {
+			final Integer id = mIds.get(value);
+			if (id != null) {
+				return id;
+			}
+			final int newId = mValues.size();
+			value = PropertyStringPool.getInstance().intern(value);
+			mValues.add(value);
+			mIds.put(value, newId);
+			return newId;
+		}
+
+		/*package*/ int size() {
+			return mValues.size();
+		}
+	}
+}
@@ -1,7 +1,16 @@
 package com.iangclifton.auid.realestate;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -9,6 +18,11 @@ import org.json.JSONObject;
 /**
  * Creates Property objects with test data.
  * 
+ * For large stress datasets, {@link #newPropertyTable(long, int, int)}
+ * generates rows straight into a {@link PropertyTable} using several threads,
+ * and {@link #writeSnapshot(File, long, int, int)} writes them to a
+ * {@link PropertySnapshot}.
+ * 
  * @author Ian G. Clifton
  */
 public class PropertyTestUtils {
@@ -34,6 +48,16 @@ public class PropertyTestUtils {
 		"$550,000", "$565,000", "$600,000", "$675,000"
 	};
 
+	/**
+	 * PRICES in cents for the bulk generator
+	 */
+	private static final long[] PRICE_CENTS = new long[PRICES.length];
+	static {
+		for (int i = 0; i < PRICES.length; i++) {
+			PRICE_CENTS[i] = PriceFormatter.parse(PRICES[i]);
+		}
+	}
+
 	private static final String STATE = "WA";
 
 	private static final String[] STREET_ADDRESSES = { 
@@ -44,8 +68,22 @@ public class PropertyTestUtils {
 		"7010 Old Cedar Drive",
 	};
 
+	/**
+	 * Rows generated from each seed by the bulk generator. The chunks don't
+	 * depend on the thread count, so the output doesn't either.
+	 */
+	private static final int CHUNK_SIZE = 8192;
+
 	private final Random mRandom;
 
+	/**
+	 * Ids are the seed in the high 32 bits and the listing's number in the
+	 * low 32 bits, so the same seed always produces the same listings with the
+	 * same ids; the test addresses repeat too often to derive ids from them
+	 */
+	private final long mIdBase;
+	private long mNextId;
+
 	/**
 	 * Constructs a new PropertyTestUtils object with the specified seed
 	 * 
@@ -54,6 +92,7 @@ public class PropertyTestUtils {
 	 */
 	public PropertyTestUtils(long seed) {
 		mRandom = new Random(seed);
+		mIdBase = seed << 32;
 	}
 
 	/**
@@ -77,6 +116,41 @@ public class PropertyTestUtils {
 	 * @return new Property filled with test data
 	 */
 	public Property getNewProperty() {
+		try {
+			return new Property(getNewJson());
+		} catch (JSONException e) {
+			// This should never happen
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns a feed of new test data as a server would send it: a UTF-8
+	 * encoded JSON array with the same listings {@link #getNewProperties(int)}
+	 * would have returned
+	 * 
+	 * @param count
+	 *            int number of listings in the feed
+	 * @return byte[] containing the feed
+	 */
+	public byte[] getNewFeed(int count) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append('[');
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(getNewJson().toString());
+		}
+		sb.append(']');
+		return sb.toString().getBytes(Charset.forName("UTF-8"));
+	}
+
+	/**
+	 * Returns a new JSONObject with the keys of a Property filled with test
+	 * data
+	 */
+	private JSONObject getNewJson() {
 		final JSONObject json = new JSONObject();
 		try {
 			int randomValue = mRandom.nextInt(BATHROOMS.length);
@@ -87,15 +161,207 @@ public class PropertyTestUtils {
 			json.put(Property.JSON_KEY_CITY, CITIES[randomValue]);
 			randomValue = mRandom.nextInt(FOOTAGE_MAX - FOOTAGE_MIN) + FOOTAGE_MIN;
 			json.put(Property.JSON_KEY_FOOTAGE, randomValue);
+			json.put(Property.JSON_KEY_ID, mIdBase + mNextId++);
 			randomValue = mRandom.nextInt(PRICES.length);
 			json.put(Property.JSON_KEY_PRICE, PRICES[randomValue]);
 			json.put(Property.JSON_KEY_STATE, STATE);
 			randomValue = mRandom.nextInt(STREET_ADDRESSES.length);
 			json.put(Property.JSON_KEY_STREET_ADDRESS, STREET_ADDRESSES[randomValue]);
-			return new Property(json);
+			return json;
 		} catch (JSONException e) {
 			// This should never happen
 			throw new RuntimeException(e);
 		}
 	}
+
+	/**
+	 * Returns a new PropertyTable filled with test data using one thread per
+	 * available processor
+	 * 
+	 * @param seed
+	 *            long that determines every generated value
+	 * @param count
+	 *            int number of rows to generate
+	 * @return new PropertyTable with count rows
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the worker threads
+	 * @see #newPropertyTable(long, int, int)
+	 */
+	public static PropertyTable newPropertyTable(long seed, int count) throws InterruptedException {
+		return newPropertyTable(seed, count, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Returns a new PropertyTable filled with test data
+	 * 
+	 * Unlike {@link #getNewProperties(int)}, no JSON or Property objects are
+	 * created. The rows are split into fixed-size chunks that each get their
+	 * own generator seeded from the seed and the chunk number, so the same
+	 * seed and count always produce the same table no matter how many threads
+	 * are used. This can take a while for millions of rows, so don't
+	 * call it on the UI thread.
+	 * 
+	 * @param seed
+	 *            long that determines every generated value
+	 * @param count
+	 *            int number of rows to generate
+	 * @param threadCount
+	 *            int number of worker threads to use
+	 * @return new PropertyTable with count rows
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the worker threads
+	 */
+	public static PropertyTable newPropertyTable(long seed, int count, int threadCount)
+			throws InterruptedException {
+		if (count < 0) {
+			throw new IllegalArgumentException("Count cannot be negative: " + count);
+		}
+		final GeneratedRows rows = new GeneratedRows(count);
+		final int chunkCount = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		if (threadCount <= 1 || chunkCount <= 1) {
+			for (int chunk = 0; chunk < chunkCount; chunk++) {
+				rows.fillChunk(seed, chunk);
+			}
+		} else {
+			fillInParallel(rows, seed, chunkCount, Math.min(threadCount, chunkCount));
+		}
+
+		// The dictionaries in PropertyTable aren't thread safe, so rows are
+		// appended in order on this thread; it's just array copies and
+		// lookups at this point
+		final PropertyTable table = new PropertyTable(count);
+		for (int row = 0; row < count; row++) {
+			table.add((seed << 32) + row, BATHROOMS[rows.mBathrooms[row]], BEDROOMS[rows.mBedrooms[row]],
+					CITIES[rows.mCities[row]], rows.mFootages[row],
+					PRICE_CENTS[rows.mPrices[row]], STATE,
+					STREET_ADDRESSES[rows.mStreetAddresses[row]]);
+		}
+		return table;
+	}
+
+	/**
+	 * Generates test data and writes it to a {@link PropertySnapshot} file
+	 * 
+	 * @param file
+	 *            File to write, replacing any existing file
+	 * @param seed
+	 *            long that determines every generated value
+	 * @param count
+	 *            int number of rows to generate
+	 * @param threadCount
+	 *            int number of worker threads to use
+	 * @throws IOException
+	 *             if the snapshot cannot be written
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the worker threads
+	 */
+	public static void writeSnapshot(File file, long seed, int count, int threadCount)
+			throws IOException, InterruptedException {
+		PropertySnapshot.write(file, newPropertyTable(seed, count, threadCount));
+	}
+
+	private static void fillInParallel(final GeneratedRows rows, final long seed, int chunkCount,
+			int threadCount) throws InterruptedException {
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunkCount);
+			for (int i = 0; i < chunkCount; i++) {
+				final int chunk = i;
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						rows.fillChunk(seed, chunk);
+						return null;
+					}
+				});
+			}
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Mixes the seed and chunk number into a well distributed seed for the
+	 * chunk's generator, so neighbouring chunks don't get correlated
+	 * sequences
+	 */
+	private static long chunkSeed(long seed, int chunk) {
+		return SplitMix.mix(seed + (chunk + 1) * SplitMix.GOLDEN_GAMMA);
+	}
+
+	/**
+	 * SplitMix64, the generator behind SplittableRandom, which Android only
+	 * has from API 24. Unlike {@link Random}, it has no atomic seed, which cost
+	 * the bulk generator a compare-and-set for every value. Not thread safe;
+	 * each chunk gets its own.
+	 */
+	private static class SplitMix {
+		/*package*/ static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+		private long mState;
+
+		/*package*/ SplitMix(long seed) {
+			mState = seed;
+		}
+
+		/*package*/ static long mix(long z) {
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			return z ^ (z >>> 31);
+		}
+
+		/**
+		 * Returns a value from 0 to bound - 1; the bias is too small to
+		 * matter for the handful of test values bound ever is here
+		 */
+		/*package*/ int nextInt(int bound) {
+			mState += GOLDEN_GAMMA;
+			return (int) (((mix(mState) >>> 32) * bound) >>> 32);
+		}
+	}
+
+	/**
+	 * Which test value each generated row uses, stored as indexes into the
+	 * value arrays; worker threads write disjoint chunks
+	 */
+	private static class GeneratedRows {
+		private final int mCount;
+		private final byte[] mBathrooms;
+		private final byte[] mBedrooms;
+		private final byte[] mCities;
+		private final int[] mFootages;
+		private final byte[] mPrices;
+		private final byte[] mStreetAddresses;
+
+		/*package*/ GeneratedRows(int count) {
+			mCount = count;
+			mBathrooms = new byte[count];
+			mBedrooms = new byte[count];
+			mCities = new byte[count];
+			mFootages = new int[count];
+			mPrices = new byte[count];
+			mStreetAddresses = new byte[count];
+		}
+
+		/*package*/ void fillChunk(long seed, int chunk) {
+			final SplitMix random = new SplitMix(chunkSeed(seed, chunk));
+			final int start = chunk * CHUNK_SIZE;
+			final int end = Math.min(start + CHUNK_SIZE, mCount);
+			for (int row = start; row < end; row++) {
+				mBathrooms[row] = (byte) random.nextInt(BATHROOMS.length);
+				mBedrooms[row] = (byte) random.nextInt(BEDROOMS.length);
+				mCities[row] = (byte) random.nextInt(CITIES.length);
+				mFootages[row] = random.nextInt(FOOTAGE_MAX - FOOTAGE_MIN) + FOOTAGE_MIN;
+				mPrices[row] = (byte) random.nextInt(PRICES.length);
+				mStreetAddresses[row] = (byte) random.nextInt(STREET_ADDRESSES.length);
+			}
+		}
+	}
 }
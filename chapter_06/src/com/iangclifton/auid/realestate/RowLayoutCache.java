@@ -0,0 +1,195 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.Arrays;
+
+import android.text.Layout;
+
+/**
+ * A size-bounded cache of street address Layouts for {@link PropertyRowView}s,
+ * filled ahead of time by a {@link RowLayoutPrefetcher}.
+ *
+ * Entries are keyed by the listing's stable id and text width and are only
+ * valid for the {@link PropertyRowView.LayoutSpec} (paints and row geometry)
+ * they were made with; setting a different spec empties the cache. The cache
+ * is direct-mapped on the id: a row can only live in one slot, and a new row
+ * replaces whatever was there. Ids are mixed before picking the slot, so ids
+ * derived from address hashes and sequential feed ids both spread over the
+ * slots. Nearby rows can still collide, and each prefetched Layout lost
+ * that way is counted as an eviction.
+ *
+ * Lookups don't allocate, so they are safe to use while binding. This class
+ * is thread safe.
+ *
+ * @author Ian G. Clifton
+ */
+public class RowLayoutCache {
+	private static final long NO_ROW = Long.MIN_VALUE;
+
+	private final long[] mRowIds;
+	private final int[] mWidths;
+	private final Layout[] mLayouts;
+	private final int mMask;
+
+	private PropertyRowView.LayoutSpec mSpec;
+
+	private long mHits;
+	private long mMisses;
+	private long mPrefetches;
+	private long mEvictions;
+
+	/**
+	 * Constructs a RowLayoutCache
+	 *
+	 * @param capacity int maximum number of Layouts; rounded up to a power of two
+	 */
+	public RowLayoutCache(int capacity) {
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		mRowIds = new long[size];
+		mWidths = new int[size];
+		mLayouts = new Layout[size];
+		mMask = size - 1;
+		Arrays.fill(mRowIds, NO_ROW);
+	}
+
+	/**
+	 * Removes every Layout; the counters are kept
+	 */
+	public synchronized void clear() {
+		Arrays.fill(mRowIds, NO_ROW);
+		Arrays.fill(mLayouts, null);
+	}
+
+	/**
+	 * Returns the maximum number of Layouts this cache holds
+	 *
+	 * @return int capacity
+	 */
+	public int getCapacity() {
+		return mLayouts.length;
+	}
+
+	/**
+	 * Returns the number of prefetched Layouts that were replaced before they
+	 * were used, which suggests the prefetch distance is too large for the
+	 * capacity
+	 *
+	 * @return long eviction count
+	 */
+	public synchronized long getEvictionCount() {
+		return mEvictions;
+	}
+
+	/**
+	 * Returns the number of lookups that found a Layout
+	 *
+	 * @return long hit count
+	 */
+	public synchronized long getHitCount() {
+		return mHits;
+	}
+
+	/**
+	 * Returns the fraction of lookups that found a Layout
+	 *
+	 * @return float from 0 to 1, or 0 if there have been no lookups
+	 */
+	public synchronized float getHitRate() {
+		final long total = mHits + mMisses;
+		return total == 0 ? 0f : (float) mHits / total;
+	}
+
+	/**
+	 * Returns the number of lookups that did not find a Layout, meaning the
+	 * row had to lay out its street address while binding
+	 *
+	 * @return long miss count
+	 */
+	public synchronized long getMissCount() {
+		return mMisses;
+	}
+
+	/**
+	 * Returns the number of Layouts added by prefetching
+	 *
+	 * @return long prefetch count
+	 */
+	public synchronized long getPrefetchCount() {
+		return mPrefetches;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "RowLayoutCache[capacity=" + getCapacity() + ", hits=" + mHits
+				+ ", misses=" + mMisses + ", hitRate=" + getHitRate()
+				+ ", prefetches=" + mPrefetches + ", evictions=" + mEvictions + "]";
+	}
+
+	/**
+	 * Returns true if there is a Layout for the row made with the spec
+	 */
+	/*package*/ synchronized boolean contains(PropertyRowView.LayoutSpec spec, long rowId) {
+		return spec == mSpec && mRowIds[slotOf(rowId)] == rowId;
+	}
+
+	/**
+	 * Returns the Layout for the row at the width or null, counting a hit or
+	 * a miss
+	 */
+	/*package*/ synchronized Layout get(long rowId, int width) {
+		final int slot = slotOf(rowId);
+		if (mRowIds[slot] == rowId && mWidths[slot] == width) {
+			mHits++;
+			// Hand the Layout over so it isn't counted as evicted later
+			final Layout layout = mLayouts[slot];
+			mRowIds[slot] = NO_ROW;
+			mLayouts[slot] = null;
+			return layout;
+		}
+		mMisses++;
+		return null;
+	}
+
+	/**
+	 * Returns the spec the cached Layouts were made with or null if no row
+	 * has been measured yet
+	 */
+	/*package*/ synchronized PropertyRowView.LayoutSpec getSpec() {
+		return mSpec;
+	}
+
+	/**
+	 * Adds a prefetched Layout; it is dropped if the spec has changed since
+	 * it was made
+	 */
+	/*package*/ synchronized void put(PropertyRowView.LayoutSpec spec, long rowId, int width, Layout layout) {
+		if (spec != mSpec) {
+			return;
+		}
+		final int slot = slotOf(rowId);
+		if (mRowIds[slot] != NO_ROW && mRowIds[slot] != rowId) {
+			mEvictions++;
+		}
+		mRowIds[slot] = rowId;
+		mWidths[slot] = width;
+		mLayouts[slot] = layout;
+		mPrefetches++;
+	}
+
+	/**
+	 * Sets the spec that rows are currently measured with, emptying the cache
+	 */
+	/*package*/ synchronized void setSpec(PropertyRowView.LayoutSpec spec) {
+		mSpec = spec;
+		clear();
+	}
+
+	private int slotOf(long rowId) {
+		// The low bits of an id are neither evenly spread nor unique, so mix
+		// them the same way PropertyDiff does
+		final long hash = rowId * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mMask;
+	}
+}
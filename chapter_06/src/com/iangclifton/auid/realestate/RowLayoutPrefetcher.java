@@ -0,0 +1,206 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.text.Layout;
+import android.widget.AbsListView;
+
+/**
+ * Watches a list of {@link PropertyRowView}s scroll and lays out the street
+ * addresses of the rows about to come on screen on a background thread, so
+ * that binding them doesn't have to break lines on the UI thread.
+ *
+ * The rows just past the visible ones in the direction of the scroll are laid
+ * out, nearest first, and put into a {@link RowLayoutCache}. Nothing is done
+ * until a row has been measured, because the width a street address gets
+ * depends on the list's width and the row's paints. Layouts are cached by
+ * the listings' stable ids, so they stay usable when the data set is updated
+ * with {@link #setDataSet(PropertyDataSet)}.
+ *
+ * Call {@link #shutdown()} when the list goes away to stop the background
+ * thread.
+ *
+ * @author Ian G. Clifton
+ */
+public class RowLayoutPrefetcher implements AbsListView.OnScrollListener {
+	private static final int DEFAULT_PREFETCH_DISTANCE = 8;
+
+	private volatile PropertyDataSet mDataSet;
+	private final RowLayoutCache mCache;
+	private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+	private int mPrefetchDistance = DEFAULT_PREFETCH_DISTANCE;
+
+	private int mLastFirstVisible = -1;
+	private boolean mScrollingDown = true;
+
+	private final Object mLock = new Object();
+
+	/**
+	 * The range most recently asked for, which is what the worker lays out
+	 * next; guarded by mLock
+	 */
+	private int mRequestedFrom;
+	private int mRequestedTo;
+	private boolean mRequestedDown;
+	private boolean mHasRequest;
+	private boolean mWorkerQueued;
+
+	/**
+	 * Lays out the requested rows until there is nothing new to do. There is
+	 * only ever one of these queued, so scrolling never allocates a task.
+	 */
+	private final Runnable mWorker = new Runnable() {
+		@Override
+		public void run() {
+			while (true) {
+				final int from;
+				final int to;
+				final boolean down;
+				synchronized (mLock) {
+					if (!mHasRequest) {
+						mWorkerQueued = false;
+						return;
+					}
+					from = mRequestedFrom;
+					to = mRequestedTo;
+					down = mRequestedDown;
+					mHasRequest = false;
+				}
+				prefetch(from, to, down);
+			}
+		}
+	};
+
+	/**
+	 * Constructs a RowLayoutPrefetcher
+	 *
+	 * @param dataSet PropertyDataSet the list's rows come from
+	 * @param cache RowLayoutCache the list's rows take their Layouts from
+	 */
+	public RowLayoutPrefetcher(PropertyDataSet dataSet, RowLayoutCache cache) {
+		mDataSet = dataSet;
+		mCache = cache;
+	}
+
+	/**
+	 * Returns the number of rows past the visible ones that are laid out
+	 *
+	 * @return int prefetch distance
+	 */
+	public int getPrefetchDistance() {
+		return mPrefetchDistance;
+	}
+
+	@Override
+	public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+		if (visibleItemCount == 0) {
+			return;
+		}
+		if (firstVisibleItem != mLastFirstVisible) {
+			if (mLastFirstVisible != -1) {
+				mScrollingDown = firstVisibleItem > mLastFirstVisible;
+			}
+			mLastFirstVisible = firstVisibleItem;
+		}
+
+		final int count = Math.min(totalItemCount, mDataSet.getCount());
+		final int from;
+		final int to;
+		if (mScrollingDown) {
+			from = Math.min(firstVisibleItem + visibleItemCount, count);
+			to = Math.min(from + mPrefetchDistance, count);
+		} else {
+			to = Math.min(firstVisibleItem, count);
+			from = Math.max(to - mPrefetchDistance, 0);
+		}
+		request(from, to, mScrollingDown);
+	}
+
+	@Override
+	public void onScrollStateChanged(AbsListView view, int scrollState) {
+		// Only the position matters
+	}
+
+	/**
+	 * Sets the data set the list's rows now come from, such as after a
+	 * refresh
+	 *
+	 * @param dataSet PropertyDataSet the list's rows come from
+	 */
+	public void setDataSet(PropertyDataSet dataSet) {
+		mDataSet = dataSet;
+	}
+
+	/**
+	 * Sets the number of rows past the visible ones to lay out; keep it
+	 * well under the cache's capacity
+	 *
+	 * @param distance int number of rows
+	 */
+	public void setPrefetchDistance(int distance) {
+		mPrefetchDistance = Math.max(distance, 0);
+	}
+
+	/**
+	 * Stops the background thread; pending work is dropped
+	 */
+	public void shutdown() {
+		synchronized (mLock) {
+			mHasRequest = false;
+		}
+		mExecutor.shutdownNow();
+	}
+
+	private boolean hasNewRequest() {
+		synchronized (mLock) {
+			return mHasRequest;
+		}
+	}
+
+	/**
+	 * Runs on the background thread
+	 */
+	private void prefetch(int from, int to, boolean down) {
+		final RowLayoutCache cache = mCache;
+		final PropertyRowView.LayoutSpec spec = cache.getSpec();
+		if (spec == null) {
+			return;
+		}
+		final PropertyDataSet dataSet = mDataSet;
+		// The data set may have shrunk since the range was requested
+		to = Math.min(to, dataSet.getCount());
+		final int step = down ? 1 : -1;
+		for (int i = down ? from : to - 1; i >= from && i < to; i += step) {
+			if (hasNewRequest()) {
+				// The user has moved on; start on the new rows instead
+				return;
+			}
+			final long id = dataSet.getId(i);
+			if (cache.contains(spec, id)) {
+				continue;
+			}
+			final int width = spec.getStreetWidth(dataSet.getCity(i) + ", " + dataSet.getState(i));
+			final Layout layout = spec.makeStreetLayout(dataSet.getStreetAddress(i), width);
+			cache.put(spec, id, width, layout);
+		}
+	}
+
+	private void request(int from, int to, boolean down) {
+		synchronized (mLock) {
+			if (from >= to || (from == mRequestedFrom && to == mRequestedTo && down == mRequestedDown)) {
+				return;
+			}
+			mRequestedFrom = from;
+			mRequestedTo = to;
+			mRequestedDown = down;
+			mHasRequest = true;
+			if (mWorkerQueued || mExecutor.isShutdown()) {
+				return;
+			}
+			mWorkerQueued = true;
+		}
+		mExecutor.execute(mWorker);
+	}
+}
@@ -0,0 +1,248 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Sorts row numbers by a primitive key column without boxing.
+ *
+ * The result is a permutation: element i is the row that belongs at sorted
+ * position i. Rows with equal keys stay in row order, so the permutation is
+ * the same every time for the same column, whether it was sorted on one
+ * thread, on several with {@link #parallelSort(long[], int, ExecutorService, int)}
+ * or built up with {@link #merge(long[], int[], int[])}.
+ *
+ * @author Ian G. Clifton
+ */
+/*package*/ final class RowSorter {
+
+	/**
+	 * Ranges this small are finished with an insertion sort
+	 */
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private RowSorter() {
+		// Utility class
+	}
+
+	/**
+	 * Returns the rows 0 to count - 1 ordered by ascending key
+	 *
+	 * @param keys long key for each row
+	 * @param count int number of rows to sort
+	 * @return new int[] permutation of length count
+	 */
+	/*package*/ static int[] sort(long[] keys, int count) {
+		final int[] rows = new int[count];
+		for (int i = 0; i < count; i++) {
+			rows[i] = i;
+		}
+		sort(keys, rows, 0, count - 1);
+		return rows;
+	}
+
+	/**
+	 * Returns the rows 0 to count - 1 ordered by ascending key, sorting
+	 * contiguous slices of the rows at the same time and then merging them
+	 *
+	 * @param keys long key for each row
+	 * @param count int number of rows to sort
+	 * @param executor ExecutorService to run the slices on
+	 * @param parallelism int number of slices to sort at the same time
+	 * @return new int[] permutation of length count
+	 * @throws InterruptedException if interrupted while waiting for the
+	 *             executor
+	 */
+	/*package*/ static int[] parallelSort(final long[] keys, int count, ExecutorService executor,
+			int parallelism) throws InterruptedException {
+		final int sliceCount = Math.max(Math.min(parallelism, count / INSERTION_SORT_THRESHOLD), 1);
+		if (sliceCount == 1) {
+			return sort(keys, count);
+		}
+
+		// Slice i is rows bounds[i] to bounds[i + 1] - 1
+		final int[] bounds = new int[sliceCount + 1];
+		for (int i = 0; i <= sliceCount; i++) {
+			bounds[i] = (int) ((long) count * i / sliceCount);
+		}
+		int[] rows = new int[count];
+		for (int i = 0; i < count; i++) {
+			rows[i] = i;
+		}
+
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(sliceCount);
+		final int[] sliceRows = rows;
+		for (int i = 0; i < sliceCount; i++) {
+			final int from = bounds[i];
+			final int to = bounds[i + 1] - 1;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					sort(keys, sliceRows, from, to);
+					return null;
+				}
+			});
+		}
+		invokeAll(executor, tasks);
+
+		// Merge neighbouring runs until one is left; each pass merges its
+		// pairs at the same time, from one buffer into the other
+		int[] merged = new int[count];
+		for (int width = 1; width < sliceCount; width *= 2) {
+			tasks.clear();
+			final int[] source = rows;
+			final int[] dest = merged;
+			for (int i = 0; i < sliceCount; i += width * 2) {
+				final int from = bounds[i];
+				final int mid = bounds[Math.min(i + width, sliceCount)];
+				final int to = bounds[Math.min(i + width * 2, sliceCount)];
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						merge(keys, source, from, mid, to, dest);
+						return null;
+					}
+				});
+			}
+			invokeAll(executor, tasks);
+			merged = rows;
+			rows = dest;
+		}
+		return rows;
+	}
+
+	/**
+	 * Merges two permutations that are each in key order into one, such as
+	 * the existing rows and some newly appended rows
+	 *
+	 * @param keys long key for every row in either permutation
+	 * @param a int[] rows in key order
+	 * @param b int[] other rows in key order
+	 * @return new int[] with the rows of both in key order
+	 */
+	/*package*/ static int[] merge(long[] keys, int[] a, int[] b) {
+		final int[] rows = new int[a.length + b.length];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < a.length && j < b.length) {
+			rows[k++] = less(keys, b[j], a[i]) ? b[j++] : a[i++];
+		}
+		System.arraycopy(a, i, rows, k, a.length - i);
+		System.arraycopy(b, j, rows, k + a.length - i, b.length - j);
+		return rows;
+	}
+
+	/**
+	 * Sorts rows[from] to rows[to], inclusive, by ascending key
+	 */
+	/*package*/ static void sort(long[] keys, int[] rows, int from, int to) {
+		while (to - from >= INSERTION_SORT_THRESHOLD) {
+			// Median of three pivot keeps already sorted columns fast
+			final int mid = (from + to) >>> 1;
+			if (less(keys, rows[mid], rows[from])) {
+				swap(rows, mid, from);
+			}
+			if (less(keys, rows[to], rows[from])) {
+				swap(rows, to, from);
+			}
+			if (less(keys, rows[to], rows[mid])) {
+				swap(rows, to, mid);
+			}
+			final int pivot = rows[mid];
+
+			int i = from;
+			int j = to;
+			while (i <= j) {
+				while (less(keys, rows[i], pivot)) {
+					i++;
+				}
+				while (less(keys, pivot, rows[j])) {
+					j--;
+				}
+				if (i <= j) {
+					swap(rows, i, j);
+					i++;
+					j--;
+				}
+			}
+
+			// Recurse into the smaller half to bound the stack depth
+			if (j - from < to - i) {
+				sort(keys, rows, from, j);
+				from = i;
+			} else {
+				sort(keys, rows, i, to);
+				to = j;
+			}
+		}
+		insertionSort(keys, rows, from, to);
+	}
+
+	/**
+	 * Maps a float to a long that sorts in the same order
+	 */
+	/*package*/ static long floatKey(float value) {
+		final int bits = Float.floatToIntBits(value);
+		// Negative floats sort backward as raw bits, so flip their magnitude
+		return bits ^ ((bits >> 31) & 0x7fffffff);
+	}
+
+	private static void insertionSort(long[] keys, int[] rows, int from, int to) {
+		for (int i = from + 1; i <= to; i++) {
+			final int row = rows[i];
+			int j = i - 1;
+			while (j >= from && less(keys, row, rows[j])) {
+				rows[j + 1] = rows[j];
+				j--;
+			}
+			rows[j + 1] = row;
+		}
+	}
+
+	private static void invokeAll(ExecutorService executor, List<Callable<Void>> tasks)
+			throws InterruptedException {
+		for (Future<Void> future : executor.invokeAll(tasks)) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Merges the sorted runs source[from] to source[mid - 1] and source[mid]
+	 * to source[to - 1] into the same positions of dest
+	 */
+	private static void merge(long[] keys, int[] source, int from, int mid, int to, int[] dest) {
+		int i = from;
+		int j = mid;
+		int k = from;
+		while (i < mid && j < to) {
+			dest[k++] = less(keys, source[j], source[i]) ? source[j++] : source[i++];
+		}
+		System.arraycopy(source, i, dest, k, mid - i);
+		System.arraycopy(source, j, dest, k + mid - i, to - j);
+	}
+
+	/**
+	 * Returns true if row a sorts before row b; equal keys fall back to row
+	 * order
+	 */
+	private static boolean less(long[] keys, int a, int b) {
+		final long keyA = keys[a];
+		final long keyB = keys[b];
+		return keyA < keyB || (keyA == keyB && a < b);
+	}
+
+	private static void swap(int[] rows, int a, int b) {
+		final int temp = rows[a];
+		rows[a] = rows[b];
+		rows[b] = temp;
+	}
+}
@@ -0,0 +1,293 @@
+package com.iangclifton.auid.realestate;
+
+import java.io.PrintWriter;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.graphics.Color;
+import android.os.Build;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+/**
+ * Measures how smoothly a list scrolls and how long its adapter takes to
+ * bind rows.
+ * 
+ * Set it as the list's OnScrollListener; it passes every call on to the
+ * listener set with {@link #setOnScrollListener(OnScrollListener)}. While
+ * the list is scrolling, it posts a Choreographer frame callback every frame
+ * and records the time between frames in a {@link LatencyHistogram}, along
+ * with how many frames were dropped, judging by the display's refresh rate.
+ * Choreographer was added in Jelly Bean, so on older versions only bind
+ * times are recorded. The adapter reports how long each getView call took
+ * with {@link #recordBind(long)}.
+ * 
+ * The results can be shown over the list with {@link #attachOverlay(FrameLayout)},
+ * which debuggable builds do, and are written as a text report by
+ * {@link #dump(String, PrintWriter)}, which the fragment's dump method calls,
+ * so an automated scroll test can read them with
+ * "adb shell dumpsys activity top" and clear them by adding "reset".
+ * 
+ * Use it from the UI thread.
+ * 
+ * @author Ian G. Clifton
+ */
+public class ScrollPerformanceMonitor implements OnScrollListener {
+	private static final String TAG = "ScrollPerformanceMonitor";
+
+	/**
+	 * The dump argument that clears the results once they're written
+	 */
+	public static final String DUMP_ARG_RESET = "reset";
+
+	private static final float DEFAULT_REFRESH_RATE = 60;
+	private static final int OVERLAY_BACKGROUND_COLOR = 0xA0000000;
+	private static final float OVERLAY_TEXT_SIZE_SP = 10;
+
+	private final String mTag;
+	private final float mRefreshRate;
+	private final long mFrameIntervalNanos;
+	private final LatencyHistogram mFrameTimes = new LatencyHistogram();
+	private final LatencyHistogram mBindTimes = new LatencyHistogram();
+
+	/**
+	 * Null before Jelly Bean
+	 */
+	private final FrameTracker mFrameTracker;
+
+	private OnScrollListener mOnScrollListener;
+	private TextView mOverlay;
+	private boolean mScrolling;
+	private long mLastFrameTimeNanos;
+	private long mDroppedFrameCount;
+	private int mScrollCount;
+
+	/**
+	 * Constructs a ScrollPerformanceMonitor
+	 * 
+	 * @param activity Activity whose display the list is on
+	 * @param fragmentTag String naming the fragment that shows the list
+	 * @param adapterTag String naming the adapter that binds the rows
+	 */
+	public ScrollPerformanceMonitor(Activity activity, String fragmentTag, String adapterTag) {
+		mTag = fragmentTag + "/" + adapterTag;
+		final float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+		mRefreshRate = refreshRate > 0 ? refreshRate : DEFAULT_REFRESH_RATE;
+		mFrameIntervalNanos = (long) (1000000000 / mRefreshRate);
+		mFrameTracker = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ? new FrameTracker() : null;
+	}
+
+	/**
+	 * Returns true if the overlay should be shown, which is when the app is
+	 * debuggable
+	 * 
+	 * @param context Context of the app
+	 * @return true to show the overlay
+	 */
+	public static boolean isOverlayEnabled(Context context) {
+		return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+	}
+
+	/**
+	 * Shows the results in the top right corner of a FrameLayout, such as
+	 * a ListFragment's view. They're updated each time the list stops
+	 * scrolling, since changing the text lays the overlay out again, which
+	 * would slow down the frames being measured.
+	 * 
+	 * @param parent FrameLayout to show the results over
+	 */
+	public void attachOverlay(FrameLayout parent) {
+		final TextView overlay = new TextView(parent.getContext());
+		overlay.setBackgroundColor(OVERLAY_BACKGROUND_COLOR);
+		overlay.setTextColor(Color.WHITE);
+		overlay.setTextSize(OVERLAY_TEXT_SIZE_SP);
+		parent.addView(overlay, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+				ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.TOP | Gravity.RIGHT));
+		mOverlay = overlay;
+		updateOverlay();
+	}
+
+	/**
+	 * Stops updating the overlay; call it when the view it was attached to
+	 * is destroyed
+	 */
+	public void detachOverlay() {
+		mOverlay = null;
+	}
+
+	/**
+	 * Writes the results as text
+	 * 
+	 * @param prefix String to start each line with
+	 * @param writer PrintWriter to write to
+	 * @param args String[] dump arguments; {@link #DUMP_ARG_RESET} clears the
+	 *        results once they're written
+	 */
+	public void dump(String prefix, PrintWriter writer, String[] args) {
+		writer.print(prefix);
+		writer.print(TAG);
+		writer.print(" ");
+		writer.println(mTag);
+		writer.print(prefix);
+		writer.print("  scrolls=");
+		writer.print(mScrollCount);
+		writer.print(" frames=");
+		writer.print(mFrameTimes.getCount());
+		writer.print(" droppedFrames=");
+		writer.print(mDroppedFrameCount);
+		writer.print(" refreshRate=");
+		writer.println(mRefreshRate);
+		writer.print(prefix);
+		writer.print("  frameTime: ");
+		mFrameTimes.dump(writer);
+		writer.print(prefix);
+		writer.print("  bindTime: ");
+		mBindTimes.dump(writer);
+		if (args != null) {
+			for (String arg : args) {
+				if (DUMP_ARG_RESET.equals(arg)) {
+					reset();
+				}
+			}
+		}
+	}
+
+	@Override
+	public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+		if (mOnScrollListener != null) {
+			mOnScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+		}
+	}
+
+	@Override
+	public void onScrollStateChanged(AbsListView view, int scrollState) {
+		final boolean scrolling = scrollState != SCROLL_STATE_IDLE;
+		if (scrolling && !mScrolling) {
+			mScrolling = true;
+			mScrollCount++;
+			if (mFrameTracker != null) {
+				mFrameTracker.start();
+			}
+		} else if (!scrolling && mScrolling) {
+			mScrolling = false;
+			mLastFrameTimeNanos = 0;
+			if (mFrameTracker != null) {
+				mFrameTracker.stop();
+			}
+			updateOverlay();
+			Log.d(TAG, mTag + ": " + this);
+		}
+		if (mOnScrollListener != null) {
+			mOnScrollListener.onScrollStateChanged(view, scrollState);
+		}
+	}
+
+	/**
+	 * Records how long the adapter took to bind a row
+	 * 
+	 * @param startNanos long System.nanoTime() when getView was called
+	 */
+	public void recordBind(long startNanos) {
+		mBindTimes.record((System.nanoTime() - startNanos) / 1000);
+	}
+
+	/**
+	 * Forgets every result
+	 */
+	public void reset() {
+		mFrameTimes.reset();
+		mBindTimes.reset();
+		mDroppedFrameCount = 0;
+		mScrollCount = 0;
+		updateOverlay();
+	}
+
+	/**
+	 * Sets the listener to pass scroll events on to
+	 * 
+	 * @param listener OnScrollListener or null
+	 */
+	public void setOnScrollListener(OnScrollListener listener) {
+		mOnScrollListener = listener;
+	}
+
+	@Override
+	public String toString() {
+		return "frames=" + mFrameTimes.getCount() + " dropped=" + mDroppedFrameCount + " frameTime p50="
+				+ LatencyHistogram.formatMs(mFrameTimes.getValueAtPercentile(50)) + "ms p99="
+				+ LatencyHistogram.formatMs(mFrameTimes.getValueAtPercentile(99)) + "ms bindTime p99="
+				+ LatencyHistogram.formatMs(mBindTimes.getValueAtPercentile(99)) + "ms";
+	}
+
+	/**
+	 * Records the time since the last frame and counts the frames that were
+	 * skipped in between
+	 * 
+	 * @param frameTimeNanos long when the frame started rendering
+	 * @return true to be called again next frame
+	 */
+	private boolean onFrame(long frameTimeNanos) {
+		if (!mScrolling) {
+			return false;
+		}
+		if (mLastFrameTimeNanos != 0) {
+			final long durationNanos = frameTimeNanos - mLastFrameTimeNanos;
+			mFrameTimes.record(durationNanos / 1000);
+			// A frame that took 2.6 intervals means 2 frames were missed
+			final long intervals = (durationNanos + mFrameIntervalNanos / 2) / mFrameIntervalNanos;
+			mDroppedFrameCount += Math.max(intervals - 1, 0);
+		}
+		mLastFrameTimeNanos = frameTimeNanos;
+		return true;
+	}
+
+	private void updateOverlay() {
+		if (mOverlay == null) {
+			return;
+		}
+		mOverlay.setText("frame p50 " + LatencyHistogram.formatMs(mFrameTimes.getValueAtPercentile(50))
+				+ " p99 " + LatencyHistogram.formatMs(mFrameTimes.getValueAtPercentile(99)) + " ms\n"
+				+ "dropped " + mDroppedFrameCount + " of " + (mFrameTimes.getCount() + mDroppedFrameCount) + "\n"
+				+ "bind p50 " + LatencyHistogram.formatMs(mBindTimes.getValueAtPercentile(50))
+				+ " p99 " + LatencyHistogram.formatMs(mBindTimes.getValueAtPercentile(99)) + " ms");
+	}
+
+	/**
+	 * Posts a frame callback every frame until stopped; only created on
+	 * Jelly Bean and later
+	 */
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private class FrameTracker implements Choreographer.FrameCallback {
+		private boolean mPosted;
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			mPosted = false;
+			if (onFrame(frameTimeNanos)) {
+				start();
+			}
+		}
+
+		/*package*/ void start() {
+			if (!mPosted) {
+				Choreographer.getInstance().postFrameCallback(this);
+				mPosted = true;
+			}
+		}
+
+		/*package*/ void stop() {
+			if (mPosted) {
+				Choreographer.getInstance().removeFrameCallback(this);
+				mPosted = false;
+			}
+		}
+	}
+}
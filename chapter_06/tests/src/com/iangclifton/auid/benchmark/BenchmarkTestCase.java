@@ -0,0 +1,161 @@
+package com.iangclifton.auid.benchmark;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+/**
+ * Base class for benchmarks that have to run on a device. It reports results
+ * as the same JSON lines as the desktop BenchmarkRunner in the benchmarks
+ * directory, both to logcat and to the output of
+ * <code>adb shell am instrument -w</code>:
+ *
+ * <pre>
+ * {"benchmark":"...PropertyRowViewBenchmark.relativeLayoutRow","mode":"thrpt","opsPerSec":1234.5,...}
+ * {"benchmark":"...SectionSwitchBenchmark.tabSwitchLatencyMedian","mode":"metric","value":12.5,"unit":"ms"}
+ * </pre>
+ *
+ * An operation is warmed up before it is measured and allocation isn't
+ * counted, so bytesPerOp is always -1.
+ *
+ * @author Ian G. Clifton
+ */
+public abstract class BenchmarkTestCase extends InstrumentationTestCase {
+	private static final String TAG = "Benchmark";
+
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int ITERATIONS = 5;
+	private static final long ITERATION_MILLIS = 1000;
+
+	/**
+	 * How many times the operation being measured has run
+	 */
+	private long mOp;
+
+	/**
+	 * Something to measure
+	 */
+	protected interface Operation {
+
+		/**
+		 * Runs the operation once
+		 *
+		 * @param op long count of the times it has run before, for choosing
+		 *            which data to use
+		 */
+		public void run(long op) throws Exception;
+	}
+
+	/**
+	 * Runs an operation over and over on the calling thread and reports how
+	 * many times a second it ran
+	 *
+	 * @param name String name of the benchmark within this class
+	 * @param operation Operation to measure
+	 */
+	protected void benchmark(String name, Operation operation) throws Exception {
+		mOp = 0;
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			runIteration(operation);
+		}
+		final double[] opsPerSec = new double[ITERATIONS];
+		for (int i = 0; i < ITERATIONS; i++) {
+			opsPerSec[i] = runIteration(operation);
+		}
+		double mean = 0;
+		for (double value : opsPerSec) {
+			mean += value;
+		}
+		mean /= opsPerSec.length;
+		double variance = 0;
+		for (double value : opsPerSec) {
+			variance += (value - mean) * (value - mean);
+		}
+		final double stdDev = Math.sqrt(variance / (opsPerSec.length - 1));
+		report(String.format(Locale.ROOT, "{\"benchmark\":\"%s\",\"mode\":\"thrpt\",\"iterations\":%d,"
+				+ "\"opsPerSec\":%.3f,\"opsPerSecStdDev\":%.3f,\"nsPerOp\":%.1f,\"bytesPerOp\":-1.0}",
+				getName(name), ITERATIONS, mean, stdDev, 1e9 / mean));
+	}
+
+	/**
+	 * Runs {@link #benchmark(String, Operation)} on the main thread, for
+	 * operations on Views
+	 *
+	 * @param name String name of the benchmark within this class
+	 * @param operation Operation to measure
+	 */
+	protected void benchmarkOnMainThread(final String name, final Operation operation) throws Exception {
+		final Exception[] failure = new Exception[1];
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					benchmark(name, operation);
+				} catch (Exception e) {
+					failure[0] = e;
+				}
+			}
+		});
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+	}
+
+	/**
+	 * Reports a single measured value, such as a latency or a heap size
+	 *
+	 * @param name String name of the metric within this class
+	 * @param value double value measured
+	 * @param unit String unit of the value
+	 */
+	protected void reportMetric(String name, double value, String unit) {
+		report(String.format(Locale.ROOT, "{\"benchmark\":\"%s\",\"mode\":\"metric\",\"value\":%s,\"unit\":\"%s\"}",
+				getName(name), value, unit));
+	}
+
+	/**
+	 * Reports the median and 90th percentile of a set of samples as two
+	 * metrics, with "Median" and "P90" added to the name
+	 *
+	 * @param name String name of the metric within this class
+	 * @param samples double[] measured values, which are sorted in place
+	 * @param unit String unit of the values
+	 */
+	protected void reportPercentiles(String name, double[] samples, String unit) {
+		Arrays.sort(samples);
+		reportMetric(name + "Median", samples[samples.length / 2], unit);
+		reportMetric(name + "P90", samples[(samples.length * 9 - 1) / 10], unit);
+	}
+
+	private String getName(String name) {
+		return getClass().getName() + "." + name;
+	}
+
+	/**
+	 * Runs the operation for one iteration's time
+	 *
+	 * @return double operations per second
+	 */
+	private double runIteration(Operation operation) throws Exception {
+		final long deadline = ITERATION_MILLIS * 1000000L;
+		final long firstOp = mOp;
+		final long start = System.nanoTime();
+		long elapsed;
+		do {
+			operation.run(mOp++);
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < deadline);
+		return (mOp - firstOp) * 1e9 / elapsed;
+	}
+
+	private void report(String line) {
+		Log.i(TAG, line);
+		final Bundle results = new Bundle();
+		results.putString(Instrumentation.REPORT_KEY_STREAMRESULT, line + "\n");
+		getInstrumentation().sendStatus(0, results);
+	}
+}
@@ -0,0 +1,254 @@
+package com.iangclifton.auid.realestate;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.TypedValue;
+import android.view.ContextThemeWrapper;
+import android.view.Gravity;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+import android.view.ViewGroup.LayoutParams;
+import android.widget.ImageView;
+import android.widget.RelativeLayout;
+import android.widget.TextView;
+
+import com.iangclifton.auid.benchmark.BenchmarkTestCase;
+
+/**
+ * Compares measuring, laying out and drawing a {@link PropertyRowView} with
+ * the RelativeLayout of an ImageView and six TextViews it replaced.
+ *
+ * The RelativeLayout row is built in code with the same rules, margins and
+ * text appearances the layout file had, and it is bound the way the adapter
+ * used to bind it. Each "row" benchmark binds the next listing and then
+ * measures, lays out and draws the row, as a list does for a row scrolling
+ * into view; each "relayout" benchmark forces a measure and layout of the
+ * whole row without changing its text.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyRowViewBenchmark extends BenchmarkTestCase {
+	private static final int LISTING_COUNT = 1000;
+
+	private static final int ID_THUMBNAIL = 1;
+	private static final int ID_CITY = 2;
+	private static final int ID_PRICE = 3;
+	private static final int ID_STREET = 4;
+	private static final int ID_BEDS = 5;
+	private static final int ID_BATHS = 6;
+	private static final int ID_FOOTAGE = 7;
+
+	private PropertyTable mTable;
+	private ViewGroup mRelativeLayoutRow;
+	private PropertyRowView mPropertyRow;
+	private PropertyRowBinder mBinder;
+	private Canvas mCanvas;
+	private int mWidthMeasureSpec;
+	private int mHeightMeasureSpec;
+
+	private String mBath;
+	private String mBed;
+	private String mSqFt;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mTable = PropertyTestUtils.newPropertyTable(1, LISTING_COUNT);
+		mTable.freeze();
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				final Context context = new ContextThemeWrapper(getInstrumentation().getTargetContext(),
+						R.style.AppTheme);
+				final Resources res = context.getResources();
+				mBath = " " + res.getString(R.string.bath);
+				mBed = " " + res.getString(R.string.bed);
+				mSqFt = " " + res.getString(R.string.sq_ft);
+				mRelativeLayoutRow = newRelativeLayoutRow(context);
+				mPropertyRow = new PropertyRowView(context);
+				mBinder = new PropertyRowBinder(res);
+				mBinder.bind(mPropertyRow, mTable, 0);
+				bindRelativeLayoutRow(0);
+
+				final int width = res.getDisplayMetrics().widthPixels;
+				mWidthMeasureSpec = MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY);
+				mHeightMeasureSpec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+				mCanvas = new Canvas(Bitmap.createBitmap(width, res.getDisplayMetrics().heightPixels / 4,
+						Bitmap.Config.ARGB_8888));
+			}
+		});
+	}
+
+	public void testPropertyRowView() throws Exception {
+		benchmarkOnMainThread("propertyRowView", new Operation() {
+			@Override
+			public void run(long op) {
+				mBinder.bind(mPropertyRow, mTable, (int) (op % LISTING_COUNT));
+				measureLayoutAndDraw(mPropertyRow);
+			}
+		});
+	}
+
+	public void testPropertyRowViewRelayout() throws Exception {
+		benchmarkOnMainThread("propertyRowViewRelayout", new Operation() {
+			@Override
+			public void run(long op) {
+				mPropertyRow.forceLayout();
+				measureAndLayout(mPropertyRow);
+			}
+		});
+	}
+
+	public void testRelativeLayoutRow() throws Exception {
+		benchmarkOnMainThread("relativeLayoutRow", new Operation() {
+			@Override
+			public void run(long op) {
+				bindRelativeLayoutRow((int) (op % LISTING_COUNT));
+				measureLayoutAndDraw(mRelativeLayoutRow);
+			}
+		});
+	}
+
+	public void testRelativeLayoutRowRelayout() throws Exception {
+		benchmarkOnMainThread("relativeLayoutRowRelayout", new Operation() {
+			@Override
+			public void run(long op) {
+				forceLayoutTree(mRelativeLayoutRow);
+				measureAndLayout(mRelativeLayoutRow);
+			}
+		});
+	}
+
+	/**
+	 * Sets the text of the RelativeLayout row the way the adapter did before
+	 * PropertyRowView
+	 */
+	private void bindRelativeLayoutRow(int position) {
+		final PropertyTable table = mTable;
+		final View row = mRelativeLayoutRow;
+		TextView tv = (TextView) row.findViewById(ID_CITY);
+		tv.setText(table.getCity(position) + ", " + table.getState(position));
+		tv = (TextView) row.findViewById(ID_PRICE);
+		tv.setText(table.getPrice(position));
+		tv = (TextView) row.findViewById(ID_STREET);
+		tv.setText(table.getStreetAddress(position));
+		tv = (TextView) row.findViewById(ID_BEDS);
+		tv.setText(table.getBedroomCount(position) + mBed);
+		tv = (TextView) row.findViewById(ID_BATHS);
+		tv.setText(table.getBathroomCount(position) + mBath);
+		tv = (TextView) row.findViewById(ID_FOOTAGE);
+		tv.setText(table.getFootage(position) + mSqFt);
+	}
+
+	private void measureAndLayout(View row) {
+		row.measure(mWidthMeasureSpec, mHeightMeasureSpec);
+		row.layout(0, 0, row.getMeasuredWidth(), row.getMeasuredHeight());
+	}
+
+	private void measureLayoutAndDraw(View row) {
+		measureAndLayout(row);
+		row.draw(mCanvas);
+	}
+
+	/**
+	 * Makes every View in the row measure itself again, not only those whose
+	 * measure spec changes
+	 */
+	private static void forceLayoutTree(View view) {
+		view.forceLayout();
+		if (view instanceof ViewGroup) {
+			final ViewGroup group = (ViewGroup) view;
+			for (int i = 0, count = group.getChildCount(); i < count; i++) {
+				forceLayoutTree(group.getChildAt(i));
+			}
+		}
+	}
+
+	/**
+	 * Builds the row that the property_listitem layout used to inflate
+	 */
+	private static ViewGroup newRelativeLayoutRow(Context context) {
+		final Resources res = context.getResources();
+		final int spacing = res.getDimensionPixelSize(R.dimen.default_spacing);
+		final int small = resolveResourceId(context, android.R.attr.textAppearanceSmall);
+		final int medium = resolveResourceId(context, android.R.attr.textAppearanceMedium);
+
+		final RelativeLayout row = new RelativeLayout(context);
+		row.setLayoutParams(new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+
+		final ImageView thumbnail = new ImageView(context);
+		thumbnail.setId(ID_THUMBNAIL);
+		thumbnail.setImageResource(R.drawable.ic_thumbnail_placeholder);
+		RelativeLayout.LayoutParams params = newLayoutParams();
+		params.addRule(RelativeLayout.ALIGN_PARENT_LEFT);
+		params.addRule(RelativeLayout.ALIGN_PARENT_TOP);
+		params.rightMargin = spacing;
+		row.addView(thumbnail, params);
+
+		params = newLayoutParams();
+		params.addRule(RelativeLayout.ALIGN_PARENT_RIGHT);
+		params.addRule(RelativeLayout.ALIGN_PARENT_TOP);
+		params.leftMargin = spacing;
+		row.addView(newTextView(context, ID_CITY, small), params);
+
+		params = newLayoutParams();
+		params.addRule(RelativeLayout.ALIGN_PARENT_RIGHT);
+		params.addRule(RelativeLayout.BELOW, ID_CITY);
+		row.addView(newTextView(context, ID_PRICE, medium), params);
+
+		params = newLayoutParams();
+		params.addRule(RelativeLayout.ALIGN_PARENT_TOP);
+		params.addRule(RelativeLayout.LEFT_OF, ID_CITY);
+		params.addRule(RelativeLayout.RIGHT_OF, ID_THUMBNAIL);
+		row.addView(newTextView(context, ID_STREET, small), params);
+
+		params = newLayoutParams();
+		params.addRule(RelativeLayout.ALIGN_PARENT_BOTTOM);
+		params.addRule(RelativeLayout.RIGHT_OF, ID_THUMBNAIL);
+		row.addView(newTextView(context, ID_BEDS, small), params);
+
+		params = newLayoutParams();
+		params.addRule(RelativeLayout.ALIGN_PARENT_BOTTOM);
+		params.addRule(RelativeLayout.RIGHT_OF, ID_BEDS);
+		params.leftMargin = spacing;
+		TextView tv = newTextView(context, ID_BATHS, small);
+		tv.setMinWidth(res.getDimensionPixelSize(R.dimen.property_row_baths_min_width));
+		tv.setGravity(Gravity.RIGHT);
+		row.addView(tv, params);
+
+		params = newLayoutParams();
+		params.addRule(RelativeLayout.ALIGN_PARENT_BOTTOM);
+		params.addRule(RelativeLayout.RIGHT_OF, ID_BATHS);
+		params.leftMargin = spacing;
+		tv = newTextView(context, ID_FOOTAGE, small);
+		tv.setMinWidth(res.getDimensionPixelSize(R.dimen.property_row_footage_min_width));
+		tv.setGravity(Gravity.RIGHT);
+		row.addView(tv, params);
+
+		return row;
+	}
+
+	private static RelativeLayout.LayoutParams newLayoutParams() {
+		return new RelativeLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+	}
+
+	private static TextView newTextView(Context context, int id, int textAppearance) {
+		final TextView tv = new TextView(context);
+		tv.setId(id);
+		tv.setTextAppearance(context, textAppearance);
+		return tv;
+	}
+
+	/**
+	 * Returns the style a theme attribute such as textAppearanceSmall points
+	 * to
+	 */
+	private static int resolveResourceId(Context context, int attr) {
+		final TypedValue value = new TypedValue();
+		context.getTheme().resolveAttribute(attr, value, true);
+		return value.resourceId;
+	}
+}
@@ -0,0 +1,126 @@
+package com.iangclifton.auid.realestate;
+
+import java.util.Arrays;
+
+import android.content.Context;
+
+import com.iangclifton.auid.benchmark.BenchmarkTestCase;
+
+/**
+ * Measures storing 50,000 listings in a {@link PropertyStore}, in rows per
+ * second, and querying them there, against the same queries on an in-memory
+ * {@link PropertyTable} through a {@link PropertyIndex} and by checking every
+ * row.
+ *
+ * The store is given its own database file, which is deleted afterward, so
+ * the app's stored listings are left alone.
+ *
+ * @author Ian G. Clifton
+ */
+public class PropertyStoreBenchmark extends BenchmarkTestCase {
+	private static final String DATABASE_NAME = "listings_benchmark.db";
+	private static final String DATA_SET_NAME = "benchmark";
+
+	private static final int LISTING_COUNT = 50000;
+	private static final int INGEST_RUNS = 5;
+
+	/**
+	 * A search someone might actually run; about 4% of the rows match
+	 */
+	private static final PropertyQuery COMBINED_QUERY = new PropertyQuery()
+			.setCity("Seattle")
+			.setState("WA")
+			.setBedrooms(3, 4)
+			.setBathrooms(1.5f, 2.25f)
+			.setFootage(1500, 2500)
+			.setPriceCents(0, 50000000);
+
+	/**
+	 * A narrow search that only a few rows match
+	 */
+	private static final PropertyQuery SELECTIVE_QUERY = new PropertyQuery()
+			.setCity("Kent")
+			.setBedrooms(4, 4)
+			.setFootage(3000, 3100)
+			.setPriceCents(60000000, Long.MAX_VALUE);
+
+	private Context mContext;
+	private PropertyStore mStore;
+	private PropertyTable mTable;
+
+	/**
+	 * Keeps the result of the last operation, so it can't be skipped
+	 */
+	private Object mResult;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mContext = getInstrumentation().getTargetContext();
+		mContext.deleteDatabase(DATABASE_NAME);
+		mStore = new PropertyStore(mContext, DATABASE_NAME);
+		mTable = PropertyTestUtils.newPropertyTable(1, LISTING_COUNT);
+		mTable.freeze();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mContext.deleteDatabase(DATABASE_NAME);
+		super.tearDown();
+	}
+
+	public void testIngest() throws Exception {
+		mStore.ingest(DATA_SET_NAME, mTable);
+		final double[] rowsPerSec = new double[INGEST_RUNS];
+		for (int i = 0; i < INGEST_RUNS; i++) {
+			final long start = System.nanoTime();
+			mStore.ingest(DATA_SET_NAME, mTable);
+			rowsPerSec[i] = LISTING_COUNT * 1e9 / (System.nanoTime() - start);
+		}
+		reportPercentiles("ingestRowsPerSec", rowsPerSec, "rows/s");
+	}
+
+	public void testCombinedQuery() throws Exception {
+		measureQuery("Combined", COMBINED_QUERY);
+	}
+
+	public void testSelectiveQuery() throws Exception {
+		measureQuery("Selective", SELECTIVE_QUERY);
+	}
+
+	private void measureQuery(String name, final PropertyQuery query) throws Exception {
+		mStore.ingest(DATA_SET_NAME, mTable);
+		final PagedDataSet stored = mStore.load(DATA_SET_NAME);
+		final PropertyIndex index = new PropertyIndex(mTable);
+		final PropertyTable table = mTable;
+
+		benchmark("storeQuery" + name, new Operation() {
+			@Override
+			public void run(long op) throws Exception {
+				mResult = mStore.query(stored, query);
+			}
+		});
+		benchmark("indexQuery" + name, new Operation() {
+			@Override
+			public void run(long op) {
+				mResult = index.query(query);
+			}
+		});
+		benchmark("scanQuery" + name, new Operation() {
+			@Override
+			public void run(long op) {
+				final int count = table.getCount();
+				final int[] matches = new int[count];
+				int matched = 0;
+				for (int row = 0; row < count; row++) {
+					if (query.matches(table, row)) {
+						matches[matched++] = row;
+					}
+				}
+				mResult = matches;
+			}
+		});
+		assertTrue("The store and the index found different rows",
+				Arrays.equals(mStore.query(stored, query), index.query(query)));
+	}
+}
@@ -0,0 +1,108 @@
+package com.iangclifton.auid.realestate;
+
+import android.support.v4.view.ViewPager;
+
+import com.iangclifton.auid.benchmark.BenchmarkTestCase;
+
+/**
+ * Reports the peak heap in use while paging through 20 sections in
+ * {@link MainActivityTabs}, keeping only the pages next to the current one
+ * alive the way the activity does, and keeping every page alive the way a
+ * FragmentPagerAdapter did.
+ *
+ * The activity only has three sections, so its ViewPager is given a
+ * {@link PropertyListPagerAdapter} with 20 instead. Each page is shown and
+ * its listings are loaded before the heap is measured, after a garbage
+ * collection so only what the pages retain is counted.
+ *
+ * @author Ian G. Clifton
+ */
+public class SectionPagingHeapBenchmark extends BenchmarkTestCase {
+	private static final String PACKAGE_NAME = "com.iangclifton.auid.realestate";
+
+	private static final int SECTION_COUNT = 20;
+
+	private MainActivityTabs mActivity;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mActivity = launchActivity(PACKAGE_NAME, MainActivityTabs.class, null);
+		getInstrumentation().waitForIdleSync();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mActivity.finish();
+		super.tearDown();
+	}
+
+	public void testBoundedPeakHeap() throws Exception {
+		pageThroughSections("bounded", 1);
+	}
+
+	public void testUnboundedPeakHeap() throws Exception {
+		pageThroughSections("unbounded", SECTION_COUNT);
+	}
+
+	/**
+	 * Shows every section in turn and reports the most heap in use and the
+	 * most live fragments after any of them
+	 *
+	 * @param name String prefix for the metric names
+	 * @param offscreenPageLimit int pages on each side of the current one to
+	 *            keep alive
+	 */
+	private void pageThroughSections(String name, final int offscreenPageLimit) throws Exception {
+		final ViewPager pager = mActivity.mViewPager;
+		final PropertyListPagerAdapter adapter = new PropertyListPagerAdapter(
+				mActivity.getSupportFragmentManager()) {
+			@Override
+			public PropertyListState getInitialState(int position) {
+				return new PropertyListState(PropertyRepository.getSectionDataSetId(position), null);
+			}
+
+			@Override
+			public int getCount() {
+				return SECTION_COUNT;
+			}
+		};
+		getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				// The activity's listener selects one of its three tabs
+				pager.setOnPageChangeListener(null);
+				pager.setOffscreenPageLimit(offscreenPageLimit);
+				pager.setAdapter(adapter);
+			}
+		});
+		getInstrumentation().waitForIdleSync();
+
+		final PropertyRepository repository = PropertyRepository.getInstance(mActivity);
+		long peakHeapBytes = 0;
+		int peakLiveFragments = 0;
+		for (int i = 0; i < SECTION_COUNT; i++) {
+			final int section = i;
+			getInstrumentation().runOnMainSync(new Runnable() {
+				@Override
+				public void run() {
+					pager.setCurrentItem(section, false);
+				}
+			});
+			repository.load(PropertyRepository.getSectionDataSetId(section));
+			getInstrumentation().waitForIdleSync();
+			peakHeapBytes = Math.max(peakHeapBytes, getUsedHeapBytes());
+			peakLiveFragments = Math.max(peakLiveFragments, adapter.getLiveFragmentCount());
+		}
+		reportMetric(name + "PeakHeap", peakHeapBytes, "bytes");
+		reportMetric(name + "PeakLiveFragments", peakLiveFragments, "fragments");
+	}
+
+	private static long getUsedHeapBytes() {
+		final Runtime runtime = Runtime.getRuntime();
+		runtime.gc();
+		runtime.runFinalization();
+		runtime.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
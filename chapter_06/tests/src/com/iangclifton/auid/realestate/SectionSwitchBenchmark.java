@@ -0,0 +1,95 @@
+package com.iangclifton.auid.realestate;
+
+import android.app.ActionBar;
+import android.support.v4.view.ViewPager;
+
+import com.iangclifton.auid.benchmark.BenchmarkTestCase;
+
+/**
+ * Measures how long switching sections in {@link MainActivityTabs} and
+ * {@link MainActivityDropdown} keeps the main thread busy.
+ *
+ * Each switch jumps two sections ahead, so with three sections it regularly
+ * lands on one whose fragment has to be created again. A switch is timed from
+ * selecting the section until the main thread is idle, which includes
+ * creating, laying out and drawing the new list but not listings loading on a
+ * background thread. Nothing on the main thread should wait for listings, so
+ * this stays short even for a section that hasn't been loaded yet.
+ *
+ * @author Ian G. Clifton
+ */
+public class SectionSwitchBenchmark extends BenchmarkTestCase {
+	private static final String PACKAGE_NAME = "com.iangclifton.auid.realestate";
+
+	private static final int SECTION_COUNT = 3;
+	private static final int WARMUP_SWITCHES = 10;
+	private static final int SWITCHES = 60;
+
+	public void testDropdownSwitchLatency() throws Exception {
+		final MainActivityDropdown activity = launchActivity(PACKAGE_NAME, MainActivityDropdown.class, null);
+		try {
+			final ActionBar actionBar = activity.getActionBar();
+			measureSwitches("dropdownSwitchLatency", new Operation() {
+				@Override
+				public void run(long section) {
+					actionBar.setSelectedNavigationItem((int) section);
+				}
+			});
+		} finally {
+			activity.finish();
+		}
+	}
+
+	public void testTabSwitchLatency() throws Exception {
+		final MainActivityTabs activity = launchActivity(PACKAGE_NAME, MainActivityTabs.class, null);
+		try {
+			final ViewPager pager = activity.mViewPager;
+			measureSwitches("tabSwitchLatency", new Operation() {
+				@Override
+				public void run(long section) {
+					pager.setCurrentItem((int) section, false);
+				}
+			});
+		} finally {
+			activity.finish();
+		}
+	}
+
+	/**
+	 * Selects sections one after another and reports the percentiles of the
+	 * time until the main thread was idle after each
+	 *
+	 * @param name String name of the metric
+	 * @param select Operation that selects the section it is given on the main
+	 *            thread
+	 */
+	private void measureSwitches(String name, final Operation select) throws Exception {
+		getInstrumentation().waitForIdleSync();
+		final double[] latencyMs = new double[SWITCHES];
+		final Exception[] failure = new Exception[1];
+		int section = 0;
+		for (int i = -WARMUP_SWITCHES; i < SWITCHES; i++) {
+			section = (section + 2) % SECTION_COUNT;
+			final int target = section;
+			final long start = System.nanoTime();
+			getInstrumentation().runOnMainSync(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						select.run(target);
+					} catch (Exception e) {
+						failure[0] = e;
+					}
+				}
+			});
+			getInstrumentation().waitForIdleSync();
+			if (failure[0] != null) {
+				throw failure[0];
+			}
+			if (i >= 0) {
+				latencyMs[i] = (System.nanoTime() - start) / 1e6;
+			}
+		}
+		reportPercentiles(name, latencyMs, "ms");
+	}
+}
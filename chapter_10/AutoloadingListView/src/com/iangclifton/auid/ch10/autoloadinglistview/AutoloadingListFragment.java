@@ -19,117 +19,393 @@
 
 package com.iangclifton.auid.ch10.autoloadinglistview;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
 import android.app.ListFragment;
 import android.content.Context;
 import android.os.Bundle;
-import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AbsListView;
 import android.widget.AbsListView.OnScrollListener;
 import android.widget.BaseAdapter;
+import android.widget.FrameLayout;
+import android.widget.ListView;
 import android.widget.TextView;
 
 /**
  * ListFragment that demonstrates autoloading behavior.
  * 
+ * Rows come from a {@link PageSource} a run of pages at a time. Pages are
+ * loaded by a {@link PageRequestCoordinator}, which never loads the same page
+ * twice at once. How far ahead of the visible rows they are requested, how
+ * many pages go in each load and how many loads run at once are decided by a
+ * {@link PrefetchPolicy} from the measured scroll speed and load times, so
+ * the faster the user flings, the more rows are loaded ahead and the bigger
+ * the loads. Only the number of loads the source allows at once and the
+ * number of rows to keep in memory are fixed. The pages to request are
+ * chosen by a {@link PageRequestPlanner}.
+ * 
+ * Loaded pages are kept in a {@link PageCheckpoint}, which holds only a
+ * window of pages around the visible rows, sized by the policy within the
+ * memory budget. Pages that fall out of the window are evicted and loaded
+ * again if the user scrolls back to them, showing placeholder rows in the
+ * meantime, so the list can grow to millions of rows without using more
+ * memory. A page loaded far ahead extends the list straight away, and the
+ * pages before it show placeholders until they arrive.
+ * 
+ * The fragment is retained across configuration changes, so rotating the
+ * device keeps the checkpoint and lets pages that are still loading finish.
+ * Stopping the fragment cancels the loads, and starting it again only
+ * requests the pages that aren't already in the checkpoint.
+ * 
+ * Loaded pages are also written to a {@link PageCache} on disk, and the
+ * extent and scroll position are saved there when the fragment stops. A
+ * fragment created after the process was killed restores both from the
+ * cache's index before it requests any pages, and the pages themselves are
+ * read from the cache instead of the page source until they expire. Only
+ * loads that reach the page source are timed for the policy, by a
+ * {@link MeasuredPageSource} under the cache.
+ * 
+ * Every time the user reaches the loading footer or a placeholder row before
+ * its page has arrived, it is counted as a wait, and the count is logged as
+ * pages arrive. Frame times, dropped frames and row bind times are recorded
+ * by a {@link ScrollPerformanceMonitor}, shown over the list in debuggable
+ * builds and included in the fragment's dump. Dumping the fragment with the
+ * "simulate" argument also runs a {@link PrefetchSimulation} of scripted
+ * scrolling against the same source limits and prints how often each script
+ * waited.
+ * 
  * @author Ian G. Clifton
  */
-public class AutoloadingListFragment extends ListFragment implements OnScrollListener {
+public class AutoloadingListFragment extends ListFragment implements OnScrollListener,
+		PageRequestCoordinator.Listener, PageCache.RestoreListener, MeasuredPageSource.Listener {
+	private static final String TAG = "AutoloadingListFragment";
 	
-	private final int AUTOLOAD_THRESHOLD = 4;
-	private final int MAXIMUM_ITEMS = 52;
-	private SimpleAdapter mAdapter;
+	private static final int MIN_PREFETCH_DISTANCE = 4;
+	private static final int MAXIMUM_ITEMS = 1000000;
+	private static final int PAGE_SIZE = 10;
+
+	/**
+	 * The most loads the source allows at once, like a server's limit on
+	 * connections from one client
+	 */
+	private static final int MAX_CONCURRENT_LOADS = 4;
+
+	/**
+	 * The most rows to keep in memory, however fast the list is flung
+	 */
+	private static final int MAX_RESIDENT_ROWS = 2000;
+
+	/**
+	 * Rows per second to plan for until the user has scrolled: a fast fling,
+	 * so that not even the first one runs into the loading footer
+	 */
+	private static final float INITIAL_GESTURE_SPEED = 400f;
+	private static final long SIMULATED_LATENCY_MS = 1000;
+	private static final float SIMULATED_ROW_LATENCY_MS = 2f;
+
+	private static final String DUMP_ARG_SIMULATE = "simulate";
+
+	private static final String CACHE_DIRECTORY_NAME = "pages";
+	private static final long CACHE_TTL_MS = 24 * 60 * 60 * 1000;
+	private static final long CACHE_MAX_BYTES = 1024 * 1024;
+
+	private PageWindowAdapter mAdapter;
+	private PageCheckpoint mCheckpoint;
+	private PageRequestCoordinator mCoordinator;
+	private PageRequestPlanner mPlanner;
 	private View mFooterView;
-	private Handler mHandler;
-	private boolean mIsLoading = false;
+	private PageCache mPageCache;
+	private PageSource mPageSource;
+	private PrefetchPolicy mPrefetchPolicy;
+	private ScrollPerformanceMonitor mScrollMonitor;
 	private boolean mMoreDataAvailable = true;
-	private boolean mWasLoading = false;
+
+	/**
+	 * Whether the cache has been read; no pages are requested until it has
+	 */
+	private boolean mRestored;
+
+	/**
+	 * A restored scroll position waiting for the list to be created
+	 */
+	private PageCache.Snapshot mPendingSnapshot;
+	private boolean mStarted;
+
+	/**
+	 * The visible positions, for requesting pages again
+	 */
+	private int mFirstVisiblePosition;
+	private int mLastVisiblePosition;
+
+	private boolean mWaiting;
+	private int mWaitCount;
 	
-	private Runnable mAddItemsRunnable = new Runnable() {
-		@Override
-		public void run() {
-			mAdapter.addMoreItems(10);
-			mIsLoading = false;
-		}
-	};
+	@Override
+	public void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		setRetainInstance(true);
+		mPageCache = new PageCache(new File(getActivity().getCacheDir(), CACHE_DIRECTORY_NAME), PAGE_SIZE,
+				CACHE_TTL_MS, CACHE_MAX_BYTES);
+		mPageSource = new CachedPageSource(new MeasuredPageSource(new SimulatedPageSource(
+				getString(R.string.position) + " ", MAXIMUM_ITEMS, SIMULATED_LATENCY_MS,
+				SIMULATED_ROW_LATENCY_MS), this), mPageCache);
+		mPrefetchPolicy = newPrefetchPolicy();
+		mCheckpoint = new PageCheckpoint(PAGE_SIZE, mPrefetchPolicy.getMaxResidentPages(0));
+		mCoordinator = new PageRequestCoordinator(mPageSource, PAGE_SIZE, MAX_CONCURRENT_LOADS);
+		mCoordinator.setListener(this);
+		mPlanner = new PageRequestPlanner(mCheckpoint, mPrefetchPolicy, mCoordinator);
+		mScrollMonitor = new ScrollPerformanceMonitor(getActivity(), TAG, PageWindowAdapter.class.getSimpleName());
+		mScrollMonitor.setOnScrollListener(this);
+		mPageCache.restore(this);
+	}
 	
 	@Override
 	public void onActivityCreated(Bundle savedInstanceState) {
 		super.onActivityCreated(savedInstanceState);
 		final Context context = getActivity();
-		mHandler = new Handler();
-		mAdapter = new SimpleAdapter(context, android.R.layout.simple_list_item_1);
-		mFooterView = LayoutInflater.from(context).inflate(R.layout.loading_view, null);
-		getListView().addFooterView(mFooterView, null, false);
+		mAdapter = new PageWindowAdapter(context, android.R.layout.simple_list_item_1, mCheckpoint,
+				mScrollMonitor);
+		if (mMoreDataAvailable) {
+			mFooterView = LayoutInflater.from(context).inflate(R.layout.loading_view, null);
+			getListView().addFooterView(mFooterView, null, false);
+		}
 		setListAdapter(mAdapter);
-		getListView().setOnScrollListener(this);
+		getListView().setOnScrollListener(mScrollMonitor);
+		if (ScrollPerformanceMonitor.isOverlayEnabled(context) && getView() instanceof FrameLayout) {
+			mScrollMonitor.attachOverlay((FrameLayout) getView());
+		}
+		if (mPendingSnapshot != null) {
+			getListView().setSelectionFromTop(mPendingSnapshot.getFirstVisiblePosition(),
+					mPendingSnapshot.getFirstVisibleTop());
+			mPendingSnapshot = null;
+		}
+	}
+
+	/**
+	 * Restores the extent and scroll position saved in the cache and starts
+	 * requesting pages
+	 */
+	@Override
+	public void onRestored(PageCache.Snapshot snapshot) {
+		mRestored = true;
+		if (snapshot != null) {
+			mCheckpoint.restoreExtent(snapshot.getCount(), snapshot.getExtentPages());
+			mFirstVisiblePosition = snapshot.getFirstVisiblePosition();
+			mLastVisiblePosition = mFirstVisiblePosition;
+			checkForMoreData();
+			if (mAdapter == null) {
+				mPendingSnapshot = snapshot;
+			} else {
+				mAdapter.notifyDataSetChanged();
+				getListView().setSelectionFromTop(snapshot.getFirstVisiblePosition(),
+						snapshot.getFirstVisibleTop());
+			}
+		}
+		Log.d(TAG, "Restored " + snapshot + "; " + mCheckpoint);
+		if (mStarted && mAdapter != null) {
+			requestPages();
+		}
 	}
 	
 	@Override
 	public void onScroll(AbsListView view, int firstVisibleItem,
 			int visibleItemCount, int totalItemCount) {
-		if (!mIsLoading && mMoreDataAvailable) {
-			if (totalItemCount >= MAXIMUM_ITEMS) {
-				mMoreDataAvailable = false;
-				getListView().removeFooterView(mFooterView);
-			} else if (totalItemCount - AUTOLOAD_THRESHOLD <= firstVisibleItem + visibleItemCount) {
-				mIsLoading = true;
-				mHandler.postDelayed(mAddItemsRunnable, 1000);
-			}
+		mPrefetchPolicy.onScroll(firstVisibleItem, SystemClock.uptimeMillis());
+		mFirstVisiblePosition = firstVisibleItem;
+		mLastVisiblePosition = firstVisibleItem + visibleItemCount - 1;
+		final boolean waiting = isWaiting();
+		if (waiting && !mWaiting && mCheckpoint.getCount() > 0) {
+			// The user can see the footer or a placeholder; there's no
+			// getting ahead of the first page, so it doesn't count
+			mWaitCount++;
 		}
+		mWaiting = waiting;
+		requestPages();
 	}
 
 	@Override
 	public void onScrollStateChanged(AbsListView view, int scrollState) {
-		// Ignore
+		mPrefetchPolicy.onScrollStateChanged(scrollState);
 	}
 	
 	@Override
 	public void onStart() {
 		super.onStart();
-		if (mWasLoading) {
-			mWasLoading = false;
-			mIsLoading = true;
-			mHandler.postDelayed(mAddItemsRunnable, 1000);
+		mStarted = true;
+		if (mAdapter != null) {
+			// Pick up any pages that were cancelled when stopped
+			requestPages();
 		}
 	}
 	
 	@Override
 	public void onStop() {
 		super.onStop();
-		mHandler.removeCallbacks(mAddItemsRunnable);
-		mWasLoading = mIsLoading;
-		mIsLoading = false;
+		mStarted = false;
+		if (mRestored) {
+			final ListView listView = getListView();
+			final View firstChild = listView.getChildAt(0);
+			mPageCache.saveState(mCheckpoint.getCount(), mCheckpoint.getExtentPages(),
+					listView.getFirstVisiblePosition(), firstChild == null ? 0 : firstChild.getTop());
+		}
+		if (!getActivity().isChangingConfigurations()) {
+			// Loads in progress are thrown away; completed pages stay in
+			// the checkpoint for when the fragment starts again
+			mCoordinator.cancelAll();
+		}
+	}
+
+	@Override
+	public void onDestroyView() {
+		super.onDestroyView();
+		// The list and its footer belong to the old activity
+		mAdapter = null;
+		mFooterView = null;
+		mScrollMonitor.detachOverlay();
+	}
+
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		mCoordinator.shutdown();
+		mPageCache.close();
+		Log.d(TAG, "Destroyed; " + mCoordinator + "; " + mPageCache);
+	}
+
+	@Override
+	public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+		super.dump(prefix, fd, writer, args);
+		mScrollMonitor.dump(prefix, writer, args);
+		if (args != null) {
+			for (String arg : args) {
+				if (DUMP_ARG_SIMULATE.equals(arg)) {
+					new PrefetchSimulation(PAGE_SIZE, MIN_PREFETCH_DISTANCE, MAX_CONCURRENT_LOADS,
+							MAX_RESIDENT_ROWS, SIMULATED_LATENCY_MS, SIMULATED_ROW_LATENCY_MS, INITIAL_GESTURE_SPEED)
+							.dump(prefix, writer);
+				}
+			}
+		}
 	}
 
-	private static class SimpleAdapter extends BaseAdapter {
+	/**
+	 * Removes the loading footer once every row is in the extent
+	 */
+	private void checkForMoreData() {
+		if (mMoreDataAvailable && mCheckpoint.getCount() >= mPageSource.getCount()) {
+			mMoreDataAvailable = false;
+			if (mFooterView != null) {
+				getListView().removeFooterView(mFooterView);
+				mFooterView = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the user can see the loading footer or a placeholder
+	 */
+	private boolean isWaiting() {
+		final int count = mCheckpoint.getCount();
+		if (mMoreDataAvailable && mLastVisiblePosition >= count) {
+			return true;
+		}
+		final int lastPage = Math.min(mLastVisiblePosition, count - 1) / PAGE_SIZE;
+		for (int page = mFirstVisiblePosition / PAGE_SIZE; page <= lastPage; page++) {
+			if (!mCheckpoint.isPageResident(page)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a PrefetchPolicy for this fragment's source; the simulation
+	 * builds the same one
+	 */
+	private static PrefetchPolicy newPrefetchPolicy() {
+		return new PrefetchPolicy(PAGE_SIZE, MIN_PREFETCH_DISTANCE, MAX_CONCURRENT_LOADS, MAX_RESIDENT_ROWS,
+				SIMULATED_LATENCY_MS + Math.round(PAGE_SIZE * SIMULATED_ROW_LATENCY_MS), INITIAL_GESTURE_SPEED);
+	}
+
+	/**
+	 * Times a load that went to the page source rather than the cache
+	 */
+	@Override
+	public void onLoadMeasured(int rows, long latencyMs) {
+		mPrefetchPolicy.onLoadFinished(rows, latencyMs);
+	}
+
+	/**
+	 * Checkpoints loaded pages and shows them if the list exists; while the
+	 * activity is being recreated, they just wait in the checkpoint
+	 */
+	@Override
+	public void onPagesLoaded(int firstPage, String[][] pages, long latencyMs) {
+		for (int i = 0; i < pages.length; i++) {
+			mCheckpoint.putPage(firstPage + i, pages[i]);
+		}
+		checkForMoreData();
+		Log.d(TAG, "Loaded pages " + firstPage + " to " + (firstPage + pages.length - 1) + " in " + latencyMs
+				+ "ms; waited " + mWaitCount + " times in " + mCheckpoint.getCount() + " rows; " + mCheckpoint
+				+ "; " + mCoordinator + "; " + mPrefetchPolicy);
+		if (mAdapter == null) {
+			return;
+		}
+		mAdapter.notifyDataSetChanged();
+		mWaiting = isWaiting();
+		requestPages();
+	}
+
+	/**
+	 * Starts loading the pages near the visible rows that aren't already
+	 * loaded or loading, and evicts and stops loading the pages furthest
+	 * away
+	 */
+	private void requestPages() {
+		if (!mRestored) {
+			return;
+		}
+		mPlanner.requestPages(mFirstVisiblePosition, mLastVisiblePosition, mPageSource.getCount());
+	}
+
+	/**
+	 * Adapter over the rows of a {@link PageCheckpoint}. Rows of evicted pages
+	 * show a placeholder until their page is put back.
+	 */
+	private static class PageWindowAdapter extends BaseAdapter {
 		
-		private int mCount = 20;
+		private final PageCheckpoint mCheckpoint;
 		private final LayoutInflater mLayoutInflater;
-		private final String mPositionString;
+		private final String mLoadingString;
+		private final ScrollPerformanceMonitor mScrollMonitor;
 		private final int mTextViewResourceId;
 		
-		/*package*/ SimpleAdapter(Context context, int textViewResourceId) {
+		/*package*/ PageWindowAdapter(Context context, int textViewResourceId, PageCheckpoint checkpoint,
+				ScrollPerformanceMonitor scrollMonitor) {
 			mLayoutInflater = LayoutInflater.from(context);
-			mPositionString = context.getString(R.string.position) + " ";
+			mLoadingString = context.getString(R.string.loading);
 			mTextViewResourceId = textViewResourceId;
-		}
-		
-		public void addMoreItems(int count) {
-			mCount += count;
-			notifyDataSetChanged();
+			mCheckpoint = checkpoint;
+			mScrollMonitor = scrollMonitor;
 		}
 		
 		@Override
 		public int getCount() {
-			return mCount;
+			return mCheckpoint.getCount();
 		}
 
+		/**
+		 * Returns the row or null if its page isn't in memory
+		 */
 		@Override
 		public String getItem(int position) {
-			return mPositionString + position;
+			return mCheckpoint.getRow(position);
 		}
 
 		@Override
@@ -139,6 +415,7 @@ public class AutoloadingListFragment extends ListFragment implements OnScrollLis
 
 		@Override
 		public View getView(int position, View convertView, ViewGroup parent) {
+			final long bindStart = System.nanoTime();
 			final TextView tv;
 			if (convertView == null) {
 				tv = (TextView) mLayoutInflater.inflate(mTextViewResourceId, null);
@@ -146,7 +423,9 @@ public class AutoloadingListFragment extends ListFragment implements OnScrollLis
 				tv = (TextView) convertView;
 			}
 			
-			tv.setText(getItem(position));
+			final String item = getItem(position);
+			tv.setText(item == null ? mLoadingString : item);
+			mScrollMonitor.recordBind(bindStart);
 			return tv;
 		}
 	}
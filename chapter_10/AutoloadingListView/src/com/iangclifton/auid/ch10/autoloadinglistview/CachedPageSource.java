@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 Ian G. Clifton
+ * Code featured in Android User Interface Design: Turning Ideas and
+ * Sketches into Beautifully Designed Apps (ISBN-10: 0321886739;
+ * ISBN-13: 978-0321886736).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iangclifton.auid.ch10.autoloadinglistview;
+
+import java.io.IOException;
+
+/**
+ * PageSource that reads pages from a {@link PageCache} when it can and
+ * otherwise loads them from another PageSource and adds them to the cache.
+ * 
+ * The pages of a run that aren't cached are loaded from the other source in
+ * a single run, from the first missing page to the last, so a run that is
+ * mostly missing still costs only one request.
+ * 
+ * @author Ian G. Clifton
+ */
+public class CachedPageSource implements PageSource {
+
+	private final PageCache mCache;
+	private final PageSource mSource;
+
+	/**
+	 * Constructs a CachedPageSource
+	 * 
+	 * @param source PageSource to load pages that aren't cached from
+	 * @param cache PageCache to read and write pages
+	 */
+	public CachedPageSource(PageSource source, PageCache cache) {
+		mSource = source;
+		mCache = cache;
+	}
+
+	@Override
+	public int getCount() {
+		return mSource.getCount();
+	}
+
+	@Override
+	public String[][] loadPages(int firstPage, int pageCount, int pageSize) throws IOException,
+			InterruptedException {
+		final int lastPage = Math.min(firstPage + pageCount, (getCount() + pageSize - 1) / pageSize) - 1;
+		final String[][] pages = new String[Math.max(lastPage - firstPage + 1, 0)][];
+		int firstMissing = -1;
+		int lastMissing = -1;
+		for (int i = 0; i < pages.length; i++) {
+			pages[i] = mCache.get(firstPage + i);
+			if (pages[i] == null) {
+				if (firstMissing == -1) {
+					firstMissing = i;
+				}
+				lastMissing = i;
+			}
+		}
+		if (firstMissing == -1) {
+			return pages;
+		}
+		final String[][] loaded = mSource.loadPages(firstPage + firstMissing, lastMissing - firstMissing + 1,
+				pageSize);
+		for (int i = 0; i < loaded.length; i++) {
+			pages[firstMissing + i] = loaded[i];
+			mCache.put(firstPage + firstMissing + i, loaded[i]);
+		}
+		if (firstMissing + loaded.length <= lastMissing) {
+			// The source ended early; leave out everything past it
+			final String[][] shortened = new String[firstMissing + loaded.length][];
+			System.arraycopy(pages, 0, shortened, 0, shortened.length);
+			return shortened;
+		}
+		return pages;
+	}
+}
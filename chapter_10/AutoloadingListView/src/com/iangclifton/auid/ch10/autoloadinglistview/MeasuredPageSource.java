@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2013 Ian G. Clifton
+ * Code featured in Android User Interface Design: Turning Ideas and
+ * Sketches into Beautifully Designed Apps (ISBN-10: 0321886739;
+ * ISBN-13: 978-0321886736).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iangclifton.auid.ch10.autoloadinglistview;
+
+import java.io.IOException;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * PageSource that times the loads of another PageSource and reports each one
+ * that succeeds to a {@link Listener} on the UI thread.
+ *
+ * Put it directly around the slow source, underneath a
+ * {@link CachedPageSource}, so that only loads that really went to the source
+ * are measured; pages read from the cache come back almost at once and would
+ * make the source look much faster than it is.
+ *
+ * Construct it on the UI thread.
+ *
+ * @author Ian G. Clifton
+ */
+public class MeasuredPageSource implements PageSource {
+
+	/**
+	 * Receives the time of each load on the UI thread
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when a load from the source has finished
+		 *
+		 * @param rows int number of rows loaded
+		 * @param latencyMs long time the source took to load them
+		 */
+		public void onLoadMeasured(int rows, long latencyMs);
+	}
+
+	private final Handler mHandler = new Handler();
+	private final Listener mListener;
+	private final PageSource mSource;
+
+	/**
+	 * Constructs a MeasuredPageSource
+	 *
+	 * @param source PageSource to load pages from
+	 * @param listener Listener to report the time of each load to
+	 */
+	public MeasuredPageSource(PageSource source, Listener listener) {
+		mSource = source;
+		mListener = listener;
+	}
+
+	@Override
+	public int getCount() {
+		return mSource.getCount();
+	}
+
+	@Override
+	public String[][] loadPages(int firstPage, int pageCount, int pageSize) throws IOException,
+			InterruptedException {
+		final long start = SystemClock.uptimeMillis();
+		final String[][] pages = mSource.loadPages(firstPage, pageCount, pageSize);
+		final long latencyMs = SystemClock.uptimeMillis() - start;
+		int rows = 0;
+		for (String[] page : pages) {
+			rows += page.length;
+		}
+		final int rowCount = rows;
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				mListener.onLoadMeasured(rowCount, latencyMs);
+			}
+		});
+		return pages;
+	}
+}
@@ -0,0 +1,647 @@
+/*
+ * Copyright (C) 2013 Ian G. Clifton
+ * Code featured in Android User Interface Design: Turning Ideas and
+ * Sketches into Beautifully Designed Apps (ISBN-10: 0321886739;
+ * ISBN-13: 978-0321886736).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iangclifton.auid.ch10.autoloadinglistview;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import android.os.Handler;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * A compact on-disk cache of the pages of an autoloading list, along with
+ * how much of the list had been loaded and how far it was scrolled.
+ * 
+ * Pages are appended to segment files, each holding a page index, a row
+ * count and the rows. A new segment is started once the current one reaches
+ * its size limit or its time to live, so a segment is never rewritten. A
+ * single index file records every segment and where each page lives, plus
+ * the list's extent and scroll position. The index is written to a
+ * temporary file and renamed into place, with a CRC32 of its contents, so a
+ * crash never leaves a partial index behind; page data that was appended
+ * after the last index write is simply never read.
+ * 
+ * Pages in a segment older than the time to live are treated as missing,
+ * and once the segments add up to more than the size limit, the least
+ * recently read segment is deleted along with its pages. The saved extent
+ * and scroll position expire with the same time to live.
+ * 
+ * Reading and writing the index and appending pages all happen on a single
+ * background thread. {@link #get(int)} can be called from any thread, but
+ * it reads from disk, so don't call it on the UI thread. Construct the cache
+ * on the UI thread, since that is where {@link RestoreListener} is called.
+ * 
+ * @author Ian G. Clifton
+ */
+public class PageCache {
+	private static final String TAG = "PageCache";
+
+	private static final String INDEX_FILE_NAME = "index";
+	private static final String SEGMENT_FILE_PREFIX = "segment-";
+
+	/**
+	 * "PGCI" in ASCII
+	 */
+	private static final int MAGIC = 0x50474349;
+	private static final int VERSION = 1;
+
+	/**
+	 * The size at which a new segment is started
+	 */
+	private static final long MAX_SEGMENT_BYTES = 64 * 1024;
+
+	/**
+	 * How many pages can be appended before the index is written, so pages
+	 * survive the process being killed without the list being stopped
+	 */
+	private static final int INDEX_WRITE_INTERVAL = 32;
+
+	/**
+	 * Receives the list's saved state on the UI thread
+	 */
+	public interface RestoreListener {
+
+		/**
+		 * Called once the index has been read
+		 * 
+		 * @param snapshot Snapshot of the list or null if there is none or it
+		 *        has expired
+		 */
+		public void onRestored(Snapshot snapshot);
+	}
+
+	private final File mDirectory;
+	private final Handler mHandler = new Handler();
+	private final long mMaxBytes;
+	private final int mPageSize;
+	private final long mTtlMs;
+	private final ExecutorService mWriter = Executors.newSingleThreadExecutor();
+
+	/**
+	 * Where each page lives, by page index; guarded by this
+	 */
+	private final SparseArray<Entry> mEntries = new SparseArray<Entry>();
+
+	/**
+	 * Segments by id; guarded by this
+	 */
+	private final SparseArray<Segment> mSegments = new SparseArray<Segment>();
+	private boolean mOpen;
+	private boolean mClosed;
+	private int mHitCount;
+	private int mMissCount;
+	private int mEvictedSegmentCount;
+
+	/*
+	 * Only used on the writer thread
+	 */
+	private Segment mActiveSegment;
+	private FileOutputStream mActiveStream;
+	private int mAppendsSinceIndexWrite;
+	private int mNextSegmentId;
+	private Snapshot mSnapshot;
+
+	/**
+	 * Constructs a PageCache; nothing is read until {@link #restore(RestoreListener)}
+	 * 
+	 * @param directory File directory to keep the cache in
+	 * @param pageSize int number of rows in a full page; a cache written with
+	 *        a different page size is discarded
+	 * @param ttlMs long how long pages and the saved state stay valid
+	 * @param maxBytes long size the segments are trimmed to
+	 */
+	public PageCache(File directory, int pageSize, long ttlMs, long maxBytes) {
+		mDirectory = directory;
+		mPageSize = pageSize;
+		mTtlMs = ttlMs;
+		mMaxBytes = maxBytes;
+	}
+
+	/**
+	 * Writes the index one last time and stops the writer thread once it
+	 * has finished the work already queued
+	 */
+	public synchronized void close() {
+		if (mClosed) {
+			return;
+		}
+		mClosed = true;
+		mWriter.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					writeIndex();
+					if (mActiveStream != null) {
+						mActiveStream.close();
+						mActiveStream = null;
+					}
+				} catch (IOException e) {
+					Log.w(TAG, "Failed to close the page cache", e);
+				}
+			}
+		});
+		mWriter.shutdown();
+	}
+
+	/**
+	 * Reads a page from disk
+	 * 
+	 * @param page int page index
+	 * @return String[] rows of the page or null if it isn't cached or has
+	 *         expired
+	 */
+	public String[] get(int page) {
+		final long now = System.currentTimeMillis();
+		final Entry entry;
+		final File file;
+		synchronized (this) {
+			entry = mOpen ? mEntries.get(page) : null;
+			final Segment segment = entry == null ? null : mSegments.get(entry.mSegmentId);
+			if (segment == null || now - segment.mCreated > mTtlMs) {
+				mMissCount++;
+				return null;
+			}
+			segment.mLastAccess = now;
+			file = segment.mFile;
+		}
+
+		final byte[] record = new byte[entry.mLength];
+		try {
+			final RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				raf.seek(entry.mOffset);
+				raf.readFully(record);
+			} finally {
+				raf.close();
+			}
+			final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+			if (in.readInt() != page) {
+				throw new IOException("Page " + page + " is not at " + entry.mOffset + " in " + file);
+			}
+			final String[] rows = new String[in.readInt()];
+			for (int i = 0; i < rows.length; i++) {
+				rows[i] = in.readUTF();
+			}
+			synchronized (this) {
+				mHitCount++;
+			}
+			return rows;
+		} catch (IOException e) {
+			// Most likely the segment was evicted while it was being read
+			Log.w(TAG, "Failed to read page " + page, e);
+			synchronized (this) {
+				mMissCount++;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Appends a page on the writer thread, replacing any earlier copy
+	 * 
+	 * @param page int page index
+	 * @param rows String[] rows of the page
+	 */
+	public synchronized void put(final int page, final String[] rows) {
+		if (mClosed) {
+			return;
+		}
+		mWriter.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					append(page, rows);
+				} catch (IOException e) {
+					Log.w(TAG, "Failed to cache page " + page, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reads the index on the writer thread, dropping expired and unindexed
+	 * segments, and hands the saved state to the listener. Pages can't be
+	 * read until this has finished.
+	 * 
+	 * @param listener RestoreListener to call on the UI thread
+	 */
+	public synchronized void restore(final RestoreListener listener) {
+		if (mClosed) {
+			return;
+		}
+		mWriter.execute(new Runnable() {
+			@Override
+			public void run() {
+				final Snapshot snapshot = open();
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						listener.onRestored(snapshot);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Saves the list's extent and scroll position and writes the index on
+	 * the writer thread
+	 * 
+	 * @param count int number of rows in the list's extent
+	 * @param extentPages int number of pages in the list's extent
+	 * @param firstVisiblePosition int position of the first visible row
+	 * @param firstVisibleTop int offset of that row's top edge in pixels
+	 */
+	public synchronized void saveState(int count, int extentPages, int firstVisiblePosition, int firstVisibleTop) {
+		if (mClosed) {
+			return;
+		}
+		final Snapshot snapshot = new Snapshot(System.currentTimeMillis(), count, extentPages,
+				firstVisiblePosition, firstVisibleTop);
+		mWriter.execute(new Runnable() {
+			@Override
+			public void run() {
+				mSnapshot = snapshot;
+				try {
+					writeIndex();
+				} catch (IOException e) {
+					Log.w(TAG, "Failed to write the page cache index", e);
+				}
+			}
+		});
+	}
+
+	@Override
+	public synchronized String toString() {
+		long bytes = 0;
+		for (int i = 0; i < mSegments.size(); i++) {
+			bytes += mSegments.valueAt(i).mLength;
+		}
+		return "PageCache[pages=" + mEntries.size() + ", segments=" + mSegments.size() + ", bytes=" + bytes
+				+ ", hits=" + mHitCount + ", misses=" + mMissCount + ", evictedSegments="
+				+ mEvictedSegmentCount + "]";
+	}
+
+	/**
+	 * Appends a page to the active segment, starting a new one if needed,
+	 * and evicts segments until the cache is back under its limits
+	 */
+	private void append(int page, String[] rows) throws IOException {
+		final long now = System.currentTimeMillis();
+		if (mActiveSegment == null || mActiveSegment.mLength >= MAX_SEGMENT_BYTES
+				|| now - mActiveSegment.mCreated > mTtlMs) {
+			startSegment(now);
+		}
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream record = new DataOutputStream(bytes);
+		record.writeInt(page);
+		record.writeInt(rows.length);
+		for (String row : rows) {
+			record.writeUTF(row);
+		}
+		// Unbuffered, so the record can be read as soon as it is indexed
+		bytes.writeTo(mActiveStream);
+
+		synchronized (this) {
+			mEntries.put(page, new Entry(mActiveSegment.mId, mActiveSegment.mLength, bytes.size()));
+			mActiveSegment.mLength += bytes.size();
+			mActiveSegment.mLastAccess = now;
+			evict(now);
+		}
+		if (++mAppendsSinceIndexWrite >= INDEX_WRITE_INTERVAL) {
+			writeIndex();
+		}
+	}
+
+	/**
+	 * Deletes every segment but the active one that has expired and then
+	 * the least recently read ones until the cache fits; call with the lock
+	 * held
+	 */
+	private void evict(long now) {
+		long bytes = 0;
+		for (int i = mSegments.size() - 1; i >= 0; i--) {
+			final Segment segment = mSegments.valueAt(i);
+			if (segment != mActiveSegment && now - segment.mCreated > mTtlMs) {
+				deleteSegment(i);
+			} else {
+				bytes += segment.mLength;
+			}
+		}
+		while (bytes > mMaxBytes && mSegments.size() > 1) {
+			int leastRecent = -1;
+			for (int i = 0; i < mSegments.size(); i++) {
+				final Segment segment = mSegments.valueAt(i);
+				if (segment != mActiveSegment
+						&& (leastRecent < 0 || segment.mLastAccess < mSegments.valueAt(leastRecent).mLastAccess)) {
+					leastRecent = i;
+				}
+			}
+			bytes -= mSegments.valueAt(leastRecent).mLength;
+			deleteSegment(leastRecent);
+		}
+	}
+
+	/**
+	 * Deletes a segment and forgets its pages; call with the lock held
+	 */
+	private void deleteSegment(int index) {
+		final Segment segment = mSegments.valueAt(index);
+		mSegments.removeAt(index);
+		for (int i = mEntries.size() - 1; i >= 0; i--) {
+			if (mEntries.valueAt(i).mSegmentId == segment.mId) {
+				mEntries.removeAt(i);
+			}
+		}
+		if (!segment.mFile.delete()) {
+			Log.w(TAG, "Failed to delete " + segment.mFile);
+		}
+		mEvictedSegmentCount++;
+	}
+
+	/**
+	 * Reads the index in a single read and deletes any segment it doesn't
+	 * list
+	 */
+	private Snapshot open() {
+		final long now = System.currentTimeMillis();
+		Snapshot snapshot = null;
+		if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+			Log.w(TAG, "Failed to create " + mDirectory);
+		}
+		final File indexFile = new File(mDirectory, INDEX_FILE_NAME);
+		if (indexFile.isFile()) {
+			try {
+				snapshot = readIndex(indexFile, now);
+			} catch (IOException e) {
+				Log.w(TAG, "Discarding unreadable page cache index", e);
+				synchronized (this) {
+					mSegments.clear();
+					mEntries.clear();
+				}
+			}
+		}
+
+		final File[] files = mDirectory.listFiles();
+		synchronized (this) {
+			if (files != null) {
+				for (File file : files) {
+					final String name = file.getName();
+					if (name.startsWith(SEGMENT_FILE_PREFIX)
+							&& mSegments.get(parseSegmentId(name)) == null && !file.delete()) {
+						Log.w(TAG, "Failed to delete " + file);
+					}
+				}
+			}
+			mOpen = true;
+		}
+		mSnapshot = snapshot;
+		Log.d(TAG, "Restored " + snapshot + " in " + (System.currentTimeMillis() - now) + "ms; " + this);
+		return snapshot;
+	}
+
+	/**
+	 * Fills in the segments and pages from the index
+	 * 
+	 * @return Snapshot or null if there is no saved state or it has expired
+	 */
+	private Snapshot readIndex(File indexFile, long now) throws IOException {
+		final byte[] data = new byte[(int) indexFile.length()];
+		final RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+		try {
+			raf.readFully(data);
+		} finally {
+			raf.close();
+		}
+
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			throw new IOException("Unknown page cache format");
+		}
+		final long crc = in.readLong();
+		final CRC32 actualCrc = new CRC32();
+		actualCrc.update(data, 16, data.length - 16);
+		if (crc != actualCrc.getValue()) {
+			throw new IOException("Page cache index checksum mismatch");
+		}
+		if (in.readInt() != mPageSize) {
+			// Pages of a different size can't be reused
+			return null;
+		}
+		final Snapshot snapshot = new Snapshot(in.readLong(), in.readInt(), in.readInt(), in.readInt(),
+				in.readInt());
+		mNextSegmentId = in.readInt();
+
+		synchronized (this) {
+			final int segmentCount = in.readInt();
+			for (int i = 0; i < segmentCount; i++) {
+				final int id = in.readInt();
+				final Segment segment = new Segment(id, new File(mDirectory, SEGMENT_FILE_PREFIX + id),
+						in.readLong());
+				segment.mLastAccess = in.readLong();
+				segment.mLength = in.readLong();
+				if (now - segment.mCreated <= mTtlMs && segment.mFile.length() >= segment.mLength) {
+					mSegments.put(id, segment);
+				}
+			}
+			final int entryCount = in.readInt();
+			for (int i = 0; i < entryCount; i++) {
+				final int page = in.readInt();
+				final Entry entry = new Entry(in.readInt(), in.readLong(), in.readInt());
+				if (mSegments.get(entry.mSegmentId) != null) {
+					mEntries.put(page, entry);
+				}
+			}
+		}
+		return snapshot.mCount > 0 && now - snapshot.mTime <= mTtlMs ? snapshot : null;
+	}
+
+	/**
+	 * Starts appending to a new segment
+	 */
+	private void startSegment(long now) throws IOException {
+		if (mActiveStream != null) {
+			mActiveStream.close();
+		}
+		final int id = mNextSegmentId++;
+		final Segment segment = new Segment(id, new File(mDirectory, SEGMENT_FILE_PREFIX + id), now);
+		mActiveStream = new FileOutputStream(segment.mFile);
+		mActiveSegment = segment;
+		synchronized (this) {
+			mSegments.put(id, segment);
+		}
+	}
+
+	/**
+	 * Atomically replaces the index with the current segments, pages and
+	 * saved state
+	 */
+	private void writeIndex() throws IOException {
+		final Snapshot snapshot = mSnapshot == null ? new Snapshot(0, 0, 0, 0, 0) : mSnapshot;
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(mPageSize);
+		out.writeLong(snapshot.mTime);
+		out.writeInt(snapshot.mCount);
+		out.writeInt(snapshot.mExtentPages);
+		out.writeInt(snapshot.mFirstVisiblePosition);
+		out.writeInt(snapshot.mFirstVisibleTop);
+		out.writeInt(mNextSegmentId);
+		synchronized (this) {
+			out.writeInt(mSegments.size());
+			for (int i = 0; i < mSegments.size(); i++) {
+				final Segment segment = mSegments.valueAt(i);
+				out.writeInt(segment.mId);
+				out.writeLong(segment.mCreated);
+				out.writeLong(segment.mLastAccess);
+				out.writeLong(segment.mLength);
+			}
+			out.writeInt(mEntries.size());
+			for (int i = 0; i < mEntries.size(); i++) {
+				final Entry entry = mEntries.valueAt(i);
+				out.writeInt(mEntries.keyAt(i));
+				out.writeInt(entry.mSegmentId);
+				out.writeLong(entry.mOffset);
+				out.writeInt(entry.mLength);
+			}
+		}
+		final byte[] body = bytes.toByteArray();
+		final CRC32 crc = new CRC32();
+		crc.update(body);
+
+		final File indexFile = new File(mDirectory, INDEX_FILE_NAME);
+		final File temp = new File(mDirectory, INDEX_FILE_NAME + ".tmp");
+		final FileOutputStream fileOut = new FileOutputStream(temp);
+		try {
+			final DataOutputStream header = new DataOutputStream(fileOut);
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			header.writeLong(crc.getValue());
+			header.write(body);
+			header.flush();
+			fileOut.getFD().sync();
+		} finally {
+			fileOut.close();
+		}
+		if (!temp.renameTo(indexFile)) {
+			throw new IOException("Failed to rename " + temp + " to " + indexFile);
+		}
+		mAppendsSinceIndexWrite = 0;
+	}
+
+	/**
+	 * Returns the id in a segment file name or -1 if it isn't valid
+	 */
+	private static int parseSegmentId(String name) {
+		try {
+			return Integer.parseInt(name.substring(SEGMENT_FILE_PREFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * How much of the list had been loaded and how far it was scrolled
+	 */
+	public static class Snapshot {
+		private final long mTime;
+		private final int mCount;
+		private final int mExtentPages;
+		private final int mFirstVisiblePosition;
+		private final int mFirstVisibleTop;
+
+		/*package*/ Snapshot(long time, int count, int extentPages, int firstVisiblePosition, int firstVisibleTop) {
+			mTime = time;
+			mCount = count;
+			mExtentPages = extentPages;
+			mFirstVisiblePosition = firstVisiblePosition;
+			mFirstVisibleTop = firstVisibleTop;
+		}
+
+		public int getCount() {
+			return mCount;
+		}
+
+		public int getExtentPages() {
+			return mExtentPages;
+		}
+
+		public int getFirstVisiblePosition() {
+			return mFirstVisiblePosition;
+		}
+
+		/**
+		 * Returns the offset of the first visible row's top edge from the top
+		 * of the list in pixels
+		 */
+		public int getFirstVisibleTop() {
+			return mFirstVisibleTop;
+		}
+
+		@Override
+		public String toString() {
+			return "Snapshot[count=" + mCount + ", firstVisiblePosition=" + mFirstVisiblePosition + "]";
+		}
+	}
+
+	/**
+	 * Where a page's record is
+	 */
+	private static class Entry {
+		private final int mSegmentId;
+		private final long mOffset;
+		private final int mLength;
+
+		/*package*/ Entry(int segmentId, long offset, int length) {
+			mSegmentId = segmentId;
+			mOffset = offset;
+			mLength = length;
+		}
+	}
+
+	/**
+	 * An append-only file of page records
+	 */
+	private static class Segment {
+		private final int mId;
+		private final File mFile;
+		private final long mCreated;
+		private long mLastAccess;
+		private long mLength;
+
+		/*package*/ Segment(int id, File file, long created) {
+			mId = id;
+			mFile = file;
+			mCreated = created;
+			mLastAccess = created;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2013 Ian G. Clifton
+ * Code featured in Android User Interface Design: Turning Ideas and
+ * Sketches into Beautifully Designed Apps (ISBN-10: 0321886739;
+ * ISBN-13: 978-0321886736).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iangclifton.auid.ch10.autoloadinglistview;
+
+import android.util.SparseArray;
+
+/**
+ * The pages of an autoloading list that have finished loading.
+ * 
+ * The list's extent covers every page up to the furthest one that has
+ * finished loading, so a page loaded far ahead by a fast fling extends the
+ * list straight away; pages before it that haven't arrived yet show as
+ * placeholders. Only a bounded window of pages is kept in memory, and the
+ * size of the window can change as the list speeds up and slows down. A page
+ * outside the window is evicted, but its rows still count toward the extent,
+ * and it can be put back once it's loaded again.
+ * 
+ * Because it holds no views, a checkpoint outlives the list showing it, so a
+ * list that is stopped or rotated picks up from the last completed page
+ * instead of starting over. Use it from the UI thread.
+ * 
+ * @author Ian G. Clifton
+ */
+public class PageCheckpoint {
+
+	private final int mPageSize;
+	private final SparseArray<String[]> mPages = new SparseArray<String[]>();
+
+	/**
+	 * The number of rows in the pages from 0 up to mExtentPages; the last of
+	 * them has been loaded at least once, but the others may not have been
+	 */
+	private int mCount;
+	private int mExtentPages;
+	private int mMaxResidentPages;
+	private int mEvictedPageCount;
+
+	/**
+	 * Constructs a PageCheckpoint
+	 * 
+	 * @param pageSize int number of rows in a full page
+	 * @param maxResidentPages int most pages to keep in memory until
+	 *            {@link #setMaxResidentPages(int)} is called
+	 */
+	public PageCheckpoint(int pageSize, int maxResidentPages) {
+		mPageSize = pageSize;
+		mMaxResidentPages = maxResidentPages;
+	}
+
+	/**
+	 * Returns the number of rows in the list's extent
+	 * 
+	 * @return int row count
+	 */
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Returns the number of pages in the list's extent
+	 * 
+	 * @return int page count
+	 */
+	public int getExtentPages() {
+		return mExtentPages;
+	}
+
+	/**
+	 * Returns the most pages kept in memory after a {@link #trim(int, int)}
+	 * 
+	 * @return int page count
+	 */
+	public int getMaxResidentPages() {
+		return mMaxResidentPages;
+	}
+
+	public int getPageSize() {
+		return mPageSize;
+	}
+
+	/**
+	 * Returns the number of pages in memory
+	 * 
+	 * @return int page count
+	 */
+	public int getResidentPageCount() {
+		return mPages.size();
+	}
+
+	/**
+	 * Returns a row or null if its page isn't in memory
+	 * 
+	 * @param position int row position
+	 * @return String row or null
+	 */
+	public String getRow(int position) {
+		final String[] rows = mPages.get(position / mPageSize);
+		return rows == null ? null : rows[position % mPageSize];
+	}
+
+	public boolean isPageResident(int page) {
+		return mPages.get(page) != null;
+	}
+
+	/**
+	 * Keeps a loaded page and extends the list to it if it's past the end
+	 * 
+	 * @param page int page index
+	 * @param rows String[] rows of the page
+	 */
+	public void putPage(int page, String[] rows) {
+		mPages.put(page, rows);
+		if (page >= mExtentPages) {
+			// Only the last page can be short, so every page before it is full
+			mCount = page * mPageSize + rows.length;
+			mExtentPages = page + 1;
+		}
+	}
+
+	/**
+	 * Restores the extent of an earlier list without any of its pages, which
+	 * show as evicted until they are loaded again; does nothing if any pages
+	 * have been loaded already
+	 * 
+	 * @param count int number of rows in the extent
+	 * @param extentPages int number of pages in the extent
+	 */
+	public void restoreExtent(int count, int extentPages) {
+		if (mExtentPages > 0 || mPages.size() > 0) {
+			return;
+		}
+		mCount = count;
+		mExtentPages = extentPages;
+	}
+
+	/**
+	 * Changes the number of pages kept in memory; takes effect at the next
+	 * {@link #trim(int, int)}
+	 * 
+	 * @param maxResidentPages int most pages to keep in memory
+	 */
+	public void setMaxResidentPages(int maxResidentPages) {
+		mMaxResidentPages = maxResidentPages;
+	}
+
+	/**
+	 * Evicts the pages furthest from a range until no more than the maximum
+	 * are left
+	 * 
+	 * @param firstPage int first page of the range to keep
+	 * @param lastPage int last page of the range to keep
+	 */
+	public void trim(int firstPage, int lastPage) {
+		while (mPages.size() > mMaxResidentPages) {
+			int furthest = 0;
+			int furthestDistance = -1;
+			for (int i = 0; i < mPages.size(); i++) {
+				final int page = mPages.keyAt(i);
+				final int distance = page < firstPage ? firstPage - page : page - lastPage;
+				if (distance > furthestDistance) {
+					furthest = i;
+					furthestDistance = distance;
+				}
+			}
+			mPages.removeAt(furthest);
+			mEvictedPageCount++;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PageCheckpoint[count=" + mCount + ", residentPages=" + mPages.size()
+				+ ", evictedPages=" + mEvictedPageCount + "]";
+	}
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2013 Ian G. Clifton
+ * Code featured in Android User Interface Design: Turning Ideas and
+ * Sketches into Beautifully Designed Apps (ISBN-10: 0321886739;
+ * ISBN-13: 978-0321886736).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iangclifton.auid.ch10.autoloadinglistview;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Loads runs of pages from a {@link PageSource} on background threads and
+ * hands them to a {@link Listener} on the UI thread.
+ * 
+ * Each request covers a run of consecutive pages, loaded together, and is
+ * kept under every page in the run, so asking for a page that is already
+ * being loaded doesn't load it again. Cancelling a request interrupts its
+ * load if it has started, and pages that arrive after their request was
+ * cancelled are dropped rather than delivered. The caller decides how many
+ * loads run at once; there is a thread for each, up to the most the source
+ * allows, and threads that have nothing to load go away.
+ * 
+ * It keeps count of every load it starts, every load that was thrown away
+ * because its request was cancelled once it had started, and every page
+ * loaded again after it had been delivered, so the cost of cancelling and
+ * evicting pages can be measured.
+ * 
+ * Construct it and call everything on the UI thread.
+ * 
+ * @author Ian G. Clifton
+ */
+public class PageRequestCoordinator implements PageRequestPlanner.Loader {
+	private static final String TAG = "PageRequestCoordinator";
+	private static final long IDLE_THREAD_TIMEOUT_S = 30;
+
+	/**
+	 * Receives loaded pages on the UI thread
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when a requested run of pages has been loaded
+		 * 
+		 * @param firstPage int index of the first page
+		 * @param pages String[][] rows of each page; fewer than were
+		 *            requested if the source ended
+		 * @param latencyMs long time from the start of the load to the
+		 *            delivery, leaving out any time spent waiting for a thread
+		 */
+		public void onPagesLoaded(int firstPage, String[][] pages, long latencyMs);
+	}
+
+	private final ThreadPoolExecutor mExecutor;
+	private final Handler mHandler = new Handler();
+	private final PageSource mPageSource;
+	private final int mPageSize;
+
+	/**
+	 * Requests that haven't been delivered or cancelled, under each of their
+	 * pages
+	 */
+	private final SparseArray<Request> mRequests = new SparseArray<Request>();
+	private int mInFlightCount;
+
+	/**
+	 * Pages that have been delivered at least once
+	 */
+	private final BitSet mDeliveredPages = new BitSet();
+
+	private Listener mListener;
+	private boolean mShutdown;
+
+	private int mFetchCount;
+	private int mWastedFetchCount;
+	private int mDuplicateFetchCount;
+	private int mFailedFetchCount;
+
+	/**
+	 * Constructs a PageRequestCoordinator
+	 * 
+	 * @param pageSource PageSource to load pages from
+	 * @param pageSize int number of rows in a full page
+	 * @param maxConcurrentLoads int most loads the source allows at once
+	 */
+	public PageRequestCoordinator(PageSource pageSource, int pageSize, int maxConcurrentLoads) {
+		mPageSource = pageSource;
+		mPageSize = pageSize;
+		mExecutor = new ThreadPoolExecutor(maxConcurrentLoads, maxConcurrentLoads, IDLE_THREAD_TIMEOUT_S,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Cancels every request
+	 */
+	public void cancelAll() {
+		for (int i = 0; i < mRequests.size(); i++) {
+			mRequests.valueAt(i).mFuture.cancel(true);
+		}
+		mRequests.clear();
+		mInFlightCount = 0;
+	}
+
+	/**
+	 * Cancels every request whose pages are all outside a range; a request
+	 * with any page in the range keeps loading
+	 * 
+	 * @param firstPage int first page to keep loading
+	 * @param lastPage int last page to keep loading
+	 */
+	@Override
+	public void cancelOutside(int firstPage, int lastPage) {
+		for (int i = mRequests.size() - 1; i >= 0; i--) {
+			final Request request = mRequests.valueAt(i);
+			if (request.mFirstPage > lastPage || request.mFirstPage + request.mPageCount <= firstPage) {
+				if (mRequests.keyAt(i) == request.mFirstPage) {
+					request.mFuture.cancel(true);
+					mInFlightCount--;
+				}
+				mRequests.removeAt(i);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of pages loaded again after they had been delivered
+	 * 
+	 * @return int duplicate fetch count
+	 */
+	public int getDuplicateFetchCount() {
+		return mDuplicateFetchCount;
+	}
+
+	/**
+	 * Returns the number of loads that failed with an IOException
+	 * 
+	 * @return int failed fetch count
+	 */
+	public int getFailedFetchCount() {
+		return mFailedFetchCount;
+	}
+
+	/**
+	 * Returns the number of loads that have finished, whether they were
+	 * delivered, thrown away or failed
+	 * 
+	 * @return int fetch count
+	 */
+	public int getFetchCount() {
+		return mFetchCount;
+	}
+
+	/**
+	 * Returns the number of requests that haven't been delivered or
+	 * cancelled, however many pages each covers
+	 * 
+	 * @return int number of loads running or waiting for a thread
+	 */
+	@Override
+	public int getInFlightCount() {
+		return mInFlightCount;
+	}
+
+	/**
+	 * Returns the number of loads that were started and then thrown away
+	 * because their request was cancelled
+	 * 
+	 * @return int wasted fetch count
+	 */
+	public int getWastedFetchCount() {
+		return mWastedFetchCount;
+	}
+
+	/**
+	 * Returns true if a page has been requested and not yet delivered
+	 * 
+	 * @param page int page index
+	 * @return true if the page is being loaded
+	 */
+	@Override
+	public boolean isRequested(int page) {
+		return mRequests.get(page) != null;
+	}
+
+	/**
+	 * Starts loading a run of pages in one load unless one of them is
+	 * already being loaded
+	 * 
+	 * @param firstPage int index of the first page
+	 * @param pageCount int number of pages
+	 * @return true if a new load was started
+	 */
+	@Override
+	public boolean request(int firstPage, int pageCount) {
+		if (mShutdown) {
+			return false;
+		}
+		for (int page = firstPage; page < firstPage + pageCount; page++) {
+			if (mRequests.get(page) != null) {
+				return false;
+			}
+		}
+		final Request request = new Request(firstPage, pageCount);
+		for (int page = firstPage; page < firstPage + pageCount; page++) {
+			mRequests.put(page, request);
+		}
+		mInFlightCount++;
+		request.mFuture = mExecutor.submit(request);
+		return true;
+	}
+
+	public void setListener(Listener listener) {
+		mListener = listener;
+	}
+
+	/**
+	 * Cancels every request and stops the loader threads; nothing is delivered
+	 * afterward
+	 */
+	public void shutdown() {
+		mShutdown = true;
+		cancelAll();
+		mExecutor.shutdownNow();
+	}
+
+	@Override
+	public String toString() {
+		return "PageRequestCoordinator[requests=" + mInFlightCount + ", requestedPages=" + mRequests.size()
+				+ ", fetches=" + mFetchCount
+				+ ", wastedFetches=" + mWastedFetchCount + ", duplicateFetches=" + mDuplicateFetchCount
+				+ ", failedFetches=" + mFailedFetchCount + "]";
+	}
+
+	/**
+	 * Counts a finished load and delivers its pages if its request is still
+	 * current
+	 * 
+	 * @param request Request that finished loading
+	 * @param pages String[][] rows of each page or null if the load failed
+	 */
+	private void onFetchFinished(Request request, String[][] pages) {
+		if (mShutdown) {
+			return;
+		}
+		mFetchCount++;
+		final int firstPage = request.mFirstPage;
+		if (mRequests.get(firstPage) != request) {
+			mWastedFetchCount++;
+			return;
+		}
+		for (int page = firstPage; page < firstPage + request.mPageCount; page++) {
+			mRequests.remove(page);
+		}
+		mInFlightCount--;
+		if (pages == null) {
+			// Let the next request ask for them again
+			mFailedFetchCount++;
+			return;
+		}
+		for (int page = firstPage; page < firstPage + pages.length; page++) {
+			if (mDeliveredPages.get(page)) {
+				mDuplicateFetchCount++;
+			} else {
+				mDeliveredPages.set(page);
+			}
+		}
+		if (mListener != null) {
+			mListener.onPagesLoaded(firstPage, pages, SystemClock.uptimeMillis() - request.mStartTime);
+		}
+	}
+
+	/**
+	 * Loads a run of pages on a background thread and hands the result back
+	 * to the UI thread, even if the load failed or was interrupted, so that it
+	 * can be counted
+	 */
+	private class Request implements Runnable {
+		private final int mFirstPage;
+		private final int mPageCount;
+		private Future<?> mFuture;
+
+		/**
+		 * When the load started on its thread; read on the UI thread only
+		 * after the result has been posted
+		 */
+		private long mStartTime;
+
+		/*package*/ Request(int firstPage, int pageCount) {
+			mFirstPage = firstPage;
+			mPageCount = pageCount;
+		}
+
+		@Override
+		public void run() {
+			mStartTime = SystemClock.uptimeMillis();
+			String[][] pages = null;
+			try {
+				pages = mPageSource.loadPages(mFirstPage, mPageCount, mPageSize);
+			} catch (IOException e) {
+				Log.w(TAG, "Failed to load pages " + mFirstPage + " to " + (mFirstPage + mPageCount - 1), e);
+			} catch (InterruptedException e) {
+				// Cancelled
+			}
+			final String[][] result = pages;
+			mHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					onFetchFinished(Request.this, result);
+				}
+			});
+		}
+	}
+}
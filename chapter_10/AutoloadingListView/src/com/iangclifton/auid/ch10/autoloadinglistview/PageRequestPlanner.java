@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2013 Ian G. Clifton
+ * Code featured in Android User Interface Design: Turning Ideas and
+ * Sketches into Beautifully Designed Apps (ISBN-10: 0321886739;
+ * ISBN-13: 978-0321886736).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iangclifton.auid.ch10.autoloadinglistview;
+
+/**
+ * Decides which pages of an autoloading list to load next and which to let
+ * go, from the visible rows and a {@link PrefetchPolicy}.
+ *
+ * The visible pages come first, then the pages ahead in the direction the
+ * list is moving, nearest first, then the ones behind. Pages that aren't
+ * loaded or loading are requested in runs of consecutive pages, as long as
+ * the policy asks for, and only as many loads as the policy asks for run at
+ * once, except for visible pages, which are loaded up to the source's limit.
+ * A run that reaches the end of the range carries on past it until it is a
+ * full load, so a range moving with a fling is loaded a full load at a time
+ * rather than a page at a time as each page comes into it.
+ * Pages outside the range are evicted from the {@link PageCheckpoint},
+ * furthest first, once there are more than the policy allows, and loads
+ * that are entirely outside it are cancelled.
+ *
+ * {@link AutoloadingListFragment} plans against a
+ * {@link PageRequestCoordinator} and {@link PrefetchSimulation} against its
+ * modelled source, so the simulation requests exactly what the list would.
+ * Use it from the UI thread.
+ *
+ * @author Ian G. Clifton
+ */
+public class PageRequestPlanner {
+
+	/**
+	 * Runs the loads a PageRequestPlanner asks for
+	 */
+	public interface Loader {
+
+		/**
+		 * Cancels every load whose pages are all outside a range
+		 *
+		 * @param firstPage int first page to keep loading
+		 * @param lastPage int last page to keep loading
+		 */
+		public void cancelOutside(int firstPage, int lastPage);
+
+		/**
+		 * Returns the number of loads that haven't finished or been
+		 * cancelled
+		 *
+		 * @return int number of loads
+		 */
+		public int getInFlightCount();
+
+		/**
+		 * Returns true if a page is being loaded
+		 *
+		 * @param page int page index
+		 * @return true if a load covers the page
+		 */
+		public boolean isRequested(int page);
+
+		/**
+		 * Starts loading a run of pages in one load
+		 *
+		 * @param firstPage int index of the first page
+		 * @param pageCount int number of pages
+		 * @return true if a new load was started
+		 */
+		public boolean request(int firstPage, int pageCount);
+	}
+
+	private final PageCheckpoint mCheckpoint;
+	private final Loader mLoader;
+	private final PrefetchPolicy mPolicy;
+
+	/**
+	 * Constructs a PageRequestPlanner
+	 *
+	 * @param checkpoint PageCheckpoint the loaded pages are put in
+	 * @param policy PrefetchPolicy to take the distance and load sizes from
+	 * @param loader Loader to start and cancel loads with
+	 */
+	public PageRequestPlanner(PageCheckpoint checkpoint, PrefetchPolicy policy, Loader loader) {
+		mCheckpoint = checkpoint;
+		mPolicy = policy;
+		mLoader = loader;
+	}
+
+	/**
+	 * Starts loading the pages near the visible rows that aren't already
+	 * loaded or loading, and evicts and stops loading the pages furthest
+	 * away
+	 *
+	 * @param firstVisible int first visible position
+	 * @param lastVisible int last visible position, which may be past the
+	 *            end of what has been loaded
+	 * @param sourceCount int total number of rows in the source
+	 */
+	public void requestPages(int firstVisible, int lastVisible, int sourceCount) {
+		final int pageSize = mCheckpoint.getPageSize();
+		final int distance = mPolicy.getPrefetchDistance();
+		final int distanceBehind = mPolicy.getDistanceBehind();
+		final int pagesPerLoad = mPolicy.getPagesPerLoad();
+		final int concurrentLoads = mPolicy.getConcurrentLoads();
+		final boolean up = mPolicy.getVelocity() < 0;
+		final int lastSourceRow = sourceCount - 1;
+		final int firstRow = Math.max(firstVisible - (up ? distance : distanceBehind), 0);
+		final int lastRow = Math.min(lastVisible + (up ? distanceBehind : distance), lastSourceRow);
+		final int firstPage = firstRow / pageSize;
+		final int lastPage = lastRow / pageSize;
+		final int lastSourcePage = lastSourceRow / pageSize;
+		final int firstVisiblePage = Math.min(firstVisible, lastSourceRow) / pageSize;
+		final int lastVisiblePage = Math.min(lastVisible, lastSourceRow) / pageSize;
+
+		mCheckpoint.setMaxResidentPages(mPolicy.getMaxResidentPages(lastVisible - firstVisible + 1));
+		mCheckpoint.trim(firstPage, lastPage);
+		mLoader.cancelOutside(firstPage, lastPage);
+		requestRuns(firstVisiblePage, lastVisiblePage, lastVisiblePage, 1, pagesPerLoad,
+				mPolicy.getMaxConcurrentLoads());
+		if (up) {
+			requestRuns(firstVisiblePage - 1, firstPage, 0, -1, pagesPerLoad, concurrentLoads);
+			requestRuns(lastVisiblePage + 1, lastPage, lastSourcePage, 1, pagesPerLoad, concurrentLoads);
+		} else {
+			requestRuns(lastVisiblePage + 1, lastPage, lastSourcePage, 1, pagesPerLoad, concurrentLoads);
+			requestRuns(firstVisiblePage - 1, firstPage, 0, -1, pagesPerLoad, concurrentLoads);
+		}
+	}
+
+	/**
+	 * Requests the pages from one page to another, in that order, that
+	 * aren't loaded or loading, in runs of consecutive pages
+	 *
+	 * @param fromPage int page to start at
+	 * @param toPage int page to stop at; nothing is requested if it comes
+	 *            before fromPage in the direction of step
+	 * @param limitPage int page a run that reaches toPage may carry on to
+	 *            until it is pagesPerLoad long
+	 * @param step int 1 to go toward the end of the list or -1 to go back
+	 * @param pagesPerLoad int most pages in a run
+	 * @param maxLoads int stop once this many loads are running
+	 */
+	private void requestRuns(int fromPage, int toPage, int limitPage, int step, int pagesPerLoad, int maxLoads) {
+		int runStart = 0;
+		int runLength = 0;
+		for (int page = fromPage; (limitPage - page) * step >= 0; page += step) {
+			final boolean inRange = (toPage - page) * step >= 0;
+			if (!inRange && runLength == 0) {
+				return;
+			}
+			final boolean needed = !mCheckpoint.isPageResident(page) && !mLoader.isRequested(page);
+			if (needed) {
+				if (runLength == 0) {
+					runStart = page;
+				}
+				runLength++;
+			}
+			if (runLength > 0 && (!needed || runLength == pagesPerLoad || page == limitPage)) {
+				if (mLoader.getInFlightCount() >= maxLoads) {
+					return;
+				}
+				mLoader.request(step > 0 ? runStart : runStart - runLength + 1, runLength);
+				runLength = 0;
+			}
+		}
+	}
+}
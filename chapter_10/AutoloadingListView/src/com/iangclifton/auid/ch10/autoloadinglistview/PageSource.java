@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2013 Ian G. Clifton
+ * Code featured in Android User Interface Design: Turning Ideas and
+ * Sketches into Beautifully Designed Apps (ISBN-10: 0321886739;
+ * ISBN-13: 978-0321886736).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iangclifton.auid.ch10.autoloadinglistview;
+
+import java.io.IOException;
+
+/**
+ * Supplies the rows of an autoloading list a run of pages at a time.
+ * 
+ * {@link #loadPages(int, int, int)} is always called on a background thread,
+ * so it can block on the network or disk. Several runs may be loaded at
+ * once. A source that pays a fixed cost for each request, like a round trip
+ * to a server, should fetch the whole run in one request.
+ * 
+ * @author Ian G. Clifton
+ */
+public interface PageSource {
+
+	/**
+	 * Returns the total number of rows
+	 * 
+	 * @return int number of rows that can be loaded
+	 */
+	public int getCount();
+
+	/**
+	 * Loads a run of consecutive pages; the last page may be shorter than the
+	 * others, and pages past the end are left out
+	 * 
+	 * @param firstPage int index of the first page, starting at 0
+	 * @param pageCount int number of pages to load
+	 * @param pageSize int number of rows in a full page
+	 * @return String[][] rows of each page, starting with firstPage
+	 * @throws IOException if the pages could not be loaded
+	 * @throws InterruptedException if the load was cancelled
+	 */
+	public String[][] loadPages(int firstPage, int pageCount, int pageSize) throws IOException,
+			InterruptedException;
+}
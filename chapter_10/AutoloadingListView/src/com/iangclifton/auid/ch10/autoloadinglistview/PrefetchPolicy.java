@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2013 Ian G. Clifton
+ * Code featured in Android User Interface Design: Turning Ideas and
+ * Sketches into Beautifully Designed Apps (ISBN-10: 0321886739;
+ * ISBN-13: 978-0321886736).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iangclifton.auid.ch10.autoloadinglistview;
+
+import android.widget.AbsListView.OnScrollListener;
+
+/**
+ * Decides how far ahead of the visible rows an autoloading list should load,
+ * how many pages to ask for in each load and how many loads to run at once.
+ *
+ * A list that loads only when the user is a few rows from the end makes
+ * anyone who flings wait on the loading footer. This measures how fast the
+ * list is scrolling, in rows per second, and how long loads take, and asks
+ * for enough rows ahead to cover the distance the list will travel while a
+ * load runs, with some margin. A slow list only keeps a few rows ahead.
+ *
+ * A fling slows down to nothing before it stops, so the speed it ends at
+ * says little about the next one. The fastest speed of the last gesture is
+ * kept until the next gesture ends, and the distance covers whichever is
+ * faster, that or the current speed; someone who flings usually flings
+ * again, and once they drag slowly instead, the distance comes back down.
+ * Before the first gesture ends, an initial speed stands in for it, so a
+ * list that has just appeared is ready for a fast fling.
+ *
+ * A list that has stopped keeps the distance behind it as well as ahead,
+ * since the next fling may go back the way it came.
+ *
+ * Fixed limits can't keep up with a fast fling: a few loads of a small page
+ * at a time deliver only so many rows per second, however far ahead they are
+ * asked for. Load times are modelled as a fixed cost per load plus a cost per
+ * row, fitted to the loads that have finished, so when covering the distance
+ * would take more loads than the source allows at once, this asks for more
+ * pages in each load instead; the fixed cost is paid once for all of them.
+ * The loads it allows at once then deliver at least as many rows per second
+ * as the list is scrolling through, with the same margin.
+ *
+ * Only the source's limit on loads at once and a budget for the rows held in
+ * memory are fixed; the distance never takes more than half of the budget.
+ *
+ * Every measurement is smoothed, so a single slow load or jerky frame
+ * doesn't swing the results around. Call everything from the UI thread. It
+ * doesn't use the list itself, so {@link PrefetchSimulation} can drive it
+ * with scripted scrolling.
+ *
+ * @author Ian G. Clifton
+ */
+public class PrefetchPolicy {
+
+	/**
+	 * How much of each new measurement goes into the smoothed value
+	 */
+	private static final float SMOOTHING = 0.3f;
+
+	/**
+	 * How many times the expected travel distance to load ahead
+	 */
+	private static final float SAFETY_FACTOR = 1.5f;
+
+	/**
+	 * Loads must have differed in size by about this many rows before the
+	 * cost per row is fitted
+	 */
+	private static final float MIN_ROW_SPREAD = 1f;
+
+	private final int mPageSize;
+	private final int mMinDistance;
+	private final int mMaxDistance;
+	private final int mMaxConcurrentLoads;
+	private final int mMaxResidentPages;
+
+	private float mVelocity;
+
+	/**
+	 * The fastest smoothed speed of the gesture in progress and of the last
+	 * one that moved the list
+	 */
+	private float mGestureSpeed;
+	private float mLastGestureSpeed;
+	private int mScrollState = OnScrollListener.SCROLL_STATE_IDLE;
+	private int mLastFirstVisibleItem = -1;
+	private long mLastSampleTime;
+
+	/**
+	 * Exponentially weighted sums of the finished loads' row counts and
+	 * times, for a least squares fit of the time against the rows
+	 */
+	private float mWeight;
+	private float mRows;
+	private float mLatency;
+	private float mRowsSquared;
+	private float mRowsLatency;
+
+	/**
+	 * The fitted time of a load: mLoadLatencyMs plus mRowLatencyMs per row
+	 */
+	private float mLoadLatencyMs;
+	private float mRowLatencyMs;
+
+	private int mDistance;
+	private int mPagesPerLoad = 1;
+	private int mConcurrentLoads = 1;
+
+	/**
+	 * Constructs a PrefetchPolicy
+	 *
+	 * @param pageSize int number of rows in a page
+	 * @param minDistance int rows to keep loaded ahead even when idle
+	 * @param maxConcurrentLoads int most loads the source allows at once
+	 * @param maxResidentRows int most rows to keep in memory
+	 * @param initialPageLatencyMs long expected page load time until one has
+	 *            been measured
+	 * @param initialGestureSpeed float rows per second to plan for until a
+	 *            gesture has been measured
+	 */
+	public PrefetchPolicy(int pageSize, int minDistance, int maxConcurrentLoads, int maxResidentRows,
+			long initialPageLatencyMs, float initialGestureSpeed) {
+		mPageSize = pageSize;
+		mMinDistance = minDistance;
+		mMaxConcurrentLoads = Math.max(maxConcurrentLoads, 1);
+		mMaxDistance = Math.max(maxResidentRows / 2, minDistance);
+		mMaxResidentPages = Math.max(maxResidentRows / pageSize, 1);
+		mLoadLatencyMs = initialPageLatencyMs;
+		mDistance = minDistance;
+		addLoad(pageSize, initialPageLatencyMs);
+		mLastGestureSpeed = initialGestureSpeed;
+		update();
+	}
+
+	/**
+	 * Returns the number of loads that should be running at once
+	 *
+	 * @return int between 1 and the source's limit
+	 */
+	public int getConcurrentLoads() {
+		return mConcurrentLoads;
+	}
+
+	/**
+	 * Returns the number of rows on the other side of the visible rows from
+	 * the prefetch distance that should be loaded or loading. A list that is
+	 * scrolling only keeps a few rows behind it, but one that has stopped
+	 * may be flung back the way it came, so it keeps the whole prefetch
+	 * distance behind it too.
+	 *
+	 * @return int distance behind the visible rows in rows
+	 */
+	public int getDistanceBehind() {
+		return mScrollState == OnScrollListener.SCROLL_STATE_IDLE ? mDistance : mMinDistance;
+	}
+
+	/**
+	 * Returns the expected time of a load
+	 *
+	 * @param rows int number of rows in the load
+	 * @return float milliseconds
+	 */
+	public float getExpectedLatencyMs(int rows) {
+		return mLoadLatencyMs + mRowLatencyMs * rows;
+	}
+
+	/**
+	 * Returns the number of pages to keep in memory: enough for the visible
+	 * rows, the prefetch distance ahead of them, the distance behind and a
+	 * load that runs past either end, within the memory budget
+	 *
+	 * @param visibleRows int number of rows on screen
+	 * @return int page count
+	 */
+	public int getMaxResidentPages(int visibleRows) {
+		final int rows = visibleRows + mDistance + getDistanceBehind();
+		// A page cut off at each end, plus a load's worth past the distance
+		final int pages = (rows + mPageSize - 1) / mPageSize + 2 + mPagesPerLoad;
+		return Math.min(pages, Math.max(mMaxResidentPages, (visibleRows + mPageSize - 1) / mPageSize + 2));
+	}
+
+	/**
+	 * Returns the most loads the source allows at once
+	 *
+	 * @return int load count
+	 */
+	public int getMaxConcurrentLoads() {
+		return mMaxConcurrentLoads;
+	}
+
+	/**
+	 * Returns the number of pages to ask for in each load
+	 *
+	 * @return int page count, at least 1
+	 */
+	public int getPagesPerLoad() {
+		return mPagesPerLoad;
+	}
+
+	/**
+	 * Returns the number of rows past the last visible one that should
+	 * already be loaded or loading
+	 *
+	 * @return int prefetch distance in rows
+	 */
+	public int getPrefetchDistance() {
+		return mDistance;
+	}
+
+	/**
+	 * Returns the smoothed scroll speed; positive toward the end of the list
+	 *
+	 * @return float rows per second
+	 */
+	public float getVelocity() {
+		return mVelocity;
+	}
+
+	/**
+	 * Records how long a load from the source took; don't report pages
+	 * served from a cache, which would make the source look faster than it
+	 * is
+	 *
+	 * @param rows int number of rows loaded
+	 * @param latencyMs long milliseconds from starting the load to its result
+	 */
+	public void onLoadFinished(int rows, long latencyMs) {
+		addLoad(rows, latencyMs);
+		update();
+	}
+
+	/**
+	 * Records the list's position; call from OnScrollListener.onScroll
+	 *
+	 * @param firstVisibleItem int first visible position
+	 * @param uptimeMs long SystemClock.uptimeMillis() of the callback
+	 */
+	public void onScroll(int firstVisibleItem, long uptimeMs) {
+		if (mLastFirstVisibleItem == -1 || mScrollState == OnScrollListener.SCROLL_STATE_IDLE) {
+			// Layout changes and jumps move an idle list; that isn't the
+			// user scrolling
+			mLastFirstVisibleItem = firstVisibleItem;
+			mLastSampleTime = uptimeMs;
+			return;
+		}
+		if (firstVisibleItem == mLastFirstVisibleItem) {
+			// Moving within a row tells us nothing; the row count only
+			// changes every so often
+			return;
+		}
+		final long elapsed = uptimeMs - mLastSampleTime;
+		if (elapsed > 0) {
+			final float velocity = (firstVisibleItem - mLastFirstVisibleItem) * 1000f / elapsed;
+			mVelocity += (velocity - mVelocity) * SMOOTHING;
+			mGestureSpeed = Math.max(mGestureSpeed, Math.abs(mVelocity));
+			update();
+		}
+		mLastFirstVisibleItem = firstVisibleItem;
+		mLastSampleTime = uptimeMs;
+	}
+
+	/**
+	 * Records whether the list is scrolling; call from
+	 * OnScrollListener.onScrollStateChanged
+	 *
+	 * @param scrollState int OnScrollListener.SCROLL_STATE_* constant
+	 */
+	public void onScrollStateChanged(int scrollState) {
+		mScrollState = scrollState;
+		if (scrollState == OnScrollListener.SCROLL_STATE_IDLE && mGestureSpeed > 0f) {
+			mLastGestureSpeed = mGestureSpeed;
+			mGestureSpeed = 0f;
+			update();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PrefetchPolicy[velocity=" + mVelocity + " rows/s, loadLatency=" + mLoadLatencyMs + "ms + "
+				+ mRowLatencyMs + "ms/row, distance=" + mDistance + ", pagesPerLoad=" + mPagesPerLoad
+				+ ", concurrentLoads=" + mConcurrentLoads + "]";
+	}
+
+	/**
+	 * Adds a load to the sums and fits the load and row costs again
+	 */
+	private void addLoad(int rows, long latencyMs) {
+		final float decay = 1f - SMOOTHING;
+		mWeight = mWeight * decay + 1f;
+		mRows = mRows * decay + rows;
+		mLatency = mLatency * decay + latencyMs;
+		mRowsSquared = mRowsSquared * decay + (float) rows * rows;
+		mRowsLatency = mRowsLatency * decay + (float) rows * latencyMs;
+
+		final float meanRows = mRows / mWeight;
+		final float meanLatency = mLatency / mWeight;
+		final float variance = mRowsSquared / mWeight - meanRows * meanRows;
+		if (variance >= MIN_ROW_SPREAD * MIN_ROW_SPREAD) {
+			final float covariance = mRowsLatency / mWeight - meanRows * meanLatency;
+			mRowLatencyMs = Math.max(covariance / variance, 0f);
+		}
+		// Until loads of different sizes have been seen, keep the last cost
+		// per row and put the rest down to the fixed cost
+		mLoadLatencyMs = Math.max(meanLatency - mRowLatencyMs * meanRows, 0f);
+	}
+
+	/**
+	 * Works out the distance, the pages per load and the loads at once from
+	 * the current velocity and load costs
+	 */
+	private void update() {
+		final float speed = Math.max(Math.abs(mVelocity), mLastGestureSpeed);
+		final int maxPagesPerLoad = Math.max(mMaxDistance / mPageSize, 1);
+		int pagesPerLoad = 1;
+		int distance;
+		int loads;
+		while (true) {
+			final int loadRows = pagesPerLoad * mPageSize;
+			final float travel = speed * getExpectedLatencyMs(loadRows) / 1000f * SAFETY_FACTOR;
+			distance = Math.min(Math.max(mMinDistance, (int) Math.ceil(travel)), mMaxDistance);
+			loads = (distance + loadRows - 1) / loadRows;
+			if (loads <= mMaxConcurrentLoads || pagesPerLoad >= maxPagesPerLoad) {
+				break;
+			}
+			// Bigger loads take longer, so the distance grows too; go round
+			// until the allowed loads cover it
+			final int rowsPerLoad = (distance + mMaxConcurrentLoads - 1) / mMaxConcurrentLoads;
+			pagesPerLoad = Math.min(Math.max((rowsPerLoad + mPageSize - 1) / mPageSize, pagesPerLoad + 1),
+					maxPagesPerLoad);
+		}
+		mDistance = distance;
+		mPagesPerLoad = pagesPerLoad;
+		mConcurrentLoads = Math.min(Math.max(loads, 1), mMaxConcurrentLoads);
+	}
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2013 Ian G. Clifton
+ * Code featured in Android User Interface Design: Turning Ideas and
+ * Sketches into Beautifully Designed Apps (ISBN-10: 0321886739;
+ * ISBN-13: 978-0321886736).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iangclifton.auid.ch10.autoloadinglistview;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import android.widget.AbsListView.OnScrollListener;
+
+/**
+ * Drives a {@link PrefetchPolicy} with scripted scrolling, frame by frame,
+ * against a modelled source, to show how often each kind of scrolling would
+ * wait on the loading footer or a placeholder row.
+ *
+ * The source takes a fixed time for each load plus a time for each row and
+ * allows only so many loads at once, like {@link SimulatedPageSource} behind
+ * a {@link PageRequestCoordinator}. Pages are kept in a real
+ * {@link PageCheckpoint} and requested by the same {@link PageRequestPlanner}
+ * as {@link AutoloadingListFragment}'s, so the simulation asks for exactly
+ * the pages the list would. Each script starts once the list has settled, with
+ * the first screen and the rows ahead of it loaded, as someone opening the
+ * list sees it before they start to scroll. A fling that
+ * reaches the end of what has been loaded stops there, as a real one stops
+ * at the footer; a drag waits there until more rows arrive.
+ *
+ * Time is simulated, so every script runs in a few milliseconds; the
+ * fragment runs them all when it's dumped with the "simulate" argument.
+ *
+ * @author Ian G. Clifton
+ */
+public class PrefetchSimulation {
+
+	private static final int FRAME_MS = 16;
+	private static final int VISIBLE_ROWS = 12;
+	private static final int SOURCE_ROW_COUNT = 1000000;
+
+	private static final Script[] SCRIPTS = {
+			new Script("read", new Segment(30000, 3, 3, OnScrollListener.SCROLL_STATE_TOUCH_SCROLL)),
+			new Script("drag", new Segment(10000, 25, 25, OnScrollListener.SCROLL_STATE_TOUCH_SCROLL)),
+			new Script("fling", 10, new Segment(1500, 200, 0, OnScrollListener.SCROLL_STATE_FLING),
+					new Segment(500, 0, 0, OnScrollListener.SCROLL_STATE_IDLE)),
+			new Script("hard fling", 10, new Segment(2000, 800, 0, OnScrollListener.SCROLL_STATE_FLING),
+					new Segment(300, 0, 0, OnScrollListener.SCROLL_STATE_IDLE)),
+			new Script("fling back", 5, new Segment(2000, 400, 0, OnScrollListener.SCROLL_STATE_FLING),
+					new Segment(300, 0, 0, OnScrollListener.SCROLL_STATE_IDLE),
+					new Segment(2000, -400, 0, OnScrollListener.SCROLL_STATE_FLING),
+					new Segment(300, 0, 0, OnScrollListener.SCROLL_STATE_IDLE)),
+	};
+
+	private final int mPageSize;
+	private final int mMinDistance;
+	private final int mMaxConcurrentLoads;
+	private final int mMaxResidentRows;
+	private final long mLoadLatencyMs;
+	private final float mRowLatencyMs;
+	private final float mInitialGestureSpeed;
+
+	/**
+	 * Constructs a PrefetchSimulation
+	 *
+	 * @param pageSize int number of rows in a page
+	 * @param minDistance int rows to keep loaded ahead even when idle
+	 * @param maxConcurrentLoads int most loads the source allows at once
+	 * @param maxResidentRows int most rows to keep in memory
+	 * @param loadLatencyMs long time each load takes, however many rows
+	 * @param rowLatencyMs float time each row adds to its load
+	 * @param initialGestureSpeed float rows per second the policy plans for
+	 *            until a gesture has been measured
+	 */
+	public PrefetchSimulation(int pageSize, int minDistance, int maxConcurrentLoads, int maxResidentRows,
+			long loadLatencyMs, float rowLatencyMs, float initialGestureSpeed) {
+		mPageSize = pageSize;
+		mMinDistance = minDistance;
+		mMaxConcurrentLoads = maxConcurrentLoads;
+		mMaxResidentRows = maxResidentRows;
+		mLoadLatencyMs = loadLatencyMs;
+		mRowLatencyMs = rowLatencyMs;
+		mInitialGestureSpeed = initialGestureSpeed;
+	}
+
+	/**
+	 * Runs every script and prints a line for each
+	 *
+	 * @param prefix String to start each line with
+	 * @param writer PrintWriter to print to
+	 */
+	public void dump(String prefix, PrintWriter writer) {
+		writer.print(prefix);
+		writer.print("PrefetchSimulation pageSize=");
+		writer.print(mPageSize);
+		writer.print(" maxConcurrentLoads=");
+		writer.print(mMaxConcurrentLoads);
+		writer.print(" maxResidentRows=");
+		writer.print(mMaxResidentRows);
+		writer.print(" latency=");
+		writer.print(mLoadLatencyMs);
+		writer.print("ms + ");
+		writer.print(mRowLatencyMs);
+		writer.print("ms/row initialGestureSpeed=");
+		writer.print(mInitialGestureSpeed);
+		writer.println(" rows/s");
+		for (Script script : SCRIPTS) {
+			writer.print(prefix);
+			writer.print("  ");
+			writer.println(run(script));
+		}
+	}
+
+	/**
+	 * Runs a script from the top of an empty list
+	 *
+	 * @param script Script to run
+	 * @return Result of the run
+	 */
+	/*package*/ Result run(Script script) {
+		return new Run(script).run();
+	}
+
+	/**
+	 * A stretch of scrolling at a speed that changes steadily from the start
+	 * to the end
+	 */
+	/*package*/ static class Segment {
+		private final int mDurationMs;
+		private final float mStartVelocity;
+		private final float mEndVelocity;
+		private final int mScrollState;
+
+		/**
+		 * Constructs a Segment
+		 *
+		 * @param durationMs int length of the segment
+		 * @param startVelocity float rows per second at the start; negative
+		 *            toward the top of the list
+		 * @param endVelocity float rows per second at the end
+		 * @param scrollState int OnScrollListener.SCROLL_STATE_* constant
+		 */
+		/*package*/ Segment(int durationMs, float startVelocity, float endVelocity, int scrollState) {
+			mDurationMs = durationMs;
+			mStartVelocity = startVelocity;
+			mEndVelocity = endVelocity;
+			mScrollState = scrollState;
+		}
+	}
+
+	/**
+	 * Segments of scrolling, repeated a number of times
+	 */
+	/*package*/ static class Script {
+		private final String mName;
+		private final int mRepeatCount;
+		private final Segment[] mSegments;
+
+		/*package*/ Script(String name, Segment... segments) {
+			this(name, 1, segments);
+		}
+
+		/*package*/ Script(String name, int repeatCount, Segment... segments) {
+			mName = name;
+			mRepeatCount = repeatCount;
+			mSegments = segments;
+		}
+	}
+
+	/**
+	 * What happened during a run of a script
+	 */
+	/*package*/ static class Result {
+		private String mName;
+		private long mDurationMs;
+		private int mScrolledRows;
+		private int mWaitCount;
+		private long mWaitedMs;
+		private int mLoadCount;
+		private int mLoadedRows;
+		private int mCancelledLoadCount;
+		private int mMaxDistance;
+		private int mMaxPagesPerLoad;
+		private int mMaxLoadsAtOnce;
+		private int mMaxResidentPages;
+
+		@Override
+		public String toString() {
+			return mName + ": scrolled " + mScrolledRows + " rows in " + mDurationMs + "ms, waited " + mWaitCount
+					+ " times for " + mWaitedMs + "ms, " + mLoadCount + " loads of " + mLoadedRows + " rows, "
+					+ mCancelledLoadCount + " cancelled, distance<=" + mMaxDistance + ", pagesPerLoad<="
+					+ mMaxPagesPerLoad + ", loadsAtOnce<=" + mMaxLoadsAtOnce + ", residentPages<="
+					+ mMaxResidentPages;
+		}
+	}
+
+	/**
+	 * A load in progress in the modelled source
+	 */
+	private static class Load {
+		private final int mFirstPage;
+		private final int mPageCount;
+		private final long mStartMs;
+		private final long mFinishMs;
+
+		/*package*/ Load(int firstPage, int pageCount, long startMs, long finishMs) {
+			mFirstPage = firstPage;
+			mPageCount = pageCount;
+			mStartMs = startMs;
+			mFinishMs = finishMs;
+		}
+	}
+
+	/**
+	 * The state of one run of a script
+	 */
+	private class Run implements PageRequestPlanner.Loader {
+		private final Script mScript;
+		private final Result mResult = new Result();
+		private final PrefetchPolicy mPolicy;
+		private final PageCheckpoint mCheckpoint;
+		private final PageRequestPlanner mPlanner;
+		private final ArrayList<Load> mLoads = new ArrayList<Load>();
+		private final String[] mPageRows;
+
+		private long mNow;
+		private double mPosition;
+		private int mFirstVisible;
+		private int mLastVisible;
+		private boolean mWaiting;
+
+		/*package*/ Run(Script script) {
+			mScript = script;
+			mResult.mName = script.mName;
+			mPolicy = new PrefetchPolicy(mPageSize, mMinDistance, mMaxConcurrentLoads, mMaxResidentRows,
+					mLoadLatencyMs + Math.round(mPageSize * mRowLatencyMs), mInitialGestureSpeed);
+			mCheckpoint = new PageCheckpoint(mPageSize, mPolicy.getMaxResidentPages(0));
+			mPlanner = new PageRequestPlanner(mCheckpoint, mPolicy, this);
+			mPageRows = new String[mPageSize];
+			Arrays.fill(mPageRows, "");
+		}
+
+		/*package*/ Result run() {
+			mLastVisible = VISIBLE_ROWS - 1;
+			requestPages();
+			while (mCheckpoint.getCount() == 0 || !mLoads.isEmpty()) {
+				mNow += FRAME_MS;
+				deliverLoads();
+				requestPages();
+			}
+			for (int i = 0; i < mScript.mRepeatCount; i++) {
+				for (Segment segment : mScript.mSegments) {
+					runSegment(segment);
+				}
+			}
+			mResult.mDurationMs = mNow;
+			return mResult;
+		}
+
+		private void runSegment(Segment segment) {
+			int scrollState = segment.mScrollState;
+			mPolicy.onScrollStateChanged(scrollState);
+			final int frames = Math.max(segment.mDurationMs / FRAME_MS, 1);
+			for (int frame = 0; frame < frames; frame++) {
+				mNow += FRAME_MS;
+				deliverLoads();
+				boolean moved = true;
+				if (scrollState != OnScrollListener.SCROLL_STATE_IDLE) {
+					final float velocity = segment.mStartVelocity
+							+ (segment.mEndVelocity - segment.mStartVelocity) * frame / frames;
+					moved = scroll(velocity * FRAME_MS / 1000f);
+				}
+				mPolicy.onScroll(mFirstVisible, mNow);
+				if (!moved && scrollState == OnScrollListener.SCROLL_STATE_FLING) {
+					// Stopped at the footer or the top, like a real fling; a
+					// finger keeps dragging
+					scrollState = OnScrollListener.SCROLL_STATE_IDLE;
+					mPolicy.onScrollStateChanged(scrollState);
+				}
+				final boolean waiting = isWaiting();
+				if (waiting) {
+					mResult.mWaitedMs += FRAME_MS;
+					if (!mWaiting && mCheckpoint.getCount() > 0) {
+						mResult.mWaitCount++;
+					}
+				}
+				mWaiting = waiting;
+				requestPages();
+			}
+			if (scrollState != OnScrollListener.SCROLL_STATE_IDLE) {
+				mPolicy.onScrollStateChanged(OnScrollListener.SCROLL_STATE_IDLE);
+			}
+		}
+
+		/**
+		 * Moves the list, keeping the footer as the last row it can show;
+		 * returns false if it had to stop short
+		 */
+		private boolean scroll(float rows) {
+			final double end = Math.max(mCheckpoint.getCount() - VISIBLE_ROWS + 1, 0);
+			double position = mPosition + rows;
+			boolean moved = true;
+			if (position < 0) {
+				position = 0;
+				moved = false;
+			} else if (position > end) {
+				position = Math.max(end, mPosition);
+				moved = false;
+			}
+			final int firstVisible = (int) position;
+			mResult.mScrolledRows += Math.abs(firstVisible - mFirstVisible);
+			mPosition = position;
+			mFirstVisible = firstVisible;
+			mLastVisible = firstVisible + VISIBLE_ROWS - 1;
+			return moved;
+		}
+
+		private void deliverLoads() {
+			for (int i = mLoads.size() - 1; i >= 0; i--) {
+				final Load load = mLoads.get(i);
+				if (load.mFinishMs > mNow) {
+					continue;
+				}
+				mLoads.remove(i);
+				int rows = 0;
+				for (int page = load.mFirstPage; page < load.mFirstPage + load.mPageCount; page++) {
+					final int pageRows = Math.min(mPageSize, SOURCE_ROW_COUNT - page * mPageSize);
+					mCheckpoint.putPage(page, pageRows == mPageSize ? mPageRows : Arrays.copyOf(mPageRows, pageRows));
+					rows += pageRows;
+				}
+				mResult.mLoadCount++;
+				mResult.mLoadedRows += rows;
+				mPolicy.onLoadFinished(rows, load.mFinishMs - load.mStartMs);
+			}
+		}
+
+		private boolean isWaiting() {
+			final int count = mCheckpoint.getCount();
+			if (mLastVisible >= count) {
+				return true;
+			}
+			for (int page = mFirstVisible / mPageSize; page <= mLastVisible / mPageSize; page++) {
+				if (!mCheckpoint.isPageResident(page)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void cancelOutside(int firstPage, int lastPage) {
+			for (int i = mLoads.size() - 1; i >= 0; i--) {
+				final Load load = mLoads.get(i);
+				if (load.mFirstPage > lastPage || load.mFirstPage + load.mPageCount <= firstPage) {
+					mLoads.remove(i);
+					mResult.mCancelledLoadCount++;
+				}
+			}
+		}
+
+		@Override
+		public int getInFlightCount() {
+			return mLoads.size();
+		}
+
+		@Override
+		public boolean isRequested(int page) {
+			for (Load load : mLoads) {
+				if (page >= load.mFirstPage && page < load.mFirstPage + load.mPageCount) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean request(int firstPage, int pageCount) {
+			final long latencyMs = mLoadLatencyMs + Math.round(pageCount * mPageSize * mRowLatencyMs);
+			mLoads.add(new Load(firstPage, pageCount, mNow, mNow + latencyMs));
+			return true;
+		}
+
+		/**
+		 * Requests pages the way AutoloadingListFragment does and records
+		 * what the policy asked for
+		 */
+		private void requestPages() {
+			mPlanner.requestPages(mFirstVisible, mLastVisible, SOURCE_ROW_COUNT);
+			mResult.mMaxDistance = Math.max(mResult.mMaxDistance, mPolicy.getPrefetchDistance());
+			mResult.mMaxPagesPerLoad = Math.max(mResult.mMaxPagesPerLoad, mPolicy.getPagesPerLoad());
+			mResult.mMaxLoadsAtOnce = Math.max(mResult.mMaxLoadsAtOnce, mLoads.size());
+			mResult.mMaxResidentPages = Math.max(mResult.mMaxResidentPages,
+					mPolicy.getMaxResidentPages(VISIBLE_ROWS));
+		}
+	}
+}
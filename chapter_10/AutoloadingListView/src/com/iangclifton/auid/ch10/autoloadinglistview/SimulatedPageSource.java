@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2013 Ian G. Clifton
+ * Code featured in Android User Interface Design: Turning Ideas and
+ * Sketches into Beautifully Designed Apps (ISBN-10: 0321886739;
+ * ISBN-13: 978-0321886736).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.iangclifton.auid.ch10.autoloadinglistview;
+
+/**
+ * PageSource that makes up its rows, like "Position 12", and takes time to
+ * load them as if they came from a server: a fixed amount for each request
+ * plus a little for every row in it.
+ * 
+ * @author Ian G. Clifton
+ */
+public class SimulatedPageSource implements PageSource {
+
+	private final int mCount;
+	private final long mLatencyMs;
+	private final float mRowLatencyMs;
+	private final String mPositionString;
+
+	/**
+	 * Constructs a SimulatedPageSource
+	 * 
+	 * @param positionString String each row starts with, like "Position "
+	 * @param count int total number of rows
+	 * @param latencyMs long time each request takes, however many rows
+	 * @param rowLatencyMs float time each row adds to its request
+	 */
+	public SimulatedPageSource(String positionString, int count, long latencyMs, float rowLatencyMs) {
+		mPositionString = positionString;
+		mCount = count;
+		mLatencyMs = latencyMs;
+		mRowLatencyMs = rowLatencyMs;
+	}
+
+	@Override
+	public int getCount() {
+		return mCount;
+	}
+
+	@Override
+	public String[][] loadPages(int firstPage, int pageCount, int pageSize) throws InterruptedException {
+		final int start = firstPage * pageSize;
+		final int end = Math.min(start + pageCount * pageSize, mCount);
+		Thread.sleep(mLatencyMs + Math.round(Math.max(end - start, 0) * mRowLatencyMs));
+		final String[][] pages = new String[Math.max((end - start + pageSize - 1) / pageSize, 0)][];
+		for (int i = 0; i < pages.length; i++) {
+			final int pageStart = start + i * pageSize;
+			final String[] rows = new String[Math.min(pageSize, end - pageStart)];
+			for (int j = 0; j < rows.length; j++) {
+				rows[j] = mPositionString + (pageStart + j);
+			}
+			pages[i] = rows;
+		}
+		return pages;
+	}
+}
@@ -24,14 +24,13 @@ import org.json.JSONObject;
 
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.util.Log;
 
 /**
  * Represents a single Property such as a house or a condo.
  * 
  * This is thread safe and implements Parcelable for passing between Activities.
- * In this case, the Property simply reuses the raw JSON String to pass around
- * so that JSONObject can do the heavy lifting.
+ * The Parcel holds each field directly, so unparceling doesn't have to parse
+ * JSON and a Property doesn't keep a second copy of itself as a JSON String.
  * 
  * In the real world, the data for each of these objects would be coming from
  * a server somewhere, so this object is modeled after a possible JSON
@@ -40,8 +39,6 @@ import android.util.Log;
  * @author Ian G. Clifton
  */
 public class Property implements Parcelable {
-	private static final String TAG = "Property";
-	
 	public static final String JSON_KEY_BATHROOMS = "bathroomCount";
 	public static final String JSON_KEY_BEDROOMS = "bedroomCount";
 	public static final String JSON_KEY_CITY = "city";
@@ -75,11 +72,6 @@ public class Property implements Parcelable {
 	 */
 	private final String mPrice;
 	
-	/**
-	 * The raw JSON representation of the object
-	 */
-	private final String mRawJson;
-	
 	/**
 	 * The abbreviated name of the state like "WA"
 	 */
@@ -98,7 +90,16 @@ public class Property implements Parcelable {
 		mPrice = json.getString(JSON_KEY_PRICE);
 		mState = json.getString(JSON_KEY_STATE);
 		mStreetAddress = json.getString(JSON_KEY_STREET_ADDRESS);
-		mRawJson = json.toString();
+	}
+
+	private Property(Parcel source) {
+		mBathroomCount = source.readFloat();
+		mBedroomCount = source.readInt();
+		mCity = source.readString();
+		mFootage = source.readInt();
+		mPrice = source.readString();
+		mState = source.readString();
+		mStreetAddress = source.readString();
 	}
 
 	@Override
@@ -171,7 +172,13 @@ public class Property implements Parcelable {
 
 	@Override
     public void writeToParcel(Parcel dest, int flags) {
-	    dest.writeString(mRawJson);
+		dest.writeFloat(mBathroomCount);
+		dest.writeInt(mBedroomCount);
+		dest.writeString(mCity);
+		dest.writeInt(mFootage);
+		dest.writeString(mPrice);
+		dest.writeString(mState);
+		dest.writeString(mStreetAddress);
     }
 	
 	/**
@@ -181,15 +188,7 @@ public class Property implements Parcelable {
 
 		@Override
         public Property createFromParcel(Parcel source) {
-			final String rawJson = source.readString();
-            try {
-	            final JSONObject jsonObject = new JSONObject(rawJson);
-		        return new Property(jsonObject);
-            } catch (JSONException e) {
-	            // In theory, it's impossible to get here
-            	Log.e(TAG, "Failed to create Property from JSON String: " + e.getMessage());
-            	return null;
-            }
+			return new Property(source);
         }
 
 		@Override